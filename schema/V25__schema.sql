@@ -0,0 +1,15 @@
+-- Inbound webhook requests that are accepted and then processed asynchronously.
+-- Rows are processed in id order per delivery_id, processed_at is set once done.
+create table webhook_inbound_queue(
+  id serial primary key,
+  endpoint varchar(128) not null,
+  delivery_id integer not null,
+  payload text not null,
+  received_at timestamptz not null default now(),
+  processed_at timestamptz,
+  error varchar(2048)
+);
+alter table webhook_inbound_queue owner to wnc_helene;
+
+create index webhook_inbound_queue_unprocessed_idx
+  on webhook_inbound_queue(id) where processed_at is null;
@@ -0,0 +1,6 @@
+-- Site detail pages list deliveries to and from a site, newest first, a page at a time.
+-- Deliveries without a date yet are listed first, hence the coalesce to 'infinity'.
+create index delivery_from_site_date_idx on delivery(
+  from_site_id, coalesce(target_delivery_date, 'infinity'::date) desc, airtable_id desc);
+create index delivery_to_site_date_idx on delivery(
+  to_site_id, coalesce(target_delivery_date, 'infinity'::date) desc, airtable_id desc);
@@ -0,0 +1,106 @@
+-- Counties that share a border. Used to rank needs matches by how many counties apart two sites
+-- are. Each pair is stored in both directions.
+create table county_adjacency
+(
+    id                 serial primary key,
+    county_id          integer references county (id) not null,
+    adjacent_county_id integer references county (id) not null,
+    constraint county_adjacency_uk unique (county_id, adjacent_county_id),
+    constraint county_adjacency_not_self check (county_id <> adjacent_county_id)
+);
+alter table county_adjacency owner to wnc_helene;
+
+-- Western NC and the bordering TN & VA counties. Pairs that name a county not in the county
+-- table are skipped.
+with pair(county, state, adjacent_county, adjacent_state) as (
+  values
+    ('Alleghany', 'NC', 'Ashe', 'NC'),
+    ('Alleghany', 'NC', 'Surry', 'NC'),
+    ('Alleghany', 'NC', 'Wilkes', 'NC'),
+    ('Alleghany', 'NC', 'Grayson', 'VA'),
+    ('Alexander', 'NC', 'Caldwell', 'NC'),
+    ('Alexander', 'NC', 'Catawba', 'NC'),
+    ('Alexander', 'NC', 'Iredell', 'NC'),
+    ('Alexander', 'NC', 'Wilkes', 'NC'),
+    ('Ashe', 'NC', 'Watauga', 'NC'),
+    ('Ashe', 'NC', 'Wilkes', 'NC'),
+    ('Ashe', 'NC', 'Grayson', 'VA'),
+    ('Ashe', 'NC', 'Johnson', 'TN'),
+    ('Avery', 'NC', 'Burke', 'NC'),
+    ('Avery', 'NC', 'Caldwell', 'NC'),
+    ('Avery', 'NC', 'McDowell', 'NC'),
+    ('Avery', 'NC', 'Mitchell', 'NC'),
+    ('Avery', 'NC', 'Watauga', 'NC'),
+    ('Avery', 'NC', 'Carter', 'TN'),
+    ('Buncombe', 'NC', 'Haywood', 'NC'),
+    ('Buncombe', 'NC', 'Henderson', 'NC'),
+    ('Buncombe', 'NC', 'Madison', 'NC'),
+    ('Buncombe', 'NC', 'McDowell', 'NC'),
+    ('Buncombe', 'NC', 'Rutherford', 'NC'),
+    ('Buncombe', 'NC', 'Transylvania', 'NC'),
+    ('Buncombe', 'NC', 'Yancey', 'NC'),
+    ('Burke', 'NC', 'Caldwell', 'NC'),
+    ('Burke', 'NC', 'Catawba', 'NC'),
+    ('Burke', 'NC', 'Cleveland', 'NC'),
+    ('Burke', 'NC', 'McDowell', 'NC'),
+    ('Burke', 'NC', 'Rutherford', 'NC'),
+    ('Caldwell', 'NC', 'Catawba', 'NC'),
+    ('Caldwell', 'NC', 'Watauga', 'NC'),
+    ('Caldwell', 'NC', 'Wilkes', 'NC'),
+    ('Catawba', 'NC', 'Iredell', 'NC'),
+    ('Catawba', 'NC', 'Lincoln', 'NC'),
+    ('Cherokee', 'NC', 'Clay', 'NC'),
+    ('Cherokee', 'NC', 'Graham', 'NC'),
+    ('Cherokee', 'NC', 'Monroe', 'TN'),
+    ('Cherokee', 'NC', 'Polk', 'TN'),
+    ('Clay', 'NC', 'Macon', 'NC'),
+    ('Cleveland', 'NC', 'Gaston', 'NC'),
+    ('Cleveland', 'NC', 'Lincoln', 'NC'),
+    ('Cleveland', 'NC', 'Rutherford', 'NC'),
+    ('Graham', 'NC', 'Swain', 'NC'),
+    ('Graham', 'NC', 'Monroe', 'TN'),
+    ('Haywood', 'NC', 'Jackson', 'NC'),
+    ('Haywood', 'NC', 'Madison', 'NC'),
+    ('Haywood', 'NC', 'Swain', 'NC'),
+    ('Haywood', 'NC', 'Transylvania', 'NC'),
+    ('Haywood', 'NC', 'Cocke', 'TN'),
+    ('Henderson', 'NC', 'Polk', 'NC'),
+    ('Henderson', 'NC', 'Rutherford', 'NC'),
+    ('Henderson', 'NC', 'Transylvania', 'NC'),
+    ('Jackson', 'NC', 'Macon', 'NC'),
+    ('Jackson', 'NC', 'Swain', 'NC'),
+    ('Jackson', 'NC', 'Transylvania', 'NC'),
+    ('Macon', 'NC', 'Swain', 'NC'),
+    ('Madison', 'NC', 'Yancey', 'NC'),
+    ('Madison', 'NC', 'Cocke', 'TN'),
+    ('Madison', 'NC', 'Greene', 'TN'),
+    ('Madison', 'NC', 'Unicoi', 'TN'),
+    ('McDowell', 'NC', 'Mitchell', 'NC'),
+    ('McDowell', 'NC', 'Rutherford', 'NC'),
+    ('McDowell', 'NC', 'Yancey', 'NC'),
+    ('Mitchell', 'NC', 'Yancey', 'NC'),
+    ('Mitchell', 'NC', 'Carter', 'TN'),
+    ('Mitchell', 'NC', 'Unicoi', 'TN'),
+    ('Polk', 'NC', 'Rutherford', 'NC'),
+    ('Swain', 'NC', 'Blount', 'TN'),
+    ('Swain', 'NC', 'Sevier', 'TN'),
+    ('Watauga', 'NC', 'Wilkes', 'NC'),
+    ('Watauga', 'NC', 'Johnson', 'TN'),
+    ('Yancey', 'NC', 'Unicoi', 'TN'),
+    ('Blount', 'TN', 'Sevier', 'TN'),
+    ('Carter', 'TN', 'Johnson', 'TN'),
+    ('Carter', 'TN', 'Unicoi', 'TN'),
+    ('Cocke', 'TN', 'Greene', 'TN'),
+    ('Cocke', 'TN', 'Sevier', 'TN')
+),
+adjacent as (
+  select c1.id county_id, c2.id adjacent_county_id
+  from pair
+  join county c1 on c1.name = pair.county and c1.state = pair.state
+  join county c2 on c2.name = pair.adjacent_county and c2.state = pair.adjacent_state
+)
+insert into county_adjacency(county_id, adjacent_county_id)
+select county_id, adjacent_county_id from adjacent
+union
+select adjacent_county_id, county_id from adjacent
+on conflict do nothing;
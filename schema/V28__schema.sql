@@ -0,0 +1,9 @@
+-- Incremented on every change to a site's inventory. The inventory page sends back the version it
+-- last saw, an update from a page showing an older version (eg: another browser window made a
+-- change since) is rejected instead of silently overwriting. Sites without a row are at version 0.
+create table site_inventory_version
+(
+    site_id integer primary key references site (id),
+    version bigint  not null
+);
+alter table site_inventory_version owner to wnc_helene;
@@ -0,0 +1,4 @@
+-- Trigram index on site name, backs the site search on the select site page. Supports
+-- 'name ilike %text%' matching anywhere in the name, not only prefixes.
+create extension if not exists pg_trgm;
+create index site_name_trgm_idx on site using gin (name gin_trgm_ops);
@@ -0,0 +1,9 @@
+-- Failed webhook requests are retried rather than dropped. 'attempts' counts failed attempts and
+-- 'error' holds the error of the last one. A request that keeps failing stays unprocessed with
+-- attempts at the limit, and is not picked up again.
+alter table webhook_inbound_queue add column attempts integer not null default 0;
+
+-- Id of the queue worker (one per application start) processing the request. Set atomically
+-- before processing so that a request is never processed twice, and cleared on startup for
+-- requests left claimed by a previous run.
+alter table webhook_inbound_queue add column claimed_by uuid;
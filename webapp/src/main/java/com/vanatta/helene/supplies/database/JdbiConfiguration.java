@@ -1,5 +1,9 @@
 package com.vanatta.helene.supplies.database;
 
+import com.vanatta.helene.supplies.database.data.AuditBuffer;
+import com.vanatta.helene.supplies.database.data.ItemCatalog;
+import com.vanatta.helene.supplies.database.data.ReferenceTables;
+import com.vanatta.helene.supplies.database.data.SiteIdentifiers;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import lombok.extern.slf4j.Slf4j;
@@ -38,4 +42,29 @@ public class JdbiConfiguration {
     jdbi.setSqlLogger(new Slf4JSqlLogger());
     return jdbi;
   }
+
+  /**
+   * The lookup tables are loaded once, when this bean is created. A name that is not found reloads
+   * them, names still missing after that are remembered so they do not reload the tables again.
+   */
+  @Bean
+  public ReferenceTables referenceTables(Jdbi jdbi) {
+    return new ReferenceTables(jdbi);
+  }
+
+  @Bean
+  public ItemCatalog itemCatalog(Jdbi jdbi) {
+    return new ItemCatalog(jdbi);
+  }
+
+  @Bean
+  public SiteIdentifiers siteIdentifiers(Jdbi jdbi) {
+    return new SiteIdentifiers(jdbi);
+  }
+
+  /** Flushes buffered audit rows when the application shuts down. */
+  @Bean(destroyMethod = "shutdown")
+  public AuditBuffer auditBuffer(Jdbi jdbi) {
+    return new AuditBuffer(jdbi);
+  }
 }
@@ -0,0 +1,237 @@
+package com.vanatta.helene.supplies.database.data;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * Write-behind buffer for the 'site_item_audit' table. Audit rows are held in memory and written in
+ * batches, in one transaction, either every {@link #FLUSH_INTERVAL} or as soon as {@link
+ * #FLUSH_SIZE} rows are waiting, whichever comes first. During bulk data entry this replaces one
+ * insert & commit per change with a few batched writes.
+ *
+ * <p>Rows keep the time they were added as their 'changed_date', not the time they are written.
+ * Callers that write audit rows as part of their own transaction should call {@link
+ * #insertSiteItemAudits} with their handle instead. Site field changes are always audited that way,
+ * see {@link #insertSiteAudits}. {@link #flush()} writes everything buffered right away, and {@link
+ * #shutdown()} (called when the application stops) flushes any rows left.
+ *
+ * <p>Batched rows are written with a single insert. If that fails, the rows are written again one
+ * at a time, so only the rows that cannot be written are logged and dropped.
+ */
+@Slf4j
+public class AuditBuffer {
+
+  /** Number of waiting rows that triggers a flush without waiting for the timer. */
+  static final int FLUSH_SIZE = 100;
+
+  static final Duration FLUSH_INTERVAL = Duration.ofSeconds(2);
+
+  private final Jdbi jdbi;
+  private final int flushSize;
+  private final ScheduledExecutorService flusher;
+
+  /** Guarded by 'this'. */
+  private List<SiteItemAudit> siteItemAudits = new ArrayList<>();
+
+  /** Guarded by 'this'. Once shut down, rows are written as they are added. */
+  private boolean shutdown;
+
+  /** Held while writing, keeps batches in the order they were taken from the buffer. */
+  private final Object writeLock = new Object();
+
+  @Value
+  @Builder
+  public static class SiteItemAudit {
+    long siteId;
+    long itemId;
+    String oldValue;
+    String newValue;
+    Instant changedDate;
+  }
+
+  @Value
+  @Builder
+  public static class SiteAudit {
+    long siteId;
+    String fieldName;
+    String oldValue;
+    String newValue;
+    Instant changedDate;
+  }
+
+  public AuditBuffer(Jdbi jdbi) {
+    this(jdbi, FLUSH_SIZE, FLUSH_INTERVAL);
+  }
+
+  // @VisibleForTesting
+  AuditBuffer(Jdbi jdbi, int flushSize, Duration flushInterval) {
+    this.jdbi = jdbi;
+    this.flushSize = flushSize;
+    this.flusher =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("audit-flush").daemon().factory());
+    flusher.scheduleWithFixedDelay(
+        this::flushAndLog,
+        flushInterval.toMillis(),
+        flushInterval.toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
+
+  /** Buffers a change to an item at a site, eg: 'Needed' -> 'Available'. */
+  public void addSiteItemAudit(long siteId, long itemId, String oldValue, String newValue) {
+    var audit =
+        SiteItemAudit.builder()
+            .siteId(siteId)
+            .itemId(itemId)
+            .oldValue(oldValue)
+            .newValue(newValue)
+            .changedDate(Instant.now())
+            .build();
+    synchronized (this) {
+      siteItemAudits.add(audit);
+    }
+    rowAdded();
+  }
+
+  private void rowAdded() {
+    boolean writeNow;
+    boolean full;
+    synchronized (this) {
+      writeNow = shutdown;
+      full = siteItemAudits.size() >= flushSize;
+    }
+
+    if (writeNow) {
+      flush();
+    } else if (full) {
+      try {
+        flusher.execute(this::flushAndLog);
+      } catch (RejectedExecutionException e) {
+        // shut down in the meantime, shutdown() writes what is left
+      }
+    }
+  }
+
+  /** Writes all buffered rows now, returns once they are committed. */
+  public void flush() {
+    synchronized (writeLock) {
+      List<SiteItemAudit> batch;
+      synchronized (this) {
+        batch = siteItemAudits;
+        siteItemAudits = new ArrayList<>();
+      }
+      if (batch.isEmpty()) {
+        return;
+      }
+
+      try {
+        jdbi.useTransaction(handle -> insertSiteItemAudits(handle, batch));
+      } catch (RuntimeException e) {
+        log.warn("Failed to write audit rows as a batch, writing them one at a time", e);
+        if (writeEach(batch) > 0) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  /** Writes each row in its own transaction, returns the number of rows that failed. */
+  private int writeEach(List<SiteItemAudit> audits) {
+    int failed = 0;
+    for (SiteItemAudit audit : audits) {
+      try {
+        jdbi.useTransaction(handle -> insertSiteItemAudits(handle, List.of(audit)));
+      } catch (RuntimeException e) {
+        log.error("Failed to write audit row, dropping: {}", audit, e);
+        failed++;
+      }
+    }
+    return failed;
+  }
+
+  private void flushAndLog() {
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      // already logged by flush(), keep the timer running
+    }
+  }
+
+  /** Stops the flush timer and writes any rows that are still buffered. */
+  public void shutdown() {
+    synchronized (this) {
+      shutdown = true;
+    }
+    flusher.shutdown();
+    try {
+      flusher.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+
+  /** Writes site item audit rows with the given handle, as part of the caller's transaction. */
+  public static void insertSiteItemAudits(Handle handle, List<SiteItemAudit> audits) {
+    if (audits.isEmpty()) {
+      return;
+    }
+    handle
+        .createUpdate(
+            """
+            insert into site_item_audit(site_id, item_id, old_value, new_value, changed_date)
+            select * from unnest(
+              :siteIds, :itemIds, :oldValues, :newValues, cast(:changedDates as timestamptz[]))
+            """)
+        .bindArray("siteIds", Long.class, audits.stream().map(SiteItemAudit::getSiteId).toList())
+        .bindArray("itemIds", Long.class, audits.stream().map(SiteItemAudit::getItemId).toList())
+        .bindArray(
+            "oldValues", String.class, audits.stream().map(SiteItemAudit::getOldValue).toList())
+        .bindArray(
+            "newValues", String.class, audits.stream().map(SiteItemAudit::getNewValue).toList())
+        .bindArray(
+            "changedDates", String.class, changedDates(audits, SiteItemAudit::getChangedDate))
+        .execute();
+  }
+
+  /** Writes site audit trail rows with the given handle, as part of the caller's transaction. */
+  public static void insertSiteAudits(Handle handle, List<SiteAudit> audits) {
+    if (audits.isEmpty()) {
+      return;
+    }
+    handle
+        .createUpdate(
+            """
+            insert into site_audit_trail(site_id, field_name, old_value, new_value, changed_date)
+            select * from unnest(
+              :siteIds, :fieldNames, :oldValues, :newValues, cast(:changedDates as timestamptz[]))
+            """)
+        .bindArray("siteIds", Long.class, audits.stream().map(SiteAudit::getSiteId).toList())
+        .bindArray(
+            "fieldNames", String.class, audits.stream().map(SiteAudit::getFieldName).toList())
+        .bindArray("oldValues", String.class, audits.stream().map(SiteAudit::getOldValue).toList())
+        .bindArray("newValues", String.class, audits.stream().map(SiteAudit::getNewValue).toList())
+        .bindArray("changedDates", String.class, changedDates(audits, SiteAudit::getChangedDate))
+        .execute();
+  }
+
+  /**
+   * Changed dates are bound as ISO-8601 text and cast to 'timestamptz[]' in the statement, the
+   * driver has no array type for {@code Instant}.
+   */
+  private static <T> List<String> changedDates(List<T> audits, Function<T, Instant> changedDate) {
+    return audits.stream().map(audit -> changedDate.apply(audit).toString()).toList();
+  }
+}
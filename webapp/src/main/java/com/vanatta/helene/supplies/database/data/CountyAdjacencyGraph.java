@@ -0,0 +1,121 @@
+package com.vanatta.helene.supplies.database.data;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * Which counties border each other, with the number of county borders to cross (hops) between every
+ * pair of counties computed up front. Looking up the distance between two counties is then an array
+ * lookup.
+ *
+ * <p>Counties and their adjacency only change with a schema migration, so this is loaded once on
+ * startup.
+ */
+@Slf4j
+public class CountyAdjacencyGraph {
+
+  /** Distance between two counties that are not connected, or that are not known. */
+  public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+  /** county id -> index into 'hops' */
+  private final Map<Long, Integer> countyIndex = new HashMap<>();
+
+  /** hops[i][j], number of hops from county i to county j */
+  private final int[][] hops;
+
+  // @VisibleForTesting
+  CountyAdjacencyGraph(Collection<Long> countyIds, List<Adjacency> adjacencies) {
+    countyIds.forEach(countyId -> countyIndex.putIfAbsent(countyId, countyIndex.size()));
+
+    List<List<Integer>> neighbors = new ArrayList<>();
+    countyIndex.forEach((_, _) -> neighbors.add(new ArrayList<>()));
+    for (Adjacency adjacency : adjacencies) {
+      Integer from = countyIndex.get(adjacency.getCountyId());
+      Integer to = countyIndex.get(adjacency.getAdjacentCountyId());
+      if (from != null && to != null) {
+        neighbors.get(from).add(to);
+        neighbors.get(to).add(from);
+      }
+    }
+
+    hops = new int[countyIndex.size()][];
+    for (int i = 0; i < hops.length; i++) {
+      hops[i] = breadthFirstHops(i, neighbors);
+    }
+  }
+
+  private static int[] breadthFirstHops(int start, List<List<Integer>> neighbors) {
+    int[] distances = new int[neighbors.size()];
+    Arrays.fill(distances, UNREACHABLE);
+    distances[start] = 0;
+
+    ArrayDeque<Integer> queue = new ArrayDeque<>();
+    queue.add(start);
+    while (!queue.isEmpty()) {
+      int current = queue.poll();
+      for (int next : neighbors.get(current)) {
+        if (distances[next] == UNREACHABLE) {
+          distances[next] = distances[current] + 1;
+          queue.add(next);
+        }
+      }
+    }
+    return distances;
+  }
+
+  public static CountyAdjacencyGraph load(Jdbi jdbi) {
+    List<Long> countyIds =
+        jdbi.withHandle(
+            handle -> handle.createQuery("select id from county").mapTo(Long.class).list());
+    List<Adjacency> adjacencies =
+        jdbi.withHandle(
+            handle ->
+                handle
+                    .createQuery(
+                        """
+                        select county_id countyId, adjacent_county_id adjacentCountyId
+                        from county_adjacency
+                        """)
+                    .mapToBean(Adjacency.class)
+                    .list());
+    log.info(
+        "County adjacency loaded, counties: {}, adjacencies: {}",
+        countyIds.size(),
+        adjacencies.size());
+    return new CountyAdjacencyGraph(countyIds, adjacencies);
+  }
+
+  /**
+   * Returns the number of county borders crossed going from one county to another, zero for the
+   * same county, or {@link #UNREACHABLE}.
+   */
+  public int hops(long fromCountyId, long toCountyId) {
+    if (fromCountyId == toCountyId) {
+      return 0;
+    }
+    Integer from = countyIndex.get(fromCountyId);
+    Integer to = countyIndex.get(toCountyId);
+    if (from == null || to == null) {
+      return UNREACHABLE;
+    }
+    return hops[from][to];
+  }
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Adjacency {
+    long countyId;
+    long adjacentCountyId;
+  }
+}
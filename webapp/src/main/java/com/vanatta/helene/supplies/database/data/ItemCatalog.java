@@ -0,0 +1,161 @@
+package com.vanatta.helene.supplies.database.data;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.mapper.RowMapper;
+
+/**
+ * In memory copy of the item table, looked up by item name, id or wss id. Lets writes bind an item
+ * id instead of resolving the item by name with a sub-query on every statement.
+ *
+ * <p>Item names are unique ignoring case (unique index on lower(name)), so names are looked up
+ * ignoring case and the returned item has the name as it is stored in the database.
+ *
+ * <p>All items are loaded on construction. New items are added by {@code InventoryDao.addNewItem};
+ * an item that is not in the cache is looked up in the database before it is considered missing, so
+ * items added by any other means are found as well.
+ */
+@Slf4j
+public class ItemCatalog {
+
+  /** Maps 'id', 'name' and 'wss_id' columns of the item table. */
+  public static final RowMapper<Item> ITEM_MAPPER =
+      (rs, _) -> new Item(rs.getLong("id"), rs.getString("name"), rs.getLong("wss_id"));
+
+  private final Jdbi jdbi;
+  private volatile Items items;
+
+  /** All items sorted by name ignoring case, built on demand and cleared when items change. */
+  private volatile List<Item> sortedItems;
+
+  /** Incremented on every change, a sorted list built while items changed is not kept. */
+  private long changeCount;
+
+  @Value
+  @AllArgsConstructor
+  public static class Item {
+    long id;
+    String name;
+    long wssId;
+  }
+
+  /** Items indexed three ways, swapped out as a whole on reload. */
+  private record Items(Map<String, Item> byName, Map<Long, Item> byId, Map<Long, Item> byWssId) {
+    Items() {
+      this(new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    }
+
+    void put(Item item) {
+      byName.put(normalize(item.getName()), item);
+      byId.put(item.getId(), item);
+      byWssId.put(item.getWssId(), item);
+    }
+  }
+
+  public ItemCatalog(Jdbi jdbi) {
+    this.jdbi = jdbi;
+    reload();
+  }
+
+  /** Re-reads all items from the database. */
+  public void reload() {
+    List<Item> allItems =
+        jdbi.withHandle(
+            handle ->
+                handle.createQuery("select id, name, wss_id from item").map(ITEM_MAPPER).list());
+    Items reloaded = new Items();
+    allItems.forEach(reloaded::put);
+    items = reloaded;
+    itemsChanged();
+    log.info("Item catalog loaded, items: {}", allItems.size());
+  }
+
+  /** Adds (or replaces) an item that was just written to the database. */
+  public void put(Item item) {
+    Item previous = items.byId().get(item.getId());
+    items.put(item);
+    if (!item.equals(previous)) {
+      itemsChanged();
+    }
+  }
+
+  private synchronized void itemsChanged() {
+    changeCount++;
+    sortedItems = null;
+  }
+
+  /** Returns all items sorted by name, ignoring case. */
+  public List<Item> sortedItems() {
+    List<Item> sorted = sortedItems;
+    if (sorted == null) {
+      long changeCountBefore;
+      synchronized (this) {
+        changeCountBefore = changeCount;
+      }
+      sorted =
+          items.byId().values().stream()
+              .sorted(Comparator.comparing(item -> normalize(item.getName())))
+              .toList();
+      synchronized (this) {
+        if (changeCount == changeCountBefore) {
+          sortedItems = sorted;
+        }
+      }
+    }
+    return sorted;
+  }
+
+  public Optional<Item> findByName(String itemName) {
+    if (itemName == null) {
+      return Optional.empty();
+    }
+    Item item = items.byName().get(normalize(itemName));
+    return item != null ? Optional.of(item) : lookup("lower(name) = lower(:value)", itemName);
+  }
+
+  public Optional<Item> findById(long id) {
+    Item item = items.byId().get(id);
+    return item != null ? Optional.of(item) : lookup("id = :value", id);
+  }
+
+  public Optional<Item> findByWssId(long wssId) {
+    Item item = items.byWssId().get(wssId);
+    return item != null ? Optional.of(item) : lookup("wss_id = :value", wssId);
+  }
+
+  /**
+   * Returns the id of an item.
+   *
+   * @throws IllegalArgumentException if there is no such item.
+   */
+  public long itemId(String itemName) {
+    return findByName(itemName)
+        .map(Item::getId)
+        .orElseThrow(() -> new IllegalArgumentException("Invalid item name: " + itemName));
+  }
+
+  private Optional<Item> lookup(String whereClause, Object value) {
+    Optional<Item> item =
+        jdbi.withHandle(
+            handle ->
+                handle
+                    .createQuery("select id, name, wss_id from item where " + whereClause)
+                    .bind("value", value)
+                    .map(ITEM_MAPPER)
+                    .findOne());
+    item.ifPresent(this::put);
+    return item;
+  }
+
+  private static String normalize(String itemName) {
+    return itemName.toLowerCase(Locale.ROOT);
+  }
+}
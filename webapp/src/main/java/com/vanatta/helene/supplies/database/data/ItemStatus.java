@@ -1,8 +1,11 @@
 package com.vanatta.helene.supplies.database.data;
 
-import com.vanatta.helene.supplies.database.util.EnumUtil;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
@@ -18,12 +21,23 @@ public enum ItemStatus {
   private final String cssClass;
   private final boolean needed;
 
+  /** Lower case text -> item status, text values are matched ignoring case. */
+  private static final Map<String, ItemStatus> byText =
+      Arrays.stream(values())
+          .collect(
+              Collectors.toUnmodifiableMap(
+                  s -> s.text.toLowerCase(Locale.ROOT), Function.identity()));
+
   public static List<String> allItemStatus() {
     return Arrays.stream(values()).map(s -> s.text).toList();
   }
 
   public static ItemStatus fromTextValue(String textValue) {
-    return EnumUtil.mapText(values(), ItemStatus::getText, textValue)
-        .orElseThrow(() -> new IllegalArgumentException("Invalid item status text: " + textValue));
+    ItemStatus itemStatus =
+        textValue == null ? null : byText.get(textValue.toLowerCase(Locale.ROOT));
+    if (itemStatus == null) {
+      throw new IllegalArgumentException("Invalid item status text: " + textValue);
+    }
+    return itemStatus;
   }
 }
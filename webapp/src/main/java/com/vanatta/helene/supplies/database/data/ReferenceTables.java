@@ -0,0 +1,152 @@
+package com.vanatta.helene.supplies.database.data;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * In memory copy of the small lookup tables: item_status, site_type, max_supply_load and county.
+ * Lets DAOs bind ids directly instead of resolving names with a sub-query on every statement, and
+ * hands out one canonical (interned) string per name so rows mapped with these names share the same
+ * instances.
+ *
+ * <p>These tables only change with a schema migration, so they are loaded once, when the bean is
+ * created (see {@code JdbiConfiguration}). A name that is not found triggers one reload before it
+ * is considered invalid, which picks up rows added since the last load. Names still not found after
+ * that reload are remembered as missing until the next reload, so repeating an invalid name does
+ * not reload the tables every time. {@link #reload()} can also be called directly, eg: after tables
+ * are re-created.
+ */
+@Slf4j
+public class ReferenceTables {
+
+  /** Limits the memory used by invalid names, the missing names are forgotten when reached. */
+  static final int MAX_MISSING_NAMES = 1000;
+
+  private final Jdbi jdbi;
+  private volatile Tables tables;
+
+  public ReferenceTables(Jdbi jdbi) {
+    this.jdbi = jdbi;
+    reload();
+  }
+
+  /** Re-reads all reference tables from the database. */
+  public void reload() {
+    tables = jdbi.withHandle(ReferenceTables::loadTables);
+    log.info(
+        "Reference tables loaded, item statuses: {}, site types: {}, max supply loads: {},"
+            + " counties: {}",
+        tables.itemStatus.idByName.size(),
+        tables.siteType.idByName.size(),
+        tables.maxSupplyLoad.idByName.size(),
+        tables.county.idByName.size());
+  }
+
+  private static Tables loadTables(Handle handle) {
+    return new Tables(
+        Lookup.of(fetch(handle, "select id, name from item_status")),
+        Lookup.of(fetch(handle, "select id, name from site_type")),
+        Lookup.of(fetch(handle, "select id, name from max_supply_load")),
+        Lookup.of(fetch(handle, "select id, concat(state, ',', name) as name from county")));
+  }
+
+  private static List<Row> fetch(Handle handle, String query) {
+    return handle.createQuery(query).mapToBean(Row.class).list();
+  }
+
+  /**
+   * @throws IllegalArgumentException if the item status does not exist.
+   */
+  public long itemStatusId(String itemStatus) {
+    return lookupId(t -> t.itemStatus, itemStatus, "Invalid item status: " + itemStatus);
+  }
+
+  /**
+   * @throws IllegalArgumentException if the site type does not exist.
+   */
+  public long siteTypeId(String siteType) {
+    return lookupId(t -> t.siteType, siteType, "Invalid site type: " + siteType);
+  }
+
+  /**
+   * @throws IllegalArgumentException if the max supply load does not exist.
+   */
+  public long maxSupplyLoadId(String maxSupplyLoad) {
+    return lookupId(
+        t -> t.maxSupplyLoad, maxSupplyLoad, "Invalid max supply value received: " + maxSupplyLoad);
+  }
+
+  /**
+   * @throws IllegalArgumentException if the county does not exist in the given state.
+   */
+  public long countyId(String county, String state) {
+    return lookupId(
+        t -> t.county,
+        state + "," + county,
+        String.format("Invalid county specified: %s, state: %s", county, state));
+  }
+
+  /** Returns the canonical name of an item status id, or null if the id is not known. */
+  public String itemStatusName(long itemStatusId) {
+    return tables.itemStatus.nameById.get(itemStatusId);
+  }
+
+  private long lookupId(Function<Tables, Lookup> table, String name, String invalidMessage) {
+    if (name == null) {
+      throw new IllegalArgumentException(invalidMessage);
+    }
+    Lookup lookup = table.apply(tables);
+    Long id = lookup.idByName.get(name);
+    if (id == null && !lookup.missing.contains(name)) {
+      reload();
+      lookup = table.apply(tables);
+      id = lookup.idByName.get(name);
+      if (id == null) {
+        if (lookup.missing.size() >= MAX_MISSING_NAMES) {
+          lookup.missing.clear();
+        }
+        lookup.missing.add(name);
+      }
+    }
+    if (id == null) {
+      throw new IllegalArgumentException(invalidMessage);
+    }
+    return id;
+  }
+
+  private record Tables(Lookup itemStatus, Lookup siteType, Lookup maxSupplyLoad, Lookup county) {}
+
+  /**
+   * id <-> name of one table. Maps are never modified after being built, 'missing' holds the names
+   * that were not found since this lookup was loaded.
+   */
+  private record Lookup(
+      Map<String, Long> idByName, Map<Long, String> nameById, Set<String> missing) {
+    static Lookup of(List<Row> rows) {
+      Map<String, Long> idByName = new HashMap<>();
+      Map<Long, String> nameById = new HashMap<>();
+      for (Row row : rows) {
+        String name = row.getName().intern();
+        idByName.put(name, row.getId());
+        nameById.put(row.getId(), name);
+      }
+      return new Lookup(Map.copyOf(idByName), Map.copyOf(nameById), ConcurrentHashMap.newKeySet());
+    }
+  }
+
+  @Data
+  @NoArgsConstructor
+  public static class Row {
+    long id;
+    String name;
+  }
+}
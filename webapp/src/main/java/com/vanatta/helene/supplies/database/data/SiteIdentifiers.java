@@ -0,0 +1,127 @@
+package com.vanatta.helene.supplies.database.data;
+
+import jakarta.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.mapper.RowMapper;
+
+/**
+ * In memory map between the three identifiers of a site: the database 'id', the 'wss_id' that we
+ * hand out to other systems and the 'airtable_id' that airtable knows the site by. Webhooks and
+ * site links identify sites by wss id or airtable id, this translates them without a query, and
+ * lets statements bind a site id instead of a 'select id from site where wss_id = ..' sub-query.
+ *
+ * <p>All sites are loaded on construction. New sites are added by {@code AddSiteController}; an
+ * identifier that is not in the map is looked up in the database before it is considered missing,
+ * so sites added by any other means (and airtable ids assigned later) are found as well.
+ */
+@Slf4j
+public class SiteIdentifiers {
+
+  /** Maps 'id', 'wss_id' and 'airtable_id' columns of the site table. */
+  public static final RowMapper<Ids> IDS_MAPPER =
+      (rs, _) -> {
+        long airtableId = rs.getLong("airtable_id");
+        // airtable_id is an integer column, null for sites not (yet) known to airtable
+        Long nullableAirtableId = rs.wasNull() ? null : airtableId;
+        return new Ids(rs.getLong("id"), rs.getLong("wss_id"), nullableAirtableId);
+      };
+
+  private final Jdbi jdbi;
+  private volatile Index index;
+
+  @Value
+  @AllArgsConstructor
+  public static class Ids {
+    long id;
+    long wssId;
+    @Nullable Long airtableId;
+  }
+
+  /** Ids indexed three ways, swapped out as a whole on reload. */
+  private record Index(Map<Long, Ids> byId, Map<Long, Ids> byWssId, Map<Long, Ids> byAirtableId) {
+    Index() {
+      this(new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    }
+
+    void put(Ids ids) {
+      Ids previous = byId.put(ids.getId(), ids);
+      if (previous != null) {
+        byWssId.remove(previous.getWssId(), previous);
+        if (previous.getAirtableId() != null) {
+          byAirtableId.remove(previous.getAirtableId(), previous);
+        }
+      }
+      byWssId.put(ids.getWssId(), ids);
+      if (ids.getAirtableId() != null) {
+        byAirtableId.put(ids.getAirtableId(), ids);
+      }
+    }
+  }
+
+  public SiteIdentifiers(Jdbi jdbi) {
+    this.jdbi = jdbi;
+    reload();
+  }
+
+  /** Re-reads the identifiers of all sites from the database. */
+  public void reload() {
+    List<Ids> allIds =
+        jdbi.withHandle(
+            handle ->
+                handle
+                    .createQuery("select id, wss_id, airtable_id from site")
+                    .map(IDS_MAPPER)
+                    .list());
+    Index reloaded = new Index();
+    allIds.forEach(reloaded::put);
+    index = reloaded;
+    log.info("Site identifiers loaded, sites: {}", allIds.size());
+  }
+
+  /** Adds (or replaces) the identifiers of a site that was just written to the database. */
+  public void put(Ids ids) {
+    index.put(ids);
+  }
+
+  public Optional<Long> siteIdByWssId(long wssId) {
+    return findByWssId(wssId).map(Ids::getId);
+  }
+
+  public Optional<Long> siteIdByAirtableId(long airtableId) {
+    return findByAirtableId(airtableId).map(Ids::getId);
+  }
+
+  public Optional<Long> wssIdByAirtableId(long airtableId) {
+    return findByAirtableId(airtableId).map(Ids::getWssId);
+  }
+
+  private Optional<Ids> findByWssId(long wssId) {
+    Ids ids = index.byWssId().get(wssId);
+    return ids != null ? Optional.of(ids) : lookup("wss_id = :value", wssId);
+  }
+
+  private Optional<Ids> findByAirtableId(long airtableId) {
+    Ids ids = index.byAirtableId().get(airtableId);
+    return ids != null ? Optional.of(ids) : lookup("airtable_id = :value", airtableId);
+  }
+
+  private Optional<Ids> lookup(String whereClause, long value) {
+    Optional<Ids> ids =
+        jdbi.withHandle(
+            handle ->
+                handle
+                    .createQuery("select id, wss_id, airtable_id from site where " + whereClause)
+                    .bind("value", value)
+                    .map(IDS_MAPPER)
+                    .findOne());
+    ids.ifPresent(this::put);
+    return ids;
+  }
+}
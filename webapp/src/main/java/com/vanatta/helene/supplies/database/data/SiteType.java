@@ -2,6 +2,10 @@ package com.vanatta.helene.supplies.database.data;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
@@ -13,14 +17,17 @@ public enum SiteType {
   ;
   private final String text;
 
+  private static final Map<String, SiteType> byText =
+      Arrays.stream(values())
+          .collect(Collectors.toUnmodifiableMap(SiteType::getText, Function.identity()));
+
   public static List<String> allSiteTypes() {
     return Arrays.stream(values()).map(s -> s.text).toList();
   }
 
   public static SiteType parseSiteType(String text) {
-    return Arrays.stream(values())
-        .filter(s -> s.text.equals(text))
-        .findAny()
+    return Optional.ofNullable(text)
+        .map(byText::get)
         .orElseThrow(() -> new IllegalArgumentException("Invalid site type: " + text));
   }
 }
@@ -2,6 +2,7 @@ package com.vanatta.helene.supplies.database.delivery;
 
 import com.vanatta.helene.supplies.database.supplies.site.details.SiteDetailController;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -81,6 +82,9 @@ public class Delivery {
     this.toContactName = dbData.getToContactName();
     this.toContactPhone = dbData.getToContactPhone();
     this.toHours = dbData.getToHours();
+    if (dbData.getItemNames() != null) {
+      this.itemList.addAll(Arrays.asList(dbData.getItemNames()));
+    }
   }
 
   //  int itemCount;
@@ -88,7 +92,7 @@ public class Delivery {
     return itemList.size();
   }
 
-  String getItemListTruncated() {
+  public String getItemListTruncated() {
     return getItemListTruncated(itemList);
   }
 
@@ -1,6 +1,10 @@
 package com.vanatta.helene.supplies.database.delivery;
 
 import com.google.gson.Gson;
+import com.vanatta.helene.supplies.database.data.ItemCatalog;
+import com.vanatta.helene.supplies.database.data.SiteIdentifiers;
+import com.vanatta.helene.supplies.database.incoming.webhook.WebhookFingerprintStore;
+import com.vanatta.helene.supplies.database.incoming.webhook.WebhookQueue;
 import com.vanatta.helene.supplies.database.util.TruncateString;
 import java.util.HashMap;
 import java.util.List;
@@ -23,7 +27,6 @@ import org.springframework.web.servlet.ModelAndView;
 /** Has a webhook for incoming requests from airtable to receive status updates for deliveries. */
 @Controller
 @Slf4j
-@AllArgsConstructor
 public class DeliveryController {
 
   /** How many items we can have in one column before we split the item list into two. */
@@ -41,6 +44,24 @@ public class DeliveryController {
   private static final String PATH_UPDATE_DELIVERY = "/webhook/update-delivery";
 
   private final Jdbi jdbi;
+  private final ItemCatalog itemCatalog;
+  private final SiteIdentifiers siteIdentifiers;
+  private final WebhookFingerprintStore webhookFingerprintStore;
+  private final WebhookQueue webhookQueue;
+
+  DeliveryController(
+      Jdbi jdbi,
+      ItemCatalog itemCatalog,
+      SiteIdentifiers siteIdentifiers,
+      WebhookFingerprintStore webhookFingerprintStore,
+      WebhookQueue webhookQueue) {
+    this.jdbi = jdbi;
+    this.itemCatalog = itemCatalog;
+    this.siteIdentifiers = siteIdentifiers;
+    this.webhookFingerprintStore = webhookFingerprintStore;
+    this.webhookQueue = webhookQueue;
+    webhookQueue.registerHandler(PATH_UPDATE_DELIVERY, this::applyDeliveryUpdate);
+  }
 
   @Data
   @Builder(toBuilder = true)
@@ -70,15 +91,42 @@ public class DeliveryController {
     log.info("Delivery update endpoint received: {}", body);
     DeliveryUpdate deliveryUpdate = DeliveryUpdate.parseJson(body);
 
+    if (!webhookFingerprintStore.recordIfNew(
+        PATH_UPDATE_DELIVERY, deliveryUpdate.getDeliveryId(), body)) {
+      return ResponseEntity.ok("Duplicate, ignored");
+    }
+
+    if (webhookQueue.isEnabled()) {
+      try {
+        webhookQueue.submit(PATH_UPDATE_DELIVERY, deliveryUpdate.getDeliveryId(), body);
+      } catch (RuntimeException e) {
+        // not queued, a retry of this payload must not be dropped as a duplicate
+        webhookFingerprintStore.forget(PATH_UPDATE_DELIVERY, deliveryUpdate.getDeliveryId(), body);
+        throw e;
+      }
+      return ResponseEntity.accepted().body("accepted");
+    }
+
+    try {
+      applyDeliveryUpdate(body);
+    } catch (RuntimeException e) {
+      // not applied, a retry of this payload must not be dropped as a duplicate
+      webhookFingerprintStore.forget(PATH_UPDATE_DELIVERY, deliveryUpdate.getDeliveryId(), body);
+      throw e;
+    }
+    return ResponseEntity.ok("ok");
+  }
+
+  private void applyDeliveryUpdate(String body) {
+    DeliveryUpdate deliveryUpdate = DeliveryUpdate.parseJson(body);
+
     // if either to or from site are gone, then we can remove the delivery.
     if (deliveryUpdate.getPickupSiteWssId().isEmpty()
         || deliveryUpdate.getDropOffSiteWssId().isEmpty()) {
       DeliveryDao.deleteDelivery(jdbi, deliveryUpdate.deliveryId);
     } else {
-      DeliveryDao.upsert(jdbi, deliveryUpdate);
+      DeliveryDao.upsert(jdbi, itemCatalog, siteIdentifiers, deliveryUpdate);
     }
-
-    return ResponseEntity.ok("ok");
   }
 
   enum TemplateParams {
@@ -1,57 +1,66 @@
 package com.vanatta.helene.supplies.database.delivery;
 
+import com.vanatta.helene.supplies.database.data.ItemCatalog;
+import com.vanatta.helene.supplies.database.data.SiteIdentifiers;
+import java.time.LocalDate;
+import java.util.List;
 import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jdbi.v3.core.Jdbi;
 
-import java.util.List;
-
 @Slf4j
 public class DeliveryDao {
 
-  public static void upsert(Jdbi jdbi, DeliveryController.DeliveryUpdate deliveryUpdate) {
+  public static void upsert(
+      Jdbi jdbi,
+      ItemCatalog itemCatalog,
+      SiteIdentifiers siteIdentifiers,
+      DeliveryController.DeliveryUpdate deliveryUpdate) {
     assert !deliveryUpdate.getPickupSiteWssId().isEmpty();
     assert !deliveryUpdate.getDropOffSiteWssId().isEmpty();
+    long fromSiteId = siteId(siteIdentifiers, deliveryUpdate.getPickupSiteWssId().getFirst());
+    long toSiteId = siteId(siteIdentifiers, deliveryUpdate.getDropOffSiteWssId().getFirst());
 
     String upsert =
         """
-        insert into delivery(
-          from_site_id, to_site_id, delivery_status, target_delivery_date,
-          dispatcher_name, dispatcher_number, driver_name, driver_number,
-          driver_license_plates, airtable_id, dispatcher_notes)
-        values(
-          (select id from site where wss_id = :fromSiteWssId),
-          (select id from site where wss_id = :toSiteWssId),
-          :deliveryStatus,
-          to_date(:targetDeliveryDate, 'YYYY-MM-DD'),
-          :dispatcherName,
-          :dispatcherNumber,
-          :driverName,
-          :driverNumber,
-          :driverLicensePlateNumbers,
-          :airtableId,
-          :dispatcherNotes
-        ) on conflict(airtable_id) do update set
-          from_site_id = (select id from site where wss_id = :fromSiteWssId),
-          to_site_id = (select id from site where wss_id = :toSiteWssId),
-          delivery_status = :deliveryStatus,
-          target_delivery_date = to_date(:targetDeliveryDate, 'YYYY-MM-DD'), -- 2024-12-13 SELECT TO_DATE('20170103','YYYYMMDD');
-          dispatcher_name = :dispatcherName,
-          dispatcher_number = :dispatcherNumber,
-          driver_name = :driverName,
-          driver_number = :driverNumber,
-          driver_license_plates = :driverLicensePlateNumbers,
-          airtable_id = :airtableId,
-          dispatcher_notes = :dispatcherNotes
-        """;
+insert into delivery(
+  from_site_id, to_site_id, delivery_status, target_delivery_date,
+  dispatcher_name, dispatcher_number, driver_name, driver_number,
+  driver_license_plates, airtable_id, dispatcher_notes)
+values(
+  :fromSiteId,
+  :toSiteId,
+  :deliveryStatus,
+  to_date(:targetDeliveryDate, 'YYYY-MM-DD'),
+  :dispatcherName,
+  :dispatcherNumber,
+  :driverName,
+  :driverNumber,
+  :driverLicensePlateNumbers,
+  :airtableId,
+  :dispatcherNotes
+) on conflict(airtable_id) do update set
+  from_site_id = :fromSiteId,
+  to_site_id = :toSiteId,
+  delivery_status = :deliveryStatus,
+  target_delivery_date = to_date(:targetDeliveryDate, 'YYYY-MM-DD'), -- 2024-12-13 SELECT TO_DATE('20170103','YYYYMMDD');
+  dispatcher_name = :dispatcherName,
+  dispatcher_number = :dispatcherNumber,
+  driver_name = :driverName,
+  driver_number = :driverNumber,
+  driver_license_plates = :driverLicensePlateNumbers,
+  airtable_id = :airtableId,
+  dispatcher_notes = :dispatcherNotes
+""";
     jdbi.withHandle(
         handle ->
             handle
                 .createUpdate(upsert)
-                .bind("fromSiteWssId", deliveryUpdate.getPickupSiteWssId().getFirst())
-                .bind("toSiteWssId", deliveryUpdate.getDropOffSiteWssId().getFirst())
+                .bind("fromSiteId", fromSiteId)
+                .bind("toSiteId", toSiteId)
                 .bind("deliveryStatus", deliveryUpdate.getDeliveryStatus())
                 .bind("targetDeliveryDate", deliveryUpdate.getTargetDeliveryDate())
                 .bind(
@@ -85,9 +94,9 @@ public class DeliveryDao {
 
     String deletePreviousItems =
         """
-      delete from delivery_item where delivery_id =
-        (select id from delivery where airtable_id = :deliveryId)
-    """;
+          delete from delivery_item where delivery_id =
+            (select id from delivery where airtable_id = :deliveryId)
+        """;
 
     jdbi.withHandle(
         handle ->
@@ -99,24 +108,35 @@ public class DeliveryDao {
     // insert all the latest items
     String insert =
         """
-    insert into delivery_item(delivery_id, item_id)
-    values(
-      (select id from delivery where airtable_id = :airtableId),
-      (select id from item where wss_id = :itemWssId)
-    )
-    """;
+        insert into delivery_item(delivery_id, item_id)
+        values(
+          (select id from delivery where airtable_id = :airtableId),
+          :itemId
+        )
+        """;
     List<Long> itemIds = deliveryUpdate.getItemListWssIds();
     for (long itemWssId : itemIds) {
+      long itemId =
+          itemCatalog
+              .findByWssId(itemWssId)
+              .map(ItemCatalog.Item::getId)
+              .orElseThrow(() -> new IllegalArgumentException("Invalid item wss id: " + itemWssId));
       jdbi.withHandle(
           handle ->
               handle
                   .createUpdate(insert)
                   .bind("airtableId", deliveryUpdate.getDeliveryId())
-                  .bind("itemWssId", itemWssId)
+                  .bind("itemId", itemId)
                   .execute());
     }
   }
 
+  private static long siteId(SiteIdentifiers siteIdentifiers, long siteWssId) {
+    return siteIdentifiers
+        .siteIdByWssId(siteWssId)
+        .orElseThrow(() -> new IllegalArgumentException("Invalid site wss id: " + siteWssId));
+  }
+
   // get
   @Data
   @AllArgsConstructor
@@ -149,6 +169,8 @@ public class DeliveryDao {
     private String toContactName;
     private String toContactPhone;
     private String toHours;
+
+    String[] itemNames;
   }
 
   public static Delivery fetchDeliveryByAirtableId(Jdbi jdbi, long airtableId) {
@@ -162,88 +184,222 @@ public class DeliveryDao {
     }
   }
 
-  public static List<Delivery> fetchDeliveriesBySiteId(Jdbi jdbi, Long siteId) {
-    String whereClause =
-        """
-    d.from_site_id = :id
-    or d.to_site_id = :id
-    """;
-    return fetchDeliveriesBySiteId(jdbi, whereClause, siteId);
-  }
+  /** Select of delivery data, callers append their own where clause, ordering and limit. */
+  private static final String SELECT_DELIVERIES =
+      """
+      select
+        d.airtable_id deliveryId,
+        d.delivery_status deliveryStatus,
+        d.target_delivery_date targetDeliveryDate,
+        d.dispatcher_name dispatcherName,
+        d.dispatcher_number dispatcherNumber,
+        d.dispatcher_notes dispatcherNotes,
+        d.driver_name driverName,
+        d.driver_number driverNumber,
+        d.driver_license_plates licensePlateNumbers,
 
-  public static List<Delivery> fetchDeliveriesBySiteId(Jdbi jdbi, String whereClause, long id) {
+        fromSite.name fromSiteName,
+        fromSite.id fromSiteId,
+        fromSite.address fromAddress,
+        fromSite.city fromCity,
+        fromCounty.state fromState,
+        fromSite.contact_name fromContactName,
+        fromSite.contact_number fromContactPhone,
+        fromSite.hours fromHours,
+
+        toSite.name toSiteName,
+        toSite.id toSiteId,
+        toSite.address toAddress,
+        toSite.city toCity,
+        toCounty.state toState,
+        toSite.contact_name toContactName,
+        toSite.contact_number toContactPhone,
+        toSite.hours toHours,
+
+        items.names itemNames
+      from delivery d
+      join site fromSite on fromSite.id = d.from_site_id
+      join county fromCounty on fromCounty.id = fromSite.county_id
+      join site toSite on toSite.id = d.to_site_id
+      join county toCounty on toCounty.id = toSite.county_id
+      left join lateral (
+        select array_agg(i.name order by di.id) names
+        from delivery_item di
+        join item i on i.id = di.item_id
+        where di.delivery_id = d.id
+      ) items on true
+      """;
 
+  public static List<Delivery> fetchDeliveriesBySiteId(Jdbi jdbi, String whereClause, long id) {
     String select =
+        SELECT_DELIVERIES
+            + String.format(
+                """
+                where (%s)
+                order by d.target_delivery_date desc
+                """,
+                whereClause);
+    return jdbi
+        .withHandle(
+            handle ->
+                handle.createQuery(select).bind("id", id).mapToBean(DeliveryData.class).list())
+        .stream()
+        .map(Delivery::new)
+        .toList();
+  }
+
+  /** Deliveries are listed either as coming in to a site, or going out from a site. */
+  @AllArgsConstructor
+  public enum Direction {
+    INCOMING("d.to_site_id"),
+    OUTGOING("d.from_site_id"),
+    ;
+    private final String siteColumn;
+  }
+
+  /**
+   * A page of deliveries, newest first. If there are more (older) deliveries, then 'beforeDate' &
+   * 'beforeId' are the keys to use to fetch the next page, see {@link #fetchDeliveriesBefore}.
+   */
+  @lombok.Value
+  @Builder
+  public static class DeliveryPage {
+    List<Delivery> deliveries;
+    boolean hasMore;
+    String beforeDate;
+    Long beforeId;
+  }
+
+  /**
+   * Deliveries are ordered by target date, newest first, with deliveries that do not yet have a
+   * date first of all (sorted as if their date were 'infinity'). The delivery airtable id breaks
+   * ties. This ordering matches the (site, date) indexes on delivery, so that a page is an index
+   * range scan rather than a sort of every delivery for a site.
+   */
+  private static final String SORT_DATE = "coalesce(d.target_delivery_date, 'infinity'::date)";
+
+  /**
+   * Fetches the first page of deliveries for a site: those without a date, upcoming, or with a date
+   * no older than 'windowDays' ago. Older deliveries can then be paged in with {@link
+   * #fetchDeliveriesBefore}.
+   */
+  public static DeliveryPage fetchRecentDeliveries(
+      Jdbi jdbi, long siteId, Direction direction, int windowDays, int pageSize) {
+    // computed once and bound to both queries, and handed out as the cursor of the older page
+    LocalDate cutoff = LocalDate.now().minusDays(windowDays);
+    String where =
+        String.format("where %s = :siteId and %s >= :cutoff\n", direction.siteColumn, SORT_DATE);
+    List<DeliveryData> results =
+        jdbi.withHandle(
+            handle ->
+                handle
+                    .createQuery(SELECT_DELIVERIES + where + orderAndLimit())
+                    .bind("siteId", siteId)
+                    .bind("cutoff", cutoff)
+                    .bind("limit", pageSize + 1)
+                    .mapToBean(DeliveryData.class)
+                    .list());
+    if (results.size() > pageSize) {
+      return toPage(results, pageSize);
+    }
+
+    // Everything in the window fits on one page, the next page is anything older than the window.
+    String olderQuery =
         String.format(
             """
-    select
-      d.airtable_id deliveryId,
-      d.delivery_status deliveryStatus,
-      d.target_delivery_date targetDeliveryDate,
-      d.dispatcher_name dispatcherName,
-      d.dispatcher_number dispatcherNumber,
-      d.dispatcher_notes dispatcherNotes,
-      d.driver_name driverName,
-      d.driver_number driverNumber,
-      d.driver_license_plates licensePlateNumbers,
-
-      fromSite.name fromSiteName,
-      fromSite.id fromSiteId,
-      fromSite.address fromAddress,
-      fromSite.city fromCity,
-      fromCounty.state fromState,
-      fromSite.contact_name fromContactName,
-      fromSite.contact_number fromContactPhone,
-      fromSite.hours fromHours,
+            select exists(
+              select 1 from delivery d
+              where %s = :siteId and %s < :cutoff
+            )
+            """,
+            direction.siteColumn, SORT_DATE);
+    boolean hasOlder =
+        jdbi.withHandle(
+            handle ->
+                handle
+                    .createQuery(olderQuery)
+                    .bind("siteId", siteId)
+                    .bind("cutoff", cutoff)
+                    .mapTo(Boolean.class)
+                    .one());
+    return DeliveryPage.builder()
+        .deliveries(results.stream().map(Delivery::new).toList())
+        .hasMore(hasOlder)
+        .beforeDate(hasOlder ? cutoff.toString() : null)
+        .build();
+  }
 
-      toSite.name toSiteName,
-      toSite.id toSiteId,
-      toSite.address toAddress,
-      toSite.city toCity,
-      toCounty.state toState,
-      toSite.contact_name toContactName,
-      toSite.contact_number toContactPhone,
-      toSite.hours toHours
-    from delivery d
-    join site fromSite on fromSite.id = d.from_site_id
-    join county fromCounty on fromCounty.id = fromSite.county_id
-    join site toSite on toSite.id = d.to_site_id
-    join county toCounty on toCounty.id = toSite.county_id
-    where (%s)
-    order by d.target_delivery_date desc
-    """,
-            whereClause);
-    List<Delivery> deliveries =
-        jdbi
-            .withHandle(
-                handle ->
-                    handle.createQuery(select).bind("id", id).mapToBean(DeliveryData.class).list())
-            .stream()
-            .map(Delivery::new)
-            .toList();
+  /**
+   * Fetches the page of deliveries that sort after the given keys. The keys are either:
+   *
+   * <ul>
+   *   <li>'beforeDate' & 'beforeId': the date and id of the last delivery of the previous page,
+   *       deliveries sorting after it are fetched. A null 'beforeDate' is a delivery that does not
+   *       yet have a date.
+   *   <li>'beforeDate' only (null 'beforeId'): the first page of older deliveries, those dated
+   *       before 'beforeDate'.
+   * </ul>
+   */
+  public static DeliveryPage fetchDeliveriesBefore(
+      Jdbi jdbi, long siteId, Direction direction, String beforeDate, Long beforeId, int pageSize) {
+    if (beforeId == null && beforeDate == null) {
+      throw new IllegalArgumentException(
+          "Deliveries page needs a 'beforeDate', 'beforeId' or both");
+    }
+    String where =
+        beforeId == null
+            ? String.format(
+                """
+                where %s = :siteId
+                  and %s < cast(:beforeDate as date)
+                """,
+                direction.siteColumn, SORT_DATE)
+            : String.format(
+                """
+                where %s = :siteId
+                  and (%s, d.airtable_id) <
+                    (coalesce(cast(:beforeDate as date), 'infinity'::date), :beforeId)
+                """,
+                direction.siteColumn, SORT_DATE);
+    List<DeliveryData> results =
+        jdbi.withHandle(
+            handle ->
+                handle
+                    .createQuery(SELECT_DELIVERIES + where + orderAndLimit())
+                    .bind("siteId", siteId)
+                    .bind("beforeDate", beforeDate)
+                    .bind("beforeId", beforeId)
+                    .bind("limit", pageSize + 1)
+                    .mapToBean(DeliveryData.class)
+                    .list());
+    return toPage(results, pageSize);
+  }
 
-    String selectDeliveryItems =
+  private static String orderAndLimit() {
+    return String.format(
         """
-      select
-        i.name
-      from delivery_item di
-      join item i on i.id = di.item_id
-      where di.delivery_id = (select id from delivery where airtable_id = :deliveryId)
-      """;
+        order by %s desc, d.airtable_id desc
+        limit :limit
+        """,
+        SORT_DATE);
+  }
 
-    for (Delivery delivery : deliveries) {
-      List<String> items =
-          jdbi.withHandle(
-              handle ->
-                  handle
-                      .createQuery(selectDeliveryItems)
-                      .bind("deliveryId", delivery.getDeliveryNumber())
-                      .mapTo(String.class)
-                      .list());
-      delivery.getItemList().addAll(items);
+  /** Results are fetched with one extra row, if present there is another page after this one. */
+  private static DeliveryPage toPage(List<DeliveryData> results, int pageSize) {
+    if (results.size() <= pageSize) {
+      return DeliveryPage.builder()
+          .deliveries(results.stream().map(Delivery::new).toList())
+          .hasMore(false)
+          .build();
     }
-
-    return deliveries;
+    List<DeliveryData> page = results.subList(0, pageSize);
+    DeliveryData last = page.getLast();
+    return DeliveryPage.builder()
+        .deliveries(page.stream().map(Delivery::new).toList())
+        .hasMore(true)
+        .beforeDate(last.getTargetDeliveryDate())
+        .beforeId(last.getDeliveryId())
+        .build();
   }
 
   public static void deleteDelivery(Jdbi jdbi, long deliveryId) {
@@ -1,5 +1,7 @@
 package com.vanatta.helene.supplies.database.export.update;
 
+import com.vanatta.helene.supplies.database.data.ItemCatalog;
+import com.vanatta.helene.supplies.database.data.SiteIdentifiers;
 import org.jdbi.v3.core.Jdbi;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -12,24 +14,26 @@ public class SendDataUpdateConfiguration {
   @Bean
   SendSiteUpdate sendSiteUpdate(
       Jdbi jdbi,
+      SiteIdentifiers siteIdentifiers,
       @Value("${make.webhook.upsertSite}") String siteUpsertWebhook,
       @Value("${make.enabled}") boolean enabled) {
-    return new SendSiteUpdate(jdbi, siteUpsertWebhook, enabled);
+    return new SendSiteUpdate(jdbi, siteIdentifiers, siteUpsertWebhook, enabled);
   }
 
   @Bean
   SendNewItemUpdate newItemUpdate(
-      Jdbi jdbi,
+      ItemCatalog itemCatalog,
       @Value("${make.enabled}") boolean enabled,
       @Value("${make.webhook.newItem}") String newItemWebhook) {
-    return new SendNewItemUpdate(jdbi, newItemWebhook, enabled);
+    return new SendNewItemUpdate(itemCatalog, newItemWebhook, enabled);
   }
 
   @Bean
   SendInventoryUpdate sendInventoryUpdate(
       Jdbi jdbi,
+      ItemCatalog itemCatalog,
       @Value("${make.webhook.updateInventory}") String siteUpsertWebhook,
       @Value("${make.enabled}") boolean enabled) {
-    return new SendInventoryUpdate(jdbi, siteUpsertWebhook, enabled);
+    return new SendInventoryUpdate(jdbi, itemCatalog, siteUpsertWebhook, enabled);
   }
 }
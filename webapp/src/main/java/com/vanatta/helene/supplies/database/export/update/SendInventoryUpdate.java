@@ -1,5 +1,6 @@
 package com.vanatta.helene.supplies.database.export.update;
 
+import com.vanatta.helene.supplies.database.data.ItemCatalog;
 import com.vanatta.helene.supplies.database.util.HttpPostSender;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -16,17 +17,20 @@ import org.jdbi.v3.core.Jdbi;
 public class SendInventoryUpdate {
 
   private final Jdbi jdbi;
+  private final ItemCatalog itemCatalog;
   private final String webhookUrl;
   private final boolean enabled;
 
   public void send(long siteId, String itemName) {
     if (enabled) {
-      SiteDataDbResult siteDataDbResult = fetchItemForSite(jdbi, siteId, itemName);
+      SiteDataDbResult siteDataDbResult = fetchItemForSite(jdbi, itemCatalog, siteId, itemName);
       HttpPostSender.sendAsJson(webhookUrl, siteDataDbResult);
     }
   }
 
-  static SiteDataDbResult fetchItemForSite(Jdbi jdbi, long siteId, String itemName) {
+  static SiteDataDbResult fetchItemForSite(
+      Jdbi jdbi, ItemCatalog itemCatalog, long siteId, String itemName) {
+    long itemId = itemCatalog.itemId(itemName);
     String query =
         """
           select
@@ -38,7 +42,7 @@ public class SendInventoryUpdate {
           left join site_item si on s.id = si.site_id
           left join item i on i.id = si.item_id
           left join item_status its on its.id = si.item_status_id
-          where s.id = :siteId and i.name = :itemName
+          where s.id = :siteId and si.item_id = :itemId
           """;
 
     return jdbi.withHandle(
@@ -46,7 +50,7 @@ public class SendInventoryUpdate {
             handle
                 .createQuery(query)
                 .bind("siteId", siteId)
-                .bind("itemName", itemName)
+                .bind("itemId", itemId)
                 .mapToBean(SiteDataDbResult.class)
                 .one());
   }
@@ -1,6 +1,7 @@
 package com.vanatta.helene.supplies.database.export.update;
 
 import com.vanatta.helene.supplies.database.data.DonationStatus;
+import com.vanatta.helene.supplies.database.data.SiteIdentifiers;
 import com.vanatta.helene.supplies.database.data.SiteType;
 import com.vanatta.helene.supplies.database.util.HttpPostSender;
 import java.util.ArrayList;
@@ -22,12 +23,13 @@ import org.jdbi.v3.core.Jdbi;
 public class SendSiteUpdate {
 
   private final Jdbi jdbi;
+  private final SiteIdentifiers siteIdentifiers;
   private final String webhookUrl;
   private final boolean enabled;
 
   // @VisibleForTesting
   public static SendSiteUpdate newDisabled() {
-    return new SendSiteUpdate(null, null, false);
+    return new SendSiteUpdate(null, null, null, false);
   }
 
   @Data
@@ -44,22 +46,17 @@ public class SendSiteUpdate {
     }
     new Thread(
             () -> {
-              long wssId = fetchWssIdByAirtableId(jdbi, airtableId);
+              long wssId = fetchWssIdByAirtableId(siteIdentifiers, airtableId);
               var json = SendWssIdJson.builder().airtableId(airtableId).wssId(wssId).build();
               HttpPostSender.sendAsJson(webhookUrl, json);
             })
         .start();
   }
 
-  static long fetchWssIdByAirtableId(Jdbi jdbi, long airtableId) {
-    String query = "select wss_id from site where airtable_id = :airtableId";
-    return jdbi.withHandle(
-        handle ->
-            handle
-                .createQuery(query) //
-                .bind("airtableId", airtableId)
-                .mapTo(Long.class)
-                .one());
+  static long fetchWssIdByAirtableId(SiteIdentifiers siteIdentifiers, long airtableId) {
+    return siteIdentifiers
+        .wssIdByAirtableId(airtableId)
+        .orElseThrow(() -> new IllegalArgumentException("Invalid airtable id: " + airtableId));
   }
 
   public void sendFullUpdate(long siteId) {
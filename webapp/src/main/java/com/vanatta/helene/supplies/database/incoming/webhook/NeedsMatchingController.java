@@ -2,12 +2,11 @@ package com.vanatta.helene.supplies.database.incoming.webhook;
 
 import com.google.gson.Gson;
 import com.google.gson.internal.LinkedTreeMap;
+import com.vanatta.helene.supplies.database.supplies.site.details.NeedsMatchingIndex;
 import com.vanatta.helene.supplies.database.util.HttpPostSender;
-import java.util.ArrayList;
 import java.util.List;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
-import org.jdbi.v3.core.Jdbi;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -25,15 +24,22 @@ public class NeedsMatchingController {
   private static final String PATH_ADD_NEEDS = "/webhook/add-supplies-to-delivery";
   private final String addToDeliveryWebhook;
   private final boolean makeEnabled;
-  private final Jdbi jdbi;
+  private final WebhookFingerprintStore webhookFingerprintStore;
+  private final WebhookQueue webhookQueue;
+  private final NeedsMatchingIndex needsMatchingIndex;
 
   NeedsMatchingController(
-      Jdbi jdbi,
       @Value("${make.enabled}") boolean makeEnabled,
-      @Value("${make.webhoook.addToDelivery}") String addToDeliveryWebhook) {
-    this.jdbi = jdbi;
+      @Value("${make.webhoook.addToDelivery}") String addToDeliveryWebhook,
+      WebhookFingerprintStore webhookFingerprintStore,
+      WebhookQueue webhookQueue,
+      NeedsMatchingIndex needsMatchingIndex) {
     this.makeEnabled = makeEnabled;
     this.addToDeliveryWebhook = addToDeliveryWebhook;
+    this.webhookFingerprintStore = webhookFingerprintStore;
+    this.webhookQueue = webhookQueue;
+    this.needsMatchingIndex = needsMatchingIndex;
+    webhookQueue.registerHandler(PATH_ADD_NEEDS, this::sendNeedsMatch);
   }
 
   @Builder
@@ -43,6 +49,17 @@ public class NeedsMatchingController {
     List<String> itemList;
   }
 
+  /** Parsed input of the needs matching webhook, parsing fails if any of the ids are missing. */
+  private record NeedsMatchRequest(long deliveryId, long fromSiteWssId, long toSiteWssId) {
+    static NeedsMatchRequest parseJson(String body) {
+      LinkedTreeMap json = new Gson().fromJson(body, LinkedTreeMap.class);
+      return new NeedsMatchRequest(
+          ((Double) json.get("deliveryId")).longValue(),
+          ((List<Double>) json.get("fromSiteWssId")).getFirst().longValue(),
+          ((List<Double>) json.get("toSiteWssId")).getFirst().longValue());
+    }
+  }
+
   /**
    * Given inputs: [from site, to site, delivery id]<br>
    * Compute which needs can be sent from site to the to site.<br>
@@ -52,96 +69,48 @@ public class NeedsMatchingController {
   ResponseEntity<String> addSuppliesToDelivery(
       @RequestBody String body) { // Map<String, String> body) {
     log.info("{}, received data: {}", PATH_ADD_NEEDS, body);
-    LinkedTreeMap json = new Gson().fromJson(body, LinkedTreeMap.class);
-    long deliveryId = ((Double) json.get("deliveryId")).longValue();
-    long fromWssId = ((List<Double>) json.get("fromSiteWssId")).getFirst().longValue();
-    long toSiteWssId = ((List<Double>) json.get("toSiteWssId")).getFirst().longValue();
+    long deliveryId = NeedsMatchRequest.parseJson(body).deliveryId();
 
-    List<String> neededItems = computeNeedsMatch(jdbi, fromWssId, toSiteWssId);
-    log.info("Received needs computation request: {}, matched with needs: {}", body, neededItems);
+    if (!webhookFingerprintStore.recordIfNew(PATH_ADD_NEEDS, deliveryId, body)) {
+      return ResponseEntity.ok("Duplicate, ignored");
+    }
 
-    if (!neededItems.isEmpty() && makeEnabled) {
-      var computedNeed =
-          ComputedNeeds.builder().deliveryId(deliveryId).itemList(neededItems).build();
-      HttpPostSender.sendAsJson(addToDeliveryWebhook, computedNeed);
+    if (webhookQueue.isEnabled()) {
+      try {
+        webhookQueue.submit(PATH_ADD_NEEDS, deliveryId, body);
+      } catch (RuntimeException e) {
+        // not queued, a retry of this payload must not be dropped as a duplicate
+        webhookFingerprintStore.forget(PATH_ADD_NEEDS, deliveryId, body);
+        throw e;
+      }
+      return ResponseEntity.accepted().body("accepted");
     }
-    return ResponseEntity.ok("Matches: " + neededItems.size());
-  }
 
-  // @VisibleForTesting
-  static List<String> computeNeedsMatch(Jdbi jdbi, long fromSiteWssId, long toSiteWssId) {
-    String availableItemsQuery =
-        """
-        select
-          si.item_id
-        from site_item si
-        join site s on s.id = si.site_id
-        join site_type st on st.id = s.site_type_id
-        join item_status its on its.id = si.item_status_id
-        where s.wss_id = :fromSiteWssId
-          and
-          (
-            ( upper(st.name) = 'SUPPLY HUB' and upper(its.name) in ('AVAILABLE', 'OVERSUPPLY') )
-            or
-            ( upper(st.name) = 'DISTRIBUTION CENTER' and upper(its.name) = 'OVERSUPPLY' )
-          )
-        """;
-    List<Long> itemIdsAvailable =
-        jdbi.withHandle(
-            handle ->
-                handle
-                    .createQuery(availableItemsQuery)
-                    .bind("fromSiteWssId", fromSiteWssId)
-                    .mapTo(Long.class)
-                    .list());
-    if (itemIdsAvailable.isEmpty()) {
-      return List.of();
+    int matchCount;
+    try {
+      matchCount = sendNeedsMatch(body);
+    } catch (RuntimeException e) {
+      // not sent, a retry of this payload must not be dropped as a duplicate
+      webhookFingerprintStore.forget(PATH_ADD_NEEDS, deliveryId, body);
+      throw e;
     }
+    return ResponseEntity.ok("Matches: " + matchCount);
+  }
 
-    String neededItemsQuery =
-        """
-        select
-          si.item_id
-        from site_item si
-        join site s on s.id = si.site_id
-        join item_status its on its.id = si.item_status_id
-        where s.wss_id = :toSiteWssId
-          and upper(its.name) in ('NEEDED', 'URGENTLY NEEDED')
-        """;
-    List<Long> itemsIdsNeeded =
-        jdbi.withHandle(
-            handle ->
-                handle
-                    .createQuery(neededItemsQuery)
-                    .bind("toSiteWssId", toSiteWssId)
-                    .mapTo(Long.class)
-                    .list());
+  /** Computes the needs match & sends it to Make, returns the number of items matched. */
+  private int sendNeedsMatch(String body) {
+    NeedsMatchRequest request = NeedsMatchRequest.parseJson(body);
+    long deliveryId = request.deliveryId();
 
-    List<Long> eligibleItemIds = new ArrayList<>(itemIdsAvailable);
-    eligibleItemIds.retainAll(itemsIdsNeeded);
+    List<String> neededItems =
+        needsMatchingIndex.findItemsToSend(request.fromSiteWssId(), request.toSiteWssId());
+    log.info("Received needs computation request: {}, matched with needs: {}", body, neededItems);
 
-    if (eligibleItemIds.isEmpty()) {
-      return List.of();
+    if (!neededItems.isEmpty() && makeEnabled) {
+      var computedNeed =
+          ComputedNeeds.builder().deliveryId(deliveryId).itemList(neededItems).build();
+      HttpPostSender.sendAsJson(addToDeliveryWebhook, computedNeed);
     }
-
-    String queryNeedIds =
-        """
-        select
-          i.name
-        from site_item si
-        join item i on i.id = si.item_id
-        where
-          si.site_id = (select id from site where wss_id = :siteWssId)
-          and si.item_id in (<itemIds>)
-        order by i.name asc;
-        """;
-    return jdbi.withHandle(
-        handle ->
-            handle
-                .createQuery(queryNeedIds)
-                .bind("siteWssId", toSiteWssId)
-                .bindList("itemIds", eligibleItemIds)
-                .mapTo(String.class)
-                .list());
+    return neededItems.size();
   }
 }
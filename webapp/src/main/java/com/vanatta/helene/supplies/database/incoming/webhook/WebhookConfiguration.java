@@ -0,0 +1,27 @@
+package com.vanatta.helene.supplies.database.incoming.webhook;
+
+import java.time.Duration;
+import org.jdbi.v3.core.Jdbi;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/** Config for classes shared by the incoming webhook endpoints. */
+@Configuration
+public class WebhookConfiguration {
+
+  @Bean
+  WebhookFingerprintStore webhookFingerprintStore(
+      @Value("${webhook.dedup.ttlMinutes}") long ttlMinutes) {
+    return new WebhookFingerprintStore(Duration.ofMinutes(ttlMinutes));
+  }
+
+  @Bean(destroyMethod = "shutdown")
+  WebhookQueue webhookQueue(
+      Jdbi jdbi,
+      WebhookFingerprintStore webhookFingerprintStore,
+      @Value("${webhook.async.enabled}") boolean enabled,
+      @Value("${webhook.async.parallelism}") int parallelism) {
+    return new WebhookQueue(jdbi, webhookFingerprintStore, enabled, parallelism);
+  }
+}
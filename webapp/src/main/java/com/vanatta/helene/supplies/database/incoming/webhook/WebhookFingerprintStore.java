@@ -0,0 +1,120 @@
+package com.vanatta.helene.supplies.database.incoming.webhook;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Remembers a content hash of the last payload processed for each delivery, per webhook endpoint.
+ * Airtable & Make retry aggressively and will re-send identical bodies. When we see the same body
+ * again for the same delivery (within the TTL), the request can be dropped before doing any DB work
+ * or sending any outbound webhooks.
+ *
+ * <p>A payload is recorded when it is accepted, and forgotten again if processing it fails; in
+ * effect only payloads that are in flight or were processed successfully are remembered.
+ *
+ * <p>Only the latest fingerprint is kept per delivery, so a payload that changes and then changes
+ * back is still processed.
+ */
+@Slf4j
+public class WebhookFingerprintStore {
+
+  /** Once we are storing this many fingerprints, expired entries are purged on the next write. */
+  private static final int PURGE_THRESHOLD = 1_000;
+
+  private final Duration ttl;
+  private final Clock clock;
+
+  private final Map<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+  private final Map<String, AtomicLong> duplicatesDropped = new ConcurrentHashMap<>();
+
+  private record Fingerprint(String hash, Instant expiry) {}
+
+  public WebhookFingerprintStore(Duration ttl) {
+    this(ttl, Clock.systemUTC());
+  }
+
+  // @VisibleForTesting
+  WebhookFingerprintStore(Duration ttl, Clock clock) {
+    this.ttl = ttl;
+    this.clock = clock;
+  }
+
+  /**
+   * Records the payload as the latest one for the given endpoint & delivery, unless it is identical
+   * to the one already recorded. Check and record are one atomic step, so of two identical requests
+   * arriving at the same time only one is let through.
+   *
+   * @return True if the payload is new and should be processed, false if it is a duplicate (which
+   *     is counted as dropped).
+   */
+  public boolean recordIfNew(String endpoint, long deliveryId, String payload) {
+    Instant now = clock.instant();
+    if (fingerprints.size() >= PURGE_THRESHOLD) {
+      fingerprints.values().removeIf(f -> f.expiry().isBefore(now));
+    }
+    String hash = hash(payload);
+    Fingerprint recorded = new Fingerprint(hash, now.plus(ttl));
+    Fingerprint current =
+        fingerprints.compute(
+            key(endpoint, deliveryId),
+            (_, existing) ->
+                existing != null && !existing.expiry().isBefore(now) && existing.hash().equals(hash)
+                    ? existing
+                    : recorded);
+    if (current == recorded) {
+      return true;
+    }
+
+    long dropCount =
+        duplicatesDropped.computeIfAbsent(endpoint, _ -> new AtomicLong()).incrementAndGet();
+    log.info(
+        "Dropping duplicate payload for {}, delivery id: {}, duplicates dropped: {}",
+        endpoint,
+        deliveryId,
+        dropCount);
+    return false;
+  }
+
+  /**
+   * Forgets the payload recorded for the given endpoint & delivery, to be called when it could not
+   * be processed so that a retry of the same payload is not dropped as a duplicate. No-op if a
+   * different payload has been recorded since.
+   */
+  public void forget(String endpoint, long deliveryId, String payload) {
+    String hash = hash(payload);
+    fingerprints.computeIfPresent(
+        key(endpoint, deliveryId), (_, existing) -> existing.hash().equals(hash) ? null : existing);
+  }
+
+  /** Returns endpoint -> count of duplicate payloads dropped since startup. */
+  public Map<String, Long> getDuplicatesDropped() {
+    Map<String, Long> counts = new TreeMap<>();
+    duplicatesDropped.forEach((endpoint, count) -> counts.put(endpoint, count.get()));
+    return counts;
+  }
+
+  private static String key(String endpoint, long deliveryId) {
+    return endpoint + ":" + deliveryId;
+  }
+
+  private static String hash(String payload) {
+    try {
+      byte[] digest =
+          MessageDigest.getInstance("SHA-256")
+              .digest(payload.trim().getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,246 @@
+package com.vanatta.helene.supplies.database.incoming.webhook;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.jdbi.v3.core.Jdbi;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+
+/**
+ * Accept-then-process mode for incoming webhooks. When enabled, endpoints persist the raw request
+ * to 'webhook_inbound_queue' and respond with a 202 right away, the update is then applied by a
+ * background worker. This keeps our response times short when the DB is busy, otherwise Make times
+ * out and retries, adding even more load.
+ *
+ * <p>Requests for the same delivery are always processed in the order they were received, each
+ * delivery id is hashed to one of 'parallelism' single threaded lanes. Different deliveries can be
+ * processed in parallel.
+ *
+ * <p>Before processing, a request is claimed with a single update of its row, so a request that is
+ * dispatched twice (eg: submitted while unprocessed requests are being resumed) is processed once.
+ * A request that fails is retried, after a backoff, up to {@link #MAX_ATTEMPTS} times; a bad
+ * payload (IllegalArgumentException) is not retried. The retry is scheduled on its lane rather than
+ * waited for, so the lane goes on with other deliveries in the meantime. Later requests for the
+ * same delivery cannot be claimed until the failing one is done, and are dispatched again once it
+ * is. A request that keeps failing is left unprocessed with its error and its fingerprint is
+ * forgotten, so that a retry from Make is processed again.
+ *
+ * <p>Endpoints register a handler with {@link #registerHandler} so that requests left unprocessed
+ * by a restart can be replayed, see {@link #resumeUnprocessed()}.
+ */
+@Slf4j
+public class WebhookQueue {
+
+  static final int MAX_ATTEMPTS = 3;
+
+  /** Wait before the first retry, doubled for each retry after that. */
+  static final Duration RETRY_BACKOFF = Duration.ofSeconds(1);
+
+  private final Jdbi jdbi;
+  private final WebhookFingerprintStore webhookFingerprintStore;
+  private final boolean enabled;
+  private final int maxAttempts;
+  private final Duration retryBackoff;
+  private final ScheduledExecutorService[] lanes;
+  private final Map<String, Consumer<String>> handlers = new ConcurrentHashMap<>();
+
+  /** Deliveries with a request waiting for a retry, later requests wait for it to be done. */
+  private final Set<Long> retryingDeliveries = ConcurrentHashMap.newKeySet();
+
+  /** Identifies the requests claimed by this queue, as opposed to ones left by a previous run. */
+  private final UUID owner = UUID.randomUUID();
+
+  public WebhookQueue(
+      Jdbi jdbi,
+      WebhookFingerprintStore webhookFingerprintStore,
+      boolean enabled,
+      int parallelism) {
+    this(jdbi, webhookFingerprintStore, enabled, parallelism, MAX_ATTEMPTS, RETRY_BACKOFF);
+  }
+
+  // @VisibleForTesting
+  WebhookQueue(
+      Jdbi jdbi,
+      WebhookFingerprintStore webhookFingerprintStore,
+      boolean enabled,
+      int parallelism,
+      int maxAttempts,
+      Duration retryBackoff) {
+    if (enabled && parallelism < 1) {
+      throw new IllegalArgumentException("Webhook queue parallelism must be at least 1");
+    }
+    this.jdbi = jdbi;
+    this.webhookFingerprintStore = webhookFingerprintStore;
+    this.enabled = enabled;
+    this.maxAttempts = maxAttempts;
+    this.retryBackoff = retryBackoff;
+    this.lanes = new ScheduledExecutorService[enabled ? parallelism : 0];
+    for (int i = 0; i < lanes.length; i++) {
+      var lane =
+          new ScheduledThreadPoolExecutor(
+              1, Thread.ofPlatform().name("webhook-lane-" + i).factory());
+      // retries still waiting at shutdown are resumed on next startup
+      lane.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+      lanes[i] = lane;
+    }
+  }
+
+  // @VisibleForTesting
+  public static WebhookQueue newDisabled() {
+    return new WebhookQueue(null, null, false, 0);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Sets the handler that applies requests received on the given endpoint. */
+  public void registerHandler(String endpoint, Consumer<String> handler) {
+    handlers.put(endpoint, handler);
+  }
+
+  /**
+   * Persists the request and schedules it for processing. Returns once the request is stored, the
+   * caller can then respond with a 202.
+   */
+  public void submit(String endpoint, long deliveryId, String payload) {
+    if (!enabled) {
+      throw new IllegalStateException("Webhook queue is not enabled");
+    }
+    long id = WebhookQueueDao.enqueue(jdbi, endpoint, deliveryId, payload);
+    dispatch(id, deliveryId);
+  }
+
+  /**
+   * Schedules any requests that were stored but not processed before the last shutdown. Requests
+   * still claimed by the previous run are released first.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void resumeUnprocessed() {
+    if (!enabled) {
+      return;
+    }
+    int released = WebhookQueueDao.releaseClaims(jdbi, owner);
+    if (released > 0) {
+      log.info("Released {} webhook requests claimed by a previous run", released);
+    }
+    var unprocessed = WebhookQueueDao.fetchUnprocessed(jdbi, maxAttempts);
+    if (!unprocessed.isEmpty()) {
+      log.info("Resuming {} unprocessed webhook requests", unprocessed.size());
+    }
+    unprocessed.forEach(request -> dispatch(request.getId(), request.getDeliveryId()));
+  }
+
+  private void dispatch(long id, long deliveryId) {
+    lane(deliveryId).execute(() -> process(id));
+  }
+
+  private ScheduledExecutorService lane(long deliveryId) {
+    return lanes[Math.floorMod(Long.hashCode(deliveryId), lanes.length)];
+  }
+
+  private void process(long id) {
+    var claimed = WebhookQueueDao.claim(jdbi, id, owner, maxAttempts);
+    if (claimed.isEmpty()) {
+      // processed already, dispatched twice and the other dispatch has it, or an earlier request
+      // for the delivery is waiting for a retry and this one is dispatched again after it
+      return;
+    }
+    WebhookQueueDao.QueuedRequest request = claimed.get();
+
+    Consumer<String> handler = handlers.get(request.getEndpoint());
+    if (handler == null) {
+      log.error("No handler for queued webhook request, endpoint: {}", request.getEndpoint());
+      giveUp(request, maxAttempts, "No handler registered");
+      return;
+    }
+    attempt(request, handler, request.getAttempts());
+  }
+
+  /** Runs a claimed request, 'attempts' is the number of failed attempts so far. */
+  private void attempt(
+      WebhookQueueDao.QueuedRequest request, Consumer<String> handler, int attempts) {
+    try {
+      handler.accept(request.getPayload());
+      WebhookQueueDao.markProcessed(jdbi, request.getId());
+    } catch (Exception e) {
+      int failedAttempts = attempts + 1;
+      boolean badPayload = e instanceof IllegalArgumentException;
+      log.error(
+          "Failed to process queued webhook request, id: {}, endpoint: {}, attempt: {}, payload:"
+              + " {}",
+          request.getId(),
+          request.getEndpoint(),
+          failedAttempts,
+          request.getPayload(),
+          e);
+      String error = String.valueOf(e.getMessage());
+      if (badPayload || failedAttempts >= maxAttempts) {
+        giveUp(request, badPayload ? maxAttempts : failedAttempts, error);
+      } else {
+        scheduleRetry(request, handler, failedAttempts, error);
+        return;
+      }
+    }
+
+    if (retryingDeliveries.remove(request.getDeliveryId())) {
+      // requests for the delivery received during the backoff could not be claimed until now
+      WebhookQueueDao.fetchUnprocessed(jdbi, request.getDeliveryId(), maxAttempts)
+          .forEach(next -> dispatch(next.getId(), next.getDeliveryId()));
+    }
+  }
+
+  /** Runs the request again after a backoff, the claim on the request is kept meanwhile. */
+  private void scheduleRetry(
+      WebhookQueueDao.QueuedRequest request,
+      Consumer<String> handler,
+      int failedAttempts,
+      String error) {
+    WebhookQueueDao.recordFailure(jdbi, request.getId(), failedAttempts, error, false);
+    retryingDeliveries.add(request.getDeliveryId());
+    Duration backoff = retryBackoff.multipliedBy(1L << (failedAttempts - 1));
+    try {
+      lane(request.getDeliveryId())
+          .schedule(
+              () -> attempt(request, handler, failedAttempts),
+              backoff.toMillis(),
+              TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // shutting down, the request is resumed on next startup
+      WebhookQueueDao.recordFailure(jdbi, request.getId(), failedAttempts, error, true);
+    }
+  }
+
+  /** Leaves a request unprocessed for good, a retry of the same payload will be processed. */
+  private void giveUp(WebhookQueueDao.QueuedRequest request, int attempts, String error) {
+    WebhookQueueDao.recordFailure(jdbi, request.getId(), attempts, error, true);
+    webhookFingerprintStore.forget(
+        request.getEndpoint(), request.getDeliveryId(), request.getPayload());
+  }
+
+  /**
+   * Stops accepting work and waits briefly for in-flight requests. Anything not finished, including
+   * requests waiting for a retry, stays in the queue table and is resumed on next startup.
+   */
+  public void shutdown() {
+    for (ScheduledExecutorService lane : lanes) {
+      lane.shutdown();
+    }
+    try {
+      for (ScheduledExecutorService lane : lanes) {
+        lane.awaitTermination(10, TimeUnit.SECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
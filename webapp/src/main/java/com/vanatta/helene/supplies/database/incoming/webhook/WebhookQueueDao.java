@@ -0,0 +1,179 @@
+package com.vanatta.helene.supplies.database.incoming.webhook;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.jdbi.v3.core.Jdbi;
+
+/** Persists incoming webhook requests so that they can be processed after we have responded. */
+public class WebhookQueueDao {
+
+  private static final int MAX_ERROR_LENGTH = 2048;
+
+  @Data
+  @Builder
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class QueuedRequest {
+    long id;
+    String endpoint;
+    long deliveryId;
+    String payload;
+    int attempts;
+  }
+
+  /** Stores a request, returns the id of the new queue entry. */
+  static long enqueue(Jdbi jdbi, String endpoint, long deliveryId, String payload) {
+    String insert =
+        """
+        insert into webhook_inbound_queue(endpoint, delivery_id, payload)
+        values(:endpoint, :deliveryId, :payload)
+        """;
+    return jdbi.withHandle(
+        handle ->
+            handle
+                .createUpdate(insert)
+                .bind("endpoint", endpoint)
+                .bind("deliveryId", deliveryId)
+                .bind("payload", payload)
+                .executeAndReturnGeneratedKeys("id")
+                .mapTo(Long.class)
+                .one());
+  }
+
+  /**
+   * Claims a request for processing by 'owner'. Returns empty if the request is already processed,
+   * has used up its attempts, or is claimed (eg: the same request was dispatched twice). A request
+   * is not claimed either while an earlier request for the same delivery is still to be processed
+   * (eg: it is waiting for a retry), requests of a delivery are applied in the order received.
+   */
+  static Optional<QueuedRequest> claim(Jdbi jdbi, long id, UUID owner, int maxAttempts) {
+    String update =
+        """
+        update webhook_inbound_queue q
+        set claimed_by = :owner
+        where q.id = :id
+          and q.processed_at is null
+          and q.claimed_by is null
+          and q.attempts < :maxAttempts
+          and not exists (
+            select 1
+            from webhook_inbound_queue earlier
+            where earlier.delivery_id = q.delivery_id
+              and earlier.id < q.id
+              and earlier.processed_at is null
+              and earlier.attempts < :maxAttempts
+          )
+        returning id, endpoint, delivery_id, payload, attempts
+        """;
+    return jdbi.withHandle(
+        handle ->
+            handle
+                .createQuery(update)
+                .bind("id", id)
+                .bind("owner", owner)
+                .bind("maxAttempts", maxAttempts)
+                .mapToBean(QueuedRequest.class)
+                .findOne());
+  }
+
+  /** Marks a request as done. */
+  static void markProcessed(Jdbi jdbi, long id) {
+    String update =
+        """
+        update webhook_inbound_queue
+        set processed_at = now(), claimed_by = null
+        where id = :id
+        """;
+    jdbi.withHandle(handle -> handle.createUpdate(update).bind("id", id).execute());
+  }
+
+  /**
+   * Records a failed attempt to process a request. If 'release' is set the claim on the request is
+   * given up, otherwise the claim is kept for another attempt.
+   */
+  static void recordFailure(Jdbi jdbi, long id, int attempts, String error, boolean release) {
+    String update =
+        """
+        update webhook_inbound_queue
+        set attempts = :attempts,
+          error = :error,
+          claimed_by = case when :release then null else claimed_by end
+        where id = :id
+        """;
+    String truncatedError =
+        error == null ? null : error.substring(0, Math.min(MAX_ERROR_LENGTH, error.length()));
+    jdbi.withHandle(
+        handle ->
+            handle
+                .createUpdate(update)
+                .bind("id", id)
+                .bind("attempts", attempts)
+                .bind("error", truncatedError)
+                .bind("release", release)
+                .execute());
+  }
+
+  /** Releases claims that were not made by 'owner', ie: claims left behind by a previous run. */
+  static int releaseClaims(Jdbi jdbi, UUID owner) {
+    String update =
+        """
+        update webhook_inbound_queue
+        set claimed_by = null
+        where processed_at is null
+          and claimed_by <> :owner
+        """;
+    return jdbi.withHandle(handle -> handle.createUpdate(update).bind("owner", owner).execute());
+  }
+
+  /**
+   * Fetches requests not yet processed that have attempts left, oldest first. Used to resume work
+   * after a restart.
+   */
+  static List<QueuedRequest> fetchUnprocessed(Jdbi jdbi, int maxAttempts) {
+    String query =
+        """
+        select id, endpoint, delivery_id, payload, attempts
+        from webhook_inbound_queue
+        where processed_at is null
+          and claimed_by is null
+          and attempts < :maxAttempts
+        order by id
+        """;
+    return jdbi.withHandle(
+        handle ->
+            handle
+                .createQuery(query)
+                .bind("maxAttempts", maxAttempts)
+                .mapToBean(QueuedRequest.class)
+                .list());
+  }
+
+  /**
+   * Fetches the requests of one delivery not yet processed that have attempts left, oldest first.
+   */
+  static List<QueuedRequest> fetchUnprocessed(Jdbi jdbi, long deliveryId, int maxAttempts) {
+    String query =
+        """
+        select id, endpoint, delivery_id, payload, attempts
+        from webhook_inbound_queue
+        where delivery_id = :deliveryId
+          and processed_at is null
+          and claimed_by is null
+          and attempts < :maxAttempts
+        order by id
+        """;
+    return jdbi.withHandle(
+        handle ->
+            handle
+                .createQuery(query)
+                .bind("deliveryId", deliveryId)
+                .bind("maxAttempts", maxAttempts)
+                .mapToBean(QueuedRequest.class)
+                .list());
+  }
+}
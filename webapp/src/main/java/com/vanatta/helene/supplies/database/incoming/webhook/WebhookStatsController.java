@@ -0,0 +1,21 @@
+package com.vanatta.helene.supplies.database.incoming.webhook;
+
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Reports counters on incoming webhook processing, eg: how many duplicate payloads were dropped.
+ */
+@RestController
+@AllArgsConstructor
+public class WebhookStatsController {
+
+  private final WebhookFingerprintStore webhookFingerprintStore;
+
+  @GetMapping("/webhook/stats")
+  Map<String, Object> stats() {
+    return Map.of("duplicatesDropped", webhookFingerprintStore.getDuplicatesDropped());
+  }
+}
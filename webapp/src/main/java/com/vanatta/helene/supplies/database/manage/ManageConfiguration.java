@@ -0,0 +1,14 @@
+package com.vanatta.helene.supplies.database.manage;
+
+import org.jdbi.v3.core.Jdbi;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ManageConfiguration {
+
+  @Bean
+  SiteList siteList(Jdbi jdbi) {
+    return new SiteList(jdbi);
+  }
+}
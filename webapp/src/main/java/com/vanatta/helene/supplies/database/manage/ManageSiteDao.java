@@ -1,11 +1,21 @@
 package com.vanatta.helene.supplies.database.manage;
 
+import com.vanatta.helene.supplies.database.data.AuditBuffer;
+import com.vanatta.helene.supplies.database.data.ReferenceTables;
 import com.vanatta.helene.supplies.database.data.SiteType;
 import com.vanatta.helene.supplies.database.manage.SelectSiteController.SiteSelection;
 import jakarta.annotation.Nullable;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -27,6 +37,31 @@ public class ManageSiteDao {
                 .list());
   }
 
+  /**
+   * Sites with a name containing the search text, ignoring case, best matches first (by trigram
+   * similarity, see index 'site_name_trgm_idx').
+   */
+  static List<SiteSelection> searchSites(Jdbi jdbi, String searchText, int limit) {
+    String escaped = searchText.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    String query =
+        """
+        select id, name
+        from site
+        where name ilike :pattern
+        order by similarity(name, :searchText) desc, lower(name)
+        limit :limit
+        """;
+    return jdbi.withHandle(
+        handle ->
+            handle
+                .createQuery(query)
+                .bind("pattern", "%" + escaped + "%")
+                .bind("searchText", searchText)
+                .bind("limit", limit)
+                .mapToBean(SiteSelection.class)
+                .list());
+  }
+
   @Data
   public static class MaxSupplyOption {
     String name;
@@ -78,159 +113,152 @@ public class ManageSiteDao {
     }
   }
 
-  public static void updateSiteField(Jdbi jdbi, long siteId, SiteField field, String newValue) {
-    log.info("Updating site: {}, field: {}, value: {}", siteId, field, newValue);
+  public static void updateSiteField(
+      Jdbi jdbi, ReferenceTables referenceTables, long siteId, SiteField field, String newValue) {
+    Map<SiteField, String> values = new EnumMap<>(SiteField.class);
+    values.put(field, newValue);
+    updateSiteFields(jdbi, referenceTables, siteId, values);
+  }
 
-    if (field.isRequired() && (newValue == null || newValue.isEmpty())) {
-      throw new RequiredFieldException(field.frontEndName);
+  /**
+   * Updates any number of site fields in one transaction. Old values are read and locked by the
+   * update statement itself ({@code update .. from (select .. for update) returning}), and the
+   * audit rows of all changed fields are written as one batch in the same transaction, so a
+   * multi-field edit is two statements no matter how many fields it touches.
+   *
+   * <p>COUNTY and STATE values are encoded as "COUNTY,STATE", both update the site county.
+   *
+   * @return Old values of the fields whose value changed, empty if nothing changed.
+   * @throws IllegalArgumentException if a required field is blank, a value is not valid or the site
+   *     does not exist. Nothing is updated in that case.
+   */
+  public static Map<SiteField, String> updateSiteFields(
+      Jdbi jdbi, ReferenceTables referenceTables, long siteId, Map<SiteField, String> newValues) {
+    log.info("Updating site: {}, values: {}", siteId, newValues);
+    if (newValues.isEmpty()) {
+      return Map.of();
     }
 
-    @Nullable final String oldValue;
-    if (field == SiteField.COUNTY || field == SiteField.STATE) {
-      if (!newValue.contains(",")) {
-        throw new IllegalStateException(
-            "New county value must be encoded as 'COUNTY,STATE'; Illegal value: " + newValue);
+    // validate and resolve ids up front, nothing is written if any value is bad
+    Map<String, Object> columnValues = new LinkedHashMap<>();
+    for (var entry : newValues.entrySet()) {
+      SiteField field = entry.getKey();
+      String newValue = entry.getValue();
+      if (field.isRequired() && (newValue == null || newValue.isEmpty())) {
+        throw new RequiredFieldException(field.frontEndName);
+      }
+
+      if (field == SiteField.COUNTY || field == SiteField.STATE) {
+        long countyId = countyId(referenceTables, newValue);
+        Object previous = columnValues.put("county_id", countyId);
+        if (previous != null && !previous.equals(countyId)) {
+          throw new IllegalArgumentException(
+              "Conflicting county values: " + newValues.get(SiteField.COUNTY) + ", " + newValue);
+        }
+      } else if (field == SiteField.MAX_SUPPLY_LOAD) {
+        columnValues.put("max_supply_load_id", maxSupplyLoadId(referenceTables, siteId, newValue));
+      } else {
+        columnValues.put(field.getColumnName(), newValue);
       }
-      String[] split = newValue.split(",");
-      String county = split[0];
-      String state = split[1];
-      oldValue = updateCounty(jdbi, siteId, county, state);
-    } else if (field == SiteField.MAX_SUPPLY_LOAD) {
-      oldValue = updateMaxSupply(jdbi, siteId, newValue);
-    } else {
-      oldValue = updateSiteColumn(jdbi, siteId, field, newValue);
     }
-    addToAuditTrail(
-        jdbi, siteId, field, oldValue, newValue == null || newValue.isBlank() ? "-" : newValue);
-  }
 
-  /**
-   * Returns old value and then updates. Old value is encoded as "COUNTY,STATE" (single string,
-   * comma delimited)
-   */
-  //  @VisibleForTesting
-  static String updateCounty(Jdbi jdbi, long siteId, String newCounty, String newState) {
-    // first lookup the old value from database before we change it.
-    String oldValueQuery =
-        """
-        select c.name || ',' || c.state
-        from site s
-        join county c on c.id = s.county_id
-        where s.id = :siteId
-        """;
-    String oldValue =
-        jdbi.withHandle(
-            handle ->
-                handle
-                    .createQuery(oldValueQuery) //
-                    .bind("siteId", siteId)
-                    .mapTo(String.class)
-                    .one());
+    String updateQuery =
+        String.format(
+            """
+            update site s set %s
+            from (
+              select
+                s.id,
+                s.name, s.address, s.city, s.website, s.facebook, s.hours,
+                s.contact_name, s.contact_number, s.contact_email,
+                s.additional_contacts, s.bad_numbers, s.receiving_notes,
+                c.name || ',' || c.state county,
+                coalesce(msl.name, '-') max_supply_load
+              from site s
+              join county c on c.id = s.county_id
+              left join max_supply_load msl on msl.id = s.max_supply_load_id
+              where s.id = :siteId
+              for update of s
+            ) old
+            where s.id = old.id
+            returning old.*
+            """,
+            columnValues.keySet().stream()
+                .map(column -> column + " = :" + column)
+                .collect(Collectors.joining(", ")));
+
+    Map<SiteField, String> oldValues =
+        jdbi.inTransaction(
+            handle -> {
+              Map<String, String> oldRow =
+                  handle
+                      .createQuery(updateQuery)
+                      .bind("siteId", siteId)
+                      .bindMap(columnValues)
+                      .map(
+                          (rs, _) -> {
+                            Map<String, String> row = new HashMap<>();
+                            for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+                              row.put(rs.getMetaData().getColumnName(i), rs.getString(i));
+                            }
+                            return row;
+                          })
+                      .findOne()
+                      .orElseThrow(
+                          () -> new IllegalArgumentException("Invalid site id: " + siteId));
+
+              Map<SiteField, String> changed = new EnumMap<>(SiteField.class);
+              List<AuditBuffer.SiteAudit> audits = new ArrayList<>();
+              Instant now = Instant.now();
+              for (var entry : newValues.entrySet()) {
+                SiteField field = entry.getKey();
+                String column = field == SiteField.STATE ? "county" : field.getColumnName();
+                String oldValue = oldRow.get(column);
+                String newValue = entry.getValue();
+                if (Objects.equals(blankToNull(oldValue), blankToNull(newValue))) {
+                  continue;
+                }
+                changed.put(field, oldValue);
+                audits.add(
+                    AuditBuffer.SiteAudit.builder()
+                        .siteId(siteId)
+                        .fieldName(field.getColumnName())
+                        .oldValue(oldValue)
+                        .newValue(newValue == null || newValue.isBlank() ? "-" : newValue)
+                        .changedDate(now)
+                        .build());
+              }
+              AuditBuffer.insertSiteAudits(handle, audits);
+              return changed;
+            });
+    return oldValues;
+  }
 
-    // now actually update the county value
-    String updateCounty =
-        """
-        update site
-        set
-          county_id = (select id from county where name = :name and state = :state)
-        where id = :id
-        """;
-    jdbi.withHandle(
-        handle ->
-            handle
-                .createUpdate(updateCounty)
-                .bind("name", newCounty)
-                .bind("state", newState)
-                .bind("id", siteId)
-                .execute());
-    return oldValue;
+  private static long countyId(ReferenceTables referenceTables, String countyAndState) {
+    if (countyAndState == null || !countyAndState.contains(",")) {
+      throw new IllegalArgumentException(
+          "New county value must be encoded as 'COUNTY,STATE'; Illegal value: " + countyAndState);
+    }
+    String[] split = countyAndState.split(",");
+    return referenceTables.countyId(split[0], split[1]);
   }
 
-  static String updateMaxSupply(Jdbi jdbi, long siteId, String newMaxSupply) {
+  private static long maxSupplyLoadId(
+      ReferenceTables referenceTables, long siteId, String newMaxSupply) {
     if (newMaxSupply == null || newMaxSupply.isBlank()) {
       throw new IllegalArgumentException("Illegal null value for max supply, siteId: " + siteId);
     }
-    String oldValueQuery =
-        """
-        select msl.name
-        from max_supply_load msl
-        join site s on s.max_supply_load_id = msl.id
-        where s.id = :siteId
-        """;
-    String oldValue =
-        jdbi.withHandle(
-                handle ->
-                    handle
-                        .createQuery(oldValueQuery)
-                        .bind("siteId", siteId)
-                        .mapTo(String.class)
-                        .findOne())
-            .orElse("-");
-
-    String update =
-        """
-          update site
-          set max_supply_load_id = (select id from max_supply_load where name = :max)
-          where id = :siteId
-          """;
-    final String maxSupplyValue = newMaxSupply;
-    int updateCount =
-        jdbi.withHandle(
-            handle ->
-                handle
-                    .createUpdate(update)
-                    .bind("max", maxSupplyValue)
-                    .bind("siteId", siteId)
-                    .execute());
-    if (updateCount == 0) {
+    try {
+      return referenceTables.maxSupplyLoadId(newMaxSupply);
+    } catch (IllegalArgumentException e) {
       log.error("Received bad value for max supply load update: {}", newMaxSupply);
-      throw new IllegalArgumentException("Invalid max supply value received: " + newMaxSupply);
+      throw e;
     }
-
-    return oldValue;
-  }
-
-  /** Returns old value and then updates. */
-  static String updateSiteColumn(Jdbi jdbi, long siteId, SiteField column, String newValue) {
-
-    String oldValueQuery =
-        java.lang.String.format(
-            "select s.%s from site s where s.id = :siteId", column.getColumnName());
-    String oldValue =
-        jdbi.withHandle(
-            handle ->
-                handle.createQuery(oldValueQuery).bind("siteId", siteId).mapTo(String.class).one());
-
-    jdbi.withHandle(
-        handle ->
-            handle
-                .createUpdate(
-                    "update site set " + column.getColumnName() + " = :newValue where id = :siteId")
-                .bind("newValue", newValue)
-                .bind("siteId", siteId)
-                .execute());
-    return oldValue;
   }
 
-  private static void addToAuditTrail(
-      Jdbi jdbi, long siteId, SiteField field, String oldValue, String newValue) {
-    String insert =
-        """
-    insert into site_audit_trail(site_id, field_name, old_value, new_value)
-    values(
-       :siteId, :fieldName, :oldValue, :newValue
-    )
-    """;
-
-    jdbi.withHandle(
-        handle ->
-            handle
-                .createUpdate(insert)
-                .bind("siteId", siteId)
-                .bind("fieldName", field.getColumnName())
-                .bind("oldValue", oldValue)
-                .bind("newValue", newValue)
-                .execute());
+  @Nullable
+  private static String blankToNull(@Nullable String value) {
+    return value == null || value.isBlank() ? null : value;
   }
 
   /** Returns null if ID is not valid or DNE. */
@@ -392,6 +420,26 @@ public class ManageSiteDao {
                 .list());
   }
 
+  /** Returns only the items that are at a site, sorted by item name ignoring case. */
+  public static List<SiteInventory> fetchActiveSiteInventory(Jdbi jdbi, long siteId) {
+    String query =
+        """
+        select
+            i.id item_id,
+            i.name item_name,
+            true active,
+            stat.name item_status
+        from site_item si
+        join item i on i.id = si.item_id
+        join item_status stat on stat.id = si.item_status_id
+        where si.site_id = :siteId
+        order by lower(i.name)
+        """;
+    return jdbi.withHandle(
+        handle ->
+            handle.createQuery(query).bind("siteId", siteId).mapToBean(SiteInventory.class).list());
+  }
+
   @Data
   @AllArgsConstructor
   @NoArgsConstructor
@@ -402,29 +450,16 @@ public class ManageSiteDao {
     boolean active;
   }
 
-  /**
-   * Updates that the site inventory was last updated now, and because the site inventory was
-   * updated, mark the site as onboarded.
-   */
-  public static void updateSiteInventoryLastUpdatedAndOnboardedFlag(Jdbi jdbi, long siteId) {
-    String updateSiteLastUpdated =
-        "update site set inventory_last_updated = now(), onboarded = true where id = :siteId";
-    jdbi.withHandle(
-        handle -> handle.createUpdate(updateSiteLastUpdated).bind("siteId", siteId).execute());
-  }
-
-  static void updateSiteType(Jdbi jdbi, long siteId, SiteType siteType) {
-    String update =
-        """
-        update site set site_type_id = (select id from site_type where name = :siteTypeName)
-           where id = :siteId;
-        """;
+  static void updateSiteType(
+      Jdbi jdbi, ReferenceTables referenceTables, long siteId, SiteType siteType) {
+    long siteTypeId = referenceTables.siteTypeId(siteType.getText());
+    String update = "update site set site_type_id = :siteTypeId where id = :siteId";
     jdbi.withHandle(
         handle ->
             handle
                 .createUpdate(update)
                 .bind("siteId", siteId)
-                .bind("siteTypeName", siteType.getText())
+                .bind("siteTypeId", siteTypeId)
                 .execute());
   }
 
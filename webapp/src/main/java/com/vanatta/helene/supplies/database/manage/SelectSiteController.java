@@ -15,6 +15,7 @@ import org.jdbi.v3.core.Jdbi;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.ModelAndView;
 
 @Controller
@@ -23,7 +24,15 @@ import org.springframework.web.servlet.ModelAndView;
 public class SelectSiteController {
 
   static final String PATH_SELECT_SITE = "/manage/select-site";
+  static final String PATH_SITE_SEARCH = "/manage/site-search";
+
+  /** Number of sites listed when the select site page loads, others are found by searching. */
+  static final int INITIAL_SITE_COUNT = 100;
+
+  static final int SEARCH_RESULT_LIMIT = 25;
+
   private final Jdbi jdbi;
+  private final SiteList siteList;
   private final SendSiteUpdate sendSiteUpdate;
 
   @Builder
@@ -38,15 +47,34 @@ public class SelectSiteController {
   /** User will be shown a page to select the site they want to manage. */
   @GetMapping(PATH_SELECT_SITE)
   ModelAndView showSelectSitePage() {
-    return showSelectSitePage(jdbi);
+    return showSelectSitePage(siteList);
   }
 
-  public static ModelAndView showSelectSitePage(Jdbi jdbi) {
+  public static ModelAndView showSelectSitePage(SiteList siteList) {
+    List<SiteSelection> sites = siteList.sites();
+
     Map<String, Object> pageParams = new HashMap<>();
-    pageParams.put("sites", ManageSiteDao.fetchSiteList(jdbi));
+    pageParams.put("sites", sites.subList(0, Math.min(sites.size(), INITIAL_SITE_COUNT)));
+    pageParams.put("siteCount", sites.size());
+    pageParams.put("moreSites", sites.size() > INITIAL_SITE_COUNT);
+    pageParams.put("initialSiteCount", INITIAL_SITE_COUNT);
     return new ModelAndView("manage/select-site", pageParams);
   }
 
+  /**
+   * Typeahead search for the select site page, returns sites with a name containing the search
+   * text. A blank search returns the same sites that the page initially lists.
+   */
+  @GetMapping(PATH_SITE_SEARCH)
+  @ResponseBody
+  List<SiteSelection> searchSites(@RequestParam(required = false) String search) {
+    if (search == null || search.isBlank()) {
+      List<SiteSelection> sites = siteList.sites();
+      return sites.subList(0, Math.min(sites.size(), INITIAL_SITE_COUNT));
+    }
+    return ManageSiteDao.searchSites(jdbi, search.trim(), SEARCH_RESULT_LIMIT);
+  }
+
   /**
    * After a site is selected, user selects which aspect they want to manage (eg: inventory, status)
    */
@@ -1,11 +1,16 @@
 package com.vanatta.helene.supplies.database.manage;
 
 import com.vanatta.helene.supplies.database.data.CountyDao;
+import com.vanatta.helene.supplies.database.data.ReferenceTables;
 import com.vanatta.helene.supplies.database.export.update.SendSiteUpdate;
+import com.vanatta.helene.supplies.database.supplies.filters.FilterDataCache;
+import com.vanatta.helene.supplies.database.supplies.site.details.NeedsMatchingIndex;
 import com.vanatta.helene.supplies.database.supplies.site.details.SiteDetailDao;
+import com.vanatta.helene.supplies.database.supplies.site.details.SiteDetailPageCache;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,6 +18,7 @@ import java.util.Optional;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jdbi.v3.core.Jdbi;
 import org.springframework.http.ResponseEntity;
@@ -29,7 +35,12 @@ import org.springframework.web.servlet.ModelAndView;
 public class SiteContactController {
 
   private final Jdbi jdbi;
+  private final ReferenceTables referenceTables;
+  private final SiteList siteList;
+  private final SiteDetailPageCache siteDetailPageCache;
+  private final FilterDataCache filterDataCache;
   private final SendSiteUpdate sendSiteUpdate;
+  private final NeedsMatchingIndex needsMatchingIndex;
 
   static final String COUNTY_LIST = "countyList";
   static final String STATE_LIST = "stateList";
@@ -180,13 +191,81 @@ public class SiteContactController {
       log.warn("Invalid field requested for update: {}, params: {}", field, params);
       return ResponseEntity.badRequest().body("Invalid field: " + field);
     }
-    ManageSiteDao.updateSiteField(jdbi, Long.parseLong(siteId), siteField, newValue);
+    Map<ManageSiteDao.SiteField, String> values = new EnumMap<>(ManageSiteDao.SiteField.class);
+    values.put(siteField, newValue);
+    updateSiteFields(Long.parseLong(siteId), values);
     log.info("Site updated: {}", params);
-    sendSiteUpdate.sendFullUpdate(Long.parseLong(siteId));
 
     return ResponseEntity.ok().body("Updated");
   }
 
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  @Builder
+  static class SiteFieldsUpdate {
+    String siteId;
+
+    /** Front end field name -> new value. */
+    Map<String, String> fields;
+  }
+
+  /**
+   * Updates several fields of a site at once, eg: every field edited on the contact page. All
+   * fields are written in one transaction, and the site is re-indexed and sent to other systems
+   * once for the whole update rather than once per field.
+   */
+  @PostMapping("/manage/update-site-fields")
+  @ResponseBody
+  ResponseEntity<?> updateSiteFields(@RequestBody SiteFieldsUpdate request) {
+    log.info("Update site fields request received: {}", request);
+
+    if (fetchSiteName(request.getSiteId()) == null) {
+      log.warn("invalid site id: {}, request: {}", request.getSiteId(), request);
+      return ResponseEntity.badRequest().body("Invalid site id");
+    }
+    if (request.getFields() == null || request.getFields().isEmpty()) {
+      return ResponseEntity.badRequest().body("No fields to update");
+    }
+
+    Map<ManageSiteDao.SiteField, String> values = new EnumMap<>(ManageSiteDao.SiteField.class);
+    for (var entry : request.getFields().entrySet()) {
+      var siteField = ManageSiteDao.SiteField.lookupField(entry.getKey()).orElse(null);
+      if (siteField == null) {
+        log.warn("Invalid field requested for update: {}, request: {}", entry.getKey(), request);
+        return ResponseEntity.badRequest().body("Invalid field: " + entry.getKey());
+      }
+      values.put(siteField, entry.getValue() == null ? null : entry.getValue().trim());
+    }
+
+    Map<ManageSiteDao.SiteField, String> changed =
+        updateSiteFields(Long.parseLong(request.getSiteId()), values);
+    log.info("Site updated: {}, changed fields: {}", request.getSiteId(), changed.keySet());
+
+    return ResponseEntity.ok().body("Updated");
+  }
+
+  /** Writes the new values, then refreshes & publishes the site once if anything changed. */
+  private Map<ManageSiteDao.SiteField, String> updateSiteFields(
+      long siteId, Map<ManageSiteDao.SiteField, String> values) {
+    Map<ManageSiteDao.SiteField, String> changed =
+        ManageSiteDao.updateSiteFields(jdbi, referenceTables, siteId, values);
+    if (changed.containsKey(ManageSiteDao.SiteField.SITE_NAME)) {
+      siteList.invalidate();
+    }
+    if (changed.containsKey(ManageSiteDao.SiteField.SITE_NAME)
+        || changed.containsKey(ManageSiteDao.SiteField.COUNTY)
+        || changed.containsKey(ManageSiteDao.SiteField.STATE)) {
+      filterDataCache.invalidate();
+    }
+    if (!changed.isEmpty()) {
+      siteDetailPageCache.invalidate(siteId);
+      needsMatchingIndex.refreshSite(siteId);
+      sendSiteUpdate.sendFullUpdate(siteId);
+    }
+    return changed;
+  }
+
   /** Returns null if ID is not valid or DNE. */
   private String fetchSiteName(String siteId) {
     return ManageSiteDao.fetchSiteName(jdbi, siteId);
@@ -225,6 +304,7 @@ public class SiteContactController {
             .build();
 
     ManageSiteDao.updateReceivingCapabilities(jdbi, siteId, capabilities);
+    siteDetailPageCache.invalidate(siteId);
 
     sendSiteUpdate.sendFullUpdate(siteId);
     return ResponseEntity.ok().body("updated");
@@ -0,0 +1,45 @@
+package com.vanatta.helene.supplies.database.manage;
+
+import com.vanatta.helene.supplies.database.manage.SelectSiteController.SiteSelection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * In memory copy of all site ids & names, sorted by name, as shown on the select site page. Saves
+ * reading every site each time a manager navigates to (or is sent back to) that page.
+ *
+ * <p>The list carries the version it was loaded at. Code that adds a site or changes a site name
+ * calls {@link #invalidate()}, which bumps the version; the next read sees the list is out of date
+ * and loads it again.
+ */
+public class SiteList {
+
+  private final Jdbi jdbi;
+  private final AtomicLong version = new AtomicLong();
+  private volatile Snapshot snapshot;
+
+  private record Snapshot(long version, List<SiteSelection> sites) {}
+
+  /** The list is loaded on first read. */
+  public SiteList(Jdbi jdbi) {
+    this.jdbi = jdbi;
+  }
+
+  /** All sites, sorted by name ignoring case. */
+  public List<SiteSelection> sites() {
+    Snapshot current = snapshot;
+    long currentVersion = version.get();
+    if (current == null || current.version() != currentVersion) {
+      // version is read before loading, a change made while loading is picked up by the next read
+      current = new Snapshot(currentVersion, List.copyOf(ManageSiteDao.fetchSiteList(jdbi)));
+      snapshot = current;
+    }
+    return current.sites();
+  }
+
+  /** Marks the list as out of date, to be called after a site is added or renamed. */
+  public void invalidate() {
+    version.incrementAndGet();
+  }
+}
@@ -1,7 +1,11 @@
 package com.vanatta.helene.supplies.database.manage;
 
+import com.vanatta.helene.supplies.database.data.ReferenceTables;
 import com.vanatta.helene.supplies.database.data.SiteType;
 import com.vanatta.helene.supplies.database.export.update.SendSiteUpdate;
+import com.vanatta.helene.supplies.database.supplies.filters.FilterDataCache;
+import com.vanatta.helene.supplies.database.supplies.site.details.NeedsMatchingIndex;
+import com.vanatta.helene.supplies.database.supplies.site.details.SiteDetailPageCache;
 import com.vanatta.helene.supplies.database.util.EnumUtil;
 import java.util.HashMap;
 import java.util.Map;
@@ -24,20 +28,24 @@ import org.springframework.web.servlet.ModelAndView;
 public class SiteStatusController {
 
   private final Jdbi jdbi;
+  private final ReferenceTables referenceTables;
+  private final SiteList siteList;
+  private final SiteDetailPageCache siteDetailPageCache;
+  private final FilterDataCache filterDataCache;
   private final SendSiteUpdate sendSiteUpdate;
+  private final NeedsMatchingIndex needsMatchingIndex;
 
   /** Returns null if ID is not valid or DNE. */
   private String fetchSiteName(String siteId) {
     return ManageSiteDao.fetchSiteName(jdbi, siteId);
   }
 
-
   /** Displays the 'manage-status' page. */
   @GetMapping("/manage/status")
   ModelAndView showManageStatusPage(String siteId) {
     String siteName = fetchSiteName(siteId);
     if (siteName == null) {
-      return SelectSiteController.showSelectSitePage(jdbi);
+      return SelectSiteController.showSelectSitePage(siteList);
     }
 
     Map<String, String> pageParams = new HashMap<>();
@@ -110,6 +118,7 @@ public class SiteStatusController {
       case ACCEPTING_SUPPLIES:
         ManageSiteDao.updateSiteAcceptingDonationsFlag(
             jdbi, Long.parseLong(siteId), Boolean.parseBoolean(newValue));
+        needsMatchingIndex.refreshSite(Long.parseLong(siteId));
         break;
       case DISTRIBUTING_SUPPLIES:
         ManageSiteDao.updateSiteDistributingDonationsFlag(
@@ -118,15 +127,20 @@ public class SiteStatusController {
       case SITE_TYPE:
         var siteType =
             Boolean.parseBoolean(newValue) ? SiteType.DISTRIBUTION_CENTER : SiteType.SUPPLY_HUB;
-        ManageSiteDao.updateSiteType(jdbi, Long.parseLong(siteId), siteType);
+        ManageSiteDao.updateSiteType(jdbi, referenceTables, Long.parseLong(siteId), siteType);
+        needsMatchingIndex.refreshSite(Long.parseLong(siteId));
         break;
       case PUBLICLY_VISIBLE:
         ManageSiteDao.updateSitePubliclyVisible(
             jdbi, Long.parseLong(siteId), Boolean.parseBoolean(newValue));
+        filterDataCache.invalidate();
+        needsMatchingIndex.refreshSite(Long.parseLong(siteId));
         break;
       case ACTIVE:
         ManageSiteDao.updateSiteActiveFlag(
             jdbi, Long.parseLong(siteId), Boolean.parseBoolean(newValue));
+        filterDataCache.invalidate();
+        needsMatchingIndex.refreshSite(Long.parseLong(siteId));
         break;
       case ONBOARDED:
         ManageSiteDao.updateSiteOnboarded(
@@ -139,6 +153,7 @@ public class SiteStatusController {
         throw new IllegalArgumentException("Unmapped status flag: " + statusFlag);
     }
 
+    siteDetailPageCache.invalidate(Long.parseLong(siteId));
     sendSiteUpdate.sendFullUpdate(Long.parseLong(siteId));
     return ResponseEntity.ok().body("Updated");
   }
@@ -1,10 +1,14 @@
 package com.vanatta.helene.supplies.database.manage.add.site;
 
 import com.vanatta.helene.supplies.database.data.CountyDao;
+import com.vanatta.helene.supplies.database.data.ReferenceTables;
+import com.vanatta.helene.supplies.database.data.SiteIdentifiers;
 import com.vanatta.helene.supplies.database.data.SiteType;
 import com.vanatta.helene.supplies.database.export.update.SendSiteUpdate;
 import com.vanatta.helene.supplies.database.manage.ManageSiteDao;
 import com.vanatta.helene.supplies.database.manage.SelectSiteController;
+import com.vanatta.helene.supplies.database.manage.SiteList;
+import com.vanatta.helene.supplies.database.supplies.filters.FilterDataCache;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +31,10 @@ import org.springframework.web.servlet.ModelAndView;
 public class AddSiteController {
 
   private final Jdbi jdbi;
+  private final ReferenceTables referenceTables;
+  private final SiteIdentifiers siteIdentifiers;
+  private final SiteList siteList;
+  private final FilterDataCache filterDataCache;
   private final SendSiteUpdate sendSiteUpdate;
 
   /** Shows the form for adding a brand new site */
@@ -100,7 +108,11 @@ public class AddSiteController {
       return ResponseEntity.badRequest().body("Failed, missing required data.");
     }
     try {
-      long newSiteId = AddSiteDao.addSite(jdbi, addSiteData);
+      SiteIdentifiers.Ids ids = AddSiteDao.addSite(jdbi, referenceTables, addSiteData);
+      siteIdentifiers.put(ids);
+      siteList.invalidate();
+      filterDataCache.invalidate();
+      long newSiteId = ids.getId();
       sendSiteUpdate.sendFullUpdate(newSiteId);
       return ResponseEntity.ok(
           "{\"result\": \"success\", \"editSiteInventoryUrl\": \"/manage/inventory?siteId="
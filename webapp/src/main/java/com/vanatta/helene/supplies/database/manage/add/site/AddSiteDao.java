@@ -1,5 +1,7 @@
 package com.vanatta.helene.supplies.database.manage.add.site;
 
+import com.vanatta.helene.supplies.database.data.ReferenceTables;
+import com.vanatta.helene.supplies.database.data.SiteIdentifiers;
 import lombok.extern.slf4j.Slf4j;
 import org.jdbi.v3.core.Jdbi;
 import org.jdbi.v3.core.statement.UnableToExecuteStatementException;
@@ -14,13 +16,19 @@ public class AddSiteDao {
   }
 
   /**
-   * Adds a new site and returns the ID of that site.
+   * Adds a new site and returns the identifiers of that site.
    *
    * @throws DuplicateSiteException Thrown if site name already exists
-   * @throws IllegalArgumentException If an invalid county is specified
+   * @throws IllegalArgumentException If an invalid county, site type or max supply load is
+   *     specified
    * @throws UnableToExecuteStatementException if required fields are missing
    */
-  public static long addSite(Jdbi jdbi, AddSiteData siteData) {
+  public static SiteIdentifiers.Ids addSite(
+      Jdbi jdbi, ReferenceTables referenceTables, AddSiteData siteData) {
+    long countyId = referenceTables.countyId(siteData.getCounty(), siteData.getState());
+    long siteTypeId = referenceTables.siteTypeId(siteData.getSiteType().getText());
+    long maxSupplyLoadId = referenceTables.maxSupplyLoadId(siteData.getMaxSupplyLoad());
+
     String insert =
         """
         insert into site(
@@ -45,16 +53,16 @@ public class AddSiteDao {
           :siteName,
           :address,
           :city,
-          (select id from county where name = :countyName and state = :state),
+          :countyId,
           :website,
           :facebook,
-          (select id from site_type where name = :siteType),
+          :siteTypeId,
           :hours,
           :contactName,
           :contactNumber,
           :contactEmail,
           :additionalContacts,
-          (select id from max_supply_load where name = :maxSupplyLoadName),
+          :maxSupplyLoadId,
           :hasForklift,
           :hasIndoorStorage,
           :hasLoadingDock,
@@ -63,41 +71,37 @@ public class AddSiteDao {
         """;
 
     try {
-      return jdbi.withHandle(
-          handle ->
-              handle
-                  .createUpdate(insert)
-                  .bind("siteName", siteData.getSiteName())
-                  .bind("address", siteData.getStreetAddress())
-                  .bind("city", siteData.getCity())
-                  .bind("countyName", siteData.getCounty())
-                  .bind("state", siteData.getState())
-                  .bind("website", siteData.getWebsite())
-                  .bind("facebook", siteData.getFacebook())
-                  .bind("siteType", siteData.getSiteType().getText())
-                  .bind("hours", siteData.getSiteHours())
-                  .bind("contactName", siteData.getContactName())
-                  .bind("contactNumber", siteData.getContactNumber())
-                  .bind("contactEmail", siteData.getContactEmail())
-                  .bind("additionalContacts", siteData.getAdditionalContacts())
-                  .bind("maxSupplyLoadName", siteData.getMaxSupplyLoad())
-                  
-                  .bind("maxSupplyLoadName", siteData.getMaxSupplyLoad())
-                  .bind("hasForklift", siteData.isHasForklift())
-                  .bind("hasIndoorStorage", siteData.isHasIndoorStorage())
-                  .bind("hasLoadingDock", siteData.isHasLoadingDock())
-                  .bind("receivingNotes", siteData.getReceivingNotes())
-          
-          .executeAndReturnGeneratedKeys("id")
-                  .mapTo(Long.class)
-                  .one());
+      SiteIdentifiers.Ids ids =
+          jdbi.withHandle(
+              handle ->
+                  handle
+                      .createUpdate(insert)
+                      .bind("siteName", siteData.getSiteName())
+                      .bind("address", siteData.getStreetAddress())
+                      .bind("city", siteData.getCity())
+                      .bind("countyId", countyId)
+                      .bind("website", siteData.getWebsite())
+                      .bind("facebook", siteData.getFacebook())
+                      .bind("siteTypeId", siteTypeId)
+                      .bind("hours", siteData.getSiteHours())
+                      .bind("contactName", siteData.getContactName())
+                      .bind("contactNumber", siteData.getContactNumber())
+                      .bind("contactEmail", siteData.getContactEmail())
+                      .bind("additionalContacts", siteData.getAdditionalContacts())
+                      .bind("maxSupplyLoadId", maxSupplyLoadId)
+                      .bind("hasForklift", siteData.isHasForklift())
+                      .bind("hasIndoorStorage", siteData.isHasIndoorStorage())
+                      .bind("hasLoadingDock", siteData.isHasLoadingDock())
+                      .bind("receivingNotes", siteData.getReceivingNotes())
+                      .executeAndReturnGeneratedKeys("id", "wss_id", "airtable_id")
+                      .map(SiteIdentifiers.IDS_MAPPER)
+                      .one());
+      return ids;
     } catch (UnableToExecuteStatementException e) {
       if (e.getMessage()
           .contains("duplicate key value violates unique constraint \"site_name_key\"")) {
         throw new DuplicateSiteException(
             "Duplicate, site name already exists: " + siteData.getSiteName());
-      } else if (e.getMessage().contains("null value in column \"county_id\"")) {
-        throw new IllegalArgumentException("Invalid county specified: " + siteData.getCounty());
       } else {
         throw e;
       }
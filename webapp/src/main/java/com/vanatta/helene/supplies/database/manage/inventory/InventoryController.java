@@ -1,25 +1,37 @@
 package com.vanatta.helene.supplies.database.manage.inventory;
 
+import com.vanatta.helene.supplies.database.data.AuditBuffer;
+import com.vanatta.helene.supplies.database.data.ItemCatalog;
 import com.vanatta.helene.supplies.database.data.ItemStatus;
+import com.vanatta.helene.supplies.database.data.ReferenceTables;
 import com.vanatta.helene.supplies.database.export.update.SendInventoryUpdate;
 import com.vanatta.helene.supplies.database.export.update.SendNewItemUpdate;
 import com.vanatta.helene.supplies.database.manage.ManageSiteDao;
 import com.vanatta.helene.supplies.database.manage.SelectSiteController;
-import java.util.Comparator;
+import com.vanatta.helene.supplies.database.manage.SiteList;
+import com.vanatta.helene.supplies.database.supplies.filters.FilterDataCache;
+import com.vanatta.helene.supplies.database.supplies.site.details.NeedsMatchingIndex;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.jdbi.v3.core.Jdbi;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.ModelAndView;
 
@@ -31,20 +43,44 @@ import org.springframework.web.servlet.ModelAndView;
 @Slf4j
 public class InventoryController {
   public static final String PATH_INVENTORY = "/manage/inventory";
+  static final String PATH_INVENTORY_CATALOG = "/manage/inventory/catalog";
+
+  /** Number of catalog items returned per request, the page loads more as the user scrolls. */
+  static final int CATALOG_PAGE_SIZE = 50;
 
   public static String buildInventoryPath(long siteId) {
     return PATH_INVENTORY + "?siteId=" + siteId;
   }
 
   private final Jdbi jdbi;
+  private final ReferenceTables referenceTables;
+  private final ItemCatalog itemCatalog;
+  private final AuditBuffer auditBuffer;
+  private final SiteList siteList;
   private final SendNewItemUpdate sendNewItemUpdate;
   private final SendInventoryUpdate sendInventoryUpdate;
+  private final NeedsMatchingIndex needsMatchingIndex;
+  private final FilterDataCache filterDataCache;
 
   public InventoryController(
-      Jdbi jdbi, SendNewItemUpdate sendNewItemUpdate, SendInventoryUpdate sendInventoryUpdate) {
+      Jdbi jdbi,
+      ReferenceTables referenceTables,
+      ItemCatalog itemCatalog,
+      AuditBuffer auditBuffer,
+      SiteList siteList,
+      SendNewItemUpdate sendNewItemUpdate,
+      SendInventoryUpdate sendInventoryUpdate,
+      NeedsMatchingIndex needsMatchingIndex,
+      FilterDataCache filterDataCache) {
     this.jdbi = jdbi;
+    this.referenceTables = referenceTables;
+    this.itemCatalog = itemCatalog;
+    this.auditBuffer = auditBuffer;
+    this.siteList = siteList;
     this.sendNewItemUpdate = sendNewItemUpdate;
     this.sendInventoryUpdate = sendInventoryUpdate;
+    this.needsMatchingIndex = needsMatchingIndex;
+    this.filterDataCache = filterDataCache;
   }
 
   /** Returns null if ID is not valid or DNE. */
@@ -66,19 +102,21 @@ public class InventoryController {
   ModelAndView fetchSiteInventoryListing(String siteId) {
     String siteName = fetchSiteName(siteId);
     if (siteName == null) {
-      return SelectSiteController.showSelectSitePage(jdbi);
+      return SelectSiteController.showSelectSitePage(siteList);
     }
 
     Map<String, Object> pageParams = new HashMap<>();
     pageParams.put("siteName", siteName);
     pageParams.put("siteId", siteId);
+    // read before the inventory, changes made in between are then a conflict rather than lost
+    pageParams.put(
+        "inventoryVersion", InventoryDao.fetchInventoryVersion(jdbi, Long.parseLong(siteId)));
 
+    // Only the items at the site are rendered with the page. The rest of the item catalog can be
+    // thousands of items, the page fetches it in pages as the user scrolls or searches.
     List<ItemInventoryDisplay> inventoryList =
-        ManageSiteDao.fetchSiteInventory(jdbi, Long.parseLong(siteId)).stream()
+        ManageSiteDao.fetchActiveSiteInventory(jdbi, Long.parseLong(siteId)).stream()
             .map(ItemInventoryDisplay::new)
-            .sorted(
-                Comparator.comparing(
-                    d -> d.getItemName().toUpperCase())) // ItemInventoryDisplay::getItemName))
             .toList();
 
     pageParams.put("inventoryList", inventoryList);
@@ -86,6 +124,73 @@ public class InventoryController {
     return new ModelAndView("manage/inventory", pageParams);
   }
 
+  /** One page of items that are not (yet) at a site. */
+  @Value
+  @Builder
+  static class CatalogPage {
+    List<String> items;
+    boolean hasMore;
+
+    /** Last item of the page, the next page is requested with this as 'after'. Null if empty. */
+    String lastItem;
+  }
+
+  /**
+   * Returns a page of the item catalog, leaving out the items that are already at the site. The
+   * catalog is served from memory, only the item ids at the site are read from the database.
+   *
+   * <p>Pages are keyed on item name rather than an offset. The page moves catalog rows into the
+   * site inventory as items are added, which would shift an offset and skip items.
+   *
+   * @param search Optional, only items that contain this text (ignoring case) are returned.
+   * @param after Optional, only items sorted after this item name (ignoring case) are returned.
+   */
+  @GetMapping(PATH_INVENTORY_CATALOG)
+  @ResponseBody
+  ResponseEntity<CatalogPage> fetchItemCatalog(
+      @RequestParam long siteId,
+      @RequestParam(required = false) String search,
+      @RequestParam(required = false) String after) {
+    return ResponseEntity.ok(
+        catalogPage(
+            itemCatalog.sortedItems(),
+            InventoryDao.fetchSiteItemIds(jdbi, siteId),
+            search,
+            after,
+            CATALOG_PAGE_SIZE));
+  }
+
+  // @VisibleForTesting
+  static CatalogPage catalogPage(
+      List<ItemCatalog.Item> sortedItems,
+      Set<Long> excludedItemIds,
+      String search,
+      String after,
+      int limit) {
+    String searchText =
+        search == null || search.isBlank() ? null : search.trim().toLowerCase(Locale.ROOT);
+    String afterName = after == null || after.isEmpty() ? null : after.toLowerCase(Locale.ROOT);
+
+    List<String> page = new ArrayList<>();
+    for (ItemCatalog.Item item : sortedItems) {
+      String name = item.getName().toLowerCase(Locale.ROOT);
+      if ((afterName != null && name.compareTo(afterName) <= 0)
+          || excludedItemIds.contains(item.getId())
+          || (searchText != null && !name.contains(searchText))) {
+        continue;
+      }
+      if (page.size() == limit) {
+        return CatalogPage.builder().items(page).hasMore(true).lastItem(page.getLast()).build();
+      }
+      page.add(item.getName());
+    }
+    return CatalogPage.builder()
+        .items(page)
+        .hasMore(false)
+        .lastItem(page.isEmpty() ? null : page.getLast())
+        .build();
+  }
+
   @Data
   @Builder
   @AllArgsConstructor
@@ -149,10 +254,14 @@ public class InventoryController {
     }
   }
 
-  /** Creates a brand new item, and adds that item to a given site. */
+  /**
+   * Creates a brand new item, and adds that item to a given site. If 'inventoryVersion' is given,
+   * the item is only added to the site if the site's inventory is still at that version, see {@link
+   * #updateSiteInventory}.
+   */
   @PostMapping("/manage/add-site-item")
   @ResponseBody
-  ResponseEntity<String> addNewSiteItem(@RequestBody Map<String, String> params) {
+  ResponseEntity<?> addNewSiteItem(@RequestBody Map<String, String> params) {
     String itemName =
         Optional.ofNullable(params.get("itemName"))
             .orElseThrow(
@@ -162,13 +271,31 @@ public class InventoryController {
             .trim();
 
     log.info("Creating brand new item: {}", params);
-    boolean itemAdded = InventoryDao.addNewItem(jdbi, itemName);
+    boolean itemAdded = InventoryDao.addNewItem(jdbi, itemCatalog, itemName);
     if (!itemAdded) {
       log.warn("Failed to add item, already exists. Params: {}", params);
       return ResponseEntity.badRequest().body("Item not added, already exists");
     }
+    filterDataCache.invalidate();
     sendNewItemUpdate.sendNewItem(itemName);
-    return updateSiteItemActive(params);
+    if (params.get("inventoryVersion") == null) {
+      return updateSiteItemActive(params);
+    }
+
+    String siteId = params.get("siteId");
+    if (siteId == null || fetchSiteName(siteId) == null) {
+      log.warn("Failed to add new item to site. Invalid site id: {}, params: {}", siteId, params);
+      return ResponseEntity.badRequest().body("Invalid site id");
+    }
+    return applyItemChanges(
+        Long.parseLong(siteId),
+        List.of(
+            InventoryDao.ItemChange.builder()
+                .itemName(itemName)
+                .active(true)
+                .itemStatus(params.get("itemStatus"))
+                .build()),
+        Long.parseLong(params.get("inventoryVersion")));
   }
 
   /** Adds an item to a site */
@@ -206,7 +333,15 @@ public class InventoryController {
       return ResponseEntity.badRequest().body("Invalid item status: " + itemStatus);
     }
 
-    InventoryDao.updateSiteItemActive(jdbi, Long.parseLong(siteId), itemName, itemStatus);
+    InventoryDao.updateSiteItemActive(
+        jdbi,
+        referenceTables,
+        itemCatalog,
+        auditBuffer,
+        Long.parseLong(siteId),
+        itemName,
+        itemStatus);
+    needsMatchingIndex.refreshSiteItem(Long.parseLong(siteId), itemName);
 
     new Thread(
             () -> {
@@ -246,9 +381,11 @@ public class InventoryController {
       return ResponseEntity.badRequest().body("Invalid site id");
     }
 
-    InventoryDao.getInventoryWssId(jdbi, Long.parseLong(siteId), itemName)
+    InventoryDao.getInventoryWssId(jdbi, itemCatalog, Long.parseLong(siteId), itemName)
         .ifPresent(wssId -> new Thread(() -> sendInventoryUpdate.sendItemRemoval(wssId)).start());
-    InventoryDao.updateSiteItemInactive(jdbi, Long.parseLong(siteId), itemName);
+    InventoryDao.updateSiteItemInactive(
+        jdbi, itemCatalog, auditBuffer, Long.parseLong(siteId), itemName);
+    needsMatchingIndex.refreshSiteItem(Long.parseLong(siteId), itemName);
     return ResponseEntity.ok("Updated");
   }
 
@@ -265,22 +402,114 @@ public class InventoryController {
         siteId,
         itemName,
         newStatus);
-    String siteName = fetchSiteName(siteId);
-    if (siteName == null) {
+    long id;
+    try {
+      id = Long.parseLong(siteId);
+    } catch (NumberFormatException e) {
       log.warn("Failed to update item status. Invalid site id: {}, params: {}", siteId, params);
       return ResponseEntity.badRequest().body("Invalid site id");
     }
 
-    ItemStatus oldStatus = InventoryDao.fetchItemStatus(jdbi, Long.parseLong(siteId), itemName);
-
-    if (oldStatus != ItemStatus.fromTextValue(newStatus)) {
-      InventoryDao.updateItemStatus(jdbi, Long.parseLong(siteId), itemName, newStatus);
-      var latestStatus = ItemStatus.fromTextValue(newStatus);
-      if (oldStatus != latestStatus) {
-        new Thread(() -> sendInventoryUpdate.send(Long.parseLong(siteId), itemName)).start();
-      }
+    String oldStatus =
+        InventoryDao.updateItemStatus(jdbi, referenceTables, itemCatalog, id, itemName, newStatus);
+    if (!oldStatus.equals(newStatus)) {
+      needsMatchingIndex.refreshSiteItem(id, itemName);
+      new Thread(() -> sendInventoryUpdate.send(id, itemName)).start();
     }
 
     return ResponseEntity.ok("Updated");
   }
+
+  @Data
+  @Builder
+  @NoArgsConstructor
+  @AllArgsConstructor
+  static class InventoryBatchRequest {
+    Long siteId;
+
+    /** The inventory version the page was showing, optional. */
+    Long inventoryVersion;
+
+    @Builder.Default List<InventoryDao.ItemChange> changes = new ArrayList<>();
+  }
+
+  /**
+   * Response to inventory changes, the site's new inventory version. On conflict (HTTP 409) this is
+   * the current version and the items currently at the site, so the page can show them without
+   * reloading.
+   */
+  @Value
+  @Builder
+  static class InventoryUpdateResponse {
+    long inventoryVersion;
+    List<InventoryDao.ItemChange> currentItems;
+  }
+
+  /**
+   * Applies a list of item adds, removes and status changes for one site, all in one transaction.
+   * Lets the inventory page send all pending changes in one request.
+   *
+   * <p>If the request has an inventory version, the changes are only applied if the site's
+   * inventory is still at that version. Otherwise, eg: the inventory was changed in another browser
+   * window, nothing is changed and the response is a 409 with the current inventory.
+   */
+  @PostMapping("/manage/update-site-inventory")
+  @ResponseBody
+  ResponseEntity<InventoryUpdateResponse> updateSiteInventory(
+      @RequestBody InventoryBatchRequest request) {
+    if (request.getSiteId() == null
+        || ManageSiteDao.fetchSiteName(jdbi, request.getSiteId()) == null) {
+      log.warn("Failed to update inventory. Invalid site id: {}", request.getSiteId());
+      throw new IllegalArgumentException("Invalid site id");
+    }
+    long siteId = request.getSiteId();
+    log.info(
+        "Updating inventory, site id: {}, version: {}, changes: {}",
+        siteId,
+        request.getInventoryVersion(),
+        request.getChanges());
+    return applyItemChanges(siteId, request.getChanges(), request.getInventoryVersion());
+  }
+
+  private ResponseEntity<InventoryUpdateResponse> applyItemChanges(
+      long siteId, List<InventoryDao.ItemChange> changes, Long inventoryVersion) {
+    InventoryDao.VersionedUpdate update =
+        InventoryDao.applyItemChanges(
+            jdbi, referenceTables, itemCatalog, siteId, changes, inventoryVersion);
+    if (update.isConflict()) {
+      log.info(
+          "Inventory changed since it was loaded, site id: {}, client version: {}, version: {}",
+          siteId,
+          inventoryVersion,
+          update.getInventoryVersion());
+      return ResponseEntity.status(HttpStatus.CONFLICT)
+          .body(
+              InventoryUpdateResponse.builder()
+                  .inventoryVersion(update.getInventoryVersion())
+                  .currentItems(update.getCurrentItems())
+                  .build());
+    }
+
+    List<InventoryDao.AppliedChange> applied = update.getApplied();
+    applied.forEach(change -> needsMatchingIndex.refreshSiteItem(siteId, change.getItemName()));
+
+    if (!applied.isEmpty()) {
+      new Thread(
+              () ->
+                  applied.forEach(
+                      change -> {
+                        if (!change.isRemoved()) {
+                          sendInventoryUpdate.send(siteId, change.getItemName());
+                        } else if (change.getWssId() != null) {
+                          sendInventoryUpdate.sendItemRemoval(change.getWssId());
+                        }
+                      }))
+          .start();
+    }
+    return ResponseEntity.ok(
+        InventoryUpdateResponse.builder()
+            .inventoryVersion(update.getInventoryVersion())
+            .currentItems(List.of())
+            .build());
+  }
 }
@@ -1,23 +1,50 @@
 package com.vanatta.helene.supplies.database.manage.inventory;
 
+import com.vanatta.helene.supplies.database.data.AuditBuffer;
+import com.vanatta.helene.supplies.database.data.ItemCatalog;
 import com.vanatta.helene.supplies.database.data.ItemStatus;
-import com.vanatta.helene.supplies.database.manage.ManageSiteDao;
+import com.vanatta.helene.supplies.database.data.ReferenceTables;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.jdbi.v3.core.Handle;
 import org.jdbi.v3.core.Jdbi;
 
+/**
+ * Reads and writes the items at a site.
+ *
+ * <p>Inventory changes also set the site's 'inventory_last_updated' (shown as a date with search
+ * results) and mark the site as onboarded, as part of the same statement or transaction. The site
+ * row is read by every public query, so it is only rewritten if it was last touched more than a
+ * minute ago: a manager editing 50 items updates the site row about once a minute, not 50 times.
+ */
 @Slf4j
 public class InventoryDao {
 
-  // TODO: handle null case (can be possible if a person is using multiple browser windows
-  static ItemStatus fetchItemStatus(Jdbi jdbi, long siteId, String itemName) {
+  /** Returns null if the item is not at the site, eg: it was removed in another browser window. */
+  static ItemStatus fetchItemStatus(
+      Jdbi jdbi, ItemCatalog itemCatalog, long siteId, String itemName) {
+    long itemId = itemCatalog.itemId(itemName);
     String query =
         """
         select ist.name
         from item_status ist
         join site_item si on si.item_status_id = ist.id
-        join item i on i.id = si.item_id
-        where i.name = :itemName and si.site_id = :siteId
+        where si.item_id = :itemId and si.site_id = :siteId
         """;
     String status =
         jdbi.withHandle(
@@ -25,144 +52,188 @@ public class InventoryDao {
                 handle
                     .createQuery(query)
                     .bind("siteId", siteId)
-                    .bind("itemName", itemName)
+                    .bind("itemId", itemId)
                     .mapTo(String.class)
-                    .one());
-    return ItemStatus.fromTextValue(status);
+                    .findOne()
+                    .orElse(null));
+    return status == null ? null : ItemStatus.fromTextValue(status);
   }
 
   public static void updateSiteItemActive(
-      Jdbi jdbi, long siteId, String itemName, String itemStatus) {
+      Jdbi jdbi,
+      ReferenceTables referenceTables,
+      ItemCatalog itemCatalog,
+      AuditBuffer auditBuffer,
+      long siteId,
+      String itemName,
+      String itemStatus) {
+    long itemId = itemCatalog.itemId(itemName);
+    long itemStatusId = referenceTables.itemStatusId(itemStatus);
     String insert =
         """
-          insert into site_item(site_id, item_id, item_status_id) values
-             (
-                :siteId,
-                (select id from item where name = :itemName),
-                (select id from item_status where name = :itemStatus)
-             )
-          """;
-    try {
-      jdbi.withHandle(
-          handle ->
-              handle
-                  .createUpdate(insert)
-                  .bind("siteId", siteId)
-                  .bind("itemName", itemName)
-                  .bind("itemStatus", itemStatus)
-                  .execute());
-      updateSiteItemAudit(jdbi, siteId, itemName, "inactive", "active");
-    } catch (Exception e) {
-      if (e.getMessage().contains("already exists.")
-          || (e.getCause() != null && e.getCause().getMessage().contains("duplicate key value"))) {
-        log.warn(
-            "Duplicate key insert attempted, siteId: {}, itemName: {}, itemStatus: {}",
-            siteId,
-            itemName,
-            itemStatus);
-      } else {
-        throw e;
-      }
-    }
-    ManageSiteDao.updateSiteInventoryLastUpdatedAndOnboardedFlag(jdbi, siteId);
-  }
-
-  /** Adds a record to the site item change table. */
-  // @VisibleForTesting
-  static void updateSiteItemAudit(
-      Jdbi jdbi, long siteId, String itemName, String oldValue, String newValue) {
-
-    String insertIntoAudit =
-        """
-        insert into site_item_audit(
-          site_id,
-          item_id,
-          old_value,
-          new_value
-        ) values (
-          :siteId,
-          (select id from item where name = :itemName),
-          :oldValue,
-          :newValue
-        );
+        with inserted as (
+          insert into site_item(site_id, item_id, item_status_id)
+          values (:siteId, :itemId, :itemStatusId)
+          on conflict (site_id, item_id) do nothing
+          returning id
+        ),
+        version as (
+          insert into site_inventory_version(site_id, version)
+          select :siteId, 1 from inserted
+          on conflict (site_id) do update set version = site_inventory_version.version + 1
+        ),
+        site_touched as (
+          update site set inventory_last_updated = now(), onboarded = true
+          where id = :siteId
+            and exists (select 1 from inserted)
+            and (not onboarded or inventory_last_updated < now() - interval '1 minute')
+        )
+        select count(*) from inserted
         """;
-    jdbi.withHandle(
-        handle ->
-            handle
-                .createUpdate(insertIntoAudit)
-                .bind("siteId", siteId)
-                .bind("itemName", itemName)
-                .bind("oldValue", oldValue)
-                .bind("newValue", newValue)
-                .execute());
-  }
-
-  static void updateSiteItemInactive(Jdbi jdbi, long siteId, String itemName) {
-    String delete =
-        """
-            delete from site_item
-            where site_id = :siteId
-              and item_id = (select id from item where name = :itemName)
-            """;
-    int deleteCount =
+    int insertCount =
         jdbi.withHandle(
             handle ->
                 handle
-                    .createUpdate(delete)
+                    .createQuery(insert)
                     .bind("siteId", siteId)
-                    .bind("itemName", itemName)
-                    .execute());
-    if (deleteCount > 0) {
-      updateSiteItemAudit(jdbi, siteId, itemName, "active", "inactive");
+                    .bind("itemId", itemId)
+                    .bind("itemStatusId", itemStatusId)
+                    .mapTo(Integer.class)
+                    .one());
+    if (insertCount == 0) {
+      log.warn(
+          "Duplicate key insert attempted, siteId: {}, itemName: {}, itemStatus: {}",
+          siteId,
+          itemName,
+          itemStatus);
+    } else {
+      auditBuffer.addSiteItemAudit(siteId, itemId, "inactive", "active");
     }
-    ManageSiteDao.updateSiteInventoryLastUpdatedAndOnboardedFlag(jdbi, siteId);
   }
 
-  public static void updateItemStatus(Jdbi jdbi, long siteId, String itemName, String itemStatus) {
-    if (!ItemStatus.allItemStatus().contains(itemStatus)) {
-      throw new IllegalArgumentException("Invalid item status: " + itemStatus);
-    }
-    String oldStatusQuery =
+  static void updateSiteItemInactive(
+      Jdbi jdbi, ItemCatalog itemCatalog, AuditBuffer auditBuffer, long siteId, String itemName) {
+    long itemId = itemCatalog.itemId(itemName);
+    String delete =
         """
-        select its.name
-        from site_item si
-        join item_status its on its.id = si.item_status_id
-        where si.site_id = :siteId
-          and si.item_id = (select id from item where name = :itemName)
+        with deleted as (
+          delete from site_item where site_id = :siteId and item_id = :itemId
+          returning id
+        ),
+        version as (
+          insert into site_inventory_version(site_id, version)
+          select :siteId, 1 from deleted
+          on conflict (site_id) do update set version = site_inventory_version.version + 1
+        ),
+        site_touched as (
+          update site set inventory_last_updated = now(), onboarded = true
+          where id = :siteId
+            and exists (select 1 from deleted)
+            and (not onboarded or inventory_last_updated < now() - interval '1 minute')
+        )
+        select count(*) from deleted
         """;
-    String oldStatus =
+    int deleteCount =
         jdbi.withHandle(
             handle ->
                 handle
-                    .createQuery(oldStatusQuery)
+                    .createQuery(delete)
                     .bind("siteId", siteId)
-                    .bind("itemName", itemName)
-                    .mapTo(String.class)
+                    .bind("itemId", itemId)
+                    .mapTo(Integer.class)
                     .one());
+    if (deleteCount > 0) {
+      auditBuffer.addSiteItemAudit(siteId, itemId, "active", "inactive");
+    }
+  }
 
+  /**
+   * Changes the status of an item at a site. Done as one statement: the site item row is locked and
+   * its old status read, then if the status is different the row is updated, the site's inventory
+   * version is incremented and its inventory last updated timestamp is touched. The audit record is
+   * written with {@link AuditBuffer#insertSiteItemAudits} in the same transaction.
+   *
+   * @return The status of the item before the update, same as the new status if nothing changed.
+   * @throws IllegalArgumentException if the item status is not valid or the item is not at the
+   *     site.
+   */
+  public static String updateItemStatus(
+      Jdbi jdbi,
+      ReferenceTables referenceTables,
+      ItemCatalog itemCatalog,
+      long siteId,
+      String itemName,
+      String itemStatus) {
+    long itemStatusId = referenceTables.itemStatusId(itemStatus);
+    long itemId = itemCatalog.itemId(itemName);
     String update =
         """
-      update site_item
-      set item_status_id = (select id from item_status where name = :itemStatus),
-         last_updated = now()
-      where site_id = :siteId
-         and item_id = (select id from item where name = :itemName)
-      """;
-    int updateCount =
-        jdbi.withHandle(
-            handle ->
-                handle
-                    .createUpdate(update)
-                    .bind("siteId", siteId)
-                    .bind("itemName", itemName)
-                    .bind("itemStatus", itemStatus)
-                    .execute());
+        with old as (
+          select si.id, si.item_id, ist.name old_status
+          from site_item si
+          join item_status ist on ist.id = si.item_status_id
+          where si.site_id = :siteId
+            and si.item_id = :itemId
+          for update of si
+        ),
+        updated as (
+          update site_item si
+          set item_status_id = :itemStatusId,
+             last_updated = now()
+          from old
+          where si.id = old.id
+            and si.item_status_id <> :itemStatusId
+          returning si.item_id, old.old_status
+        ),
+        site_touched as (
+          update site set inventory_last_updated = now(), onboarded = true
+          where id = :siteId
+            and exists (select 1 from updated)
+            and (not onboarded or inventory_last_updated < now() - interval '1 minute')
+        ),
+        version as (
+          insert into site_inventory_version(site_id, version)
+          select :siteId, 1 from updated
+          on conflict (site_id) do update set version = site_inventory_version.version + 1
+        )
+        select old_status, exists (select 1 from updated) changed from old
+        """;
+    return jdbi.inTransaction(
+        handle -> {
+          StatusUpdate statusUpdate =
+              handle
+                  .createQuery(update)
+                  .bind("siteId", siteId)
+                  .bind("itemId", itemId)
+                  .bind("itemStatusId", itemStatusId)
+                  .map(
+                      (rs, _) ->
+                          new StatusUpdate(rs.getString("old_status"), rs.getBoolean("changed")))
+                  .findOne()
+                  .orElseThrow(
+                      () ->
+                          new IllegalArgumentException(
+                              String.format("Item: %s, is not at site: %s", itemName, siteId)));
+          if (statusUpdate.isChanged()) {
+            AuditBuffer.insertSiteItemAudits(
+                handle,
+                List.of(
+                    AuditBuffer.SiteItemAudit.builder()
+                        .siteId(siteId)
+                        .itemId(itemId)
+                        .oldValue(statusUpdate.getOldStatus())
+                        .newValue(itemStatus)
+                        .changedDate(Instant.now())
+                        .build()));
+          }
+          return statusUpdate.getOldStatus();
+        });
+  }
 
-    if (updateCount != 1) {
-      throw new IllegalArgumentException(String.format("Invalid item name: %s", itemName));
-    }
-    updateSiteItemAudit(jdbi, siteId, itemName, oldStatus, itemStatus);
-    ManageSiteDao.updateSiteInventoryLastUpdatedAndOnboardedFlag(jdbi, siteId);
+  @Value
+  private static class StatusUpdate {
+    String oldStatus;
+    boolean changed;
   }
 
   /**
@@ -171,52 +242,416 @@ public class InventoryDao {
    *
    * @return True if the item was added, false if the item already exists.
    */
-  public static boolean addNewItem(Jdbi jdbi, String itemName) {
-    // we explicitly select for an item rather than "insert & let it fail"
-    // the latter is more performant, but we'll get error messages in the logs if we do that.
-    // The "check & insert" method does suffer from a time-of-check vs time-of-execution error
-    String select = "select id from item where name = :itemName";
+  public static boolean addNewItem(Jdbi jdbi, ItemCatalog itemCatalog, String itemName) {
+    if (itemCatalog.findByName(itemName).isPresent()) {
+      return false;
+    }
 
-    Long result =
+    // The item can be added by another request between the lookup above and this insert.
+    // 'on conflict do nothing' turns the insert into a no-op in that case, rather than a duplicate
+    // key error.
+    String insert =
+        """
+        insert into item(name) values(:itemName)
+        on conflict do nothing
+        returning id, name, wss_id
+        """;
+    Optional<ItemCatalog.Item> inserted =
         jdbi.withHandle(
-                handle ->
-                    handle
-                        .createQuery(select)
-                        .bind("itemName", itemName)
-                        .mapTo(Long.class)
-                        .findOne())
-            .orElse(null);
-    if (result != null) {
-      return false;
-    } else {
-      try {
-        String insert = "insert into item(name) values(:itemName)";
-        jdbi.withHandle(handle -> handle.createUpdate(insert).bind("itemName", itemName).execute());
-      } catch (Exception e) {
-        if (e.getMessage().contains("duplicate key")) {
-          return false;
-        } else {
-          throw e;
-        }
-      }
+            handle ->
+                handle
+                    .createQuery(insert)
+                    .bind("itemName", itemName)
+                    .map(ItemCatalog.ITEM_MAPPER)
+                    .findOne());
+    if (inserted.isPresent()) {
+      itemCatalog.put(inserted.get());
       return true;
+    } else {
+      // lost the race, the item was added by someone else; cache their item
+      itemCatalog.findByName(itemName);
+      return false;
     }
   }
 
-  public static Optional<Long> getInventoryWssId(Jdbi jdbi, long siteId, String itemName) {
-    String query =
-        """
-        select wss_id from site_item
-        where site_id = :siteId
-          and item_id = (select id from item where name = :itemName)
-        """;
+  public static Optional<Long> getInventoryWssId(
+      Jdbi jdbi, ItemCatalog itemCatalog, long siteId, String itemName) {
+    Optional<ItemCatalog.Item> item = itemCatalog.findByName(itemName);
+    if (item.isEmpty()) {
+      return Optional.empty();
+    }
+    String query = "select wss_id from site_item where site_id = :siteId and item_id = :itemId";
     return jdbi.withHandle(
         handle ->
             handle
                 .createQuery(query)
                 .bind("siteId", siteId)
-                .bind("itemName", itemName)
+                .bind("itemId", item.get().getId())
                 .mapTo(Long.class)
                 .findOne());
   }
+
+  /** Returns the ids of all items at a site. */
+  public static Set<Long> fetchSiteItemIds(Jdbi jdbi, long siteId) {
+    return jdbi.withHandle(
+        handle ->
+            handle
+                .createQuery("select item_id from site_item where site_id = :siteId")
+                .bind("siteId", siteId)
+                .mapTo(Long.class)
+                .collect(Collectors.toSet()));
+  }
+
+  /** A requested change to one item at a site, either add or update its status, or remove it. */
+  @Data
+  @Builder
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class ItemChange {
+    String itemName;
+
+    /** False to remove the item from the site. */
+    boolean active;
+
+    /** The item status, required when active. */
+    String itemStatus;
+  }
+
+  /** An item change that was applied, changes that were already in effect are not listed. */
+  @Value
+  @Builder
+  public static class AppliedChange {
+    long itemId;
+    String itemName;
+
+    /** Null if the item was not at the site. */
+    String oldStatus;
+
+    /** Null if the item was removed from the site. */
+    String newStatus;
+
+    /** Inventory id in the write-through system, only populated for removed items. */
+    Long wssId;
+
+    boolean isRemoved() {
+      return newStatus == null;
+    }
+  }
+
+  @Data
+  @NoArgsConstructor
+  public static class CurrentItem {
+    long itemId;
+    long itemStatusId;
+    String itemStatus;
+    Long wssId;
+  }
+
+  /** Result of a list of item changes, checked against the inventory version the client saw. */
+  @Value
+  @Builder
+  public static class VersionedUpdate {
+    /** True if the client's inventory version was out of date, nothing was changed. */
+    boolean conflict;
+
+    /** The site's inventory version, after the changes if there was no conflict. */
+    long inventoryVersion;
+
+    /** Empty if there was a conflict. */
+    @Builder.Default List<AppliedChange> applied = List.of();
+
+    /** Only populated on conflict, the items that are at the site, sorted by name. */
+    @Builder.Default List<ItemChange> currentItems = List.of();
+  }
+
+  /** Returns the inventory version of a site, 0 if the site's inventory was never changed. */
+  public static long fetchInventoryVersion(Jdbi jdbi, long siteId) {
+    return jdbi.withHandle(handle -> fetchInventoryVersion(handle, siteId));
+  }
+
+  private static long fetchInventoryVersion(Handle handle, long siteId) {
+    return handle
+        .createQuery("select version from site_inventory_version where site_id = :siteId")
+        .bind("siteId", siteId)
+        .mapTo(Long.class)
+        .findOne()
+        .orElse(0L);
+  }
+
+  /**
+   * Reads and locks the inventory version of a site, a site without a version row is at version 0.
+   * The version row stays locked until the transaction ends, so changes to one site's inventory are
+   * applied one at a time.
+   */
+  private static long lockInventoryVersion(Handle handle, long siteId) {
+    // the no-op update locks an existing row, the insert covers a site that has no row yet
+    String upsert =
+        """
+        insert into site_inventory_version(site_id, version)
+        values (:siteId, 0)
+        on conflict (site_id) do update set version = site_inventory_version.version
+        returning version
+        """;
+    return handle.createQuery(upsert).bind("siteId", siteId).mapTo(Long.class).one();
+  }
+
+  /** Increments the version locked by {@link #lockInventoryVersion}, returns the new version. */
+  private static long incrementInventoryVersion(Handle handle, long siteId) {
+    return handle
+        .createQuery(
+            """
+            update site_inventory_version set version = version + 1
+            where site_id = :siteId
+            returning version
+            """)
+        .bind("siteId", siteId)
+        .mapTo(Long.class)
+        .one();
+  }
+
+  /**
+   * Applies a list of item changes to a site in a single transaction. Compared to one call per
+   * change, this is a fixed number of statements regardless of how many items are changed: the
+   * current inventory of the requested items is read (and locked) once, then there is at most one
+   * delete, one insert, one update and one multi-row audit insert, and the site's inventory last
+   * updated timestamp is bumped at most once.
+   *
+   * <p>If an item is listed more than once, the last change is used.
+   *
+   * @throws IllegalArgumentException if an item does not exist or an item status is not valid.
+   *     Nothing is changed in that case.
+   */
+  public static List<AppliedChange> applyItemChanges(
+      Jdbi jdbi,
+      ReferenceTables referenceTables,
+      ItemCatalog itemCatalog,
+      long siteId,
+      List<ItemChange> changes) {
+    return applyItemChanges(jdbi, referenceTables, itemCatalog, siteId, changes, null).getApplied();
+  }
+
+  /**
+   * Same as {@link #applyItemChanges(Jdbi, ReferenceTables, ItemCatalog, long, List)}, but only if
+   * the site's inventory version is 'expectedVersion'. The version is locked and checked before
+   * anything is changed, a client that is out of date (eg: the inventory was changed in another
+   * browser window) gets a conflict result with the current inventory instead of an exception. The
+   * version is only incremented if at least one change is applied.
+   *
+   * @param expectedVersion The inventory version the client last saw, null to skip the check.
+   */
+  public static VersionedUpdate applyItemChanges(
+      Jdbi jdbi,
+      ReferenceTables referenceTables,
+      ItemCatalog itemCatalog,
+      long siteId,
+      List<ItemChange> changes,
+      Long expectedVersion) {
+    Map<ItemCatalog.Item, ItemChange> changesByItem = new LinkedHashMap<>();
+    for (ItemChange change : changes) {
+      if (change.getItemName() == null || change.getItemName().isBlank()) {
+        throw new IllegalArgumentException("Item name missing in change: " + change);
+      }
+      if (change.isActive()) {
+        // validates the item status
+        referenceTables.itemStatusId(change.getItemStatus());
+      }
+      ItemCatalog.Item item =
+          itemCatalog
+              .findByName(change.getItemName().trim())
+              .orElseThrow(
+                  () -> new IllegalArgumentException("Invalid item name: " + change.getItemName()));
+      changesByItem.put(item, change);
+    }
+    if (changesByItem.isEmpty()) {
+      long version = fetchInventoryVersion(jdbi, siteId);
+      boolean stale = expectedVersion != null && expectedVersion != version;
+      return VersionedUpdate.builder()
+          .conflict(stale)
+          .inventoryVersion(version)
+          .currentItems(stale ? fetchCurrentInventory(jdbi, siteId) : List.of())
+          .build();
+    }
+
+    return jdbi.inTransaction(
+        handle -> {
+          long version = lockInventoryVersion(handle, siteId);
+          if (expectedVersion != null && expectedVersion != version) {
+            return VersionedUpdate.builder()
+                .conflict(true)
+                .inventoryVersion(version)
+                .currentItems(fetchCurrentInventory(handle, siteId))
+                .build();
+          }
+          VersionedUpdate.VersionedUpdateBuilder result = VersionedUpdate.builder();
+
+          Map<Long, CurrentItem> current =
+              fetchCurrentItems(handle, referenceTables, siteId, changesByItem.keySet());
+
+          List<AppliedChange> applied = new ArrayList<>();
+          changesByItem.forEach(
+              (item, change) -> {
+                CurrentItem currentItem = current.get(item.getId());
+                String oldStatus = currentItem == null ? null : currentItem.getItemStatus();
+                String newStatus = change.isActive() ? change.getItemStatus() : null;
+                if (!Objects.equals(oldStatus, newStatus)) {
+                  applied.add(
+                      AppliedChange.builder()
+                          .itemId(item.getId())
+                          .itemName(item.getName())
+                          .oldStatus(oldStatus)
+                          .newStatus(newStatus)
+                          .wssId(newStatus == null ? currentItem.getWssId() : null)
+                          .build());
+                }
+              });
+          if (applied.isEmpty()) {
+            return result.inventoryVersion(version).build();
+          }
+          result.inventoryVersion(incrementInventoryVersion(handle, siteId));
+
+          List<AppliedChange> removes = applied.stream().filter(AppliedChange::isRemoved).toList();
+          List<AppliedChange> adds =
+              applied.stream().filter(c -> c.getOldStatus() == null).toList();
+          List<AppliedChange> statusChanges =
+              applied.stream()
+                  .filter(c -> c.getOldStatus() != null && c.getNewStatus() != null)
+                  .toList();
+
+          if (!removes.isEmpty()) {
+            handle
+                .createUpdate(
+                    "delete from site_item where site_id = :siteId and item_id = any(:itemIds)")
+                .bind("siteId", siteId)
+                .bindArray("itemIds", Long.class, itemIds(removes))
+                .execute();
+          }
+          if (!adds.isEmpty()) {
+            handle
+                .createUpdate(
+                    """
+                    insert into site_item(site_id, item_id, item_status_id)
+                    select :siteId, change.item_id, change.item_status_id
+                    from unnest(:itemIds, :itemStatusIds) as change(item_id, item_status_id)
+                    """)
+                .bind("siteId", siteId)
+                .bindArray("itemIds", Long.class, itemIds(adds))
+                .bindArray("itemStatusIds", Long.class, newStatusIds(referenceTables, adds))
+                .execute();
+          }
+          if (!statusChanges.isEmpty()) {
+            handle
+                .createUpdate(
+                    """
+                    update site_item si
+                    set item_status_id = change.item_status_id,
+                       last_updated = now()
+                    from unnest(:itemIds, :itemStatusIds) as change(item_id, item_status_id)
+                    where si.site_id = :siteId
+                      and si.item_id = change.item_id
+                    """)
+                .bind("siteId", siteId)
+                .bindArray("itemIds", Long.class, itemIds(statusChanges))
+                .bindArray(
+                    "itemStatusIds", Long.class, newStatusIds(referenceTables, statusChanges))
+                .execute();
+          }
+
+          // audit values follow the single item updates, 'inactive' & 'active' for adds and
+          // removes, otherwise the old and new status.
+          Instant now = Instant.now();
+          AuditBuffer.insertSiteItemAudits(
+              handle,
+              applied.stream()
+                  .map(
+                      c ->
+                          AuditBuffer.SiteItemAudit.builder()
+                              .siteId(siteId)
+                              .itemId(c.getItemId())
+                              .oldValue(
+                                  c.getOldStatus() == null
+                                      ? "inactive"
+                                      : c.isRemoved() ? "active" : c.getOldStatus())
+                              .newValue(
+                                  c.isRemoved()
+                                      ? "inactive"
+                                      : c.getOldStatus() == null ? "active" : c.getNewStatus())
+                              .changedDate(now)
+                              .build())
+                  .toList());
+
+          handle
+              .createUpdate(
+                  """
+                  update site set inventory_last_updated = now(), onboarded = true
+                  where id = :siteId
+                    and (not onboarded or inventory_last_updated < now() - interval '1 minute')
+                  """)
+              .bind("siteId", siteId)
+              .execute();
+          return result.applied(applied).build();
+        });
+  }
+
+  /** Returns the items at a site and their status, sorted by name. */
+  // @VisibleForTesting
+  static List<ItemChange> fetchCurrentInventory(Jdbi jdbi, long siteId) {
+    return jdbi.withHandle(handle -> fetchCurrentInventory(handle, siteId));
+  }
+
+  private static List<ItemChange> fetchCurrentInventory(Handle handle, long siteId) {
+    String query =
+        """
+        select i.name item_name, true active, stat.name item_status
+        from site_item si
+        join item i on i.id = si.item_id
+        join item_status stat on stat.id = si.item_status_id
+        where si.site_id = :siteId
+        order by lower(i.name)
+        """;
+    return handle.createQuery(query).bind("siteId", siteId).mapToBean(ItemChange.class).list();
+  }
+
+  /**
+   * Returns item id -> current status of the item at the site, for each of the requested items that
+   * are at the site. Site item rows are locked until the transaction ends.
+   */
+  private static Map<Long, CurrentItem> fetchCurrentItems(
+      Handle handle,
+      ReferenceTables referenceTables,
+      long siteId,
+      Collection<ItemCatalog.Item> items) {
+    String query =
+        """
+        select
+          si.item_id itemId,
+          si.item_status_id itemStatusId,
+          si.wss_id wssId
+        from site_item si
+        where si.site_id = :siteId and si.item_id = any(:itemIds)
+        for update
+        """;
+    Map<Long, CurrentItem> current = new HashMap<>();
+    handle
+        .createQuery(query)
+        .bind("siteId", siteId)
+        .bindArray("itemIds", Long.class, items.stream().map(ItemCatalog.Item::getId).toList())
+        .mapToBean(CurrentItem.class)
+        .forEach(
+            item -> {
+              item.setItemStatus(referenceTables.itemStatusName(item.getItemStatusId()));
+              current.put(item.getItemId(), item);
+            });
+    return current;
+  }
+
+  private static List<Long> itemIds(List<AppliedChange> changes) {
+    return changes.stream().map(AppliedChange::getItemId).toList();
+  }
+
+  private static List<Long> newStatusIds(
+      ReferenceTables referenceTables, List<AppliedChange> changes) {
+    return changes.stream()
+        .map(change -> referenceTables.itemStatusId(change.getNewStatus()))
+        .toList();
+  }
 }
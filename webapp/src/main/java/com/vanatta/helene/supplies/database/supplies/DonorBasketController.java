@@ -0,0 +1,80 @@
+package com.vanatta.helene.supplies.database.supplies;
+
+import com.vanatta.helene.supplies.database.supplies.site.details.NeedsMatchingIndex;
+import com.vanatta.helene.supplies.database.supplies.site.details.NeedsMatchingIndex.DonorBasketMatch;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Value;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Lets a donor list the items they have and find the sites that need them, in one request rather
+ * than a supply search per item. Answered from {@link NeedsMatchingIndex}.
+ */
+@RestController
+@AllArgsConstructor
+public class DonorBasketController {
+  public static final String PATH_DONOR_BASKET = "/supplies/donor-basket";
+
+  /** Upper bound on items per request, well above the number of items we track. */
+  static final int MAX_ITEMS = 500;
+
+  private final NeedsMatchingIndex needsMatchingIndex;
+
+  @Data
+  @Builder
+  @AllArgsConstructor
+  @NoArgsConstructor
+  public static class DonorBasketRequest {
+    @Builder.Default List<String> items = new ArrayList<>();
+
+    /** Counties encoded as "COUNTY,STATE", eg: "Watauga,NC". */
+    @Builder.Default List<String> counties = new ArrayList<>();
+  }
+
+  @Value
+  @Builder
+  public static class DonorBasketResponse {
+    int resultCount;
+    List<DonorBasketMatch> results;
+  }
+
+  /**
+   * Returns active, publicly visible sites that need any of the requested items, sites that need
+   * the most of them first.
+   */
+  @CrossOrigin
+  @PostMapping(PATH_DONOR_BASKET)
+  public DonorBasketResponse donorBasket(@RequestBody DonorBasketRequest request) {
+    if (request.getItems() == null || request.getItems().isEmpty()) {
+      throw new IllegalArgumentException("No items requested");
+    }
+    if (request.getItems().size() > MAX_ITEMS) {
+      throw new IllegalArgumentException("Too many items requested: " + request.getItems().size());
+    }
+    List<String> countyKeys =
+        request.getCounties() == null
+            ? List.of()
+            : request.getCounties().stream().map(DonorBasketController::countyKey).toList();
+
+    List<DonorBasketMatch> results =
+        needsMatchingIndex.findSitesNeedingItems(request.getItems(), countyKeys);
+    return DonorBasketResponse.builder().resultCount(results.size()).results(results).build();
+  }
+
+  private static String countyKey(String countyAndState) {
+    String[] parts = countyAndState == null ? new String[0] : countyAndState.split(",");
+    if (parts.length != 2 || parts[0].isBlank() || parts[1].isBlank()) {
+      throw new IllegalArgumentException(
+          "County must be encoded as 'COUNTY,STATE'; Illegal value: " + countyAndState);
+    }
+    return NeedsMatchingIndex.countyKey(parts[0].trim(), parts[1].trim());
+  }
+}
@@ -0,0 +1,46 @@
+package com.vanatta.helene.supplies.database.supplies.filters;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * In memory copy of the filter data (site, county and item lists), one per {@code
+ * AuthenticatedMode}. The filter data endpoint is embedded by partner sites and is requested on
+ * every supplies page load, while the lists only change when a site or item is added or changed.
+ *
+ * <p>Each copy carries the version it was loaded at. Controllers that add a site or item, or change
+ * a site name, county, active or publicly visible flag call {@link #invalidate()}, which bumps the
+ * version; the next read sees its copy is out of date and loads it again.
+ */
+public class FilterDataCache {
+
+  private final Jdbi jdbi;
+  private final AtomicLong version = new AtomicLong();
+  private final Map<AuthenticatedMode, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+  private record Snapshot(long version, FilterDataResponse filterData) {}
+
+  /** The filter data is loaded on first read. */
+  public FilterDataCache(Jdbi jdbi) {
+    this.jdbi = jdbi;
+  }
+
+  public FilterDataResponse filterData(AuthenticatedMode authenticatedMode) {
+    Snapshot current = snapshots.get(authenticatedMode);
+    long currentVersion = version.get();
+    if (current == null || current.version() != currentVersion) {
+      // version is read before loading, a change made while loading is picked up by the next read
+      current =
+          new Snapshot(currentVersion, FilterDataDao.fetchFilterData(jdbi, authenticatedMode));
+      snapshots.put(authenticatedMode, current);
+    }
+    return current.filterData();
+  }
+
+  /** Marks the filter data as out of date, to be called after a site or item is changed. */
+  public void invalidate() {
+    version.incrementAndGet();
+  }
+}
@@ -0,0 +1,14 @@
+package com.vanatta.helene.supplies.database.supplies.filters;
+
+import org.jdbi.v3.core.Jdbi;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class FilterDataConfiguration {
+
+  @Bean
+  FilterDataCache filterDataCache(Jdbi jdbi) {
+    return new FilterDataCache(jdbi);
+  }
+}
@@ -1,18 +1,17 @@
 package com.vanatta.helene.supplies.database.supplies.filters;
 
+import java.util.ArrayList;
 import java.util.List;
 import org.jdbi.v3.core.Jdbi;
 
 public class FilterDataDao {
-  public static List<String> getAllItems(Jdbi jdbi) {
-    String query =
-        """
-          select name from item order by lower(name)
-        """;
-    return jdbi.withHandle(handle -> handle.createQuery(query).mapTo(String.class).list());
-  }
 
-  public static List<String> getAllActiveSites(Jdbi jdbi, AuthenticatedMode authenticatedMode) {
+  /**
+   * Fetches the site, county and item lists with one query. Sites are the active sites, counties
+   * are the counties that have a site; both only include publicly visible sites unless
+   * authenticated.
+   */
+  public static FilterDataResponse fetchFilterData(Jdbi jdbi, AuthenticatedMode authenticatedMode) {
     String authenticatedFilter =
         authenticatedMode == AuthenticatedMode.AUTHENTICATED
             ? ""
@@ -21,13 +20,41 @@ public class FilterDataDao {
     String query =
         String.format(
             """
-        select site.name
-        from site
-        where site.active = true %s
-        order by lower(site.name)
-        """,
-            authenticatedFilter);
+            select 'site' kind, site.name, lower(site.name) sort_key
+            from site
+            where site.active = true %s
+            union all
+            select 'county', c.name, c.name
+            from county c
+            where exists (select 1 from site where site.county_id = c.id %s)
+            union all
+            select 'item', item.name, lower(item.name)
+            from item
+            order by kind, sort_key
+            """,
+            authenticatedFilter, authenticatedFilter);
 
-    return jdbi.withHandle(handle -> handle.createQuery(query).mapTo(String.class).list());
+    List<String> sites = new ArrayList<>();
+    List<String> counties = new ArrayList<>();
+    List<String> items = new ArrayList<>();
+    jdbi.useHandle(
+        handle ->
+            handle
+                .createQuery(query)
+                .mapToMap(String.class)
+                .forEach(
+                    row -> {
+                      String name = row.get("name");
+                      switch (row.get("kind")) {
+                        case "site" -> sites.add(name);
+                        case "county" -> counties.add(name);
+                        default -> items.add(name);
+                      }
+                    }));
+    return FilterDataResponse.builder()
+        .sites(List.copyOf(sites))
+        .counties(List.copyOf(counties))
+        .items(List.copyOf(items))
+        .build();
   }
 }
@@ -0,0 +1,25 @@
+package com.vanatta.helene.supplies.database.supplies.site.details;
+
+import com.vanatta.helene.supplies.database.data.CountyAdjacencyGraph;
+import org.jdbi.v3.core.Jdbi;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class NeedsMatchingConfiguration {
+
+  @Bean
+  CountyAdjacencyGraph countyAdjacencyGraph(Jdbi jdbi) {
+    return CountyAdjacencyGraph.load(jdbi);
+  }
+
+  @Bean
+  NeedsMatchingIndex needsMatchingIndex(Jdbi jdbi, CountyAdjacencyGraph countyAdjacencyGraph) {
+    return new NeedsMatchingIndex(jdbi, countyAdjacencyGraph);
+  }
+
+  @Bean
+  SiteDetailPageCache siteDetailPageCache() {
+    return new SiteDetailPageCache();
+  }
+}
@@ -1,6 +1,8 @@
 package com.vanatta.helene.supplies.database.supplies.site.details;
 
+import com.vanatta.helene.supplies.database.data.CountyAdjacencyGraph;
 import com.vanatta.helene.supplies.database.data.ItemStatus;
+import com.vanatta.helene.supplies.database.data.SiteIdentifiers;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -15,12 +17,19 @@ import org.jdbi.v3.core.Jdbi;
 
 public class NeedsMatchingDao {
 
+  private static final Comparator<NeedsMatchingResult.Item> ITEM_NAME_ORDER =
+      Comparator.comparing(NeedsMatchingResult.Item::getName);
+
   /**
    * Groups up database results, what is many rows, to rows aggregated by site. The difference
    * between rows is the item listing and the item urgency.
+   *
+   * <p>Sites that can supply the most items are listed first, sites with the same number of items
+   * are listed nearest first by county hops.
    */
   // @VisibleForTesting
-  static List<NeedsMatchingResult> aggregate(List<NeedsMatchingDbResult> dbResult) {
+  static List<NeedsMatchingResult> aggregate(
+      List<NeedsMatchingDbResult> dbResult, CountyAdjacencyGraph countyAdjacencyGraph) {
     Map<Long, NeedsMatchingResult> needsMatchingResult = new HashMap<>();
 
     dbResult.forEach(
@@ -37,6 +46,10 @@ public class NeedsMatchingDao {
                             .city(needsMatchingDbResult.city)
                             .county(needsMatchingDbResult.county)
                             .state(needsMatchingDbResult.state)
+                            .countyHops(
+                                countyAdjacencyGraph.hops(
+                                    needsMatchingDbResult.needyCountyId,
+                                    needsMatchingDbResult.countyId))
                             .build())
                 .addItem(
                     NeedsMatchingResult.Item.builder()
@@ -45,10 +58,14 @@ public class NeedsMatchingDao {
                             ItemStatus.fromTextValue(needsMatchingDbResult.urgency).getCssClass())
                         .build()));
 
+    // items are sorted once here, rather than every time they are read
+    needsMatchingResult.values().forEach(result -> result.items.sort(ITEM_NAME_ORDER));
+
     return needsMatchingResult.values().stream()
         .sorted(
             Comparator.comparingInt(NeedsMatchingResult::getItemCount)
                 .reversed()
+                .thenComparingInt(NeedsMatchingResult::getCountyHops)
                 .thenComparing(NeedsMatchingResult::getSiteName))
         .toList();
   }
@@ -70,11 +87,11 @@ public class NeedsMatchingDao {
     String city;
     String county;
     String state;
-    @Builder.Default List<Item> items = new ArrayList<>();
 
-    List<Item> getItems() {
-      return items.stream().sorted(Comparator.comparing(i -> i.name)).toList();
-    }
+    /** Number of counties from the site with the needs, see {@link CountyAdjacencyGraph#hops}. */
+    int countyHops;
+
+    @Builder.Default List<Item> items = new ArrayList<>();
 
     void addItem(Item item) {
       this.items.add(item);
@@ -83,6 +100,13 @@ public class NeedsMatchingDao {
     int getItemCount() {
       return items.size();
     }
+
+    String getCountiesAway() {
+      if (countyHops == 0) {
+        return "same county";
+      }
+      return countyHops == CountyAdjacencyGraph.UNREACHABLE ? "" : String.valueOf(countyHops);
+    }
   }
 
   @Data
@@ -96,26 +120,27 @@ public class NeedsMatchingDao {
     String city;
     String county;
     String state;
+    long countyId;
+    long needyCountyId;
     String itemName;
     String urgency;
     int itemCount;
   }
 
-  public static List<NeedsMatchingResult> execute(Jdbi jdbi, long airtableId) {
-    String query = "select id from site where airtable_id = :airtableId";
+  public static List<NeedsMatchingResult> execute(
+      Jdbi jdbi,
+      SiteIdentifiers siteIdentifiers,
+      CountyAdjacencyGraph countyAdjacencyGraph,
+      long airtableId) {
     long dbId =
-        jdbi.withHandle(
-                handle ->
-                    handle
-                        .createQuery(query)
-                        .bind("airtableId", airtableId)
-                        .mapTo(Long.class)
-                        .findOne())
+        siteIdentifiers
+            .siteIdByAirtableId(airtableId)
             .orElseThrow(() -> new IllegalArgumentException("Invalid ID: " + airtableId));
-    return executeByInternalId(jdbi, dbId);
+    return executeByInternalId(jdbi, countyAdjacencyGraph, dbId);
   }
 
-  public static List<NeedsMatchingResult> executeByInternalId(Jdbi jdbi, long dbId) {
+  public static List<NeedsMatchingResult> executeByInternalId(
+      Jdbi jdbi, CountyAdjacencyGraph countyAdjacencyGraph, long dbId) {
     String query =
         """
          WITH needy_items AS (
@@ -142,6 +167,7 @@ public class NeedsMatchingDao {
                 s.city as city,
                 c.name as county,
                 c.state as state,
+                c.id as countyId,
                 i.name AS itemName,
                 ni.urgency AS urgency
             FROM
@@ -163,6 +189,8 @@ public class NeedsMatchingDao {
           A.city,
           county,
           state,
+          countyId,
+          (select county_id from site where id = :id) needyCountyId,
           itemName,
           urgency
         from need_match A
@@ -177,6 +205,6 @@ public class NeedsMatchingDao {
                     .mapToBean(NeedsMatchingDbResult.class)
                     .list());
 
-    return aggregate(dbResults);
+    return aggregate(dbResults, countyAdjacencyGraph);
   }
 }
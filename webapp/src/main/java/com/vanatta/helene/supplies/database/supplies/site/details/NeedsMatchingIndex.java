@@ -0,0 +1,769 @@
+package com.vanatta.helene.supplies.database.supplies.site.details;
+
+import com.vanatta.helene.supplies.database.data.CountyAdjacencyGraph;
+import com.vanatta.helene.supplies.database.data.ItemStatus;
+import com.vanatta.helene.supplies.database.data.SiteType;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * In memory version of {@link NeedsMatchingDao}. Keeps two inverted indexes, item -> sites that
+ * have a surplus of the item and item -> sites that need the item. Finding which sites can supply
+ * the needs of a site is then a lookup per needed item rather than a query.
+ *
+ * <p>A surplus is an item in oversupply, or for a supply hub, an item that is available. Only
+ * active sites are counted as having a surplus.
+ *
+ * <p>Matches with the same number of items are ranked by how many counties apart the sites are,
+ * using {@link CountyAdjacencyGraph}.
+ *
+ * <p>The index is loaded in full on startup. Any write to a site's inventory, type, address, or its
+ * active, publicly visible or accepting donations flags needs to be followed by a call to {@link
+ * #refreshSite(long)}. A refresh reads the site and updates the index while holding a lock for the
+ * site, so concurrent refreshes of the same site (eg: a webhook and an inventory edit) are applied
+ * one after the other and the last one applied has read the latest data.
+ */
+@Slf4j
+public class NeedsMatchingIndex {
+
+  private final Jdbi jdbi;
+  private final CountyAdjacencyGraph countyAdjacencyGraph;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private static final int SITE_LOCK_STRIPES = 64;
+
+  /** Held across reading and applying a site refresh, each lock covers a group of sites. */
+  private final Lock[] siteLocks = new Lock[SITE_LOCK_STRIPES];
+
+  private final Map<Long, SiteEntry> sites = new HashMap<>();
+  private final Map<Long, Long> siteIdByWssId = new HashMap<>();
+  private final Map<Long, String> itemNames = new HashMap<>();
+  private final Map<Long, Set<Long>> surplusSitesByItem = new HashMap<>();
+  private final Map<String, Long> itemIdsByName = new HashMap<>();
+
+  /**
+   * Sites needing an item are kept as bit sets, each site is given a slot (bit index) the first
+   * time it is seen. Scoring many items against every site is then a few bit set operations.
+   */
+  private final Map<Long, BitSet> needySitesByItem = new HashMap<>();
+
+  /** Active sites, by slot. */
+  private final BitSet activeSites = new BitSet();
+
+  /** Sites that donors can see, active and publicly visible, by slot. */
+  private final BitSet donorVisibleSites = new BitSet();
+
+  private final Map<Long, Integer> siteSlots = new HashMap<>();
+  private final List<Long> slotSiteIds = new ArrayList<>();
+
+  @lombok.Value
+  static class SiteEntry {
+    long siteId;
+    long wssId;
+    String siteName;
+    String siteAddress;
+    String city;
+    String county;
+    String state;
+    long countyId;
+    boolean active;
+    boolean publiclyVisible;
+    boolean acceptingDonations;
+    boolean supplyHub;
+
+    /** item id -> item status */
+    Map<Long, ItemStatus> items;
+
+    boolean isSurplus(ItemStatus status) {
+      return active && canSupply(status);
+    }
+
+    /** A supply hub can supply anything it has, a distribution center only its oversupply. */
+    boolean canSupply(ItemStatus status) {
+      return status == ItemStatus.OVERSUPPLY || (supplyHub && status == ItemStatus.AVAILABLE);
+    }
+  }
+
+  public NeedsMatchingIndex(Jdbi jdbi) {
+    this(jdbi, CountyAdjacencyGraph.load(jdbi));
+  }
+
+  public NeedsMatchingIndex(Jdbi jdbi, CountyAdjacencyGraph countyAdjacencyGraph) {
+    this.jdbi = jdbi;
+    this.countyAdjacencyGraph = countyAdjacencyGraph;
+    for (int i = 0; i < siteLocks.length; i++) {
+      siteLocks[i] = new ReentrantLock();
+    }
+    reload();
+  }
+
+  /** Rebuilds the whole index from the database. */
+  public void reload() {
+    List<SiteItemRow> rows = fetchSiteItems(jdbi, null);
+    lock.writeLock().lock();
+    try {
+      sites.clear();
+      siteIdByWssId.clear();
+      itemNames.clear();
+      itemIdsByName.clear();
+      surplusSitesByItem.clear();
+      needySitesByItem.clear();
+      activeSites.clear();
+      donorVisibleSites.clear();
+      siteSlots.clear();
+      slotSiteIds.clear();
+      toSiteEntries(rows).forEach(this::addSite);
+    } finally {
+      lock.writeLock().unlock();
+    }
+    log.info("Needs matching index loaded, sites: {}, items: {}", sites.size(), itemNames.size());
+  }
+
+  /** Re-reads a single site and its inventory, replacing what was previously indexed for it. */
+  public void refreshSite(long siteId) {
+    Lock siteLock = siteLock(siteId);
+    siteLock.lock();
+    try {
+      List<SiteItemRow> rows = fetchSiteItems(jdbi, siteId);
+      lock.writeLock().lock();
+      try {
+        removeSite(siteId);
+        toSiteEntries(rows).forEach(this::addSite);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    } finally {
+      siteLock.unlock();
+    }
+  }
+
+  /**
+   * Re-reads the status of one item at a site. Only the postings of that item are changed, use this
+   * after an item is added to, removed from, or changes status at a site.
+   */
+  public void refreshSiteItem(long siteId, String itemName) {
+    Lock siteLock = siteLock(siteId);
+    siteLock.lock();
+    try {
+      SiteItemRow row = fetchSiteItem(jdbi, siteId, itemName).orElse(null);
+      if (row == null) {
+        log.warn("Item not found while refreshing needs matching, item name: {}", itemName);
+        return;
+      }
+
+      boolean siteIndexed;
+      lock.writeLock().lock();
+      try {
+        SiteEntry site = sites.get(siteId);
+        siteIndexed = site != null;
+        if (siteIndexed) {
+          long itemId = row.getItemId();
+          putItemName(itemId, row.getItemName());
+          removePostings(siteId, itemId);
+          if (row.getItemStatus() == null) {
+            site.getItems().remove(itemId);
+          } else {
+            ItemStatus status = ItemStatus.fromTextValue(row.getItemStatus());
+            site.getItems().put(itemId, status);
+            addPosting(site, itemId, status);
+          }
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+
+      // a site we have not seen yet (eg: newly added), index all of it, the site lock is reentrant
+      if (!siteIndexed) {
+        refreshSite(siteId);
+      }
+    } finally {
+      siteLock.unlock();
+    }
+  }
+
+  private Lock siteLock(long siteId) {
+    return siteLocks[Math.floorMod(Long.hashCode(siteId), siteLocks.length)];
+  }
+
+  /**
+   * Returns names of items that the 'from' site can supply and that the 'to' site needs, sorted by
+   * name. A supply hub can supply anything it has available or in oversupply, a distribution center
+   * can only supply its oversupply. The 'from' site does not need to be active, the delivery is
+   * already being dispatched.
+   */
+  public List<String> findItemsToSend(long fromSiteWssId, long toSiteWssId) {
+    lock.readLock().lock();
+    try {
+      SiteEntry fromSite = sites.get(siteIdByWssId.get(fromSiteWssId));
+      SiteEntry toSite = sites.get(siteIdByWssId.get(toSiteWssId));
+      if (fromSite == null || toSite == null) {
+        return List.of();
+      }
+      return toSite.getItems().entrySet().stream()
+          .filter(need -> need.getValue().isNeeded())
+          .filter(
+              need -> {
+                ItemStatus fromStatus = fromSite.getItems().get(need.getKey());
+                return fromStatus != null && fromSite.canSupply(fromStatus);
+              })
+          .map(need -> itemNames.get(need.getKey()))
+          .sorted()
+          .toList();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns sites that have a surplus of items that the given site needs, same results and ordering
+   * as {@link NeedsMatchingDao#executeByInternalId}.
+   */
+  public List<NeedsMatchingDao.NeedsMatchingResult> findMatches(long siteId) {
+    List<NeedsMatchingDao.NeedsMatchingDbResult> matches = new ArrayList<>();
+    lock.readLock().lock();
+    try {
+      SiteEntry needySite = sites.get(siteId);
+      if (needySite == null) {
+        return List.of();
+      }
+      needySite
+          .getItems()
+          .forEach(
+              (itemId, status) -> {
+                if (!status.isNeeded()) {
+                  return;
+                }
+                for (long supplySiteId : surplusSitesByItem.getOrDefault(itemId, Set.of())) {
+                  SiteEntry supplySite = sites.get(supplySiteId);
+                  matches.add(
+                      NeedsMatchingDao.NeedsMatchingDbResult.builder()
+                          .siteId(supplySite.getSiteId())
+                          .siteName(supplySite.getSiteName())
+                          .siteAddress(supplySite.getSiteAddress())
+                          .city(supplySite.getCity())
+                          .county(supplySite.getCounty())
+                          .state(supplySite.getState())
+                          .countyId(supplySite.getCountyId())
+                          .needyCountyId(needySite.getCountyId())
+                          .itemName(itemNames.get(itemId))
+                          .urgency(status.getText())
+                          .build());
+                }
+              });
+    } finally {
+      lock.readLock().unlock();
+    }
+    return NeedsMatchingDao.aggregate(matches, countyAdjacencyGraph);
+  }
+
+  /** Urgently needed items count double when ranking where a site's surplus can go. */
+  static final int URGENTLY_NEEDED_WEIGHT = 2;
+
+  static final int NEEDED_WEIGHT = 1;
+
+  /**
+   * The reverse of {@link #findMatches(long)}, returns active sites that need items that the given
+   * site can supply (its oversupply, or for a supply hub anything available). Ranked by the number
+   * of items needed, urgently needed items weighted by {@link #URGENTLY_NEEDED_WEIGHT}, then
+   * nearest first, then by name. Listed items are those the given site can send, styled by how
+   * urgently the needy site needs them.
+   */
+  public List<NeedsMatchingDao.NeedsMatchingResult> findNeedySites(long siteId) {
+    lock.readLock().lock();
+    try {
+      SiteEntry supplySite = sites.get(siteId);
+      if (supplySite == null) {
+        return List.of();
+      }
+
+      int[] scores = new int[slotSiteIds.size()];
+      Map<Integer, List<Long>> itemsBySlot = new HashMap<>();
+      supplySite
+          .getItems()
+          .forEach(
+              (itemId, status) -> {
+                BitSet needySites = needySitesByItem.get(itemId);
+                if (!supplySite.canSupply(status) || needySites == null) {
+                  return;
+                }
+                BitSet hits = (BitSet) needySites.clone();
+                hits.and(activeSites);
+                hits.stream()
+                    .forEach(
+                        slot -> {
+                          ItemStatus needed =
+                              sites.get(slotSiteIds.get(slot)).getItems().get(itemId);
+                          scores[slot] +=
+                              needed == ItemStatus.URGENTLY_NEEDED
+                                  ? URGENTLY_NEEDED_WEIGHT
+                                  : NEEDED_WEIGHT;
+                          itemsBySlot.computeIfAbsent(slot, _ -> new ArrayList<>()).add(itemId);
+                        });
+              });
+
+      Comparator<Integer> ranking =
+          Comparator.<Integer>comparingInt(slot -> scores[slot])
+              .reversed()
+              .thenComparingInt(
+                  slot ->
+                      countyAdjacencyGraph.hops(
+                          supplySite.getCountyId(), sites.get(slotSiteIds.get(slot)).getCountyId()))
+              .thenComparing(slot -> sites.get(slotSiteIds.get(slot)).getSiteName());
+
+      return itemsBySlot.keySet().stream()
+          .sorted(ranking)
+          .map(
+              slot ->
+                  toNeedySiteResult(
+                      supplySite, sites.get(slotSiteIds.get(slot)), itemsBySlot.get(slot)))
+          .toList();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Must be called with the read lock held. */
+  private NeedsMatchingDao.NeedsMatchingResult toNeedySiteResult(
+      SiteEntry supplySite, SiteEntry needySite, List<Long> itemIds) {
+    return NeedsMatchingDao.NeedsMatchingResult.builder()
+        .siteName(needySite.getSiteName())
+        .siteLink(SiteDetailController.buildSiteLink(needySite.getSiteId()))
+        .siteAddress(needySite.getSiteAddress())
+        .city(needySite.getCity())
+        .county(needySite.getCounty())
+        .state(needySite.getState())
+        .countyHops(countyAdjacencyGraph.hops(supplySite.getCountyId(), needySite.getCountyId()))
+        .items(
+            itemIds.stream()
+                .map(
+                    itemId ->
+                        NeedsMatchingDao.NeedsMatchingResult.Item.builder()
+                            .name(itemNames.get(itemId))
+                            .urgencyCssClass(needySite.getItems().get(itemId).getCssClass())
+                            .build())
+                .sorted(Comparator.comparing(NeedsMatchingDao.NeedsMatchingResult.Item::getName))
+                .toList())
+        .build();
+  }
+
+  /** A site that donors can see, that needs one or more of the items a donor has. */
+  @lombok.Value
+  @Builder
+  public static class DonorBasketMatch {
+    long siteId;
+    String siteName;
+    String siteLink;
+    String county;
+    String state;
+    boolean acceptingDonations;
+    List<String> urgentlyNeededItems;
+    List<String> neededItems;
+
+    public int getMatchCount() {
+      return urgentlyNeededItems.size() + neededItems.size();
+    }
+  }
+
+  private static final Comparator<DonorBasketMatch> DONOR_BASKET_RANKING =
+      Comparator.comparingInt(DonorBasketMatch::getMatchCount)
+          .reversed()
+          .thenComparing(m -> m.getUrgentlyNeededItems().size(), Comparator.reverseOrder())
+          .thenComparing(DonorBasketMatch::getSiteName);
+
+  /**
+   * Finds active, publicly visible sites that need any of the given items, optionally only sites in
+   * the given counties (empty for all counties, see {@link #countyKey}). Sites needing the most of
+   * the items are listed first, then sites with the most urgent needs, then by name. Unknown item
+   * names are ignored.
+   *
+   * <p>The sites needing any of the items are found by combining the per item bit sets of sites
+   * that need the item; the items each of those sites needs are then read from the site's entry.
+   */
+  public List<DonorBasketMatch> findSitesNeedingItems(
+      Collection<String> itemNames, Collection<String> countyKeys) {
+    Set<String> countyFilter = new HashSet<>(countyKeys);
+    List<DonorBasketMatch> results = new ArrayList<>();
+    lock.readLock().lock();
+    try {
+      List<Long> itemIds =
+          itemNames.stream().distinct().map(itemIdsByName::get).filter(Objects::nonNull).toList();
+
+      BitSet matchedSites = new BitSet();
+      for (long itemId : itemIds) {
+        BitSet needySites = needySitesByItem.get(itemId);
+        if (needySites != null) {
+          matchedSites.or(needySites);
+        }
+      }
+      matchedSites.and(donorVisibleSites);
+
+      matchedSites.stream()
+          .mapToObj(slot -> sites.get(slotSiteIds.get(slot)))
+          .filter(
+              site ->
+                  countyFilter.isEmpty()
+                      || countyFilter.contains(countyKey(site.getCounty(), site.getState())))
+          .forEach(site -> results.add(toDonorBasketMatch(site, itemIds)));
+    } finally {
+      lock.readLock().unlock();
+    }
+    return results.stream().sorted(DONOR_BASKET_RANKING).toList();
+  }
+
+  /**
+   * Identifies a county in a county filter, county names are only unique within a state. Encoded as
+   * "COUNTY,STATE", the same as site county values, eg: "Watauga,NC".
+   */
+  public static String countyKey(String county, String state) {
+    return county + "," + state;
+  }
+
+  /** Must be called with the read lock held. */
+  private DonorBasketMatch toDonorBasketMatch(SiteEntry site, List<Long> itemIds) {
+    List<String> urgentlyNeeded = new ArrayList<>();
+    List<String> needed = new ArrayList<>();
+    for (long itemId : itemIds) {
+      ItemStatus status = site.getItems().get(itemId);
+      if (status == ItemStatus.URGENTLY_NEEDED) {
+        urgentlyNeeded.add(itemNames.get(itemId));
+      } else if (status == ItemStatus.NEEDED) {
+        needed.add(itemNames.get(itemId));
+      }
+    }
+    urgentlyNeeded.sort(Comparator.naturalOrder());
+    needed.sort(Comparator.naturalOrder());
+    return DonorBasketMatch.builder()
+        .siteId(site.getSiteId())
+        .siteName(site.getSiteName())
+        .siteLink(SiteDetailController.buildSiteLink(site.getSiteId()))
+        .county(site.getCounty())
+        .state(site.getState())
+        .acceptingDonations(site.isAcceptingDonations())
+        .urgentlyNeededItems(urgentlyNeeded)
+        .neededItems(needed)
+        .build();
+  }
+
+  /** A site that can supply one or more items that are needed by another site. */
+  @lombok.Value
+  @Builder
+  public static class SiteMatch {
+    long supplySiteId;
+    String supplySiteName;
+    String supplySiteCounty;
+    long needySiteId;
+    String needySiteName;
+    String needySiteCounty;
+    int countyHops;
+    List<String> items;
+    int urgentlyNeededCount;
+    int neededCount;
+  }
+
+  /**
+   * Same ranking as {@link NeedsMatchingDao#aggregate}, most items first, then nearest, then by
+   * site name.
+   */
+  private static final Comparator<SiteMatch> MATCH_RANKING =
+      Comparator.<SiteMatch>comparingInt(m -> m.getItems().size())
+          .reversed()
+          .thenComparingInt(SiteMatch::getCountyHops)
+          .thenComparing(SiteMatch::getSupplySiteName);
+
+  /**
+   * Computes matches for every active site that has needs. The work is split by county of the needy
+   * site, each county is a task run on the given pool. Results are passed to 'countyResults' one
+   * county at a time, in county order, as soon as each county is computed. Within a county, results
+   * are grouped by needy site (ordered by name) and ranked per needy site like {@link
+   * NeedsMatchingDao#aggregate}.
+   */
+  public void findAllMatches(ForkJoinPool pool, Consumer<List<SiteMatch>> countyResults) {
+    Map<String, List<Long>> needySitesByCounty = new TreeMap<>();
+    lock.readLock().lock();
+    try {
+      sites.values().stream()
+          .filter(SiteEntry::isActive)
+          .filter(site -> site.getItems().values().stream().anyMatch(ItemStatus::isNeeded))
+          .sorted(Comparator.comparing(SiteEntry::getSiteName))
+          .forEach(
+              site ->
+                  needySitesByCounty
+                      .computeIfAbsent(
+                          site.getState() + ", " + site.getCounty(), _ -> new ArrayList<>())
+                      .add(site.getSiteId()));
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    List<ForkJoinTask<List<SiteMatch>>> tasks =
+        needySitesByCounty.values().stream()
+            .map(siteIds -> pool.submit(() -> findMatchesForSites(siteIds)))
+            .toList();
+    tasks.forEach(task -> countyResults.accept(task.join()));
+  }
+
+  private List<SiteMatch> findMatchesForSites(List<Long> needySiteIds) {
+    List<SiteMatch> results = new ArrayList<>();
+    lock.readLock().lock();
+    try {
+      for (long needySiteId : needySiteIds) {
+        SiteEntry needySite = sites.get(needySiteId);
+        if (needySite != null) {
+          results.addAll(findMatchesForSite(needySite));
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return results;
+  }
+
+  /** Must be called with the read lock held. */
+  private List<SiteMatch> findMatchesForSite(SiteEntry needySite) {
+    Map<Long, List<Long>> matchedItemsBySupplySite = new HashMap<>();
+    needySite
+        .getItems()
+        .forEach(
+            (itemId, status) -> {
+              if (status.isNeeded()) {
+                surplusSitesByItem
+                    .getOrDefault(itemId, Set.of())
+                    .forEach(
+                        supplySiteId ->
+                            matchedItemsBySupplySite
+                                .computeIfAbsent(supplySiteId, _ -> new ArrayList<>())
+                                .add(itemId));
+              }
+            });
+
+    return matchedItemsBySupplySite.entrySet().stream()
+        .map(
+            entry -> {
+              SiteEntry supplySite = sites.get(entry.getKey());
+              List<Long> itemIds = entry.getValue();
+              int urgentCount =
+                  (int)
+                      itemIds.stream()
+                          .filter(
+                              itemId ->
+                                  needySite.getItems().get(itemId) == ItemStatus.URGENTLY_NEEDED)
+                          .count();
+              return SiteMatch.builder()
+                  .supplySiteId(supplySite.getSiteId())
+                  .supplySiteName(supplySite.getSiteName())
+                  .supplySiteCounty(supplySite.getCounty())
+                  .needySiteId(needySite.getSiteId())
+                  .needySiteName(needySite.getSiteName())
+                  .needySiteCounty(needySite.getCounty())
+                  .countyHops(
+                      countyAdjacencyGraph.hops(needySite.getCountyId(), supplySite.getCountyId()))
+                  .items(itemIds.stream().map(itemNames::get).sorted().toList())
+                  .urgentlyNeededCount(urgentCount)
+                  .neededCount(itemIds.size() - urgentCount)
+                  .build();
+            })
+        .sorted(MATCH_RANKING)
+        .toList();
+  }
+
+  /** Must be called with the write lock held. */
+  private void addSite(SiteEntry site) {
+    sites.put(site.getSiteId(), site);
+    siteIdByWssId.put(site.getWssId(), site.getSiteId());
+    if (site.isActive()) {
+      activeSites.set(slotOf(site.getSiteId()));
+    }
+    if (site.isActive() && site.isPubliclyVisible()) {
+      donorVisibleSites.set(slotOf(site.getSiteId()));
+    }
+    site.getItems().forEach((itemId, status) -> addPosting(site, itemId, status));
+  }
+
+  /** Must be called with the write lock held. */
+  private int slotOf(long siteId) {
+    return siteSlots.computeIfAbsent(
+        siteId,
+        _ -> {
+          slotSiteIds.add(siteId);
+          return slotSiteIds.size() - 1;
+        });
+  }
+
+  /** Must be called with the write lock held. */
+  private void putItemName(long itemId, String itemName) {
+    itemNames.put(itemId, itemName);
+    itemIdsByName.put(itemName, itemId);
+  }
+
+  /** Must be called with the write lock held. */
+  private void addPosting(SiteEntry site, long itemId, ItemStatus status) {
+    if (site.isSurplus(status)) {
+      surplusSitesByItem.computeIfAbsent(itemId, _ -> new HashSet<>()).add(site.getSiteId());
+    } else if (status.isNeeded()) {
+      needySitesByItem.computeIfAbsent(itemId, _ -> new BitSet()).set(slotOf(site.getSiteId()));
+    }
+  }
+
+  /** Must be called with the write lock held. */
+  private void removeSite(long siteId) {
+    SiteEntry previous = sites.remove(siteId);
+    if (previous == null) {
+      return;
+    }
+    siteIdByWssId.remove(previous.getWssId());
+    activeSites.clear(slotOf(siteId));
+    donorVisibleSites.clear(slotOf(siteId));
+    previous.getItems().keySet().forEach(itemId -> removePostings(siteId, itemId));
+  }
+
+  /** Must be called with the write lock held. */
+  private void removePostings(long siteId, long itemId) {
+    Set<Long> surplusSiteIds = surplusSitesByItem.get(itemId);
+    if (surplusSiteIds != null) {
+      surplusSiteIds.remove(siteId);
+      if (surplusSiteIds.isEmpty()) {
+        surplusSitesByItem.remove(itemId);
+      }
+    }
+    BitSet needySites = needySitesByItem.get(itemId);
+    if (needySites != null) {
+      needySites.clear(slotOf(siteId));
+      if (needySites.isEmpty()) {
+        needySitesByItem.remove(itemId);
+      }
+    }
+  }
+
+  /** Must be called with the write lock held, records item names as a side effect. */
+  private List<SiteEntry> toSiteEntries(List<SiteItemRow> rows) {
+    Map<Long, SiteEntry> entries = new HashMap<>();
+    for (SiteItemRow row : rows) {
+      SiteEntry entry =
+          entries.computeIfAbsent(
+              row.getSiteId(),
+              _ ->
+                  new SiteEntry(
+                      row.getSiteId(),
+                      row.getWssId(),
+                      row.getSiteName(),
+                      row.getSiteAddress(),
+                      row.getCity(),
+                      row.getCounty(),
+                      row.getState(),
+                      row.getCountyId(),
+                      row.isActive(),
+                      row.isPubliclyVisible(),
+                      row.isAcceptingDonations(),
+                      SiteType.SUPPLY_HUB.getText().equals(row.getSiteType()),
+                      new HashMap<>()));
+      if (row.getItemId() != null) {
+        putItemName(row.getItemId(), row.getItemName());
+        entry.getItems().put(row.getItemId(), ItemStatus.fromTextValue(row.getItemStatus()));
+      }
+    }
+    return new ArrayList<>(entries.values());
+  }
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class SiteItemRow {
+    long siteId;
+    long wssId;
+    String siteName;
+    String siteAddress;
+    String city;
+    String county;
+    String state;
+    long countyId;
+    boolean active;
+    boolean publiclyVisible;
+    boolean acceptingDonations;
+    String siteType;
+    Long itemId;
+    String itemName;
+    String itemStatus;
+  }
+
+  /** Fetches every site with its inventory, or just one site if a site id is given. */
+  private static List<SiteItemRow> fetchSiteItems(Jdbi jdbi, Long siteId) {
+    String query =
+        """
+        select
+          s.id siteId,
+          s.wss_id wssId,
+          s.name siteName,
+          s.address siteAddress,
+          s.city,
+          c.name county,
+          c.state,
+          c.id countyId,
+          s.active,
+          s.publicly_visible publiclyVisible,
+          s.accepting_donations acceptingDonations,
+          st.name siteType,
+          si.item_id itemId,
+          i.name itemName,
+          ist.name itemStatus
+        from site s
+        join county c on c.id = s.county_id
+        join site_type st on st.id = s.site_type_id
+        left join site_item si on si.site_id = s.id
+        left join item i on i.id = si.item_id
+        left join item_status ist on ist.id = si.item_status_id
+        where cast(:siteId as integer) is null or s.id = :siteId
+        """;
+    return jdbi.withHandle(
+        handle ->
+            handle.createQuery(query).bind("siteId", siteId).mapToBean(SiteItemRow.class).list());
+  }
+
+  /**
+   * Fetches an item and its status at a site, the status is null if the site does not have the
+   * item. Site columns are not populated. Empty if there is no such item.
+   */
+  private static Optional<SiteItemRow> fetchSiteItem(Jdbi jdbi, long siteId, String itemName) {
+    String query =
+        """
+        select
+          i.id itemId,
+          i.name itemName,
+          ist.name itemStatus
+        from item i
+        left join site_item si on si.item_id = i.id and si.site_id = :siteId
+        left join item_status ist on ist.id = si.item_status_id
+        where i.name = :itemName
+        """;
+    return jdbi.withHandle(
+        handle ->
+            handle
+                .createQuery(query)
+                .bind("siteId", siteId)
+                .bind("itemName", itemName)
+                .mapToBean(SiteItemRow.class)
+                .findOne());
+  }
+}
@@ -0,0 +1,64 @@
+package com.vanatta.helene.supplies.database.supplies.site.details;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Region wide needs matching report, every site that can supply every active site with needs. Lets
+ * dispatchers find matches without opening site detail pages one at a time.
+ *
+ * <p>Under '/manage' so that it requires login. The report is streamed as a JSON array, each county
+ * is written out as soon as it is computed.
+ */
+@Slf4j
+@RestController
+@AllArgsConstructor
+public class NeedsMatchingReportController {
+
+  static final String PATH_NEEDS_MATCHING_REPORT = "/manage/needs-matching-report";
+
+  private final NeedsMatchingIndex needsMatchingIndex;
+
+  @GetMapping(PATH_NEEDS_MATCHING_REPORT)
+  ResponseEntity<StreamingResponseBody> needsMatchingReport() {
+    return ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(
+            outputStream ->
+                writeReport(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)));
+  }
+
+  // @VisibleForTesting
+  void writeReport(Writer writer) throws IOException {
+    Gson gson = new Gson();
+    try (JsonWriter jsonWriter = new JsonWriter(writer)) {
+      jsonWriter.beginArray();
+      needsMatchingIndex.findAllMatches(
+          ForkJoinPool.commonPool(),
+          countyMatches -> {
+            try {
+              for (NeedsMatchingIndex.SiteMatch match : countyMatches) {
+                gson.toJson(match, NeedsMatchingIndex.SiteMatch.class, jsonWriter);
+              }
+              jsonWriter.flush();
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+      jsonWriter.endArray();
+    }
+  }
+}
@@ -1,25 +1,43 @@
 package com.vanatta.helene.supplies.database.supplies.site.details;
 
+import com.samskivert.mustache.Mustache;
 import com.vanatta.helene.supplies.database.auth.CookieAuthenticator;
-import com.vanatta.helene.supplies.database.delivery.Delivery;
+import com.vanatta.helene.supplies.database.data.SiteIdentifiers;
 import com.vanatta.helene.supplies.database.delivery.DeliveryDao;
 import com.vanatta.helene.supplies.database.manage.SiteContactController;
 import com.vanatta.helene.supplies.database.manage.inventory.InventoryController;
 import com.vanatta.helene.supplies.database.supplies.SuppliesController;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.jdbi.v3.core.Jdbi;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.View;
 
 @Controller
 @AllArgsConstructor
@@ -27,9 +45,48 @@ import org.springframework.web.servlet.ModelAndView;
 public class SiteDetailController {
 
   static final String PATH_SITE_DETAIL = "/supplies/site-detail";
+  static final String PATH_SITE_DELIVERIES = "/supplies/site-detail/deliveries";
+  static final String SITE_DETAIL_TEMPLATE = "supplies/site-detail";
+
+  /**
+   * Site detail lists deliveries without a date, upcoming deliveries and those from the last few
+   * days. Older deliveries are loaded a page at a time on request.
+   */
+  static final int DELIVERY_WINDOW_DAYS = 14;
+
+  static final int DELIVERY_PAGE_SIZE = 25;
+
+  /**
+   * Time from the start of a request that the secondary sections of the page (deliveries and needs
+   * matching) have to load. A section that is not loaded by then is left off the page.
+   */
+  static final Duration SECTION_DEADLINE = Duration.ofSeconds(3);
+
+  /**
+   * Loads the sections of the site detail page concurrently, one virtual thread per section, so the
+   * page takes as long as its slowest query instead of the sum of all of them.
+   */
+  private static final ExecutorService sectionLoader =
+      Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("site-detail-", 0).factory());
+
+  /**
+   * Sections that query the database (the delivery lists) run while holding one of these permits,
+   * across all page views. Kept below the connection pool size (see {@code JdbiConfiguration}) so
+   * that concurrent page views cannot take every connection away from the page's own query and the
+   * webhook workers. Under load a section may wait for a permit past the deadline, it is then left
+   * off the page.
+   */
+  static final int MAX_CONCURRENT_SECTION_QUERIES = 2;
+
+  // @VisibleForTesting
+  static final Semaphore sectionQueryPermits = new Semaphore(MAX_CONCURRENT_SECTION_QUERIES);
 
   private final Jdbi jdbi;
+  private final SiteIdentifiers siteIdentifiers;
   private final CookieAuthenticator cookieAuthenticator;
+  private final NeedsMatchingIndex needsMatchingIndex;
+  private final SiteDetailPageCache siteDetailPageCache;
+  private final Mustache.Compiler mustacheCompiler;
 
   public static String buildSiteLink(long siteId) {
     return PATH_SITE_DETAIL + "?id=" + siteId;
@@ -56,12 +113,26 @@ public class SiteDetailController {
     ADDITIONAL_CONTACTS("additionalContacts"),
     NEEDS_MATCHING("needsMatching"),
     NEEDS_MATCH_COUNT("matchCount"),
+    NEEDS_MATCHING_UNAVAILABLE("needsMatchingUnavailable"),
+    HAS_SURPLUS_MATCHING("hasSurplusMatching"),
+    SURPLUS_MATCHING("surplusMatching"),
+    SURPLUS_MATCH_COUNT("surplusMatchCount"),
+
+    SITE_ID("siteId"),
 
     HAS_INCOMING_DELIVERIES("hasIncomingDeliveries"),
     INCOMING_DELIVERIES("incomingDeliveries"),
+    INCOMING_HAS_MORE("incomingHasMore"),
+    INCOMING_BEFORE_DATE("incomingBeforeDate"),
+    INCOMING_BEFORE_ID("incomingBeforeId"),
+    INCOMING_UNAVAILABLE("incomingUnavailable"),
 
     HAS_OUTGOING_DELIVERIES("hasOutgoingDeliveries"),
     OUTGOING_DELIVERIES("outgoingDeliveries"),
+    OUTGOING_HAS_MORE("outgoingHasMore"),
+    OUTGOING_BEFORE_DATE("outgoingBeforeDate"),
+    OUTGOING_BEFORE_ID("outgoingBeforeId"),
+    OUTGOING_UNAVAILABLE("outgoingUnavailable"),
     ;
     final String text;
   }
@@ -87,7 +158,7 @@ public class SiteDetailController {
 
     if (id == null) {
       if (airtableId != null) {
-        id = SiteDetailDao.lookupSiteIdByAirtableId(jdbi, airtableId);
+        id = SiteDetailDao.lookupSiteIdByAirtableId(siteIdentifiers, airtableId);
         if (id == null) {
           log.warn("Invalid airtable id received for site detail lookup: {}", airtableId);
           return new ModelAndView("redirect:" + SuppliesController.PATH_SUPPLY_SEARCH);
@@ -95,7 +166,7 @@ public class SiteDetailController {
       }
 
       if (wssId != null) {
-        id = SiteDetailDao.lookupSiteIdByWssId(jdbi, wssId);
+        id = SiteDetailDao.lookupSiteIdByWssId(siteIdentifiers, wssId);
         if (id == null) {
           log.warn("Invalid wss id received for site detail lookup: {}", wssId);
           return new ModelAndView("redirect:" + SuppliesController.PATH_SUPPLY_SEARCH);
@@ -104,12 +175,30 @@ public class SiteDetailController {
     }
     assert id != null;
 
+    long siteId = id;
+
+    // logged out visitors all get the same page, served as rendered if the site did not change
+    if (!isLoggedIn) {
+      String cachedPage = siteDetailPageCache.get(siteId);
+      if (cachedPage != null) {
+        return new ModelAndView(new RenderedPage(cachedPage));
+      }
+    }
+    long pageVersion = siteDetailPageCache.version(siteId);
+
+    // sections only shown to logged in users are started first and load while the site is read
+    Instant deadline = Instant.now().plus(SECTION_DEADLINE);
+    SecondarySections sections = isLoggedIn ? new SecondarySections(siteId) : null;
+
     SiteDetailDao.SiteDetailData siteDetailData = SiteDetailDao.lookupSiteById(jdbi, id);
 
     // if site not found, not accessible, or for logged in only users, then redirect
     if (siteDetailData == null
         || !siteDetailData.isActive()
         || (!isLoggedIn && !siteDetailData.isPubliclyVisible())) {
+      if (sections != null) {
+        sections.cancel();
+      }
       return new ModelAndView("redirect:" + SuppliesController.PATH_SUPPLY_SEARCH);
     }
 
@@ -174,28 +263,185 @@ public class SiteDetailController {
       siteDetails.put(
           TemplateParams.ADDITIONAL_CONTACTS.text, siteDetailData.getAdditionalContacts());
 
-      List<Delivery> allDeliveries = DeliveryDao.fetchDeliveriesBySiteId(jdbi, id);
+      siteDetails.put(TemplateParams.SITE_ID.text, id);
+
+      putDeliveries(
+          siteDetails,
+          awaitSection(sections.incomingDeliveries, deadline, "incoming deliveries", siteId),
+          TemplateParams.HAS_INCOMING_DELIVERIES,
+          TemplateParams.INCOMING_DELIVERIES,
+          TemplateParams.INCOMING_HAS_MORE,
+          TemplateParams.INCOMING_BEFORE_DATE,
+          TemplateParams.INCOMING_BEFORE_ID,
+          TemplateParams.INCOMING_UNAVAILABLE);
+      putDeliveries(
+          siteDetails,
+          awaitSection(sections.outgoingDeliveries, deadline, "outgoing deliveries", siteId),
+          TemplateParams.HAS_OUTGOING_DELIVERIES,
+          TemplateParams.OUTGOING_DELIVERIES,
+          TemplateParams.OUTGOING_HAS_MORE,
+          TemplateParams.OUTGOING_BEFORE_DATE,
+          TemplateParams.OUTGOING_BEFORE_ID,
+          TemplateParams.OUTGOING_UNAVAILABLE);
+
+      List<NeedsMatchingDao.NeedsMatchingResult> needsMatching =
+          awaitSection(sections.needsMatching, deadline, "needs matching", siteId);
+      siteDetails.put(TemplateParams.NEEDS_MATCHING_UNAVAILABLE.text, needsMatching == null);
+      siteDetails.put(
+          TemplateParams.NEEDS_MATCHING.text, needsMatching == null ? List.of() : needsMatching);
+      siteDetails.put(
+          TemplateParams.NEEDS_MATCH_COUNT.text, needsMatching == null ? 0 : needsMatching.size());
+
+      // surplus matching is an optional section, it is not shown at all if it did not load
+      List<NeedsMatchingDao.NeedsMatchingResult> surplusMatching =
+          awaitSection(sections.surplusMatching, deadline, "surplus matching", siteId);
+      if (surplusMatching == null) {
+        surplusMatching = List.of();
+      }
+      siteDetails.put(TemplateParams.HAS_SURPLUS_MATCHING.text, !surplusMatching.isEmpty());
+      siteDetails.put(TemplateParams.SURPLUS_MATCHING.text, surplusMatching);
+      siteDetails.put(TemplateParams.SURPLUS_MATCH_COUNT.text, surplusMatching.size());
+    }
 
-      List<Delivery> incomingDeliveries =
-          allDeliveries.stream()
-              .filter(d -> d.getToSite().equals(siteDetailData.getSiteName()))
-              .toList();
-      siteDetails.put(TemplateParams.HAS_INCOMING_DELIVERIES.text, !incomingDeliveries.isEmpty());
-      siteDetails.put(TemplateParams.INCOMING_DELIVERIES.text, incomingDeliveries);
+    if (!isLoggedIn) {
+      String page = mustacheCompiler.loadTemplate(SITE_DETAIL_TEMPLATE).execute(siteDetails);
+      siteDetailPageCache.put(siteId, pageVersion, page);
+      return new ModelAndView(new RenderedPage(page));
+    }
+    return new ModelAndView(SITE_DETAIL_TEMPLATE, siteDetails);
+  }
 
-      List<Delivery> outgoingDeliveries =
-          allDeliveries.stream()
-              .filter(d -> d.getFromSite().equals(siteDetailData.getSiteName()))
-              .toList();
-      siteDetails.put(TemplateParams.HAS_OUTGOING_DELIVERIES.text, !outgoingDeliveries.isEmpty());
-      siteDetails.put(TemplateParams.OUTGOING_DELIVERIES.text, outgoingDeliveries);
+  /** A page that is already rendered, written out as is. */
+  // @VisibleForTesting
+  record RenderedPage(String html) implements View {
+    @Override
+    public String getContentType() {
+      return "text/html;charset=UTF-8";
+    }
 
-      List<NeedsMatchingDao.NeedsMatchingResult> needsMatching =
-          NeedsMatchingDao.executeByInternalId(jdbi, id);
-      siteDetails.put(TemplateParams.NEEDS_MATCHING.text, needsMatching);
-      siteDetails.put(TemplateParams.NEEDS_MATCH_COUNT.text, needsMatching.size());
+    @Override
+    public void render(
+        Map<String, ?> model, HttpServletRequest request, HttpServletResponse response)
+        throws IOException {
+      response.setContentType(getContentType());
+      response.getWriter().write(html);
+    }
+  }
+
+  /** Loads that only logged in users see, each started on its own virtual thread. */
+  private class SecondarySections {
+    final Future<DeliveryDao.DeliveryPage> incomingDeliveries;
+    final Future<DeliveryDao.DeliveryPage> outgoingDeliveries;
+    final Future<List<NeedsMatchingDao.NeedsMatchingResult>> needsMatching;
+    final Future<List<NeedsMatchingDao.NeedsMatchingResult>> surplusMatching;
+
+    SecondarySections(long siteId) {
+      incomingDeliveries =
+          sectionLoader.submit(() -> fetchRecentDeliveries(siteId, DeliveryDao.Direction.INCOMING));
+      outgoingDeliveries =
+          sectionLoader.submit(() -> fetchRecentDeliveries(siteId, DeliveryDao.Direction.OUTGOING));
+      needsMatching = sectionLoader.submit(() -> needsMatchingIndex.findMatches(siteId));
+      surplusMatching = sectionLoader.submit(() -> needsMatchingIndex.findNeedySites(siteId));
+    }
+
+    void cancel() {
+      Stream.of(incomingDeliveries, outgoingDeliveries, needsMatching, surplusMatching)
+          .forEach(section -> section.cancel(true));
+    }
+  }
+
+  private DeliveryDao.DeliveryPage fetchRecentDeliveries(
+      long siteId, DeliveryDao.Direction direction) throws InterruptedException {
+    sectionQueryPermits.acquire();
+    try {
+      return DeliveryDao.fetchRecentDeliveries(
+          jdbi, siteId, direction, DELIVERY_WINDOW_DAYS, DELIVERY_PAGE_SIZE);
+    } finally {
+      sectionQueryPermits.release();
+    }
+  }
+
+  /**
+   * Waits for a section of the page until the deadline. Returns null if the section failed or is
+   * not loaded by then, in which case its load is cancelled and the page is shown without it.
+   */
+  // @VisibleForTesting
+  static <T> T awaitSection(Future<T> section, Instant deadline, String sectionName, long siteId) {
+    try {
+      long remainingMillis = Math.max(0, Duration.between(Instant.now(), deadline).toMillis());
+      return section.get(remainingMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      log.warn("Site detail section timed out, site id: {}, section: {}", siteId, sectionName);
+    } catch (ExecutionException e) {
+      log.error(
+          "Site detail section failed, site id: {}, section: {}",
+          siteId,
+          sectionName,
+          e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
-    return new ModelAndView("supplies/site-detail", siteDetails);
+    section.cancel(true);
+    return null;
+  }
+
+  /** Adds a delivery section to the page, or marks it unavailable if it did not load. */
+  private static void putDeliveries(
+      Map<String, Object> siteDetails,
+      DeliveryDao.DeliveryPage deliveries,
+      TemplateParams hasDeliveries,
+      TemplateParams deliveryList,
+      TemplateParams hasMore,
+      TemplateParams beforeDate,
+      TemplateParams beforeId,
+      TemplateParams unavailable) {
+    siteDetails.put(unavailable.text, deliveries == null);
+    if (deliveries == null) {
+      siteDetails.put(hasDeliveries.text, false);
+      return;
+    }
+    siteDetails.put(
+        hasDeliveries.text, !deliveries.getDeliveries().isEmpty() || deliveries.isHasMore());
+    siteDetails.put(deliveryList.text, deliveries.getDeliveries());
+    siteDetails.put(hasMore.text, deliveries.isHasMore());
+    siteDetails.put(beforeDate.text, Objects.requireNonNullElse(deliveries.getBeforeDate(), ""));
+    siteDetails.put(beforeId.text, Objects.requireNonNullElse(deliveries.getBeforeId(), ""));
+  }
+
+  /**
+   * Returns the next page of older deliveries for a site. Deliveries are only visible to logged in
+   * users.
+   */
+  @GetMapping(PATH_SITE_DELIVERIES)
+  @ResponseBody
+  ResponseEntity<DeliveryDao.DeliveryPage> siteDeliveries(
+      @RequestParam long siteId,
+      @RequestParam String direction,
+      @RequestParam(required = false) String beforeDate,
+      @RequestParam(required = false) Long beforeId,
+      HttpServletRequest request) {
+    if (!cookieAuthenticator.isAuthenticated(request)) {
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+    }
+    return ResponseEntity.ok(fetchOlderDeliveries(siteId, direction, beforeDate, beforeId));
+  }
+
+  // @VisibleForTesting
+  DeliveryDao.DeliveryPage fetchOlderDeliveries(
+      long siteId, String direction, String beforeDate, Long beforeId) {
+    DeliveryDao.Direction deliveryDirection =
+        switch (direction) {
+          case "incoming" -> DeliveryDao.Direction.INCOMING;
+          case "outgoing" -> DeliveryDao.Direction.OUTGOING;
+          default -> throw new IllegalArgumentException("Invalid direction: " + direction);
+        };
+    return DeliveryDao.fetchDeliveriesBefore(
+        jdbi,
+        siteId,
+        deliveryDirection,
+        beforeDate == null || beforeDate.isBlank() ? null : beforeDate,
+        beforeId,
+        DELIVERY_PAGE_SIZE);
   }
 
   @Getter
@@ -1,5 +1,6 @@
 package com.vanatta.helene.supplies.database.supplies.site.details;
 
+import com.vanatta.helene.supplies.database.data.SiteIdentifiers;
 import jakarta.annotation.Nullable;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -8,20 +9,13 @@ import org.jdbi.v3.core.Jdbi;
 public class SiteDetailDao {
 
   @Nullable
-  public static Long lookupSiteIdByAirtableId(Jdbi jdbi, long airtableId) {
-    return lookupIdentifier(jdbi, "airtable_id", airtableId);
+  public static Long lookupSiteIdByAirtableId(SiteIdentifiers siteIdentifiers, long airtableId) {
+    return siteIdentifiers.siteIdByAirtableId(airtableId).orElse(null);
   }
 
   @Nullable
-  public static Long lookupSiteIdByWssId(Jdbi jdbi, long wssId) {
-    return lookupIdentifier(jdbi, "wss_id", wssId);
-  }
-
-  private static Long lookupIdentifier(Jdbi jdbi, String lookupColumn, long idValue) {
-    String query = String.format("select id from site where %s = :id", lookupColumn);
-    return jdbi.withHandle(
-            handle -> handle.createQuery(query).bind("id", idValue).mapTo(Long.class).findOne())
-        .orElse(null);
+  public static Long lookupSiteIdByWssId(SiteIdentifiers siteIdentifiers, long wssId) {
+    return siteIdentifiers.siteIdByWssId(wssId).orElse(null);
   }
 
   @Data
@@ -0,0 +1,70 @@
+package com.vanatta.helene.supplies.database.supplies.site.details;
+
+import jakarta.annotation.Nullable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rendered HTML of the public (logged out) site detail page, per site. Every logged out visitor
+ * gets the same page for a site until the site changes, so the page is rendered once and served
+ * from memory after that, without reading the site or running the template.
+ *
+ * <p>Code that changes a site calls {@link #invalidate(long)}. Each site has a version that is
+ * bumped on invalidation; a page rendered from data read before an invalidation is not kept. Pages
+ * also expire after {@link #MAX_AGE}, which bounds how stale a page can be if a site is changed by
+ * other means.
+ *
+ * <p>Logged in users get their own sections (contact info, deliveries, matching) and are never
+ * served from this cache.
+ */
+public class SiteDetailPageCache {
+
+  static final Duration MAX_AGE = Duration.ofMinutes(10);
+
+  private final Map<Long, Page> pages = new ConcurrentHashMap<>();
+
+  /** Number of times each site was invalidated, sites never invalidated are at version 0. */
+  private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+
+  private record Page(String html, Instant rendered) {}
+
+  /** Returns the current version of a site, to be read before the site data is read. */
+  long version(long siteId) {
+    return versions.getOrDefault(siteId, 0L);
+  }
+
+  /** Returns the rendered page of a site, null if there is none or it expired. */
+  @Nullable
+  String get(long siteId) {
+    Page page = pages.get(siteId);
+    if (page == null) {
+      return null;
+    }
+    if (page.rendered().plus(MAX_AGE).isBefore(Instant.now())) {
+      pages.remove(siteId, page);
+      return null;
+    }
+    return page.html();
+  }
+
+  /**
+   * Keeps a rendered page, unless the site was invalidated since 'version' was read (the page may
+   * show old data).
+   */
+  void put(long siteId, long version, String html) {
+    Page page = new Page(html, Instant.now());
+    pages.put(siteId, page);
+    // checked after the put, an invalidation in between either sees the page or changed the version
+    if (version(siteId) != version) {
+      pages.remove(siteId, page);
+    }
+  }
+
+  /** Drops the rendered page of a site, to be called after the site is changed. */
+  public void invalidate(long siteId) {
+    versions.merge(siteId, 1L, Long::sum);
+    pages.remove(siteId);
+  }
+}
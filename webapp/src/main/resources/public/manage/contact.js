@@ -5,17 +5,11 @@
  * message. On error, the messaging indicates an error happened.
  */
 async function showUpdateConfirmation(siteId, field) {
-  let newValue;
-
-  if (field === 'County' || field === 'State') {
-    newValue =
-        document.getElementById('County').value + ',' + document.getElementById('State').value;
-  } else {
-    newValue = document.getElementById(field).value;
-  }
+  const newValue = fieldValue(field);
 
   try {
     await sendSiteUpdate(siteId, field, newValue)
+    savedValues.set(field === 'State' ? 'County' : field, newValue);
     showConfirmations(field, newValue);
   } catch (error) {
     showError(field, error);
@@ -74,6 +68,85 @@ async function sendSiteUpdate(siteId, field, newValue) {
   return await response.text();
 }
 
+/**
+ * Fields that can be sent to '/manage/update-site-fields', by element id.
+ * 'County' is sent as 'COUNTY,STATE' and covers the State field as well.
+ */
+const SITE_FIELDS = [
+  'Site Name', 'Street Address', 'City', 'County', 'Website', 'Facebook',
+  'Site Hours', 'max supply load', 'receiving notes', 'Contact Name', 'Contact Number',
+  'Bad Numbers', 'Contact Email', 'Additional Contacts'
+];
+
+/** Field values as last saved, used to find which fields were edited. */
+const savedValues = new Map();
+
+function fieldValue(field) {
+  if (field === 'County' || field === 'State') {
+    return document.getElementById('County').value + ',' + document.getElementById('State').value;
+  }
+  return document.getElementById(field).value;
+}
+
+function rememberSavedValues() {
+  SITE_FIELDS
+  .filter(field => document.getElementById(field))
+  .forEach(field => savedValues.set(field, fieldValue(field)));
+}
+
+document.addEventListener('DOMContentLoaded', rememberSavedValues);
+
+/**
+ * Sends every edited field in one request, the server applies them all in one
+ * transaction. Shows a confirmation next to each field that was sent.
+ */
+async function saveAllChanges(siteId) {
+  const fields = {};
+  SITE_FIELDS
+  .filter(field => document.getElementById(field))
+  .filter(field => fieldValue(field) !== savedValues.get(field))
+  .forEach(field => fields[field] = fieldValue(field));
+
+  if (Object.keys(fields).length === 0) {
+    document.getElementById("all fields-update-confirm").innerHTML = 'No changes to save';
+    return;
+  }
+
+  try {
+    await sendSiteFieldsUpdate(siteId, fields);
+    // only the values that were sent are saved, fields edited while waiting stay unsaved
+    Object.entries(fields).forEach(([field, newValue]) => {
+      savedValues.set(field, newValue);
+      showConfirmations(field, newValue);
+    });
+    showConfirmations('all fields', 'Updated');
+  } catch (error) {
+    showError('all fields', error);
+  }
+}
+
+/** Does webservice call to send several updated values to the webserver */
+async function sendSiteFieldsUpdate(siteId, fields) {
+  const url = "/manage/update-site-fields";
+
+  const response = await fetch(url, {
+    method: 'POST',
+    headers: {
+      'Accept': 'application/json',
+      'Content-Type': 'application/json'
+    },
+    body: JSON.stringify({
+      siteId: siteId,
+      fields: fields
+    })
+  });
+
+  if (!response.ok) {
+    throw new Error(`Response status: ${response.status}, ${response}`);
+  }
+  return await response.text();
+}
+
 /** Invoked when we update the receiving capabilities checkboxes.
  * All other fields go through 'showUpdateConfirmation'.
  * This method special cases the checkboxes and handles those
@@ -46,6 +46,13 @@ async function toggleInventory(siteId, itemName) {
 
       await sendActivateItem(siteId, itemName, itemStatus);
 
+      // an item added from the catalog is now part of the site inventory
+      const row = document.getElementById(`${itemName}Checkbox`).closest("tr");
+      if (row.parentElement.id === "catalogTableBody") {
+        document.getElementById("inventoryTableBody").appendChild(row);
+        updateCatalogStatus();
+      }
+
       document.getElementById(`${itemName}Label`).classList.value = "inventoryLabel " + labelClass;
 
       document.getElementById(`${itemName}UrgentLabel`)
@@ -64,8 +71,10 @@ async function toggleInventory(siteId, itemName) {
       document.getElementById(`${itemName}Oversupply`).disabled = !checked;
     } catch (error) {
       showError(error);
-      // revert checkbox update
-      document.getElementById(`${itemName}Checkbox`).checked = false;
+      // revert checkbox update, on conflict the list is already showing the current inventory
+      if (!(error instanceof InventoryConflictError)) {
+        document.getElementById(`${itemName}Checkbox`).checked = false;
+      }
     }
   } else {
     try {
@@ -89,55 +98,172 @@ async function toggleInventory(siteId, itemName) {
       document.getElementById(`${itemName}Oversupply`).disabled = !checked;
     } catch (error) {
       showError(error);
-      // revert checkbox update
-      document.getElementById(`${itemName}Checkbox`).checked = true;
+      // revert checkbox update, on conflict the list is already showing the current inventory
+      if (!(error instanceof InventoryConflictError)) {
+        document.getElementById(`${itemName}Checkbox`).checked = true;
+      }
     }
   }
 }
 
 async function sendActivateItem(siteId, itemName, itemStatus) {
-  const url = "/manage/activate-site-item";
-
-  const response = await fetch(url, {
-    method: 'POST',
-    headers: {
-      'Accept': 'application/json',
-      'Content-Type': 'application/json'
-    },
-    body: JSON.stringify({
-      siteId: siteId,
-      itemName: itemName,
-      itemStatus: itemStatus
-    })
+  return queueItemChange(siteId, {
+    itemName: itemName,
+    active: true,
+    itemStatus: itemStatus
   });
-
-  if (!response.ok) {
-    throw new Error(`Response status: ${response.status}, ${response.body}`);
-  }
-  return await response.text();
 }
 
 async function sendDeactivateItem(siteId, itemName) {
-  const url = "/manage/deactivate-site-item";
-
-  const response = await fetch(url, {
-    method: 'POST',
-    headers: {
-      'Accept': 'application/json',
-      'Content-Type': 'application/json'
-    },
-    body: JSON.stringify({
-      siteId: siteId,
-      itemName: itemName
-    })
+  return queueItemChange(siteId, {
+    itemName: itemName,
+    active: false
+  });
+}
+
+/**
+ * Item changes are collected for a short while and then sent to the server
+ * together, as one request. Clicking through several items is then a single
+ * update rather than one per click.
+ */
+const BATCH_DELAY_MS = 400;
+let pendingSiteId = null;
+let pendingChanges = new Map();
+let pendingCallbacks = [];
+let batchTimer = null;
+
+/**
+ * Queues an item change, returns a promise that completes when the batch
+ * containing the change has been saved.
+ */
+function queueItemChange(siteId, change) {
+  // site id is a number or string depending on where the page rendered it
+  siteId = String(siteId);
+  if (pendingSiteId !== null && pendingSiteId !== siteId) {
+    flushItemChanges();
+  }
+  pendingSiteId = siteId;
+  // a later change to the same item replaces an earlier one
+  pendingChanges.set(change.itemName, change);
+
+  clearTimeout(batchTimer);
+  batchTimer = setTimeout(flushItemChanges, BATCH_DELAY_MS);
+
+  return new Promise((resolve, reject) => {
+    pendingCallbacks.push({resolve: resolve, reject: reject});
   });
+}
 
-  if (!response.ok) {
-    throw new Error(`Response status: ${response.status}, ${response.body}`);
+async function flushItemChanges(keepalive = false) {
+  clearTimeout(batchTimer);
+  if (pendingChanges.size === 0) {
+    return;
   }
-  return await response.text();
+  const siteId = pendingSiteId;
+  const changes = Array.from(pendingChanges.values());
+  const callbacks = pendingCallbacks;
+  pendingSiteId = null;
+  pendingChanges = new Map();
+  pendingCallbacks = [];
+
+  try {
+    const response = await sendInventoryRequest(
+        siteId,
+        "/manage/update-site-inventory",
+        {siteId: siteId, changes: changes},
+        keepalive);
+    if (!response.ok) {
+      throw new Error(`Response status: ${response.status}, ${await response.text()}`);
+    }
+    callbacks.forEach(callback => callback.resolve());
+  } catch (error) {
+    callbacks.forEach(callback => callback.reject(error));
+  }
+}
+
+/**
+ * Version of the site inventory shown on this page. It is sent with every
+ * change, the server rejects changes made from an out of date page (eg: the
+ * inventory was changed in another browser window) and sends back the current
+ * inventory instead.
+ */
+let inventoryVersion = null;
+
+/** Incremented on each conflict, requests queued before a conflict are not sent. */
+let conflictCount = 0;
+
+/** Requests are sent one at a time, each needs the version returned by the one before. */
+let inventoryRequests = Promise.resolve();
+
+class InventoryConflictError extends Error {
+  constructor() {
+    super("Not saved, the inventory was changed in another window. "
+        + "The list now shows the current inventory, please check it and try again.");
+  }
+}
+
+/**
+ * Sends an inventory change with the current inventory version, once any
+ * previous request has completed. Resolves to the response. On conflict the
+ * page is updated with the current inventory and the promise is rejected with
+ * an InventoryConflictError.
+ */
+function sendInventoryRequest(siteId, url, body, keepalive = false) {
+  const conflictsBefore = conflictCount;
+  const request = inventoryRequests.then(async () => {
+    if (conflictCount !== conflictsBefore) {
+      throw new InventoryConflictError();
+    }
+    const response = await fetch(url, {
+      method: 'POST',
+      keepalive: keepalive,
+      headers: {
+        'Accept': 'application/json',
+        'Content-Type': 'application/json'
+      },
+      body: JSON.stringify({...body, inventoryVersion: inventoryVersion})
+    });
+    if (response.status === 409) {
+      showCurrentInventory(siteId, await response.json());
+      throw new InventoryConflictError();
+    }
+    if (response.ok) {
+      inventoryVersion = (await response.clone().json()).inventoryVersion;
+    }
+    return response;
+  });
+  // a failed request should not stop the ones queued after it
+  inventoryRequests = request.catch(() => {
+  });
+  return request;
+}
+
+/**
+ * Replaces the inventory list with the current inventory sent by the server
+ * on a conflict. Changes not sent yet were made to the out of date list, they
+ * are dropped.
+ */
+function showCurrentInventory(siteId, current) {
+  inventoryVersion = current.inventoryVersion;
+  conflictCount++;
+
+  clearTimeout(batchTimer);
+  const dropped = pendingCallbacks;
+  pendingSiteId = null;
+  pendingChanges = new Map();
+  pendingCallbacks = [];
+  dropped.forEach(callback => callback.reject(new InventoryConflictError()));
+
+  document.getElementById("inventoryTableBody").innerHTML = current.currentItems
+  .map(item => itemRowHtml(siteId, htmlEncode(item.itemName), true, item.itemStatus))
+  .join("");
+  // items removed in the other window are listed under 'Add Items' again
+  reloadCatalog(siteId);
 }
 
+// send anything still pending if the page is closed before the batch is sent
+window.addEventListener("pagehide", () => flushItemChanges(true));
+
 
 /**
  * Fires when the item status radio buttons are toggled.
@@ -184,25 +310,11 @@ async function changeItemStatus(siteId, itemName) {
 }
 
 async function sendItemStatusChange(siteId, itemName, newStatus) {
-  const url = "/manage/update-site-item-status";
-
-  const response = await fetch(url, {
-    method: 'POST',
-    headers: {
-      'Accept': 'application/json',
-      'Content-Type': 'application/json'
-    },
-    body: JSON.stringify({
-      siteId: siteId,
-      itemName: itemName,
-      newStatus: newStatus
-    })
+  return queueItemChange(siteId, {
+    itemName: itemName,
+    active: true,
+    itemStatus: newStatus
   });
-
-  if (!response.ok) {
-    throw new Error(`Response status: ${response.status}, ${response.body}`);
-  }
-  return await response.text();
 }
 
 async function addItem(siteId) {
@@ -222,21 +334,15 @@ async function addItem(siteId) {
   const oversupplyChecked = document.getElementById("oversupplyRadioNew")
       .checked ? "checked" : "";
 
-  let labelStyle = "available";
   let status = "Available";
 
-
   if (urgentChecked) {
-    labelStyle = "urgent";
     status = "Urgently Needed";
   } else if (neededChecked) {
-    labelStyle = "needed";
     status = "Needed";
   } else if (availableChecked) {
-    labelStyle = "available";
     status = "Available";
   } else if (oversupplyChecked) {
-    labelStyle = "oversupply";
     status = "Oversupply";
   }
 
@@ -245,123 +351,189 @@ async function addItem(siteId) {
     return;
   }
 
-  const newItemRowHtml = `
-        <tr>
-          <!-- Item Checkbox -->
-          <td>
-            <input type="checkbox" id="${itemNameEncoded}Checkbox"
-                   onclick="toggleInventory('${siteId}', '${itemNameEncoded}')" checked />
-          </td>
-
-           <!-- Item Label -->
-          <td onclick="checkAndToggleInventory('${siteId}', '${itemNameEncoded}')">
-           <div class="inventoryLabel">
-              <span class="${labelStyle}" id="${itemNameEncoded}Label">${itemNameEncoded}</span>
-            </div>
-            <div class="horizontal update-confirm-div" id="${itemNameEncoded}UpdateConfirm">
-              <span class="green-check" id="${itemNameEncoded}update-confirm">&#10003;</span>
-              <span>Updated</span>
-            </div>
-          </td>
-
-          <!-- Item Status Radio buttons -->
-          <td>
-            <div class="horizontal">
-
-              <!-- Urgently Needed -->
-              <fieldset class="vertical">
-                <div class="horizontal item-status-div">
-                  <input 
-                      type="radio" 
-                      id="${itemNameEncoded}Urgent" 
-                      name="${itemNameEncoded}Status" 
-                      onclick="changeItemStatus(${siteId}, '${itemNameEncoded}')"
-                      ${urgentChecked}/>
-                  <label 
-                      for="${itemNameEncoded}Urgent" 
-                      class="urgent" 
-                      id="${itemNameEncoded}UrgentLabel">
-                    Urgently Needed
-                  </label>
-                </div>
-
-
-                <!-- Needed -->
-                <div class="horizontal item-status-div">
-                  <input 
-                      type="radio" 
-                      id="${itemNameEncoded}Needed" 
-                      name="${itemNameEncoded}Status" 
-                      onclick="changeItemStatus(${siteId}, '${itemNameEncoded}')"
-                      ${neededChecked}/>
-                  <label 
-                      for="${itemNameEncoded}Needed" 
-                      class="needed" 
-                      id="${itemNameEncoded}NeededLabel">
-                    Needed
-                  </label>
-                </div>
-                
-                <!-- Available -->
-                <div class="horizontal item-status-div">
-                  <input 
-                      type="radio" 
-                      id="${itemNameEncoded}Available" 
-                      name="${itemNameEncoded}Status" 
-                      onclick="changeItemStatus(${siteId}, '${itemNameEncoded}')"
-                      ${availableChecked}/>
-                  <label 
-                      for="${itemNameEncoded}Available" 
-                      class="available" 
-                      id="${itemNameEncoded}AvailableLabel">
-                    Available
-                  </label>
-                </div>
-                
-                <!-- Oversupply -->
-                <div class="horizontal item-status-div">
-                  <input 
-                      type="radio" 
-                      id="${itemNameEncoded}Oversupply" 
-                      name="${itemNameEncoded}Status" 
-                      onclick="changeItemStatus(${siteId}, '${itemNameEncoded}')"
-                      ${oversupplyChecked}/>
-                  <label 
-                      for="${itemNameEncoded}Oversupply" 
-                      class="oversupply" 
-                      id="${itemNameEncoded}OversupplyLabel">
-                    Oversupply (too much)
-                  </label>
-                </div>
-              </fieldset>
-            </div>
-          </td>
-        </tr>
-  `;
-
-  document.getElementById("inventoryTableBody").innerHTML +=
-      newItemRowHtml;
+  document.getElementById("inventoryTableBody")
+  .insertAdjacentHTML("beforeend", itemRowHtml(siteId, itemNameEncoded, true, status));
 
   document.getElementById("newItemText").value = "";
 
   showUpdateConfirmation(itemNameEncoded);
 }
 
+/** The item status radio buttons of an inventory row: id suffix, css class, status, label. */
+const ITEM_STATUSES = [
+  {idSuffix: "Urgent", cssClass: "urgent", status: "Urgently Needed", label: "Urgently Needed"},
+  {idSuffix: "Needed", cssClass: "needed", status: "Needed", label: "Needed"},
+  {idSuffix: "Available", cssClass: "available", status: "Available", label: "Available"},
+  {idSuffix: "Oversupply", cssClass: "oversupply", status: "Oversupply", label: "Oversupply (too much)"}
+];
+
+/**
+ * Returns the html of one inventory table row, the same as the rows rendered
+ * with the page. 'itemName' is expected to be html encoded already.
+ */
+function itemRowHtml(siteId, itemName, active, itemStatus) {
+  const disabled = active ? "" : "disabled";
+  const labelClass = ITEM_STATUSES.find(s => s.status === itemStatus).cssClass;
+
+  const statusRadios = ITEM_STATUSES.map(s => `
+        <div class="horizontal item-status-div">
+          <input type="radio" id="${itemName}${s.idSuffix}" name="${itemName}Status" ${disabled}
+                 onclick="changeItemStatus('${siteId}', '${itemName}')"
+                 ${s.status === itemStatus ? "checked" : ""}/>
+          <label for="${itemName}${s.idSuffix}" class="${s.cssClass} ${disabled}"
+                 id="${itemName}${s.idSuffix}Label">
+            ${s.label}
+          </label>
+        </div>`).join("");
+
+  return `
+    <tr>
+      <td>
+        <input type="checkbox" id="${itemName}Checkbox"
+               onclick="toggleInventory('${siteId}', '${itemName}')" ${active ? "checked" : ""}/>
+      </td>
+      <td onclick="checkAndToggleInventory('${siteId}', '${itemName}')">
+        <div>
+          <span class="inventoryLabel ${labelClass} ${disabled}" id="${itemName}Label">
+            ${itemName}
+          </span>
+        </div>
+        <div class="horizontal update-confirm-div" id="${itemName}UpdateConfirm">
+          <span class="green-check">&#10003;</span>
+          <span>Updated</span>
+        </div>
+      </td>
+      <td>
+        <div class="horizontal">
+          <fieldset class="vertical">${statusRadios}
+          </fieldset>
+        </div>
+      </td>
+    </tr>`;
+}
+
+/**
+ * Items that are not at the site are not rendered with the page, with a
+ * large item catalog that would be thousands of rows. Instead they are
+ * fetched a page at a time, as the user scrolls down or searches.
+ */
+const catalog = {
+  // last item name loaded, the next page starts after it
+  after: "",
+  hasMore: true,
+  loading: false,
+  search: "",
+  // incremented for each new search, responses to an older search are dropped
+  searchCount: 0
+};
+const CATALOG_SEARCH_DELAY_MS = 300;
+let catalogSearchTimer = null;
+
+async function loadCatalogPage(siteId) {
+  if (catalog.loading || !catalog.hasMore) {
+    return;
+  }
+  catalog.loading = true;
+  const searchCount = catalog.searchCount;
+  const params = new URLSearchParams({
+    siteId: siteId,
+    search: catalog.search,
+    after: catalog.after
+  });
+
+  try {
+    const response = await fetch("/manage/inventory/catalog?" + params);
+    if (!response.ok) {
+      throw new Error(`Response status: ${response.status}, ${await response.text()}`);
+    }
+    const page = await response.json();
+    if (searchCount !== catalog.searchCount) {
+      return;
+    }
+
+    const rows = page.items
+    .map(htmlEncode)
+    // skip items already on the page, eg: removed from the site during this visit
+    .filter(itemName => !document.getElementById(`${itemName}Checkbox`))
+    .map(itemName => itemRowHtml(siteId, itemName, false, "Available"));
+    document.getElementById("catalogTableBody")
+    .insertAdjacentHTML("beforeend", rows.join(""));
+
+    if (page.lastItem) {
+      catalog.after = page.lastItem;
+    }
+    catalog.hasMore = page.hasMore;
+  } catch (error) {
+    showError(error);
+  } finally {
+    if (searchCount === catalog.searchCount) {
+      catalog.loading = false;
+      updateCatalogStatus();
+    }
+  }
+  loadCatalogIfVisible(siteId);
+}
+
+/** Fires as the user types in the catalog search box. */
+function searchCatalog(siteId) {
+  clearTimeout(catalogSearchTimer);
+  catalogSearchTimer = setTimeout(function () {
+        catalog.search = document.getElementById("catalogSearch").value.trim();
+        reloadCatalog(siteId);
+      },
+      CATALOG_SEARCH_DELAY_MS);
+}
+
+/** Clears the catalog list and loads it again from the first page. */
+function reloadCatalog(siteId) {
+  catalog.after = "";
+  catalog.hasMore = true;
+  catalog.loading = false;
+  catalog.searchCount++;
+  document.getElementById("catalogTableBody").innerHTML = "";
+  loadCatalogPage(siteId);
+}
+
+function updateCatalogStatus() {
+  const moreButton = document.getElementById("catalogMoreButton");
+  moreButton.style.display = catalog.hasMore ? "block" : "none";
+
+  const empty = document.getElementById("catalogTableBody").rows.length === 0;
+  document.getElementById("catalogStatus").innerText =
+      empty && !catalog.hasMore ? "No items found." : "";
+}
+
+/** Loads the next page if the end of the catalog list is on screen. */
+function loadCatalogIfVisible(siteId) {
+  const moreButton = document.getElementById("catalogMoreButton");
+  if (catalog.hasMore
+      && moreButton.getBoundingClientRect().top < window.innerHeight) {
+    loadCatalogPage(siteId);
+  }
+}
+
+document.addEventListener("DOMContentLoaded", () => {
+  inventoryVersion = Number(
+      document.getElementById("inventoryTableBody").dataset.inventoryVersion);
+  const siteId = document.getElementById("catalogTableBody").dataset.siteId;
+  if ("IntersectionObserver" in window) {
+    new IntersectionObserver(entries => {
+      if (entries.some(entry => entry.isIntersecting)) {
+        loadCatalogPage(siteId);
+      }
+    }).observe(document.getElementById("catalogMoreButton"));
+  }
+  loadCatalogPage(siteId);
+});
+
 async function sendAddNewItem(siteId, itemName, itemStatus) {
   const url = "/manage/add-site-item";
 
   try {
-    const response = await fetch(url, {
-      method: 'POST',
-      headers: {
-        'Accept': 'application/json',
-        'Content-Type': 'application/json'
-      },
-      body: JSON.stringify({
-        siteId: siteId,
-        itemName: itemName,
-        itemStatus: itemStatus
-      })
+    const response = await sendInventoryRequest(siteId, url, {
+      siteId: siteId,
+      itemName: itemName,
+      itemStatus: itemStatus
     });
 
     if (!response.ok) {
@@ -418,7 +590,9 @@ function showUpdateConfirmation(itemName) {
 function showError(error) {
   console.log(error);
   let errorDiv = document.getElementById("error-div");
-  errorDiv.innerHTML = "Update failed. Error contacting server. " + error;
+  errorDiv.innerHTML = error instanceof InventoryConflictError
+      ? error.message
+      : "Update failed. Error contacting server. " + error;
   errorDiv.style.display = 'block';
 
   console.log("Error: " + error);
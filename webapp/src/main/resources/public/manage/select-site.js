@@ -0,0 +1,56 @@
+/** Delay after the last keystroke before searching, avoids a request per key typed. */
+const SEARCH_DELAY_MS = 200;
+
+let searchTimer = null;
+
+/** Number of the latest search, results of earlier searches that arrive late are ignored. */
+let searchNumber = 0;
+
+/** Invoked as the search text changes, replaces the site options with matching sites. */
+function searchSites() {
+  clearTimeout(searchTimer);
+  searchTimer = setTimeout(runSearch, SEARCH_DELAY_MS);
+}
+
+async function runSearch() {
+  const search = document.getElementById('siteSearch').value.trim();
+  const thisSearch = ++searchNumber;
+
+  try {
+    const sites = await fetchSites(search);
+    if (thisSearch === searchNumber) {
+      showSites(sites, search);
+    }
+  } catch (error) {
+    console.log(error);
+  }
+}
+
+async function fetchSites(search) {
+  const url = '/manage/site-search?search=' + encodeURIComponent(search);
+  const response = await fetch(url, {
+    headers: {
+      'Accept': 'application/json'
+    }
+  });
+  if (!response.ok) {
+    throw new Error(`Response status: ${response.status}, ${response}`);
+  }
+  return await response.json();
+}
+
+function showSites(sites, search) {
+  const select = document.getElementById('siteId');
+  select.replaceChildren(new Option('', ''));
+  sites.forEach(site => select.add(new Option(site.name, site.id)));
+
+  // with a search, select the best match so 'Manage Selected Site' can be pressed right away
+  if (search !== '' && sites.length > 0) {
+    select.value = sites[0].id;
+  }
+
+  const siteCount = document.getElementById('site-count');
+  if (siteCount) {
+    siteCount.style.display = search === '' ? 'block' : 'none';
+  }
+}
@@ -6,3 +6,66 @@ function goBack(){
     history.back();
   }
 }
+
+/**
+ * Fetches the next page of older deliveries & appends them to the incoming or outgoing
+ * delivery table. The button holds the keys of the next page, it is removed when there
+ * are no more deliveries to load.
+ */
+async function loadOlderDeliveries(direction, siteId, button) {
+  const params = new URLSearchParams({
+    siteId: siteId,
+    direction: direction,
+    beforeDate: button.dataset.beforeDate,
+    beforeId: button.dataset.beforeId
+  });
+  try {
+    const response = await fetch("/supplies/site-detail/deliveries?" + params);
+    if (!response.ok) {
+      throw new Error("Failed to load deliveries, status: " + response.status);
+    }
+    const page = await response.json();
+
+    const tableBody = document.getElementById(direction + "-deliveries");
+    page.deliveries.forEach(delivery => tableBody.appendChild(deliveryRow(direction, delivery)));
+
+    if (page.hasMore) {
+      button.dataset.beforeDate = page.beforeDate ?? "";
+      button.dataset.beforeId = page.beforeId ?? "";
+    } else {
+      button.remove();
+    }
+  } catch (error) {
+    console.log(error);
+    button.innerText = "Failed to load deliveries, click to try again";
+  }
+}
+
+function deliveryRow(direction, delivery) {
+  const otherSiteName = direction === "incoming" ? delivery.fromSite : delivery.toSite;
+  const otherSiteLink = direction === "incoming" ? delivery.fromSiteLink : delivery.toSiteLink;
+
+  const row = document.createElement("tr");
+  row.appendChild(linkCell(delivery.detailLink, "[Details]"));
+  row.appendChild(textCell(delivery.deliveryDate));
+  row.appendChild(linkCell(otherSiteLink, otherSiteName));
+  row.appendChild(textCell(delivery.deliveryStatus));
+  row.appendChild(textCell(delivery.itemCount));
+  row.appendChild(textCell(delivery.itemListTruncated));
+  return row;
+}
+
+function textCell(text) {
+  const cell = document.createElement("td");
+  cell.innerText = text;
+  return cell;
+}
+
+function linkCell(href, text) {
+  const cell = document.createElement("td");
+  const link = document.createElement("a");
+  link.href = href;
+  link.innerText = text;
+  cell.appendChild(link);
+  return cell;
+}
@@ -1,6 +1,7 @@
 package com.vanatta.helene.supplies.database;
 
 import com.vanatta.helene.supplies.database.data.ItemStatus;
+import com.vanatta.helene.supplies.database.data.ReferenceTables;
 import com.vanatta.helene.supplies.database.data.SiteType;
 import com.vanatta.helene.supplies.database.manage.add.site.AddSiteDao;
 import com.vanatta.helene.supplies.database.manage.add.site.AddSiteData;
@@ -45,6 +46,7 @@ public class TestConfiguration {
     String name = "test-name " + UUID.randomUUID().toString();
     AddSiteDao.addSite(
         jdbiTest,
+        new ReferenceTables(jdbiTest),
         AddSiteData.builder()
             .siteName(name)
             .county("Watauga")
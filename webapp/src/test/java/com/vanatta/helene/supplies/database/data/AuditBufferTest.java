@@ -0,0 +1,114 @@
+package com.vanatta.helene.supplies.database.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.vanatta.helene.supplies.database.TestConfiguration;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AuditBufferTest {
+
+  private long siteId;
+  private long itemId;
+
+  @BeforeEach
+  void setup() {
+    TestConfiguration.setupDatabase();
+    siteId = TestConfiguration.getSiteId("site1");
+    itemId = new ItemCatalog(TestConfiguration.jdbiTest).itemId("water");
+  }
+
+  /** Rows are not written until flushed, and keep the time they were added. */
+  @Test
+  void flush() {
+    var auditBuffer = new AuditBuffer(TestConfiguration.jdbiTest, 100, Duration.ofHours(1));
+    int startCount = countRows("site_item_audit");
+    Instant added = Instant.now();
+
+    auditBuffer.addSiteItemAudit(siteId, itemId, "Needed", "Available");
+    auditBuffer.addSiteItemAudit(siteId, itemId, "Available", "Needed");
+    assertThat(countRows("site_item_audit")).isEqualTo(startCount);
+
+    auditBuffer.flush();
+    assertThat(countRows("site_item_audit")).isEqualTo(startCount + 2);
+    assertThat(lastChangedDate("site_item_audit")).isBefore(added.plusSeconds(1));
+    auditBuffer.shutdown();
+  }
+
+  @Test
+  void flushedWhenFull() throws Exception {
+    var auditBuffer = new AuditBuffer(TestConfiguration.jdbiTest, 3, Duration.ofHours(1));
+    int startCount = countRows("site_item_audit");
+
+    auditBuffer.addSiteItemAudit(siteId, itemId, "Needed", "Available");
+    auditBuffer.addSiteItemAudit(siteId, itemId, "Available", "Needed");
+    auditBuffer.addSiteItemAudit(siteId, itemId, "Needed", "Oversupply");
+
+    awaitRowCount("site_item_audit", startCount + 3);
+    auditBuffer.shutdown();
+  }
+
+  @Test
+  void flushedOnTimer() throws Exception {
+    var auditBuffer = new AuditBuffer(TestConfiguration.jdbiTest, 100, Duration.ofMillis(50));
+    int startCount = countRows("site_item_audit");
+
+    auditBuffer.addSiteItemAudit(siteId, itemId, "Needed", "Available");
+
+    awaitRowCount("site_item_audit", startCount + 1);
+    auditBuffer.shutdown();
+  }
+
+  /** Buffered rows are written on shutdown, rows added after shutdown are written right away. */
+  @Test
+  void shutdown() {
+    var auditBuffer = new AuditBuffer(TestConfiguration.jdbiTest, 100, Duration.ofHours(1));
+    int startCount = countRows("site_item_audit");
+
+    auditBuffer.addSiteItemAudit(siteId, itemId, "Needed", "Available");
+    auditBuffer.shutdown();
+    assertThat(countRows("site_item_audit")).isEqualTo(startCount + 1);
+
+    auditBuffer.addSiteItemAudit(siteId, itemId, "Available", "Needed");
+    assertThat(countRows("site_item_audit")).isEqualTo(startCount + 2);
+  }
+
+  /** A row that cannot be written is dropped, the other rows of its batch are still written. */
+  @Test
+  void failedBatchIsWrittenRowByRow() {
+    var auditBuffer = new AuditBuffer(TestConfiguration.jdbiTest, 100, Duration.ofHours(1));
+    int startCount = countRows("site_item_audit");
+
+    auditBuffer.addSiteItemAudit(siteId, itemId, "Needed", "Available");
+    auditBuffer.addSiteItemAudit(-1L, itemId, "Needed", "Available");
+    auditBuffer.addSiteItemAudit(siteId, itemId, "Available", "Needed");
+
+    assertThatThrownBy(auditBuffer::flush).isInstanceOf(RuntimeException.class);
+    assertThat(countRows("site_item_audit")).isEqualTo(startCount + 2);
+    auditBuffer.shutdown();
+  }
+
+  private static void awaitRowCount(String table, int expected) throws InterruptedException {
+    for (int i = 0; i < 100 && countRows(table) < expected; i++) {
+      Thread.sleep(50);
+    }
+    assertThat(countRows(table)).isEqualTo(expected);
+  }
+
+  private static int countRows(String table) {
+    return TestConfiguration.jdbiTest.withHandle(
+        handle -> handle.createQuery("select count(*) from " + table).mapTo(Integer.class).one());
+  }
+
+  private static Instant lastChangedDate(String table) {
+    return TestConfiguration.jdbiTest.withHandle(
+        handle ->
+            handle
+                .createQuery("select changed_date from " + table + " order by id desc limit 1")
+                .mapTo(Instant.class)
+                .one());
+  }
+}
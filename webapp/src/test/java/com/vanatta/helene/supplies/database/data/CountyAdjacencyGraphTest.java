@@ -0,0 +1,61 @@
+package com.vanatta.helene.supplies.database.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.vanatta.helene.supplies.database.TestConfiguration;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CountyAdjacencyGraphTest {
+
+  /** 1 - 2 - 3 - 4 in a line, 5 on its own. */
+  private final CountyAdjacencyGraph graph =
+      new CountyAdjacencyGraph(
+          List.of(1L, 2L, 3L, 4L, 5L),
+          List.of(
+              new CountyAdjacencyGraph.Adjacency(1L, 2L),
+              new CountyAdjacencyGraph.Adjacency(2L, 3L),
+              new CountyAdjacencyGraph.Adjacency(3L, 4L),
+              // stored in both directions in the database
+              new CountyAdjacencyGraph.Adjacency(4L, 3L)));
+
+  @Test
+  void hops() {
+    assertThat(graph.hops(1L, 1L)).isEqualTo(0);
+    assertThat(graph.hops(1L, 2L)).isEqualTo(1);
+    assertThat(graph.hops(1L, 4L)).isEqualTo(3);
+    assertThat(graph.hops(4L, 1L)).isEqualTo(3);
+    assertThat(graph.hops(3L, 2L)).isEqualTo(1);
+  }
+
+  @Test
+  void unreachable() {
+    assertThat(graph.hops(1L, 5L)).isEqualTo(CountyAdjacencyGraph.UNREACHABLE);
+    assertThat(graph.hops(1L, 99L)).isEqualTo(CountyAdjacencyGraph.UNREACHABLE);
+    assertThat(graph.hops(99L, 99L)).isEqualTo(0);
+  }
+
+  /** Test data has Ashe and Watauga next to each other. */
+  @Test
+  void load() {
+    TestConfiguration.setupDatabase();
+    var loaded = CountyAdjacencyGraph.load(TestConfiguration.jdbiTest);
+
+    long ashe = countyId("Ashe");
+    long watauga = countyId("Watauga");
+    long buncombe = countyId("Buncombe");
+    assertThat(loaded.hops(ashe, watauga)).isEqualTo(1);
+    assertThat(loaded.hops(watauga, ashe)).isEqualTo(1);
+    assertThat(loaded.hops(ashe, buncombe)).isEqualTo(CountyAdjacencyGraph.UNREACHABLE);
+  }
+
+  private static long countyId(String name) {
+    return TestConfiguration.jdbiTest.withHandle(
+        handle ->
+            handle
+                .createQuery("select id from county where name = :name")
+                .bind("name", name)
+                .mapTo(Long.class)
+                .one());
+  }
+}
@@ -3,7 +3,6 @@ package com.vanatta.helene.supplies.database.data;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.vanatta.helene.supplies.database.TestConfiguration;
-import com.vanatta.helene.supplies.database.supplies.filters.AuthenticatedMode;
 import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.BeforeAll;
@@ -29,25 +28,6 @@ class CountyDaoTest {
         .contains("Halifax");
   }
 
-  /**
-   * Active counties are just the ones that have an active site. The list of active counties should
-   * be shorter than the list of all counties.
-   */
-  @Test
-  void fetchActiveCountyList() {
-    int fullCountyCount =
-        CountyDao.fetchFullCountyListByState(TestConfiguration.jdbiTest, "NC").size();
-    List<String> activeCounties =
-        CountyDao.fetchActiveCountyList(
-            TestConfiguration.jdbiTest, AuthenticatedMode.NOT_AUTHENTICATED);
-
-    assertThat(activeCounties.size()).isGreaterThan(0);
-    assertThat(fullCountyCount).isGreaterThan(activeCounties.size());
-
-    assertThat(activeCounties).contains("Watauga");
-    assertThat(activeCounties).doesNotContain("dummy");
-  }
-
   @Test
   void fetchFullCountyListing() {
     Map<String, List<String>> fetchFullCountyListing =
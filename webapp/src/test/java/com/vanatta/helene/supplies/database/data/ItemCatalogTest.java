@@ -0,0 +1,107 @@
+package com.vanatta.helene.supplies.database.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.vanatta.helene.supplies.database.TestConfiguration;
+import com.vanatta.helene.supplies.database.manage.inventory.InventoryDao;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class ItemCatalogTest {
+
+  private final ItemCatalog itemCatalog = new ItemCatalog(TestConfiguration.jdbiTest);
+
+  @BeforeAll
+  static void setup() {
+    TestConfiguration.setupDatabase();
+  }
+
+  /** 'water' has a wss id of -40 in the test data. */
+  @Test
+  void lookups() {
+    var water = itemCatalog.findByName("water").orElseThrow();
+
+    assertThat(water.getName()).isEqualTo("water");
+    assertThat(water.getWssId()).isEqualTo(-40L);
+    assertThat(water.getId()).isEqualTo(queryItemId("water"));
+    assertThat(itemCatalog.findByWssId(-40L)).contains(water);
+    assertThat(itemCatalog.findById(water.getId())).contains(water);
+    assertThat(itemCatalog.itemId("water")).isEqualTo(water.getId());
+  }
+
+  /** Item names are unique ignoring case, and so are looked up ignoring case. */
+  @Test
+  void findByNameIgnoresCase() {
+    assertThat(itemCatalog.findByName("WaTeR").map(ItemCatalog.Item::getName)).contains("water");
+  }
+
+  @Test
+  void missingItems() {
+    assertThat(itemCatalog.findByName("not an item")).isEmpty();
+    assertThat(itemCatalog.findByName(null)).isEmpty();
+    assertThat(itemCatalog.findByWssId(-999_999L)).isEmpty();
+    assertThatThrownBy(() -> itemCatalog.itemId("not an item"))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void newItemIsAddedToCatalog() {
+    String name = "item " + UUID.randomUUID();
+
+    InventoryDao.addNewItem(TestConfiguration.jdbiTest, itemCatalog, name);
+
+    assertThat(itemCatalog.findByName(name).map(ItemCatalog.Item::getId))
+        .contains(queryItemId(name));
+  }
+
+  /** Items not added through the catalog are still found, by looking in the database. */
+  @Test
+  void itemInsertedDirectlyIsFound() {
+    String name = "item " + UUID.randomUUID();
+    TestConfiguration.jdbiTest.withHandle(
+        handle ->
+            handle
+                .createUpdate("insert into item(name) values(:name)")
+                .bind("name", name)
+                .execute());
+
+    assertThat(itemCatalog.findByName(name).map(ItemCatalog.Item::getId))
+        .contains(queryItemId(name));
+  }
+
+  @Test
+  void sortedItems() {
+    var sorted = itemCatalog.sortedItems();
+
+    assertThat(sorted).hasSize(countItems());
+    assertThat(sorted.stream().map(item -> item.getName().toLowerCase()).toList()).isSorted();
+  }
+
+  /** The sorted list is rebuilt when an item is added. */
+  @Test
+  void sortedItemsIncludesNewItem() {
+    itemCatalog.sortedItems();
+    String name = "item " + UUID.randomUUID();
+
+    InventoryDao.addNewItem(TestConfiguration.jdbiTest, itemCatalog, name);
+
+    assertThat(itemCatalog.sortedItems().stream().map(ItemCatalog.Item::getName)).contains(name);
+  }
+
+  private static int countItems() {
+    return TestConfiguration.jdbiTest.withHandle(
+        handle -> handle.createQuery("select count(*) from item").mapTo(Integer.class).one());
+  }
+
+  private static long queryItemId(String name) {
+    return TestConfiguration.jdbiTest.withHandle(
+        handle ->
+            handle
+                .createQuery("select id from item where name = :name")
+                .bind("name", name)
+                .mapTo(Long.class)
+                .one());
+  }
+}
@@ -0,0 +1,94 @@
+package com.vanatta.helene.supplies.database.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.vanatta.helene.supplies.database.TestConfiguration;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class ReferenceTablesTest {
+
+  private final ReferenceTables referenceTables = new ReferenceTables(TestConfiguration.jdbiTest);
+
+  @BeforeAll
+  static void setup() {
+    TestConfiguration.setupDatabase();
+  }
+
+  @Test
+  void idsMatchDatabase() {
+    for (ItemStatus itemStatus : ItemStatus.values()) {
+      assertThat(referenceTables.itemStatusId(itemStatus.getText()))
+          .isEqualTo(
+              queryId("select id from item_status where name = :name", itemStatus.getText()));
+    }
+    for (SiteType siteType : SiteType.values()) {
+      assertThat(referenceTables.siteTypeId(siteType.getText()))
+          .isEqualTo(queryId("select id from site_type where name = :name", siteType.getText()));
+    }
+    assertThat(referenceTables.maxSupplyLoadId("Car"))
+        .isEqualTo(queryId("select id from max_supply_load where name = :name", "Car"));
+    assertThat(referenceTables.countyId("Watauga", "NC"))
+        .isEqualTo(queryId("select id from county where name = :name and state = 'NC'", "Watauga"));
+  }
+
+  @Test
+  void invalidNames() {
+    assertThatThrownBy(() -> referenceTables.itemStatusId("not a status"))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> referenceTables.itemStatusId(null))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> referenceTables.siteTypeId("not a site type"))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> referenceTables.maxSupplyLoadId("not a max supply"))
+        .isInstanceOf(IllegalArgumentException.class);
+    // county exists, but in a different state
+    assertThatThrownBy(() -> referenceTables.countyId("Watauga", "TN"))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /** A county added after the tables are loaded is found without an explicit reload. */
+  @Test
+  void newRowIsPickedUp() {
+    String county = "county " + UUID.randomUUID();
+    TestConfiguration.addCounty(county, "NC");
+
+    assertThat(referenceTables.countyId(county, "NC"))
+        .isEqualTo(queryId("select id from county where name = :name", county));
+  }
+
+  /**
+   * A name that is not found is remembered as missing, it is not found even if added later, until
+   * the tables are reloaded.
+   */
+  @Test
+  void missingNameIsRemembered() {
+    String county = "county " + UUID.randomUUID();
+    assertThatThrownBy(() -> referenceTables.countyId(county, "NC"))
+        .isInstanceOf(IllegalArgumentException.class);
+
+    TestConfiguration.addCounty(county, "NC");
+    assertThatThrownBy(() -> referenceTables.countyId(county, "NC"))
+        .isInstanceOf(IllegalArgumentException.class);
+
+    referenceTables.reload();
+    assertThat(referenceTables.countyId(county, "NC"))
+        .isEqualTo(queryId("select id from county where name = :name", county));
+  }
+
+  @Test
+  void itemStatusNamesAreCanonical() {
+    long id = referenceTables.itemStatusId(ItemStatus.NEEDED.getText());
+
+    assertThat(referenceTables.itemStatusName(id)).isEqualTo(ItemStatus.NEEDED.getText());
+    assertThat(referenceTables.itemStatusName(id)).isSameAs(ItemStatus.NEEDED.getText());
+    assertThat(referenceTables.itemStatusName(-1L)).isNull();
+  }
+
+  private static long queryId(String query, String name) {
+    return TestConfiguration.jdbiTest.withHandle(
+        handle -> handle.createQuery(query).bind("name", name).mapTo(Long.class).one());
+  }
+}
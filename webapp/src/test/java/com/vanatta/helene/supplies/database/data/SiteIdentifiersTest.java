@@ -0,0 +1,78 @@
+package com.vanatta.helene.supplies.database.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.vanatta.helene.supplies.database.TestConfiguration;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class SiteIdentifiersTest {
+
+  private final SiteIdentifiers siteIdentifiers = new SiteIdentifiers(TestConfiguration.jdbiTest);
+
+  @BeforeAll
+  static void setup() {
+    TestConfiguration.setupDatabase();
+  }
+
+  @Test
+  void lookups() {
+    long site1Id = TestConfiguration.getSiteId();
+
+    assertThat(siteIdentifiers.siteIdByWssId(TestConfiguration.SITE1_WSS_ID)).contains(site1Id);
+    assertThat(siteIdentifiers.siteIdByAirtableId(TestConfiguration.SITE1_AIRTABLE_ID))
+        .contains(site1Id);
+    assertThat(siteIdentifiers.wssIdByAirtableId(TestConfiguration.SITE1_AIRTABLE_ID))
+        .contains(TestConfiguration.SITE1_WSS_ID);
+  }
+
+  @Test
+  void missingSites() {
+    assertThat(siteIdentifiers.siteIdByWssId(-999_999L)).isEmpty();
+    assertThat(siteIdentifiers.siteIdByAirtableId(-999_999L)).isEmpty();
+    assertThat(siteIdentifiers.wssIdByAirtableId(-999_999L)).isEmpty();
+  }
+
+  @Test
+  void newSiteIsAdded() {
+    long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+
+    assertThat(siteIdentifiers.siteIdByWssId(queryWssId(siteId))).contains(siteId);
+  }
+
+  /** Sites added by the app have no airtable id, they must not be found under some other id. */
+  @Test
+  void siteWithoutAirtableId() {
+    long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+    siteIdentifiers.reload();
+
+    assertThat(siteIdentifiers.siteIdByAirtableId(0L)).isEmpty();
+    assertThat(siteIdentifiers.wssIdByAirtableId(0L)).isEmpty();
+    assertThat(siteIdentifiers.siteIdByWssId(queryWssId(siteId))).contains(siteId);
+  }
+
+  /** Airtable ids are assigned outside of the app, they are found by looking in the database. */
+  @Test
+  void airtableIdSetDirectlyIsFound() {
+    long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+    TestConfiguration.jdbiTest.withHandle(
+        handle ->
+            handle
+                .createUpdate("update site set airtable_id = -555 where id = :siteId")
+                .bind("siteId", siteId)
+                .execute());
+
+    assertThat(siteIdentifiers.siteIdByAirtableId(-555L)).contains(siteId);
+    assertThat(siteIdentifiers.wssIdByAirtableId(-555L)).contains(queryWssId(siteId));
+  }
+
+  private static long queryWssId(long siteId) {
+    return TestConfiguration.jdbiTest.withHandle(
+        handle ->
+            handle
+                .createQuery("select wss_id from site where id = :siteId")
+                .bind("siteId", siteId)
+                .mapTo(Long.class)
+                .one());
+  }
+}
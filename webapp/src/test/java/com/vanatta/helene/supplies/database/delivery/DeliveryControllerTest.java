@@ -1,13 +1,20 @@
 package com.vanatta.helene.supplies.database.delivery;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import com.google.gson.Gson;
 import com.vanatta.helene.supplies.database.TestConfiguration;
+import com.vanatta.helene.supplies.database.data.ItemCatalog;
+import com.vanatta.helene.supplies.database.data.SiteIdentifiers;
+import com.vanatta.helene.supplies.database.incoming.webhook.WebhookFingerprintStore;
+import com.vanatta.helene.supplies.database.incoming.webhook.WebhookQueue;
 import com.vanatta.helene.supplies.database.supplies.site.details.SiteDetailDao;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -84,7 +91,48 @@ class DeliveryControllerTest {
     DeliveryController.DeliveryUpdate.parseJson(deliveryInput2);
   }
 
-  DeliveryController deliveryController = new DeliveryController(TestConfiguration.jdbiTest);
+  DeliveryController deliveryController =
+      new DeliveryController(
+          TestConfiguration.jdbiTest,
+          new ItemCatalog(TestConfiguration.jdbiTest),
+          new SiteIdentifiers(TestConfiguration.jdbiTest),
+          new WebhookFingerprintStore(Duration.ofMinutes(10)),
+          WebhookQueue.newDisabled());
+
+  /** A payload that could not be queued is not dropped as a duplicate when Make retries it. */
+  @Test
+  void payloadNotQueuedIsAcceptedOnRetry() {
+    AtomicBoolean failNext = new AtomicBoolean(true);
+    List<String> queued = new ArrayList<>();
+    WebhookQueue webhookQueue =
+        new WebhookQueue(TestConfiguration.jdbiTest, null, true, 1) {
+          @Override
+          public void submit(String endpoint, long deliveryId, String payload) {
+            if (failNext.getAndSet(false)) {
+              throw new IllegalStateException("connection pool exhausted");
+            }
+            queued.add(payload);
+          }
+        };
+    var controller =
+        new DeliveryController(
+            TestConfiguration.jdbiTest,
+            new ItemCatalog(TestConfiguration.jdbiTest),
+            new SiteIdentifiers(TestConfiguration.jdbiTest),
+            new WebhookFingerprintStore(Duration.ofMinutes(10)),
+            webhookQueue);
+    try {
+      assertThatThrownBy(() -> controller.upsertDelivery(deliveryUpdateInput))
+          .isInstanceOf(IllegalStateException.class);
+
+      var response = controller.upsertDelivery(deliveryUpdateInput);
+
+      assertThat(response.getStatusCode().value()).isEqualTo(202);
+      assertThat(queued).containsExactly(deliveryUpdateInput);
+    } finally {
+      webhookQueue.shutdown();
+    }
+  }
 
   @Test
   void deliveriesStored() {
@@ -98,17 +146,12 @@ class DeliveryControllerTest {
             .itemListWssIds(List.of(WATER_WSS_ID, GLOVES_WSS_ID))
             .build();
 
-    assertThat(
-            DeliveryDao.fetchDeliveriesBySiteId(
-                TestConfiguration.jdbiTest, TestConfiguration.getSiteId("site1")))
-        .isEmpty();
+    assertThat(fetchAllDeliveries(TestConfiguration.getSiteId("site1"))).isEmpty();
 
     var response = deliveryController.upsertDelivery(new Gson().toJson(inputData));
     assertThat(response.getStatusCode().value()).isEqualTo(200);
 
-    var deliveries =
-        DeliveryDao.fetchDeliveriesBySiteId(
-            TestConfiguration.jdbiTest, TestConfiguration.getSiteId("site1"));
+    var deliveries = fetchAllDeliveries(TestConfiguration.getSiteId("site1"));
     assertThat(deliveries).hasSize(1);
     var delivery = deliveries.getFirst();
     assertThat(delivery.getDeliveryNumber()).isEqualTo(68L);
@@ -165,9 +208,7 @@ class DeliveryControllerTest {
     response = deliveryController.upsertDelivery(new Gson().toJson(updatedInput));
     assertThat(response.getStatusCode().value()).isEqualTo(200);
 
-    deliveries =
-        DeliveryDao.fetchDeliveriesBySiteId(
-            TestConfiguration.jdbiTest, TestConfiguration.getSiteId("site1"));
+    deliveries = fetchAllDeliveries(TestConfiguration.getSiteId("site1"));
     assertThat(deliveries).hasSize(1);
     delivery = deliveries.getFirst();
     assertThat(delivery.getDeliveryNumber()).isEqualTo(68L);
@@ -189,21 +230,42 @@ class DeliveryControllerTest {
    */
   @Test
   void deleteDelivery() {
-    var deliveries =
-        DeliveryDao.fetchDeliveriesBySiteId(
-            TestConfiguration.jdbiTest, TestConfiguration.getSiteId("site2"));
+    var deliveries = fetchAllDeliveries(TestConfiguration.getSiteId("site2"));
     int deliveryCount = deliveries.size();
     assertThat(deliveryCount).isGreaterThan(0);
     long deliveryId = deliveries.getFirst().getDeliveryNumber();
 
     DeliveryDao.deleteDelivery(TestConfiguration.jdbiTest, deliveryId);
 
-    deliveries =
-        DeliveryDao.fetchDeliveriesBySiteId(
-            TestConfiguration.jdbiTest, TestConfiguration.getSiteId("site2"));
+    deliveries = fetchAllDeliveries(TestConfiguration.getSiteId("site2"));
     assertThat(deliveries).hasSize(deliveryCount - 1);
   }
 
+  /**
+   * Deliveries coming in to and going out from a site. Pages through them one delivery at a time,
+   * the same way the site detail page pages in older deliveries.
+   */
+  private static List<Delivery> fetchAllDeliveries(long siteId) {
+    List<Delivery> deliveries = new ArrayList<>();
+    for (DeliveryDao.Direction direction : DeliveryDao.Direction.values()) {
+      var page =
+          DeliveryDao.fetchRecentDeliveries(TestConfiguration.jdbiTest, siteId, direction, 30, 1);
+      deliveries.addAll(page.getDeliveries());
+      while (page.isHasMore()) {
+        page =
+            DeliveryDao.fetchDeliveriesBefore(
+                TestConfiguration.jdbiTest,
+                siteId,
+                direction,
+                page.getBeforeDate(),
+                page.getBeforeId(),
+                1);
+        deliveries.addAll(page.getDeliveries());
+      }
+    }
+    return deliveries;
+  }
+
   @Nested
   class RenderDetailPage {
 
@@ -1,10 +1,17 @@
 package com.vanatta.helene.supplies.database.delivery;
 
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 import com.google.gson.Gson;
 import com.vanatta.helene.supplies.database.TestConfiguration;
+import com.vanatta.helene.supplies.database.data.ItemCatalog;
+import com.vanatta.helene.supplies.database.data.SiteIdentifiers;
+import java.time.LocalDate;
 import java.util.List;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
@@ -49,6 +56,139 @@ class DeliveryDaoTest {
                 .itemListWssIds(List.of(WATER_WSS_ID, GLOVES_WSS_ID))
                 .build();
 
-    DeliveryDao.upsert(TestConfiguration.jdbiTest, update);
+    DeliveryDao.upsert(
+        TestConfiguration.jdbiTest,
+        new ItemCatalog(TestConfiguration.jdbiTest),
+        new SiteIdentifiers(TestConfiguration.jdbiTest),
+        update);
+  }
+
+  /**
+   * Test data has deliveries from site3 to site4, one dated 2024-12-13 (-2) and one not yet
+   * scheduled (-3). Deliveries without a date are listed first.
+   */
+  @Nested
+  class Pagination {
+
+    @Test
+    void recentDeliveriesThenOlder() {
+      long site3 = TestConfiguration.getSiteId("site3");
+
+      var firstPage =
+          DeliveryDao.fetchRecentDeliveries(
+              TestConfiguration.jdbiTest, site3, DeliveryDao.Direction.OUTGOING, 14, 10);
+      assertThat(firstPage.getDeliveries().stream().map(Delivery::getDeliveryNumber))
+          .containsExactly(-3L);
+      assertThat(firstPage.isHasMore()).isTrue();
+      // the older page starts at the window cutoff date
+      assertThat(firstPage.getBeforeDate()).isEqualTo(LocalDate.now().minusDays(14).toString());
+      assertThat(firstPage.getBeforeId()).isNull();
+
+      var secondPage =
+          DeliveryDao.fetchDeliveriesBefore(
+              TestConfiguration.jdbiTest,
+              site3,
+              DeliveryDao.Direction.OUTGOING,
+              firstPage.getBeforeDate(),
+              firstPage.getBeforeId(),
+              10);
+      assertThat(secondPage.getDeliveries().stream().map(Delivery::getDeliveryNumber))
+          .containsExactly(-2L);
+      assertThat(secondPage.isHasMore()).isFalse();
+    }
+
+    /**
+     * A delivery dated on the cutoff day is in the recent window, one dated the day before is on
+     * the older page; neither is listed twice or skipped.
+     */
+    @Test
+    void windowCutoffBoundary() {
+      LocalDate cutoff = LocalDate.now().minusDays(14);
+      upsertDelivery(9001, cutoff);
+      upsertDelivery(9002, cutoff.minusDays(1));
+      long site1 = TestConfiguration.getSiteId("site1");
+
+      var recent =
+          DeliveryDao.fetchRecentDeliveries(
+              TestConfiguration.jdbiTest, site1, DeliveryDao.Direction.OUTGOING, 14, 10);
+      assertThat(recent.getDeliveries().stream().map(Delivery::getDeliveryNumber))
+          .contains(9001L)
+          .doesNotContain(9002L);
+
+      var older =
+          DeliveryDao.fetchDeliveriesBefore(
+              TestConfiguration.jdbiTest,
+              site1,
+              DeliveryDao.Direction.OUTGOING,
+              recent.getBeforeDate(),
+              recent.getBeforeId(),
+              10);
+      assertThat(older.getDeliveries().stream().map(Delivery::getDeliveryNumber))
+          .contains(9002L)
+          .doesNotContain(9001L);
+    }
+
+    private static void upsertDelivery(long deliveryId, LocalDate targetDate) {
+      DeliveryController.DeliveryUpdate update =
+          new Gson()
+              .fromJson(upsertJson2, DeliveryController.DeliveryUpdate.class).toBuilder()
+                  .deliveryId(deliveryId)
+                  .targetDeliveryDate(targetDate.toString())
+                  .pickupSiteWssId(List.of(SITE1_WSS_ID))
+                  .dropOffSiteWssId(List.of(SITE2_WSS_ID))
+                  .build();
+      DeliveryDao.upsert(
+          TestConfiguration.jdbiTest,
+          new ItemCatalog(TestConfiguration.jdbiTest),
+          new SiteIdentifiers(TestConfiguration.jdbiTest),
+          update);
+    }
+
+    @Test
+    void pagesAreLimitedToPageSize() {
+      long site4 = TestConfiguration.getSiteId("site4");
+
+      var firstPage =
+          DeliveryDao.fetchDeliveriesBefore(
+              TestConfiguration.jdbiTest,
+              site4,
+              DeliveryDao.Direction.INCOMING,
+              null,
+              Long.MAX_VALUE,
+              1);
+      assertThat(firstPage.getDeliveries().stream().map(Delivery::getDeliveryNumber))
+          .containsExactly(-3L);
+      assertThat(firstPage.isHasMore()).isTrue();
+      assertThat(firstPage.getBeforeDate()).isNull();
+      assertThat(firstPage.getBeforeId()).isEqualTo(-3L);
+
+      var secondPage =
+          DeliveryDao.fetchDeliveriesBefore(
+              TestConfiguration.jdbiTest,
+              site4,
+              DeliveryDao.Direction.INCOMING,
+              firstPage.getBeforeDate(),
+              firstPage.getBeforeId(),
+              1);
+      assertThat(secondPage.getDeliveries().stream().map(Delivery::getDeliveryNumber))
+          .containsExactly(-2L);
+      assertThat(secondPage.isHasMore()).isFalse();
+    }
+
+    @Test
+    void directionIsRespected() {
+      long site3 = TestConfiguration.getSiteId("site3");
+
+      var incoming =
+          DeliveryDao.fetchDeliveriesBefore(
+              TestConfiguration.jdbiTest,
+              site3,
+              DeliveryDao.Direction.INCOMING,
+              null,
+              Long.MAX_VALUE,
+              10);
+      assertThat(incoming.getDeliveries().stream().map(Delivery::getDeliveryNumber))
+          .containsExactly(-1L);
+    }
   }
 }
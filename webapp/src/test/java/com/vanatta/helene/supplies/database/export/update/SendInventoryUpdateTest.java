@@ -3,6 +3,7 @@ package com.vanatta.helene.supplies.database.export.update;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.vanatta.helene.supplies.database.TestConfiguration;
+import com.vanatta.helene.supplies.database.data.ItemCatalog;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
@@ -17,7 +18,10 @@ class SendInventoryUpdateTest {
   void query() {
     var result =
         SendInventoryUpdate.fetchItemForSite(
-            TestConfiguration.jdbiTest, TestConfiguration.getSiteId("site1"), "new clothes");
+            TestConfiguration.jdbiTest,
+            new ItemCatalog(TestConfiguration.jdbiTest),
+            TestConfiguration.getSiteId("site1"),
+            "new clothes");
 
     assertThat(result.getItemName()).isEqualTo("new clothes");
     assertThat(result.getSiteName()).isEqualTo("site1");
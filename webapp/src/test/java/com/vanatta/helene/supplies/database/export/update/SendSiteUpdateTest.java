@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import com.vanatta.helene.supplies.database.TestConfiguration;
 import com.vanatta.helene.supplies.database.data.DonationStatus;
+import com.vanatta.helene.supplies.database.data.SiteIdentifiers;
 import com.vanatta.helene.supplies.database.data.SiteType;
 import java.util.List;
 import lombok.Builder;
@@ -26,7 +27,7 @@ class SendSiteUpdateTest {
     // should fetch the wss ID of 'site1', based on data inserted in 'TestData.sql'
     var result =
         SendSiteUpdate.fetchWssIdByAirtableId(
-            TestConfiguration.jdbiTest, TestConfiguration.SITE1_AIRTABLE_ID);
+            new SiteIdentifiers(TestConfiguration.jdbiTest), TestConfiguration.SITE1_AIRTABLE_ID);
     assertThat(result).isEqualTo(TestConfiguration.SITE1_WSS_ID);
   }
 
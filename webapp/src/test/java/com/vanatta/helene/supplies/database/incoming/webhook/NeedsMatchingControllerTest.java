@@ -1,11 +1,17 @@
 package com.vanatta.helene.supplies.database.incoming.webhook;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import com.vanatta.helene.supplies.database.TestConfiguration;
 import com.vanatta.helene.supplies.database.data.ItemStatus;
 import com.vanatta.helene.supplies.database.data.SiteType;
+import com.vanatta.helene.supplies.database.supplies.site.details.NeedsMatchingIndex;
 import com.vanatta.helene.supplies.database.supplies.site.details.SiteDetailDao;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -22,10 +28,54 @@ class NeedsMatchingControllerTest {
           {"deliveryId":35,"fromSiteWssId":[337],"toSiteWssId":[115]}
           """;
       NeedsMatchingController controller =
-          new NeedsMatchingController(TestConfiguration.jdbiTest, false, "");
+          new NeedsMatchingController(
+              false,
+              "",
+              new WebhookFingerprintStore(Duration.ofMinutes(10)),
+              WebhookQueue.newDisabled(),
+              new NeedsMatchingIndex(TestConfiguration.jdbiTest));
       ResponseEntity<String> response = controller.addSuppliesToDelivery(input);
       assertThat(response.getStatusCode().value()).isEqualTo(200);
     }
+
+    /** A payload that could not be queued is not dropped as a duplicate when Make retries it. */
+    @Test
+    void payloadNotQueuedIsAcceptedOnRetry() {
+      String input =
+          """
+          {"deliveryId":36,"fromSiteWssId":[337],"toSiteWssId":[115]}
+          """;
+      AtomicBoolean failNext = new AtomicBoolean(true);
+      List<String> queued = new ArrayList<>();
+      WebhookQueue webhookQueue =
+          new WebhookQueue(TestConfiguration.jdbiTest, null, true, 1) {
+            @Override
+            public void submit(String endpoint, long deliveryId, String payload) {
+              if (failNext.getAndSet(false)) {
+                throw new IllegalStateException("connection pool exhausted");
+              }
+              queued.add(payload);
+            }
+          };
+      NeedsMatchingController controller =
+          new NeedsMatchingController(
+              false,
+              "",
+              new WebhookFingerprintStore(Duration.ofMinutes(10)),
+              webhookQueue,
+              new NeedsMatchingIndex(TestConfiguration.jdbiTest));
+      try {
+        assertThatThrownBy(() -> controller.addSuppliesToDelivery(input))
+            .isInstanceOf(IllegalStateException.class);
+
+        ResponseEntity<String> response = controller.addSuppliesToDelivery(input);
+
+        assertThat(response.getStatusCode().value()).isEqualTo(202);
+        assertThat(queued).containsExactly(input);
+      } finally {
+        webhookQueue.shutdown();
+      }
+    }
   }
 
   private static long supplySiteId;
@@ -40,6 +90,9 @@ class NeedsMatchingControllerTest {
   private static long toSiteIdNoOverlap;
   private static long toSiteWssIdNoOverlap;
 
+  /** Loaded once all of the sites above are set up. */
+  private static NeedsMatchingIndex index;
+
   /**
    *
    *
@@ -97,21 +150,19 @@ class NeedsMatchingControllerTest {
     toSiteWssIdNoOverlap =
         SiteDetailDao.lookupSiteById(TestConfiguration.jdbiTest, toSiteIdNoOverlap).getWssId();
     TestConfiguration.addItemToSite(toSiteId, ItemStatus.NEEDED, "used clothes", -230);
+
+    index = new NeedsMatchingIndex(TestConfiguration.jdbiTest);
   }
 
   @Test
   void supplyMatchingFromWarehouse() {
-    var results =
-        NeedsMatchingController.computeNeedsMatch(
-            TestConfiguration.jdbiTest, warehouseSiteWssId, toSiteWssId);
+    var results = index.findItemsToSend(warehouseSiteWssId, toSiteWssId);
     assertThat(results).containsExactly("batteries", "gloves", "heater");
   }
 
   @Test
   void supplyMatchingFromSupplySite() {
-    var results =
-        NeedsMatchingController.computeNeedsMatch(
-            TestConfiguration.jdbiTest, supplySiteWssId, toSiteWssId);
+    var results = index.findItemsToSend(supplySiteWssId, toSiteWssId);
     // expected nonmatch: -220 gloves  (gloves are available at a dist site, and are not oversupply)
     assertThat(results).containsExactly("batteries", "heater");
   }
@@ -122,19 +173,64 @@ class NeedsMatchingControllerTest {
    */
   @Test
   void supplyMatchingToNonOverlapSite() {
-    var results =
-        NeedsMatchingController.computeNeedsMatch(
-            TestConfiguration.jdbiTest, warehouseSiteWssId, toSiteWssIdNoOverlap);
+    var results = index.findItemsToSend(warehouseSiteWssId, toSiteWssIdNoOverlap);
     assertThat(results).isEmpty();
 
-    results =
-        NeedsMatchingController.computeNeedsMatch(
-            TestConfiguration.jdbiTest, supplySiteWssId, toSiteWssIdNoOverlap);
+    results = index.findItemsToSend(supplySiteWssId, toSiteWssIdNoOverlap);
     assertThat(results).isEmpty();
 
-    results =
-        NeedsMatchingController.computeNeedsMatch(
-            TestConfiguration.jdbiTest, toSiteWssId, toSiteWssIdNoOverlap);
+    results = index.findItemsToSend(toSiteWssId, toSiteWssIdNoOverlap);
     assertThat(results).isEmpty();
   }
+
+  /** The in-memory index should give the same answer as the query, for every pair of sites. */
+  @Test
+  void indexMatchesQuery() {
+    List<Long> wssIds =
+        List.of(warehouseSiteWssId, supplySiteWssId, toSiteWssId, toSiteWssIdNoOverlap);
+
+    for (long from : wssIds) {
+      for (long to : wssIds) {
+        assertThat(index.findItemsToSend(from, to))
+            .describedAs("from %s to %s", from, to)
+            .isEqualTo(queryItemsToSend(from, to));
+      }
+    }
+  }
+
+  /**
+   * Reference query that the index is tested against: names of items that the 'from' site can
+   * supply and that the 'to' site needs.
+   */
+  private static List<String> queryItemsToSend(long fromSiteWssId, long toSiteWssId) {
+    String query =
+        """
+        select
+          i.name
+        from site fromSite
+        join site_type st on st.id = fromSite.site_type_id
+        join site_item available on available.site_id = fromSite.id
+        join item_status availableStatus on availableStatus.id = available.item_status_id
+        join site_item needed on needed.item_id = available.item_id
+        join site toSite on toSite.id = needed.site_id
+        join item_status neededStatus on neededStatus.id = needed.item_status_id
+        join item i on i.id = available.item_id
+        where fromSite.wss_id = :fromSiteWssId
+          and toSite.wss_id = :toSiteWssId
+          and neededStatus.name in ('Needed', 'Urgently Needed')
+          and (
+            availableStatus.name = 'Oversupply'
+            or (st.name = 'Supply Hub' and availableStatus.name = 'Available')
+          )
+        order by i.name asc
+        """;
+    return TestConfiguration.jdbiTest.withHandle(
+        handle ->
+            handle
+                .createQuery(query)
+                .bind("fromSiteWssId", fromSiteWssId)
+                .bind("toSiteWssId", toSiteWssId)
+                .mapTo(String.class)
+                .list());
+  }
 }
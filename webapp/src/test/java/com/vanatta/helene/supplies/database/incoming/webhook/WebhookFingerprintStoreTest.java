@@ -0,0 +1,136 @@
+package com.vanatta.helene.supplies.database.incoming.webhook;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class WebhookFingerprintStoreTest {
+
+  private static final String ENDPOINT = "/webhook/update-delivery";
+
+  private final MutableClock clock = new MutableClock();
+  private final WebhookFingerprintStore store =
+      new WebhookFingerprintStore(Duration.ofMinutes(10), clock);
+
+  @Test
+  void firstPayloadIsNew() {
+    assertThat(store.recordIfNew(ENDPOINT, 1, "{\"a\": 1}")).isTrue();
+    assertThat(store.getDuplicatesDropped()).isEmpty();
+  }
+
+  @Test
+  void identicalPayloadIsDuplicate() {
+    store.recordIfNew(ENDPOINT, 1, "{\"a\": 1}");
+
+    assertThat(store.recordIfNew(ENDPOINT, 1, "{\"a\": 1}")).isFalse();
+    // trailing whitespace is not considered a change
+    assertThat(store.recordIfNew(ENDPOINT, 1, "{\"a\": 1}\n")).isFalse();
+    assertThat(store.getDuplicatesDropped()).isEqualTo(Map.of(ENDPOINT, 2L));
+  }
+
+  @Test
+  void differentDeliveryOrEndpointIsNew() {
+    store.recordIfNew(ENDPOINT, 1, "{\"a\": 1}");
+
+    assertThat(store.recordIfNew(ENDPOINT, 2, "{\"a\": 1}")).isTrue();
+    assertThat(store.recordIfNew("/webhook/other", 1, "{\"a\": 1}")).isTrue();
+  }
+
+  /** A payload that changes and then changes back needs to be applied again. */
+  @Test
+  void onlyLatestPayloadIsRemembered() {
+    store.recordIfNew(ENDPOINT, 1, "{\"a\": 1}");
+    store.recordIfNew(ENDPOINT, 1, "{\"a\": 2}");
+
+    assertThat(store.recordIfNew(ENDPOINT, 1, "{\"a\": 1}")).isTrue();
+    assertThat(store.recordIfNew(ENDPOINT, 1, "{\"a\": 1}")).isFalse();
+  }
+
+  @Test
+  void fingerprintExpires() {
+    store.recordIfNew(ENDPOINT, 1, "{\"a\": 1}");
+    clock.advance(Duration.ofMinutes(11));
+
+    assertThat(store.recordIfNew(ENDPOINT, 1, "{\"a\": 1}")).isTrue();
+  }
+
+  /** A payload that failed to process is forgotten, so that its retry is processed. */
+  @Test
+  void forgottenPayloadIsNew() {
+    store.recordIfNew(ENDPOINT, 1, "{\"a\": 1}");
+
+    store.forget(ENDPOINT, 1, "{\"a\": 1}");
+
+    assertThat(store.recordIfNew(ENDPOINT, 1, "{\"a\": 1}")).isTrue();
+  }
+
+  /** Forgetting a payload leaves a newer payload of the same delivery in place. */
+  @Test
+  void forgetKeepsNewerPayload() {
+    store.recordIfNew(ENDPOINT, 1, "{\"a\": 1}");
+    store.recordIfNew(ENDPOINT, 1, "{\"a\": 2}");
+
+    store.forget(ENDPOINT, 1, "{\"a\": 1}");
+
+    assertThat(store.recordIfNew(ENDPOINT, 1, "{\"a\": 2}")).isFalse();
+  }
+
+  /** Of many identical payloads arriving at once, exactly one is let through. */
+  @Test
+  void concurrentIdenticalPayloadsAreLetThroughOnce() throws Exception {
+    int threads = 16;
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicInteger letThrough = new AtomicInteger();
+    try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+      for (int i = 0; i < threads; i++) {
+        executor.execute(
+            () -> {
+              try {
+                start.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              if (store.recordIfNew(ENDPOINT, 1, "{\"a\": 1}")) {
+                letThrough.incrementAndGet();
+              }
+            });
+      }
+      start.countDown();
+    }
+
+    assertThat(letThrough.get()).isEqualTo(1);
+    assertThat(store.getDuplicatesDropped()).isEqualTo(Map.of(ENDPOINT, (long) threads - 1));
+  }
+
+  private static class MutableClock extends Clock {
+    private Instant now = Instant.parse("2024-12-15T10:00:00Z");
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneId.of("UTC");
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
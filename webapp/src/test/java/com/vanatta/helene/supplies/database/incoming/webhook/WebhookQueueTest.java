@@ -0,0 +1,282 @@
+package com.vanatta.helene.supplies.database.incoming.webhook;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.vanatta.helene.supplies.database.TestConfiguration;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class WebhookQueueTest {
+
+  private static final String ENDPOINT = "/webhook/test";
+
+  private final WebhookFingerprintStore fingerprintStore =
+      new WebhookFingerprintStore(Duration.ofMinutes(10));
+  private final WebhookQueue webhookQueue =
+      new WebhookQueue(
+          TestConfiguration.jdbiTest,
+          fingerprintStore,
+          true,
+          3,
+          WebhookQueue.MAX_ATTEMPTS,
+          Duration.ofMillis(10));
+  private final List<String> processed = Collections.synchronizedList(new ArrayList<>());
+
+  @BeforeEach
+  void setup() {
+    TestConfiguration.setupDatabase();
+  }
+
+  @AfterEach
+  void tearDown() {
+    webhookQueue.shutdown();
+  }
+
+  @Test
+  void requestsAreProcessedInOrderPerDelivery() {
+    webhookQueue.registerHandler(ENDPOINT, processed::add);
+
+    for (int i = 0; i < 20; i++) {
+      webhookQueue.submit(ENDPOINT, 1, "delivery1-" + i);
+      webhookQueue.submit(ENDPOINT, 2, "delivery2-" + i);
+    }
+    webhookQueue.shutdown();
+
+    assertThat(processed).hasSize(40);
+    assertThat(processed.stream().filter(p -> p.startsWith("delivery1")).toList())
+        .containsExactly(expectedPayloads("delivery1").toArray(String[]::new));
+    assertThat(processed.stream().filter(p -> p.startsWith("delivery2")).toList())
+        .containsExactly(expectedPayloads("delivery2").toArray(String[]::new));
+    assertThat(countUnprocessed()).isZero();
+  }
+
+  private static List<String> expectedPayloads(String prefix) {
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      expected.add(prefix + "-" + i);
+    }
+    return expected;
+  }
+
+  /** A request that fails, eg: on a lock timeout, is retried. */
+  @Test
+  void failedRequestIsRetried() {
+    AtomicInteger calls = new AtomicInteger();
+    webhookQueue.registerHandler(
+        ENDPOINT,
+        payload -> {
+          if (calls.incrementAndGet() < WebhookQueue.MAX_ATTEMPTS) {
+            throw new IllegalStateException("lock timeout");
+          }
+          processed.add(payload);
+        });
+
+    webhookQueue.submit(ENDPOINT, 1, "payload");
+    awaitSettled();
+    webhookQueue.shutdown();
+
+    assertThat(processed).containsExactly("payload");
+    assertThat(countUnprocessed()).isZero();
+    assertThat(queryRow("payload"))
+        .containsEntry("attempts", WebhookQueue.MAX_ATTEMPTS - 1)
+        .containsEntry("claimed_by", null);
+  }
+
+  /**
+   * A request that keeps failing is left unprocessed with its error, is not resumed, and its
+   * fingerprint is forgotten so that a retry from Make is processed.
+   */
+  @Test
+  void requestFailingEveryAttemptIsLeftUnprocessed() {
+    AtomicInteger calls = new AtomicInteger();
+    webhookQueue.registerHandler(
+        ENDPOINT,
+        _ -> {
+          calls.incrementAndGet();
+          throw new IllegalStateException("connection refused");
+        });
+    assertThat(fingerprintStore.recordIfNew(ENDPOINT, 1, "payload")).isTrue();
+
+    webhookQueue.submit(ENDPOINT, 1, "payload");
+    awaitSettled();
+    webhookQueue.shutdown();
+
+    assertThat(calls.get()).isEqualTo(WebhookQueue.MAX_ATTEMPTS);
+    assertThat(countUnprocessed()).isEqualTo(1);
+    assertThat(queryRow("payload"))
+        .containsEntry("attempts", WebhookQueue.MAX_ATTEMPTS)
+        .containsEntry("error", "connection refused")
+        .containsEntry("claimed_by", null);
+    assertThat(
+            WebhookQueueDao.fetchUnprocessed(TestConfiguration.jdbiTest, WebhookQueue.MAX_ATTEMPTS))
+        .isEmpty();
+    assertThat(fingerprintStore.recordIfNew(ENDPOINT, 1, "payload")).isTrue();
+  }
+
+  /** A request waiting for a retry does not hold up other deliveries that share its lane. */
+  @Test
+  void retryDoesNotBlockLane() throws InterruptedException {
+    var singleLaneQueue =
+        new WebhookQueue(
+            TestConfiguration.jdbiTest,
+            fingerprintStore,
+            true,
+            1,
+            WebhookQueue.MAX_ATTEMPTS,
+            Duration.ofMinutes(1));
+    singleLaneQueue.registerHandler(
+        ENDPOINT,
+        payload -> {
+          if (payload.equals("failing")) {
+            throw new IllegalStateException("lock timeout");
+          }
+          processed.add(payload);
+        });
+
+    singleLaneQueue.submit(ENDPOINT, 1, "failing");
+    singleLaneQueue.submit(ENDPOINT, 2, "other delivery");
+    for (int i = 0; i < 100 && processed.isEmpty(); i++) {
+      Thread.sleep(50);
+    }
+    singleLaneQueue.shutdown();
+
+    assertThat(processed).containsExactly("other delivery");
+    assertThat(queryRow("failing")).containsEntry("attempts", 1);
+  }
+
+  /** A request received while an earlier one for the same delivery waits for a retry goes after. */
+  @Test
+  void laterRequestWaitsForRetryOfSameDelivery() {
+    AtomicInteger calls = new AtomicInteger();
+    webhookQueue.registerHandler(
+        ENDPOINT,
+        payload -> {
+          if (payload.equals("first") && calls.incrementAndGet() == 1) {
+            throw new IllegalStateException("lock timeout");
+          }
+          processed.add(payload);
+        });
+
+    webhookQueue.submit(ENDPOINT, 1, "first");
+    webhookQueue.submit(ENDPOINT, 1, "second");
+    awaitSettled();
+    webhookQueue.shutdown();
+
+    assertThat(processed).containsExactly("first", "second");
+    assertThat(countUnprocessed()).isZero();
+  }
+
+  /** A bad payload will not get any better, it is not retried. */
+  @Test
+  void badPayloadIsNotRetried() {
+    AtomicInteger calls = new AtomicInteger();
+    webhookQueue.registerHandler(
+        ENDPOINT,
+        _ -> {
+          calls.incrementAndGet();
+          throw new IllegalArgumentException("bad payload");
+        });
+
+    webhookQueue.submit(ENDPOINT, 1, "payload");
+    webhookQueue.shutdown();
+
+    assertThat(calls.get()).isEqualTo(1);
+    assertThat(queryRow("payload"))
+        .containsEntry("attempts", WebhookQueue.MAX_ATTEMPTS)
+        .containsEntry("error", "bad payload");
+  }
+
+  /** Requests stored but not processed (eg: we were restarted) are picked up on startup. */
+  @Test
+  void resumeUnprocessed() {
+    WebhookQueueDao.enqueue(TestConfiguration.jdbiTest, ENDPOINT, 5, "left over");
+    long claimedId =
+        WebhookQueueDao.enqueue(TestConfiguration.jdbiTest, ENDPOINT, 5, "claimed by last run");
+    WebhookQueueDao.claim(
+        TestConfiguration.jdbiTest, claimedId, UUID.randomUUID(), WebhookQueue.MAX_ATTEMPTS);
+    webhookQueue.registerHandler(ENDPOINT, processed::add);
+
+    webhookQueue.resumeUnprocessed();
+    webhookQueue.shutdown();
+
+    assertThat(processed).containsExactly("left over", "claimed by last run");
+    assertThat(countUnprocessed()).isZero();
+  }
+
+  /**
+   * A request submitted while unprocessed requests are resumed can be dispatched twice, it is
+   * processed once.
+   */
+  @Test
+  void requestDispatchedTwiceIsProcessedOnce() {
+    webhookQueue.registerHandler(ENDPOINT, processed::add);
+
+    webhookQueue.submit(ENDPOINT, 5, "payload");
+    webhookQueue.resumeUnprocessed();
+    webhookQueue.shutdown();
+
+    assertThat(processed).containsExactly("payload");
+    assertThat(countUnprocessed()).isZero();
+  }
+
+  /** Waits until every request is processed or has used up its attempts. */
+  private static void awaitSettled() {
+    String query =
+        """
+        select count(*) from webhook_inbound_queue
+        where processed_at is null and attempts < :maxAttempts
+        """;
+    for (int i = 0; i < 100; i++) {
+      int pending =
+          TestConfiguration.jdbiTest.withHandle(
+              handle ->
+                  handle
+                      .createQuery(query)
+                      .bind("maxAttempts", WebhookQueue.MAX_ATTEMPTS)
+                      .mapTo(Integer.class)
+                      .one());
+      if (pending == 0) {
+        return;
+      }
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    throw new AssertionError("webhook requests still pending");
+  }
+
+  private static int countUnprocessed() {
+    return TestConfiguration.jdbiTest.withHandle(
+        handle ->
+            handle
+                .createQuery(
+                    "select count(*) from webhook_inbound_queue where processed_at is null")
+                .mapTo(Integer.class)
+                .one());
+  }
+
+  private static Map<String, Object> queryRow(String payload) {
+    return TestConfiguration.jdbiTest.withHandle(
+        handle ->
+            handle
+                .createQuery(
+                    """
+                    select attempts, error, claimed_by
+                    from webhook_inbound_queue
+                    where payload = :payload
+                    """)
+                .bind("payload", payload)
+                .mapToMap()
+                .one());
+  }
+}
@@ -1,18 +1,23 @@
 package com.vanatta.helene.supplies.database.manage;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import com.vanatta.helene.supplies.database.TestConfiguration;
 import com.vanatta.helene.supplies.database.data.ItemStatus;
+import com.vanatta.helene.supplies.database.data.ReferenceTables;
 import com.vanatta.helene.supplies.database.data.SiteType;
 import com.vanatta.helene.supplies.database.supplies.site.details.SiteDetailDao;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
 class ManageSiteDaoTest {
+  private final ReferenceTables referenceTables = new ReferenceTables(TestConfiguration.jdbiTest);
 
   static class Helper {
     static long getSiteId() {
@@ -52,41 +57,91 @@ class ManageSiteDaoTest {
     long siteId = Helper.getSiteId("site5");
 
     ManageSiteDao.updateSiteField(
-        TestConfiguration.jdbiTest, siteId, ManageSiteDao.SiteField.SITE_NAME, "new site name");
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        siteId,
+        ManageSiteDao.SiteField.SITE_NAME,
+        "new site name");
     ManageSiteDao.updateSiteField(
-        TestConfiguration.jdbiTest, siteId, ManageSiteDao.SiteField.STREET_ADDRESS, "new address");
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        siteId,
+        ManageSiteDao.SiteField.STREET_ADDRESS,
+        "new address");
     ManageSiteDao.updateSiteField(
-        TestConfiguration.jdbiTest, siteId, ManageSiteDao.SiteField.CITY, "new city");
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        siteId,
+        ManageSiteDao.SiteField.CITY,
+        "new city");
     ManageSiteDao.updateSiteField(
-        TestConfiguration.jdbiTest, siteId, ManageSiteDao.SiteField.COUNTY, "Buncombe,NC");
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        siteId,
+        ManageSiteDao.SiteField.COUNTY,
+        "Buncombe,NC");
     ManageSiteDao.updateSiteField(
-        TestConfiguration.jdbiTest, siteId, ManageSiteDao.SiteField.STATE, "Buncombe,NC");
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        siteId,
+        ManageSiteDao.SiteField.STATE,
+        "Buncombe,NC");
     ManageSiteDao.updateSiteField(
-        TestConfiguration.jdbiTest, siteId, ManageSiteDao.SiteField.WEBSITE, "new website");
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        siteId,
+        ManageSiteDao.SiteField.WEBSITE,
+        "new website");
     ManageSiteDao.updateSiteField(
-        TestConfiguration.jdbiTest, siteId, ManageSiteDao.SiteField.FACEBOOK, "new facebook");
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        siteId,
+        ManageSiteDao.SiteField.FACEBOOK,
+        "new facebook");
     ManageSiteDao.updateSiteField(
-        TestConfiguration.jdbiTest, siteId, ManageSiteDao.SiteField.SITE_HOURS, "M-F 9-5pm");
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        siteId,
+        ManageSiteDao.SiteField.SITE_HOURS,
+        "M-F 9-5pm");
     ManageSiteDao.updateSiteField(
-        TestConfiguration.jdbiTest, siteId, ManageSiteDao.SiteField.CONTACT_NAME, "Smith Williams");
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        siteId,
+        ManageSiteDao.SiteField.CONTACT_NAME,
+        "Smith Williams");
     ManageSiteDao.updateSiteField(
-        TestConfiguration.jdbiTest, siteId, ManageSiteDao.SiteField.CONTACT_NUMBER, "999-596-111");
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        siteId,
+        ManageSiteDao.SiteField.CONTACT_NUMBER,
+        "999-596-111");
     ManageSiteDao.updateSiteField(
         TestConfiguration.jdbiTest,
+        referenceTables,
         siteId,
         ManageSiteDao.SiteField.CONTACT_EMAIL,
         "smith@awesome.org");
     ManageSiteDao.updateSiteField(
         TestConfiguration.jdbiTest,
+        referenceTables,
         siteId,
         ManageSiteDao.SiteField.ADDITIONAL_CONTACTS,
         "More: 22-333");
 
     ManageSiteDao.updateSiteField(
-        TestConfiguration.jdbiTest, siteId, ManageSiteDao.SiteField.BAD_NUMBERS, "123 not working");
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        siteId,
+        ManageSiteDao.SiteField.BAD_NUMBERS,
+        "123 not working");
 
     ManageSiteDao.updateSiteField(
-        TestConfiguration.jdbiTest, siteId, ManageSiteDao.SiteField.MAX_SUPPLY_LOAD, "Car");
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        siteId,
+        ManageSiteDao.SiteField.MAX_SUPPLY_LOAD,
+        "Car");
 
     var dataLookup = SiteDetailDao.lookupSiteById(TestConfiguration.jdbiTest, siteId);
     assertThat(dataLookup.getSiteName()).isEqualTo("new site name");
@@ -120,7 +175,7 @@ class ManageSiteDaoTest {
                     ManageSiteDao.RequiredFieldException.class,
                     () ->
                         ManageSiteDao.updateSiteField(
-                            TestConfiguration.jdbiTest, siteId, field, "")));
+                            TestConfiguration.jdbiTest, referenceTables, siteId, field, "")));
   }
 
   @Test
@@ -146,11 +201,15 @@ class ManageSiteDaoTest {
     String oldValue = dataLookup.getHours();
 
     // update the value.
-    String oldValueResult =
-        ManageSiteDao.updateSiteColumn(
-            TestConfiguration.jdbiTest, siteId, ManageSiteDao.SiteField.SITE_HOURS, "evening");
-
-    assertThat(oldValueResult).isEqualTo(oldValue);
+    var oldValues =
+        ManageSiteDao.updateSiteFields(
+            TestConfiguration.jdbiTest,
+            referenceTables,
+            siteId,
+            Map.of(ManageSiteDao.SiteField.SITE_HOURS, "evening"));
+
+    assertThat(oldValues).containsOnlyKeys(ManageSiteDao.SiteField.SITE_HOURS);
+    assertThat(oldValues.get(ManageSiteDao.SiteField.SITE_HOURS)).isEqualTo(oldValue);
   }
 
   @Test
@@ -164,10 +223,15 @@ class ManageSiteDaoTest {
     String oldCounty = dataLookup.getCounty();
     String oldState = dataLookup.getState();
 
-    String oldValueResult =
-        ManageSiteDao.updateCounty(TestConfiguration.jdbiTest, siteId, "Halifax", "VA");
+    var oldValues =
+        ManageSiteDao.updateSiteFields(
+            TestConfiguration.jdbiTest,
+            referenceTables,
+            siteId,
+            Map.of(ManageSiteDao.SiteField.COUNTY, "Halifax,VA"));
 
-    assertThat(oldValueResult).isEqualTo(String.format("%s,%s", oldCounty, oldState));
+    assertThat(oldValues.get(ManageSiteDao.SiteField.COUNTY))
+        .isEqualTo(String.format("%s,%s", oldCounty, oldState));
   }
 
   @Test
@@ -178,6 +242,7 @@ class ManageSiteDaoTest {
     long siteId = Helper.getSiteId("site2");
     ManageSiteDao.updateSiteField(
         TestConfiguration.jdbiTest,
+        referenceTables,
         siteId,
         ManageSiteDao.SiteField.CONTACT_NAME,
         "updated site2 contact name");
@@ -193,6 +258,107 @@ class ManageSiteDaoTest {
         handle -> handle.createQuery(query).mapTo(Integer.class).one());
   }
 
+  @Nested
+  class UpdateSiteFields {
+
+    private static long addSite() {
+      return TestConfiguration.getSiteId(TestConfiguration.addSite());
+    }
+
+    private static int auditLogCount(long siteId) {
+      String query = "select count(*) from site_audit_trail where site_id = :siteId";
+      return TestConfiguration.jdbiTest.withHandle(
+          handle -> handle.createQuery(query).bind("siteId", siteId).mapTo(Integer.class).one());
+    }
+
+    @Test
+    void updatesAllFieldsAndReturnsOldValues() {
+      long siteId = addSite();
+      var before = SiteDetailDao.lookupSiteById(TestConfiguration.jdbiTest, siteId);
+
+      Map<ManageSiteDao.SiteField, String> values = new EnumMap<>(ManageSiteDao.SiteField.class);
+      values.put(ManageSiteDao.SiteField.CITY, "new city");
+      values.put(ManageSiteDao.SiteField.WEBSITE, "new website");
+      values.put(ManageSiteDao.SiteField.COUNTY, "Halifax,VA");
+      values.put(ManageSiteDao.SiteField.MAX_SUPPLY_LOAD, "Pickup Truck");
+      var oldValues =
+          ManageSiteDao.updateSiteFields(
+              TestConfiguration.jdbiTest, referenceTables, siteId, values);
+
+      assertThat(oldValues)
+          .containsOnlyKeys(values.keySet())
+          .containsEntry(ManageSiteDao.SiteField.CITY, before.getCity())
+          .containsEntry(ManageSiteDao.SiteField.WEBSITE, null)
+          .containsEntry(ManageSiteDao.SiteField.COUNTY, "Watauga,NC")
+          .containsEntry(ManageSiteDao.SiteField.MAX_SUPPLY_LOAD, "Car");
+      var after = SiteDetailDao.lookupSiteById(TestConfiguration.jdbiTest, siteId);
+      assertThat(after.getCity()).isEqualTo("new city");
+      assertThat(after.getWebsite()).isEqualTo("new website");
+      assertThat(after.getCounty()).isEqualTo("Halifax");
+      assertThat(after.getState()).isEqualTo("VA");
+      assertThat(after.getMaxSupply()).isEqualTo("Pickup Truck");
+      assertThat(auditLogCount(siteId)).isEqualTo(4);
+    }
+
+    /** Fields set to their current value are not reported as changed and are not audited. */
+    @Test
+    void unchangedFieldsAreNotAudited() {
+      long siteId = addSite();
+      var before = SiteDetailDao.lookupSiteById(TestConfiguration.jdbiTest, siteId);
+
+      Map<ManageSiteDao.SiteField, String> values = new EnumMap<>(ManageSiteDao.SiteField.class);
+      values.put(ManageSiteDao.SiteField.CITY, before.getCity());
+      values.put(ManageSiteDao.SiteField.FACEBOOK, "");
+      values.put(ManageSiteDao.SiteField.CONTACT_NAME, "new contact");
+      var oldValues =
+          ManageSiteDao.updateSiteFields(
+              TestConfiguration.jdbiTest, referenceTables, siteId, values);
+
+      assertThat(oldValues).containsOnlyKeys(ManageSiteDao.SiteField.CONTACT_NAME);
+      assertThat(auditLogCount(siteId)).isEqualTo(1);
+    }
+
+    /** A bad value fails the whole update, none of the other fields are written. */
+    @Test
+    void invalidValueUpdatesNothing() {
+      long siteId = addSite();
+      var before = SiteDetailDao.lookupSiteById(TestConfiguration.jdbiTest, siteId);
+
+      Map<ManageSiteDao.SiteField, String> values = new EnumMap<>(ManageSiteDao.SiteField.class);
+      values.put(ManageSiteDao.SiteField.WEBSITE, "new website");
+      values.put(ManageSiteDao.SiteField.SITE_NAME, "");
+      assertThatThrownBy(
+              () ->
+                  ManageSiteDao.updateSiteFields(
+                      TestConfiguration.jdbiTest, referenceTables, siteId, values))
+          .isInstanceOf(IllegalArgumentException.class);
+
+      values.put(ManageSiteDao.SiteField.SITE_NAME, before.getSiteName());
+      values.put(ManageSiteDao.SiteField.MAX_SUPPLY_LOAD, "not a max supply load");
+      assertThatThrownBy(
+              () ->
+                  ManageSiteDao.updateSiteFields(
+                      TestConfiguration.jdbiTest, referenceTables, siteId, values))
+          .isInstanceOf(IllegalArgumentException.class);
+
+      var after = SiteDetailDao.lookupSiteById(TestConfiguration.jdbiTest, siteId);
+      assertThat(after).isEqualTo(before);
+      assertThat(auditLogCount(siteId)).isEqualTo(0);
+    }
+
+    @Test
+    void invalidSiteId() {
+      assertThatThrownBy(
+              () ->
+                  ManageSiteDao.updateSiteFields(
+                      TestConfiguration.jdbiTest,
+                      referenceTables,
+                      -1L,
+                      Map.of(ManageSiteDao.SiteField.WEBSITE, "website")))
+          .isInstanceOf(IllegalArgumentException.class);
+    }
+  }
+
   @Nested
   class SiteStatus {
 
@@ -311,12 +477,13 @@ class ManageSiteDaoTest {
       long siteId = Helper.getSiteId("site1");
 
       ManageSiteDao.updateSiteType(
-          TestConfiguration.jdbiTest, siteId, SiteType.DISTRIBUTION_CENTER);
+          TestConfiguration.jdbiTest, referenceTables, siteId, SiteType.DISTRIBUTION_CENTER);
 
       var details = SiteDetailDao.lookupSiteById(TestConfiguration.jdbiTest, siteId);
       assertThat(details.getSiteType()).isEqualTo(SiteType.DISTRIBUTION_CENTER.getText());
 
-      ManageSiteDao.updateSiteType(TestConfiguration.jdbiTest, siteId, SiteType.SUPPLY_HUB);
+      ManageSiteDao.updateSiteType(
+          TestConfiguration.jdbiTest, referenceTables, siteId, SiteType.SUPPLY_HUB);
 
       details = SiteDetailDao.lookupSiteById(TestConfiguration.jdbiTest, siteId);
       assertThat(details.getSiteType()).isEqualTo(SiteType.SUPPLY_HUB.getText());
@@ -349,6 +516,19 @@ class ManageSiteDaoTest {
     assertThat(randomStuff.getItemStatus()).isNull();
   }
 
+  /** Only items at the site are returned, sorted by name. */
+  @Test
+  void fetchActiveSiteInventory() {
+    long siteId = Helper.getSiteId("site1");
+    var result = ManageSiteDao.fetchActiveSiteInventory(TestConfiguration.jdbiTest, siteId);
+
+    assertThat(result.stream().map(ManageSiteDao.SiteInventory::getItemName))
+        .containsExactly("new clothes", "used clothes", "water");
+    assertThat(result).allMatch(ManageSiteDao.SiteInventory::isActive);
+    assertThat(findItemByName(result, "new clothes").getItemStatus())
+        .isEqualTo(ItemStatus.URGENTLY_NEEDED.getText());
+  }
+
   private static ManageSiteDao.SiteInventory findItemByName(
       List<ManageSiteDao.SiteInventory> items, String itemName) {
     return items.stream()
@@ -361,11 +541,19 @@ class ManageSiteDaoTest {
   void updateMaxSupply() {
     long siteId = Helper.getSiteId("site1");
 
-    ManageSiteDao.updateMaxSupply(TestConfiguration.jdbiTest, siteId, "Car");
+    ManageSiteDao.updateSiteFields(
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        siteId,
+        Map.of(ManageSiteDao.SiteField.MAX_SUPPLY_LOAD, "Car"));
     var details = SiteDetailDao.lookupSiteById(TestConfiguration.jdbiTest, siteId);
     assertThat(details.getMaxSupply()).isEqualTo("Car");
 
-    ManageSiteDao.updateMaxSupply(TestConfiguration.jdbiTest, siteId, "Pickup Truck");
+    ManageSiteDao.updateSiteFields(
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        siteId,
+        Map.of(ManageSiteDao.SiteField.MAX_SUPPLY_LOAD, "Pickup Truck"));
     details = SiteDetailDao.lookupSiteById(TestConfiguration.jdbiTest, siteId);
     assertThat(details.getMaxSupply()).isEqualTo("Pickup Truck");
   }
@@ -3,18 +3,94 @@ package com.vanatta.helene.supplies.database.manage;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.vanatta.helene.supplies.database.TestConfiguration;
-import com.vanatta.helene.supplies.database.data.SiteType;
 import com.vanatta.helene.supplies.database.export.update.SendSiteUpdate;
-import com.vanatta.helene.supplies.database.manage.SelectSiteController.ItemListing;
-import com.vanatta.helene.supplies.database.supplies.site.details.SiteDetailDao;
-import com.vanatta.helene.supplies.database.supplies.site.details.SiteDetailDao.SiteDetailData;
 import java.util.List;
-import java.util.Map;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.web.servlet.ModelAndView;
 
 class SelectSiteControllerTest {
+  private final SiteList siteList = new SiteList(TestConfiguration.jdbiTest);
 
+  SelectSiteController selectSiteController =
+      new SelectSiteController(TestConfiguration.jdbiTest, siteList, SendSiteUpdate.newDisabled());
 
+  @BeforeAll
+  static void setupDb() {
+    TestConfiguration.setupDatabase();
+  }
+
+  @Test
+  void selectSitePageListsSites() {
+    ModelAndView page = SelectSiteController.showSelectSitePage(siteList);
+
+    @SuppressWarnings("unchecked")
+    var sites = (List<SelectSiteController.SiteSelection>) page.getModel().get("sites");
+    assertThat(sites).extracting(SelectSiteController.SiteSelection::getName).contains("site1");
+    assertThat(sites).hasSizeLessThanOrEqualTo(SelectSiteController.INITIAL_SITE_COUNT);
+    assertThat(page.getModel().get("siteCount")).isEqualTo(siteCount());
+  }
+
+  @Nested
+  class CachedSiteList {
+
+    /** The list is read once and kept until invalidated. */
+    @Test
+    void newSiteIsListedAfterInvalidate() {
+      siteList.sites();
+
+      String name = TestConfiguration.addSite();
+      assertThat(siteList.sites())
+          .extracting(SelectSiteController.SiteSelection::getName)
+          .doesNotContain(name);
+
+      siteList.invalidate();
+      assertThat(siteList.sites())
+          .extracting(SelectSiteController.SiteSelection::getName)
+          .contains(name);
+    }
+
+    @Test
+    void sortedByName() {
+      assertThat(siteList.sites()).extracting(site -> site.getName().toLowerCase()).isSorted();
+    }
+  }
+
+  @Nested
+  class Search {
+
+    /** Matches anywhere in the name, ignoring case. */
+    @Test
+    void searchMatchesPartOfName() {
+      assertThat(selectSiteController.searchSites("ITE1"))
+          .extracting(SelectSiteController.SiteSelection::getName)
+          .contains("site1");
+    }
+
+    @Test
+    void bestMatchFirst() {
+      assertThat(selectSiteController.searchSites("site1").getFirst().getName()).isEqualTo("site1");
+    }
+
+    /** Search text is matched literally, '%' is not a wildcard. */
+    @Test
+    void wildcardsAreEscaped() {
+      assertThat(selectSiteController.searchSites("%")).isEmpty();
+      assertThat(selectSiteController.searchSites("s_te")).isEmpty();
+    }
+
+    @Test
+    void blankSearchReturnsInitialSites() {
+      assertThat(selectSiteController.searchSites(" "))
+          .isNotEmpty()
+          .hasSizeLessThanOrEqualTo(SelectSiteController.INITIAL_SITE_COUNT);
+      assertThat(selectSiteController.searchSites(null)).isNotEmpty();
+    }
+  }
+
+  private static int siteCount() {
+    return TestConfiguration.jdbiTest.withHandle(
+        handle -> handle.createQuery("select count(*) from site").mapTo(Integer.class).one());
+  }
 }
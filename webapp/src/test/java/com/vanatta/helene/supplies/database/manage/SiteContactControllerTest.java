@@ -3,8 +3,13 @@ package com.vanatta.helene.supplies.database.manage;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.vanatta.helene.supplies.database.TestConfiguration;
+import com.vanatta.helene.supplies.database.data.ReferenceTables;
 import com.vanatta.helene.supplies.database.export.update.SendSiteUpdate;
+import com.vanatta.helene.supplies.database.supplies.filters.AuthenticatedMode;
+import com.vanatta.helene.supplies.database.supplies.filters.FilterDataCache;
+import com.vanatta.helene.supplies.database.supplies.site.details.NeedsMatchingIndex;
 import com.vanatta.helene.supplies.database.supplies.site.details.SiteDetailDao;
+import com.vanatta.helene.supplies.database.supplies.site.details.SiteDetailPageCache;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -17,8 +22,19 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.web.servlet.ModelAndView;
 
 class SiteContactControllerTest {
+  private final ReferenceTables referenceTables = new ReferenceTables(TestConfiguration.jdbiTest);
+  private final SiteList siteList = new SiteList(TestConfiguration.jdbiTest);
+  private final FilterDataCache filterDataCache = new FilterDataCache(TestConfiguration.jdbiTest);
+
   SiteContactController siteContactController =
-      new SiteContactController(TestConfiguration.jdbiTest, SendSiteUpdate.newDisabled());
+      new SiteContactController(
+          TestConfiguration.jdbiTest,
+          referenceTables,
+          siteList,
+          new SiteDetailPageCache(),
+          filterDataCache,
+          SendSiteUpdate.newDisabled(),
+          new NeedsMatchingIndex(TestConfiguration.jdbiTest));
 
   @BeforeAll
   static void setupDb() {
@@ -79,6 +95,68 @@ class SiteContactControllerTest {
     assertThat(siteLookup.getWebsite()).isEqualTo(newValue);
   }
 
+  /** Updates several fields with one request. */
+  @Test
+  void updateSiteFields() {
+    long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+    String website = "website" + UUID.randomUUID();
+    var request =
+        SiteContactController.SiteFieldsUpdate.builder()
+            .siteId(String.valueOf(siteId))
+            .fields(
+                Map.of(
+                    ManageSiteDao.SiteField.WEBSITE.getFrontEndName(),
+                    website,
+                    ManageSiteDao.SiteField.SITE_HOURS.getFrontEndName(),
+                    " 9-5 "))
+            .build();
+
+    var response = siteContactController.updateSiteFields(request);
+
+    assertThat(response.getStatusCode().value()).isEqualTo(200);
+    var siteLookup = SiteDetailDao.lookupSiteById(TestConfiguration.jdbiTest, siteId);
+    assertThat(siteLookup.getWebsite()).isEqualTo(website);
+    assertThat(siteLookup.getHours()).isEqualTo("9-5");
+  }
+
+  /** A renamed site is listed under its new name on the select site page. */
+  @Test
+  void renamedSiteIsListed() {
+    String name = TestConfiguration.addSite();
+    long siteId = TestConfiguration.getSiteId(name);
+    siteList.sites();
+    filterDataCache.filterData(AuthenticatedMode.AUTHENTICATED);
+
+    String newName = "renamed " + name;
+    var request =
+        SiteContactController.SiteFieldsUpdate.builder()
+            .siteId(String.valueOf(siteId))
+            .fields(Map.of(ManageSiteDao.SiteField.SITE_NAME.getFrontEndName(), newName))
+            .build();
+    siteContactController.updateSiteFields(request);
+
+    assertThat(siteList.sites())
+        .extracting(SelectSiteController.SiteSelection::getName)
+        .contains(newName)
+        .doesNotContain(name);
+    assertThat(filterDataCache.filterData(AuthenticatedMode.AUTHENTICATED).getSites())
+        .contains(newName)
+        .doesNotContain(name);
+  }
+
+  @Test
+  void updateSiteFieldsInvalidField() {
+    var request =
+        SiteContactController.SiteFieldsUpdate.builder()
+            .siteId(String.valueOf(TestConfiguration.getSiteId()))
+            .fields(Map.of("not a field", "value"))
+            .build();
+
+    var response = siteContactController.updateSiteFields(request);
+
+    assertThat(response.getStatusCode().value()).isEqualTo(400);
+  }
+
   /** For a known site, validates that we populate all the page params. */
   @ParameterizedTest
   @EnumSource(SiteContactController.PageParam.class)
@@ -173,7 +251,11 @@ class SiteContactControllerTest {
   @Test
   void correctMaxSupplySelected() {
     long siteId = TestConfiguration.getSiteId("site1");
-    ManageSiteDao.updateMaxSupply(TestConfiguration.jdbiTest, siteId, "Car");
+    ManageSiteDao.updateSiteFields(
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        siteId,
+        Map.of(ManageSiteDao.SiteField.MAX_SUPPLY_LOAD, "Car"));
 
     var response = siteContactController.showSiteContactPage(String.valueOf(siteId));
 
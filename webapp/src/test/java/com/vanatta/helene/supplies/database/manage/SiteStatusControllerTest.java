@@ -3,16 +3,30 @@ package com.vanatta.helene.supplies.database.manage;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.vanatta.helene.supplies.database.TestConfiguration;
+import com.vanatta.helene.supplies.database.data.ReferenceTables;
 import com.vanatta.helene.supplies.database.data.SiteType;
 import com.vanatta.helene.supplies.database.export.update.SendSiteUpdate;
+import com.vanatta.helene.supplies.database.supplies.filters.AuthenticatedMode;
+import com.vanatta.helene.supplies.database.supplies.filters.FilterDataCache;
+import com.vanatta.helene.supplies.database.supplies.site.details.NeedsMatchingIndex;
 import com.vanatta.helene.supplies.database.supplies.site.details.SiteDetailDao;
+import com.vanatta.helene.supplies.database.supplies.site.details.SiteDetailPageCache;
 import java.util.Map;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
 class SiteStatusControllerTest {
+  private final FilterDataCache filterDataCache = new FilterDataCache(TestConfiguration.jdbiTest);
+
   SiteStatusController selectSiteController =
-      new SiteStatusController(TestConfiguration.jdbiTest, SendSiteUpdate.newDisabled());
+      new SiteStatusController(
+          TestConfiguration.jdbiTest,
+          new ReferenceTables(TestConfiguration.jdbiTest),
+          new SiteList(TestConfiguration.jdbiTest),
+          new SiteDetailPageCache(),
+          filterDataCache,
+          SendSiteUpdate.newDisabled(),
+          new NeedsMatchingIndex(TestConfiguration.jdbiTest));
 
   @Nested
   class UpdateStatus {
@@ -100,4 +114,23 @@ class SiteStatusControllerTest {
       assertThat(details.getInactiveReason()).isEqualTo("");
     }
   }
+
+  @Test
+  void deactivatedSiteIsRemovedFromFilterData() {
+    String siteName = TestConfiguration.addSite();
+    assertThat(filterDataCache.filterData(AuthenticatedMode.AUTHENTICATED).getSites())
+        .contains(siteName);
+
+    selectSiteController.updateStatus(
+        Map.of(
+            "siteId",
+            String.valueOf(TestConfiguration.getSiteId(siteName)),
+            "statusFlag",
+            SiteStatusController.EnumStatusUpdateFlag.ACTIVE.getText(),
+            "newValue",
+            "false"));
+
+    assertThat(filterDataCache.filterData(AuthenticatedMode.AUTHENTICATED).getSites())
+        .doesNotContain(siteName);
+  }
 }
@@ -3,8 +3,13 @@ package com.vanatta.helene.supplies.database.manage.add.site;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.vanatta.helene.supplies.database.TestConfiguration;
+import com.vanatta.helene.supplies.database.data.ReferenceTables;
+import com.vanatta.helene.supplies.database.data.SiteIdentifiers;
 import com.vanatta.helene.supplies.database.data.SiteType;
 import com.vanatta.helene.supplies.database.export.update.SendSiteUpdate;
+import com.vanatta.helene.supplies.database.manage.SiteList;
+import com.vanatta.helene.supplies.database.supplies.filters.AuthenticatedMode;
+import com.vanatta.helene.supplies.database.supplies.filters.FilterDataCache;
 import com.vanatta.helene.supplies.database.supplies.site.details.SiteDetailDao;
 import java.util.HashMap;
 import java.util.Map;
@@ -13,13 +18,21 @@ import org.junit.jupiter.api.Test;
 import org.springframework.http.ResponseEntity;
 
 class AddSiteControllerTest {
+  private final FilterDataCache filterDataCache = new FilterDataCache(TestConfiguration.jdbiTest);
 
   AddSiteController addSiteController =
-      new AddSiteController(TestConfiguration.jdbiTest, SendSiteUpdate.newDisabled());
+      new AddSiteController(
+          TestConfiguration.jdbiTest,
+          new ReferenceTables(TestConfiguration.jdbiTest),
+          new SiteIdentifiers(TestConfiguration.jdbiTest),
+          new SiteList(TestConfiguration.jdbiTest),
+          filterDataCache,
+          SendSiteUpdate.newDisabled());
 
   @Test
   void addSite() {
     String siteName = UUID.randomUUID().toString();
+    filterDataCache.filterData(AuthenticatedMode.AUTHENTICATED);
 
     Map<String, String> newSiteParams = new HashMap<>();
     newSiteParams.put("siteName", siteName);
@@ -72,5 +85,8 @@ class AddSiteControllerTest {
     assertThat(data.getContactNumber()).isEqualTo("contactNumber");
     assertThat(data.getContactEmail()).isEqualTo("contactEmail");
     assertThat(data.getAdditionalContacts()).isEqualTo("additionalContacts");
+
+    assertThat(filterDataCache.filterData(AuthenticatedMode.AUTHENTICATED).getSites())
+        .contains(siteName);
   }
 }
@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import com.vanatta.helene.supplies.database.TestConfiguration;
+import com.vanatta.helene.supplies.database.data.ReferenceTables;
 import com.vanatta.helene.supplies.database.data.SiteType;
 import com.vanatta.helene.supplies.database.supplies.site.details.SiteDetailDao;
 import com.vanatta.helene.supplies.database.supplies.site.details.SiteDetailDao.SiteDetailData;
@@ -12,6 +13,7 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
 public class AddSiteDaoTest {
+  private final ReferenceTables referenceTables = new ReferenceTables(TestConfiguration.jdbiTest);
 
   @BeforeAll
   static void setUp() {
@@ -44,7 +46,7 @@ public class AddSiteDaoTest {
 
   @Test
   void addSite() {
-    AddSiteDao.addSite(TestConfiguration.jdbiTest, siteData1);
+    AddSiteDao.addSite(TestConfiguration.jdbiTest, referenceTables, siteData1);
 
     long id = TestConfiguration.getSiteId(siteData1.getSiteName());
     SiteDetailData details = SiteDetailDao.lookupSiteById(TestConfiguration.jdbiTest, id);
@@ -60,7 +62,7 @@ public class AddSiteDaoTest {
 
   @Test
   void addSiteWithOnlyRequiredFields() {
-    AddSiteDao.addSite(TestConfiguration.jdbiTest, siteData2);
+    AddSiteDao.addSite(TestConfiguration.jdbiTest, referenceTables, siteData2);
 
     long id = TestConfiguration.getSiteId(siteData2.getSiteName());
     SiteDetailData details = SiteDetailDao.lookupSiteById(TestConfiguration.jdbiTest, id);
@@ -80,13 +82,17 @@ public class AddSiteDaoTest {
     @Test
     void addDuplicateShouldFail() {
       AddSiteDao.addSite(
-          TestConfiguration.jdbiTest, siteData2.toBuilder().siteName("duplicate").build());
+          TestConfiguration.jdbiTest,
+          referenceTables,
+          siteData2.toBuilder().siteName("duplicate").build());
 
       assertThrows(
           AddSiteDao.DuplicateSiteException.class,
           () ->
               AddSiteDao.addSite(
-                  TestConfiguration.jdbiTest, siteData2.toBuilder().siteName("duplicate").build()));
+                  TestConfiguration.jdbiTest,
+                  referenceTables,
+                  siteData2.toBuilder().siteName("duplicate").build()));
     }
 
     @Test
@@ -96,6 +102,7 @@ public class AddSiteDaoTest {
           () ->
               AddSiteDao.addSite(
                   TestConfiguration.jdbiTest,
+                  referenceTables,
                   siteData2.toBuilder().county("invalid-county").build()));
     }
   }
@@ -0,0 +1,103 @@
+package com.vanatta.helene.supplies.database.manage.inventory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.vanatta.helene.supplies.database.data.ItemCatalog;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class InventoryControllerTest {
+
+  @Nested
+  class Catalog {
+
+    private static final List<ItemCatalog.Item> items =
+        List.of(
+            new ItemCatalog.Item(1, "Baby Food", 1),
+            new ItemCatalog.Item(2, "bottled water", 2),
+            new ItemCatalog.Item(3, "Diapers", 3),
+            new ItemCatalog.Item(4, "Gloves", 4),
+            new ItemCatalog.Item(5, "Water Filters", 5));
+
+    @Test
+    void pages() {
+      var first = InventoryController.catalogPage(items, Set.of(), null, null, 2);
+      assertThat(first.getItems()).containsExactly("Baby Food", "bottled water");
+      assertThat(first.isHasMore()).isTrue();
+
+      var second = InventoryController.catalogPage(items, Set.of(), null, first.getLastItem(), 2);
+      assertThat(second.getItems()).containsExactly("Diapers", "Gloves");
+      assertThat(second.isHasMore()).isTrue();
+
+      var last = InventoryController.catalogPage(items, Set.of(), null, second.getLastItem(), 2);
+      assertThat(last.getItems()).containsExactly("Water Filters");
+      assertThat(last.isHasMore()).isFalse();
+    }
+
+    @Test
+    void exactlyOnePage() {
+      var page = InventoryController.catalogPage(items, Set.of(), null, null, 5);
+      assertThat(page.getItems()).hasSize(5);
+      assertThat(page.isHasMore()).isFalse();
+    }
+
+    /** Items already at the site are not listed. */
+    @Test
+    void excludesItems() {
+      var first = InventoryController.catalogPage(items, Set.of(1L, 3L), null, null, 2);
+      assertThat(first.getItems()).containsExactly("bottled water", "Gloves");
+
+      var second =
+          InventoryController.catalogPage(items, Set.of(1L, 3L), null, first.getLastItem(), 2);
+      assertThat(second.getItems()).containsExactly("Water Filters");
+      assertThat(second.isHasMore()).isFalse();
+    }
+
+    @Test
+    void searchIgnoresCase() {
+      var page = InventoryController.catalogPage(items, Set.of(), " WATER ", null, 10);
+      assertThat(page.getItems()).containsExactly("bottled water", "Water Filters");
+
+      page = InventoryController.catalogPage(items, Set.of(), "no such item", null, 10);
+      assertThat(page.getItems()).isEmpty();
+      assertThat(page.isHasMore()).isFalse();
+    }
+
+    @Test
+    void blankSearchMatchesEverything() {
+      var page = InventoryController.catalogPage(items, Set.of(), "  ", null, 10);
+      assertThat(page.getItems()).hasSize(items.size());
+    }
+
+    /**
+     * Items moved from the catalog to the site inventory while paging (now excluded) do not cause
+     * the next page to skip any items.
+     */
+    @Test
+    void excludingItemsWhilePagingSkipsNothing() {
+      var first = InventoryController.catalogPage(items, Set.of(), null, null, 2);
+      assertThat(first.getItems()).containsExactly("Baby Food", "bottled water");
+
+      var second = InventoryController.catalogPage(items, Set.of(1L), null, first.getLastItem(), 2);
+      assertThat(second.getItems()).containsExactly("Diapers", "Gloves");
+    }
+
+    /** Paging ignores the case of the item name. */
+    @Test
+    void afterIgnoresCase() {
+      var page = InventoryController.catalogPage(items, Set.of(), null, "BOTTLED WATER", 10);
+      assertThat(page.getItems()).containsExactly("Diapers", "Gloves", "Water Filters");
+      assertThat(page.getLastItem()).isEqualTo("Water Filters");
+    }
+
+    @Test
+    void emptyPageHasNoLastItem() {
+      var page = InventoryController.catalogPage(items, Set.of(), null, "Water Filters", 10);
+      assertThat(page.getItems()).isEmpty();
+      assertThat(page.getLastItem()).isNull();
+      assertThat(page.isHasMore()).isFalse();
+    }
+  }
+}
@@ -1,22 +1,41 @@
 package com.vanatta.helene.supplies.database.manage.inventory;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import com.vanatta.helene.supplies.database.TestConfiguration;
+import com.vanatta.helene.supplies.database.data.AuditBuffer;
+import com.vanatta.helene.supplies.database.data.ItemCatalog;
 import com.vanatta.helene.supplies.database.data.ItemStatus;
+import com.vanatta.helene.supplies.database.data.ReferenceTables;
 import com.vanatta.helene.supplies.database.manage.ManageSiteDao;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
 class InventoryDaoTest {
+  private static final AuditBuffer auditBuffer = new AuditBuffer(TestConfiguration.jdbiTest);
+
+  private final ReferenceTables referenceTables = new ReferenceTables(TestConfiguration.jdbiTest);
+  private final ItemCatalog itemCatalog = new ItemCatalog(TestConfiguration.jdbiTest);
 
   @BeforeAll
   static void setup() {
     TestConfiguration.setupDatabase();
   }
 
+  @AfterAll
+  static void flushAudits() {
+    auditBuffer.shutdown();
+  }
+
   @Test
   void updateSiteItemActive() {
     long siteId = TestConfiguration.getSiteId("site1");
@@ -27,7 +46,14 @@ class InventoryDaoTest {
     assertThat(gloves.isActive()).isFalse();
 
     // set gloves to back to 'active'
-    InventoryDao.updateSiteItemActive(TestConfiguration.jdbiTest, siteId, "gloves", "Oversupply");
+    InventoryDao.updateSiteItemActive(
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        itemCatalog,
+        auditBuffer,
+        siteId,
+        "gloves",
+        "Oversupply");
 
     // verify gloves are active
     result = ManageSiteDao.fetchSiteInventory(TestConfiguration.jdbiTest, siteId);
@@ -35,7 +61,8 @@ class InventoryDaoTest {
     assertThat(gloves.isActive()).isTrue();
 
     // set gloves to back to 'inactive'
-    InventoryDao.updateSiteItemInactive(TestConfiguration.jdbiTest, siteId, "gloves");
+    InventoryDao.updateSiteItemInactive(
+        TestConfiguration.jdbiTest, itemCatalog, auditBuffer, siteId, "gloves");
 
     // verify gloves are inactive
     result = ManageSiteDao.fetchSiteInventory(TestConfiguration.jdbiTest, siteId);
@@ -54,10 +81,16 @@ class InventoryDaoTest {
 
     // change gloves status to 'Urgent Need'
     InventoryDao.updateItemStatus(
-        TestConfiguration.jdbiTest, siteId, "water", ItemStatus.URGENTLY_NEEDED.getText());
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        itemCatalog,
+        siteId,
+        "water",
+        ItemStatus.URGENTLY_NEEDED.getText());
 
     // validation (1)
-    var newStatus = InventoryDao.fetchItemStatus(TestConfiguration.jdbiTest, siteId, "water");
+    var newStatus =
+        InventoryDao.fetchItemStatus(TestConfiguration.jdbiTest, itemCatalog, siteId, "water");
     assertThat(newStatus).isEqualTo(ItemStatus.URGENTLY_NEEDED);
 
     // validation (2) water status is updated 'Urgent Need'
@@ -67,10 +100,16 @@ class InventoryDaoTest {
 
     // change water status to 'Oversupply'
     InventoryDao.updateItemStatus(
-        TestConfiguration.jdbiTest, siteId, "water", ItemStatus.OVERSUPPLY.getText());
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        itemCatalog,
+        siteId,
+        "water",
+        ItemStatus.OVERSUPPLY.getText());
 
     // validate water status is updated 'Oversupply'
-    newStatus = InventoryDao.fetchItemStatus(TestConfiguration.jdbiTest, siteId, "water");
+    newStatus =
+        InventoryDao.fetchItemStatus(TestConfiguration.jdbiTest, itemCatalog, siteId, "water");
     assertThat(newStatus).isEqualTo(ItemStatus.OVERSUPPLY);
 
     result = ManageSiteDao.fetchSiteInventory(TestConfiguration.jdbiTest, siteId);
@@ -79,10 +118,16 @@ class InventoryDaoTest {
 
     // change water status to 'Need'
     InventoryDao.updateItemStatus(
-        TestConfiguration.jdbiTest, siteId, "water", ItemStatus.NEEDED.getText());
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        itemCatalog,
+        siteId,
+        "water",
+        ItemStatus.NEEDED.getText());
 
     // validate water status is updated 'Need'
-    newStatus = InventoryDao.fetchItemStatus(TestConfiguration.jdbiTest, siteId, "water");
+    newStatus =
+        InventoryDao.fetchItemStatus(TestConfiguration.jdbiTest, itemCatalog, siteId, "water");
     assertThat(newStatus).isEqualTo(ItemStatus.NEEDED);
 
     result = ManageSiteDao.fetchSiteInventory(TestConfiguration.jdbiTest, siteId);
@@ -91,7 +136,12 @@ class InventoryDaoTest {
 
     // change gloves status back to 'Available'
     InventoryDao.updateItemStatus(
-        TestConfiguration.jdbiTest, siteId, "water", ItemStatus.AVAILABLE.getText());
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        itemCatalog,
+        siteId,
+        "water",
+        ItemStatus.AVAILABLE.getText());
 
     // validate gloves status is updated 'Need'
     result = ManageSiteDao.fetchSiteInventory(TestConfiguration.jdbiTest, siteId);
@@ -103,7 +153,7 @@ class InventoryDaoTest {
   void addItem() {
     int itemCountPreInsert = countItems();
 
-    boolean result = InventoryDao.addNewItem(TestConfiguration.jdbiTest, "new item");
+    boolean result = InventoryDao.addNewItem(TestConfiguration.jdbiTest, itemCatalog, "new item");
     assertThat(result).isTrue();
 
     int itemCountPostInsert = countItems();
@@ -117,11 +167,34 @@ class InventoryDaoTest {
 
   @Test
   void duplicateItemIsNoOp() {
-    InventoryDao.addNewItem(TestConfiguration.jdbiTest, "some item");
-    boolean result = InventoryDao.addNewItem(TestConfiguration.jdbiTest, "SOME ITEM");
+    InventoryDao.addNewItem(TestConfiguration.jdbiTest, itemCatalog, "some item");
+    boolean result = InventoryDao.addNewItem(TestConfiguration.jdbiTest, itemCatalog, "SOME ITEM");
     assertThat(result).isFalse();
   }
 
+  /** Many requests adding the same new item at once, exactly one of them adds it. */
+  @Test
+  void concurrentAddOfSameItem() throws Exception {
+    String name = "item " + UUID.randomUUID();
+    int itemCountPreInsert = countItems();
+
+    List<Callable<Boolean>> adds =
+        IntStream.range(0, 8)
+            .<Callable<Boolean>>mapToObj(
+                _ -> () -> InventoryDao.addNewItem(TestConfiguration.jdbiTest, itemCatalog, name))
+            .toList();
+    List<Boolean> results = new ArrayList<>();
+    try (var executor = Executors.newFixedThreadPool(adds.size())) {
+      for (var future : executor.invokeAll(adds)) {
+        results.add(future.get());
+      }
+    }
+
+    assertThat(results.stream().filter(added -> added)).hasSize(1);
+    assertThat(countItems()).isEqualTo(itemCountPreInsert + 1);
+    assertThat(itemCatalog.findByName(name)).isPresent();
+  }
+
   private static ManageSiteDao.SiteInventory findItemByName(
       List<ManageSiteDao.SiteInventory> items, String itemName) {
     return items.stream()
@@ -135,30 +208,569 @@ class InventoryDaoTest {
     String name = UUID.randomUUID().toString();
     int startCount = countSiteItemAuditRecords();
 
-    InventoryDao.addNewItem(TestConfiguration.jdbiTest, name);
+    InventoryDao.addNewItem(TestConfiguration.jdbiTest, itemCatalog, name);
 
     // adding a new item should not change the site_item_audit count
     assertThat(countSiteItemAuditRecords()).isEqualTo(startCount);
 
     long site1Id = TestConfiguration.getSiteId("site1");
     InventoryDao.updateSiteItemActive(
-        TestConfiguration.jdbiTest, site1Id, name, ItemStatus.AVAILABLE.getText());
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        itemCatalog,
+        auditBuffer,
+        site1Id,
+        name,
+        ItemStatus.AVAILABLE.getText());
     assertThat(countSiteItemAuditRecords()).isEqualTo(startCount + 1);
 
     InventoryDao.updateItemStatus(
-        TestConfiguration.jdbiTest, site1Id, name, ItemStatus.URGENTLY_NEEDED.getText());
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        itemCatalog,
+        site1Id,
+        name,
+        ItemStatus.URGENTLY_NEEDED.getText());
     assertThat(countSiteItemAuditRecords()).isEqualTo(startCount + 2);
     InventoryDao.updateItemStatus(
-        TestConfiguration.jdbiTest, site1Id, name, ItemStatus.NEEDED.getText());
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        itemCatalog,
+        site1Id,
+        name,
+        ItemStatus.NEEDED.getText());
     assertThat(countSiteItemAuditRecords()).isEqualTo(startCount + 3);
 
-    InventoryDao.updateSiteItemInactive(TestConfiguration.jdbiTest, site1Id, name);
+    InventoryDao.updateSiteItemInactive(
+        TestConfiguration.jdbiTest, itemCatalog, auditBuffer, site1Id, name);
     assertThat(countSiteItemAuditRecords()).isEqualTo(startCount + 4);
   }
 
+  /** Setting an item to the status it already has is a no-op, nothing is audited. */
+  @Test
+  void updateItemStatusUnchanged() {
+    long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+    InventoryDao.updateSiteItemActive(
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        itemCatalog,
+        auditBuffer,
+        siteId,
+        "water",
+        ItemStatus.NEEDED.getText());
+    int auditCount = countSiteItemAuditRecords();
+
+    String oldStatus =
+        InventoryDao.updateItemStatus(
+            TestConfiguration.jdbiTest,
+            referenceTables,
+            itemCatalog,
+            siteId,
+            "water",
+            ItemStatus.NEEDED.getText());
+
+    assertThat(oldStatus).isEqualTo(ItemStatus.NEEDED.getText());
+    assertThat(countSiteItemAuditRecords()).isEqualTo(auditCount);
+
+    oldStatus =
+        InventoryDao.updateItemStatus(
+            TestConfiguration.jdbiTest,
+            referenceTables,
+            itemCatalog,
+            siteId,
+            "water",
+            ItemStatus.OVERSUPPLY.getText());
+    assertThat(oldStatus).isEqualTo(ItemStatus.NEEDED.getText());
+    assertThat(countSiteItemAuditRecords()).isEqualTo(auditCount + 1);
+  }
+
+  @Test
+  void updateItemStatusItemNotAtSite() {
+    long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+
+    assertThatThrownBy(
+            () ->
+                InventoryDao.updateItemStatus(
+                    TestConfiguration.jdbiTest,
+                    referenceTables,
+                    itemCatalog,
+                    siteId,
+                    "water",
+                    ItemStatus.NEEDED.getText()))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /** Adding an item that is already at a site is ignored, and not audited a second time. */
+  @Test
+  void updateSiteItemActiveDuplicate() {
+    long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+    InventoryDao.updateSiteItemActive(
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        itemCatalog,
+        auditBuffer,
+        siteId,
+        "water",
+        ItemStatus.NEEDED.getText());
+    int auditCount = countSiteItemAuditRecords();
+
+    InventoryDao.updateSiteItemActive(
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        itemCatalog,
+        auditBuffer,
+        siteId,
+        "water",
+        ItemStatus.OVERSUPPLY.getText());
+
+    assertThat(
+            InventoryDao.fetchItemStatus(TestConfiguration.jdbiTest, itemCatalog, siteId, "water"))
+        .isEqualTo(ItemStatus.NEEDED);
+    assertThat(countSiteItemAuditRecords()).isEqualTo(auditCount);
+  }
+
   private static int countSiteItemAuditRecords() {
+    auditBuffer.flush();
     return TestConfiguration.jdbiTest.withHandle(
         handle ->
             handle.createQuery("select count(*) from site_item_audit").mapTo(Integer.class).one());
   }
+
+  @Nested
+  class ApplyItemChanges {
+
+    private static InventoryDao.ItemChange add(String itemName, ItemStatus status) {
+      return InventoryDao.ItemChange.builder()
+          .itemName(itemName)
+          .active(true)
+          .itemStatus(status.getText())
+          .build();
+    }
+
+    private static InventoryDao.ItemChange remove(String itemName) {
+      return InventoryDao.ItemChange.builder().itemName(itemName).active(false).build();
+    }
+
+    @Test
+    void addsRemovesAndChangesStatus() {
+      long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+      InventoryDao.updateSiteItemActive(
+          TestConfiguration.jdbiTest,
+          referenceTables,
+          itemCatalog,
+          auditBuffer,
+          siteId,
+          "water",
+          ItemStatus.AVAILABLE.getText());
+      InventoryDao.updateSiteItemActive(
+          TestConfiguration.jdbiTest,
+          referenceTables,
+          itemCatalog,
+          auditBuffer,
+          siteId,
+          "soap",
+          ItemStatus.AVAILABLE.getText());
+      int auditCount = countSiteItemAuditRecords();
+
+      var applied =
+          InventoryDao.applyItemChanges(
+              TestConfiguration.jdbiTest,
+              referenceTables,
+              itemCatalog,
+              siteId,
+              List.of(
+                  add("gloves", ItemStatus.NEEDED),
+                  add("water", ItemStatus.URGENTLY_NEEDED),
+                  remove("soap")));
+
+      assertThat(applied)
+          .extracting(InventoryDao.AppliedChange::getItemName)
+          .containsExactly("gloves", "water", "soap");
+      var inventory = ManageSiteDao.fetchSiteInventory(TestConfiguration.jdbiTest, siteId);
+      assertThat(findItemByName(inventory, "gloves").getItemStatus())
+          .isEqualTo(ItemStatus.NEEDED.getText());
+      assertThat(findItemByName(inventory, "water").getItemStatus())
+          .isEqualTo(ItemStatus.URGENTLY_NEEDED.getText());
+      assertThat(findItemByName(inventory, "soap").isActive()).isFalse();
+      assertThat(countSiteItemAuditRecords()).isEqualTo(auditCount + 3);
+    }
+
+    /** Changes that are already in effect are not applied or audited. */
+    @Test
+    void noOpChangesAreSkipped() {
+      long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+      InventoryDao.updateSiteItemActive(
+          TestConfiguration.jdbiTest,
+          referenceTables,
+          itemCatalog,
+          auditBuffer,
+          siteId,
+          "water",
+          ItemStatus.AVAILABLE.getText());
+      int auditCount = countSiteItemAuditRecords();
+
+      var applied =
+          InventoryDao.applyItemChanges(
+              TestConfiguration.jdbiTest,
+              referenceTables,
+              itemCatalog,
+              siteId,
+              List.of(add("water", ItemStatus.AVAILABLE), remove("gloves")));
+
+      assertThat(applied).isEmpty();
+      assertThat(countSiteItemAuditRecords()).isEqualTo(auditCount);
+    }
+
+    /** An invalid item fails the whole batch, no other change is applied. */
+    @Test
+    void invalidItemChangesNothing() {
+      long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+
+      assertThatThrownBy(
+              () ->
+                  InventoryDao.applyItemChanges(
+                      TestConfiguration.jdbiTest,
+                      referenceTables,
+                      itemCatalog,
+                      siteId,
+                      List.of(
+                          add("water", ItemStatus.NEEDED),
+                          add("not an item " + UUID.randomUUID(), ItemStatus.NEEDED))))
+          .isInstanceOf(IllegalArgumentException.class);
+
+      var inventory = ManageSiteDao.fetchSiteInventory(TestConfiguration.jdbiTest, siteId);
+      assertThat(findItemByName(inventory, "water").isActive()).isFalse();
+    }
+
+    @Test
+    void invalidStatus() {
+      long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+
+      assertThatThrownBy(
+              () ->
+                  InventoryDao.applyItemChanges(
+                      TestConfiguration.jdbiTest,
+                      referenceTables,
+                      itemCatalog,
+                      siteId,
+                      List.of(
+                          InventoryDao.ItemChange.builder()
+                              .itemName("water")
+                              .active(true)
+                              .itemStatus("bad status")
+                              .build())))
+          .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /** The last change listed for an item wins. */
+    @Test
+    void lastChangeForAnItemIsUsed() {
+      long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+
+      InventoryDao.applyItemChanges(
+          TestConfiguration.jdbiTest,
+          referenceTables,
+          itemCatalog,
+          siteId,
+          List.of(add("water", ItemStatus.NEEDED), add("water", ItemStatus.OVERSUPPLY)));
+
+      var inventory = ManageSiteDao.fetchSiteInventory(TestConfiguration.jdbiTest, siteId);
+      assertThat(findItemByName(inventory, "water").getItemStatus())
+          .isEqualTo(ItemStatus.OVERSUPPLY.getText());
+    }
+
+    @Test
+    void matchingVersionIsIncremented() {
+      long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+      assertThat(InventoryDao.fetchInventoryVersion(TestConfiguration.jdbiTest, siteId)).isZero();
+
+      var update =
+          InventoryDao.applyItemChanges(
+              TestConfiguration.jdbiTest,
+              referenceTables,
+              itemCatalog,
+              siteId,
+              List.of(add("water", ItemStatus.NEEDED)),
+              0L);
+      assertThat(update.isConflict()).isFalse();
+      assertThat(update.getInventoryVersion()).isEqualTo(1);
+      assertThat(update.getApplied()).hasSize(1);
+
+      update =
+          InventoryDao.applyItemChanges(
+              TestConfiguration.jdbiTest,
+              referenceTables,
+              itemCatalog,
+              siteId,
+              List.of(remove("water")),
+              1L);
+      assertThat(update.isConflict()).isFalse();
+      assertThat(update.getInventoryVersion()).isEqualTo(2);
+      assertThat(InventoryDao.fetchInventoryVersion(TestConfiguration.jdbiTest, siteId))
+          .isEqualTo(2);
+    }
+
+    /**
+     * Another window changed the inventory after this one loaded it. Nothing is changed and the
+     * result has the current inventory.
+     */
+    @Test
+    void staleVersionIsConflict() {
+      long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+      long loadedVersion = InventoryDao.fetchInventoryVersion(TestConfiguration.jdbiTest, siteId);
+      InventoryDao.applyItemChanges(
+          TestConfiguration.jdbiTest,
+          referenceTables,
+          itemCatalog,
+          siteId,
+          List.of(add("water", ItemStatus.NEEDED)),
+          loadedVersion);
+      int auditCount = countSiteItemAuditRecords();
+
+      var update =
+          InventoryDao.applyItemChanges(
+              TestConfiguration.jdbiTest,
+              referenceTables,
+              itemCatalog,
+              siteId,
+              List.of(remove("water"), add("gloves", ItemStatus.AVAILABLE)),
+              loadedVersion);
+
+      assertThat(update.isConflict()).isTrue();
+      assertThat(update.getApplied()).isEmpty();
+      assertThat(update.getInventoryVersion()).isEqualTo(loadedVersion + 1);
+      assertThat(update.getCurrentItems()).containsExactly(add("water", ItemStatus.NEEDED));
+      assertThat(InventoryDao.fetchCurrentInventory(TestConfiguration.jdbiTest, siteId))
+          .containsExactly(add("water", ItemStatus.NEEDED));
+      assertThat(countSiteItemAuditRecords()).isEqualTo(auditCount);
+    }
+
+    /** Changes that are all already in effect leave the version as it is. */
+    @Test
+    void noOpChangesKeepVersion() {
+      long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+      InventoryDao.applyItemChanges(
+          TestConfiguration.jdbiTest,
+          referenceTables,
+          itemCatalog,
+          siteId,
+          List.of(add("water", ItemStatus.NEEDED)),
+          0L);
+
+      var update =
+          InventoryDao.applyItemChanges(
+              TestConfiguration.jdbiTest,
+              referenceTables,
+              itemCatalog,
+              siteId,
+              List.of(add("water", ItemStatus.NEEDED)),
+              1L);
+
+      assertThat(update.isConflict()).isFalse();
+      assertThat(update.getApplied()).isEmpty();
+      assertThat(update.getInventoryVersion()).isEqualTo(1);
+      assertThat(InventoryDao.fetchInventoryVersion(TestConfiguration.jdbiTest, siteId))
+          .isEqualTo(1);
+    }
+
+    /** A site whose inventory was never changed is at version 0, any other version is stale. */
+    @Test
+    void neverChangedSiteIsVersionZero() {
+      long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+
+      var update =
+          InventoryDao.applyItemChanges(
+              TestConfiguration.jdbiTest,
+              referenceTables,
+              itemCatalog,
+              siteId,
+              List.of(add("water", ItemStatus.NEEDED)),
+              3L);
+
+      assertThat(update.isConflict()).isTrue();
+      assertThat(update.getInventoryVersion()).isZero();
+      assertThat(InventoryDao.fetchCurrentInventory(TestConfiguration.jdbiTest, siteId)).isEmpty();
+    }
+
+    /** Single item changes, not checked against a version, still increment it. */
+    @Test
+    void singleItemChangesIncrementVersion() {
+      long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+
+      InventoryDao.updateSiteItemActive(
+          TestConfiguration.jdbiTest,
+          referenceTables,
+          itemCatalog,
+          auditBuffer,
+          siteId,
+          "water",
+          ItemStatus.AVAILABLE.getText());
+      assertThat(InventoryDao.fetchInventoryVersion(TestConfiguration.jdbiTest, siteId))
+          .isEqualTo(1);
+
+      InventoryDao.updateItemStatus(
+          TestConfiguration.jdbiTest,
+          referenceTables,
+          itemCatalog,
+          siteId,
+          "water",
+          ItemStatus.NEEDED.getText());
+      assertThat(InventoryDao.fetchInventoryVersion(TestConfiguration.jdbiTest, siteId))
+          .isEqualTo(2);
+
+      // no change, version stays the same
+      InventoryDao.updateItemStatus(
+          TestConfiguration.jdbiTest,
+          referenceTables,
+          itemCatalog,
+          siteId,
+          "water",
+          ItemStatus.NEEDED.getText());
+      assertThat(InventoryDao.fetchInventoryVersion(TestConfiguration.jdbiTest, siteId))
+          .isEqualTo(2);
+
+      InventoryDao.updateSiteItemInactive(
+          TestConfiguration.jdbiTest, itemCatalog, auditBuffer, siteId, "water");
+      assertThat(InventoryDao.fetchInventoryVersion(TestConfiguration.jdbiTest, siteId))
+          .isEqualTo(3);
+      assertThat(
+              InventoryDao.fetchItemStatus(
+                  TestConfiguration.jdbiTest, itemCatalog, siteId, "water"))
+          .isNull();
+    }
+  }
+
+  /** Inventory changes touch the site row at most once a minute. */
+  @Nested
+  class InventoryLastUpdated {
+
+    @Test
+    void touchedWhenOlderThanAMinute() {
+      long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+      setInventoryLastUpdated(siteId, "now() - interval '1 hour'");
+
+      InventoryDao.updateSiteItemActive(
+          TestConfiguration.jdbiTest,
+          referenceTables,
+          itemCatalog,
+          auditBuffer,
+          siteId,
+          "water",
+          ItemStatus.AVAILABLE.getText());
+
+      assertThat(minutesSinceInventoryLastUpdated(siteId)).isZero();
+    }
+
+    /** Further changes within the minute do not write the site row again. */
+    @Test
+    void changesWithinAMinuteAreCoalesced() {
+      long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+      InventoryDao.updateSiteItemActive(
+          TestConfiguration.jdbiTest,
+          referenceTables,
+          itemCatalog,
+          auditBuffer,
+          siteId,
+          "water",
+          ItemStatus.AVAILABLE.getText());
+      String siteRowVersion = siteRowVersion(siteId);
+
+      InventoryDao.updateItemStatus(
+          TestConfiguration.jdbiTest,
+          referenceTables,
+          itemCatalog,
+          siteId,
+          "water",
+          ItemStatus.NEEDED.getText());
+      InventoryDao.updateSiteItemActive(
+          TestConfiguration.jdbiTest,
+          referenceTables,
+          itemCatalog,
+          auditBuffer,
+          siteId,
+          "gloves",
+          ItemStatus.AVAILABLE.getText());
+      InventoryDao.updateSiteItemInactive(
+          TestConfiguration.jdbiTest, itemCatalog, auditBuffer, siteId, "gloves");
+      InventoryDao.applyItemChanges(
+          TestConfiguration.jdbiTest,
+          referenceTables,
+          itemCatalog,
+          siteId,
+          List.of(
+              InventoryDao.ItemChange.builder()
+                  .itemName("soap")
+                  .active(true)
+                  .itemStatus(ItemStatus.OVERSUPPLY.getText())
+                  .build()));
+
+      assertThat(siteRowVersion(siteId)).isEqualTo(siteRowVersion);
+    }
+
+    /** A site that is not onboarded is always updated, the first change onboards it. */
+    @Test
+    void siteIsOnboarded() {
+      long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+      TestConfiguration.jdbiTest.withHandle(
+          handle ->
+              handle
+                  .createUpdate("update site set onboarded = false where id = :siteId")
+                  .bind("siteId", siteId)
+                  .execute());
+
+      InventoryDao.updateSiteItemActive(
+          TestConfiguration.jdbiTest,
+          referenceTables,
+          itemCatalog,
+          auditBuffer,
+          siteId,
+          "water",
+          ItemStatus.AVAILABLE.getText());
+
+      boolean onboarded =
+          TestConfiguration.jdbiTest.withHandle(
+              handle ->
+                  handle
+                      .createQuery("select onboarded from site where id = :siteId")
+                      .bind("siteId", siteId)
+                      .mapTo(Boolean.class)
+                      .one());
+      assertThat(onboarded).isTrue();
+    }
+
+    private static void setInventoryLastUpdated(long siteId, String value) {
+      TestConfiguration.jdbiTest.withHandle(
+          handle ->
+              handle
+                  .createUpdate(
+                      "update site set inventory_last_updated = " + value + " where id = :siteId")
+                  .bind("siteId", siteId)
+                  .execute());
+    }
+
+    private static long minutesSinceInventoryLastUpdated(long siteId) {
+      return TestConfiguration.jdbiTest.withHandle(
+          handle ->
+              handle
+                  .createQuery(
+                      """
+                      select extract(epoch from now() - inventory_last_updated)::bigint / 60
+                      from site where id = :siteId
+                      """)
+                  .bind("siteId", siteId)
+                  .mapTo(Long.class)
+                  .one());
+    }
+
+    /** Changes every time the row is written. */
+    private static String siteRowVersion(long siteId) {
+      return TestConfiguration.jdbiTest.withHandle(
+          handle ->
+              handle
+                  .createQuery("select xmin::text from site where id = :siteId")
+                  .bind("siteId", siteId)
+                  .mapTo(String.class)
+                  .one());
+    }
+  }
 }
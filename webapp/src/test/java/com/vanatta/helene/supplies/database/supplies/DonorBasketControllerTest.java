@@ -0,0 +1,152 @@
+package com.vanatta.helene.supplies.database.supplies;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.vanatta.helene.supplies.database.TestConfiguration;
+import com.vanatta.helene.supplies.database.data.ItemStatus;
+import com.vanatta.helene.supplies.database.supplies.DonorBasketController.DonorBasketRequest;
+import com.vanatta.helene.supplies.database.supplies.site.details.NeedsMatchingIndex;
+import com.vanatta.helene.supplies.database.supplies.site.details.NeedsMatchingIndex.DonorBasketMatch;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DonorBasketControllerTest {
+
+  @BeforeEach
+  void setup() {
+    TestConfiguration.setupDatabase();
+  }
+
+  private static DonorBasketController controller() {
+    return new DonorBasketController(new NeedsMatchingIndex(TestConfiguration.jdbiTest));
+  }
+
+  private static List<String> siteNames(List<DonorBasketMatch> results) {
+    return results.stream().map(DonorBasketMatch::getSiteName).toList();
+  }
+
+  /**
+   * site1 urgently needs 'new clothes'. site3 needs water but is not active, it should not be
+   * listed.
+   */
+  @Test
+  void findsSitesNeedingItems() {
+    var response =
+        controller()
+            .donorBasket(
+                DonorBasketRequest.builder().items(List.of("new clothes", "water")).build());
+
+    assertThat(siteNames(response.getResults())).containsExactly("site1");
+    assertThat(response.getResultCount()).isEqualTo(1);
+    var site1 = response.getResults().getFirst();
+    assertThat(site1.getUrgentlyNeededItems()).containsExactly("new clothes");
+    assertThat(site1.getNeededItems()).isEmpty();
+    assertThat(site1.getMatchCount()).isEqualTo(1);
+  }
+
+  /** Sites that need more of the donor's items are listed first. */
+  @Test
+  void rankedByNumberOfItemsNeeded() {
+    String siteName = TestConfiguration.addSite();
+    long siteId = TestConfiguration.getSiteId(siteName);
+    TestConfiguration.addItemToSite(siteId, ItemStatus.NEEDED, "new clothes", -910);
+    TestConfiguration.addItemToSite(siteId, ItemStatus.NEEDED, "water", -911);
+
+    var response =
+        controller()
+            .donorBasket(
+                DonorBasketRequest.builder().items(List.of("new clothes", "water")).build());
+
+    assertThat(siteNames(response.getResults())).containsExactly(siteName, "site1");
+    assertThat(response.getResults().getFirst().getNeededItems())
+        .containsExactly("new clothes", "water");
+  }
+
+  /** site1 is in Watauga county, NC. */
+  @Test
+  void countyFilter() {
+    var controller = controller();
+
+    assertThat(
+            controller
+                .donorBasket(
+                    DonorBasketRequest.builder()
+                        .items(List.of("new clothes"))
+                        .counties(List.of("Watauga,NC"))
+                        .build())
+                .getResults())
+        .hasSize(1);
+    assertThat(
+            controller
+                .donorBasket(
+                    DonorBasketRequest.builder()
+                        .items(List.of("new clothes"))
+                        .counties(List.of("Buncombe,NC"))
+                        .build())
+                .getResults())
+        .isEmpty();
+  }
+
+  /**
+   * County names are only unique within a state, a county of the same name elsewhere is not a
+   * match.
+   */
+  @Test
+  void countyFilterIncludesState() {
+    var response =
+        controller()
+            .donorBasket(
+                DonorBasketRequest.builder()
+                    .items(List.of("new clothes"))
+                    .counties(List.of("Watauga,TN"))
+                    .build());
+
+    assertThat(response.getResults()).isEmpty();
+  }
+
+  @Test
+  void countyWithoutStateIsRejected() {
+    assertThatThrownBy(
+            () ->
+                controller()
+                    .donorBasket(
+                        DonorBasketRequest.builder()
+                            .items(List.of("new clothes"))
+                            .counties(List.of("Watauga"))
+                            .build()))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void sitesNotPubliclyVisibleAreNotListed() {
+    TestConfiguration.jdbiTest.withHandle(
+        handle ->
+            handle
+                .createUpdate("update site set publicly_visible = false where name = 'site1'")
+                .execute());
+
+    var response =
+        controller()
+            .donorBasket(DonorBasketRequest.builder().items(List.of("new clothes")).build());
+
+    assertThat(response.getResults()).isEmpty();
+  }
+
+  @Test
+  void unknownItemsAreIgnored() {
+    var response =
+        controller()
+            .donorBasket(
+                DonorBasketRequest.builder().items(List.of("new clothes", "not an item")).build());
+
+    assertThat(siteNames(response.getResults())).containsExactly("site1");
+  }
+
+  @Test
+  void itemsAreRequired() {
+    assertThatThrownBy(() -> controller().donorBasket(DonorBasketRequest.builder().build()))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
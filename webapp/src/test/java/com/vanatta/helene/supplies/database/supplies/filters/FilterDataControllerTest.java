@@ -4,16 +4,18 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import com.vanatta.helene.supplies.database.TestConfiguration;
 import com.vanatta.helene.supplies.database.auth.CookieAuthenticator;
+import com.vanatta.helene.supplies.database.data.ReferenceTables;
 import com.vanatta.helene.supplies.database.manage.ManageSiteDao;
-import org.jdbi.v3.core.Jdbi;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 class FilterDataControllerTest {
+  private final ReferenceTables referenceTables = new ReferenceTables(TestConfiguration.jdbiTest);
+  private final FilterDataCache filterDataCache = new FilterDataCache(TestConfiguration.jdbiTest);
 
-  private static final Jdbi jdbiTest = TestConfiguration.jdbiTest;
   private final FilterDataController filterDataController =
-      new FilterDataController(jdbiTest, new CookieAuthenticator(TestConfiguration.jdbiTest));
+      new FilterDataController(
+          filterDataCache, new CookieAuthenticator(TestConfiguration.jdbiTest));
 
   @BeforeAll
   static void setup() {
@@ -26,6 +28,8 @@ class FilterDataControllerTest {
 
     // spot check we return a few expected values, counties of sites that are known to be active
     assertThat(response.getCounties()).contains("Buncombe", "Watauga");
+    // counties without any site are not listed
+    assertThat(response.getCounties()).doesNotContain("dummy");
   }
 
   @Test
@@ -73,7 +77,11 @@ class FilterDataControllerTest {
     ManageSiteDao.updateSitePubliclyVisible(TestConfiguration.jdbiTest, siteId, false);
     TestConfiguration.addCounty("unique", "AA");
     ManageSiteDao.updateSiteField(
-        TestConfiguration.jdbiTest, siteId, ManageSiteDao.SiteField.COUNTY, "unique,AA");
+        TestConfiguration.jdbiTest,
+        referenceTables,
+        siteId,
+        ManageSiteDao.SiteField.COUNTY,
+        "unique,AA");
 
     var response = filterDataController.getFilterData(AuthenticatedMode.AUTHENTICATED);
     assertThat(response.getCounties()).contains("unique");
@@ -82,4 +90,15 @@ class FilterDataControllerTest {
     response = filterDataController.getFilterData(AuthenticatedMode.NOT_AUTHENTICATED);
     assertThat(response.getCounties()).doesNotContain("unique");
   }
+
+  /** Filter data is served from the cache until a site or item changes. */
+  @Test
+  void filterDataIsCached() {
+    var response = filterDataController.getFilterData();
+
+    assertThat(filterDataController.getFilterData()).isSameAs(response);
+
+    filterDataCache.invalidate();
+    assertThat(filterDataController.getFilterData()).isNotSameAs(response).isEqualTo(response);
+  }
 }
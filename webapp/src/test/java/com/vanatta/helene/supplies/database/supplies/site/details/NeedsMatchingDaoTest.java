@@ -3,7 +3,9 @@ package com.vanatta.helene.supplies.database.supplies.site.details;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.vanatta.helene.supplies.database.TestConfiguration;
+import com.vanatta.helene.supplies.database.data.CountyAdjacencyGraph;
 import com.vanatta.helene.supplies.database.data.ItemStatus;
+import com.vanatta.helene.supplies.database.data.SiteIdentifiers;
 import com.vanatta.helene.supplies.database.supplies.site.details.NeedsMatchingDao.NeedsMatchingDbResult;
 import com.vanatta.helene.supplies.database.supplies.site.details.NeedsMatchingDao.NeedsMatchingResult.Item;
 import java.util.List;
@@ -15,7 +17,11 @@ class NeedsMatchingDaoTest {
   @Test
   void needsQueryRuns() {
     var result =
-        NeedsMatchingDao.execute(TestConfiguration.jdbiTest, TestConfiguration.SITE1_AIRTABLE_ID);
+        NeedsMatchingDao.execute(
+            TestConfiguration.jdbiTest,
+            new SiteIdentifiers(TestConfiguration.jdbiTest),
+            CountyAdjacencyGraph.load(TestConfiguration.jdbiTest),
+            TestConfiguration.SITE1_AIRTABLE_ID);
 
     assertThat(result).isNotNull();
 
@@ -100,7 +106,9 @@ class NeedsMatchingDaoTest {
                 .itemCount(1)
                 .build());
 
-    var results = NeedsMatchingDao.aggregate(dbResults);
+    var results =
+        NeedsMatchingDao.aggregate(
+            dbResults, CountyAdjacencyGraph.load(TestConfiguration.jdbiTest));
     assertThat(results)
         .containsExactly(
             NeedsMatchingDao.NeedsMatchingResult.builder()
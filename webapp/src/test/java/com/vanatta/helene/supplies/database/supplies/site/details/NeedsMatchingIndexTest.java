@@ -0,0 +1,314 @@
+package com.vanatta.helene.supplies.database.supplies.site.details;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.vanatta.helene.supplies.database.TestConfiguration;
+import com.vanatta.helene.supplies.database.data.CountyAdjacencyGraph;
+import com.vanatta.helene.supplies.database.data.ItemStatus;
+import com.vanatta.helene.supplies.database.data.SiteType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class NeedsMatchingIndexTest {
+
+  @BeforeEach
+  void setup() {
+    TestConfiguration.setupDatabase();
+  }
+
+  /** The index should give exactly the same results as the needs matching query. */
+  @ParameterizedTest
+  @ValueSource(strings = {"site1", "site2", "site3", "site4", "site5", "site6"})
+  void sameResultsAsQuery(String siteName) {
+    long siteId = TestConfiguration.getSiteId(siteName);
+    var index = new NeedsMatchingIndex(TestConfiguration.jdbiTest);
+
+    var expected =
+        NeedsMatchingDao.executeByInternalId(
+            TestConfiguration.jdbiTest,
+            CountyAdjacencyGraph.load(TestConfiguration.jdbiTest),
+            siteId);
+
+    assertThat(index.findMatches(siteId)).isEqualTo(expected);
+  }
+
+  @Test
+  void unknownSiteHasNoMatches() {
+    var index = new NeedsMatchingIndex(TestConfiguration.jdbiTest);
+    assertThat(index.findMatches(-1L)).isEmpty();
+  }
+
+  /**
+   * site1 urgently needs 'new clothes'. Add a supply hub that has new clothes available, it should
+   * show as a match only after the index is refreshed, and stop matching if the site stops being a
+   * supply hub.
+   */
+  @Test
+  void refreshSitePicksUpInventoryChanges() {
+    long site1 = TestConfiguration.getSiteId("site1");
+    var index = new NeedsMatchingIndex(TestConfiguration.jdbiTest);
+
+    String hubName = TestConfiguration.addSite(SiteType.SUPPLY_HUB);
+    long hubId = TestConfiguration.getSiteId(hubName);
+    TestConfiguration.addItemToSite(hubId, ItemStatus.AVAILABLE, "new clothes", -900);
+    assertThat(siteNames(index.findMatches(site1))).doesNotContain(hubName);
+
+    index.refreshSite(hubId);
+    assertThat(siteNames(index.findMatches(site1))).contains(hubName);
+    assertThat(index.findMatches(site1))
+        .isEqualTo(
+            NeedsMatchingDao.executeByInternalId(
+                TestConfiguration.jdbiTest,
+                CountyAdjacencyGraph.load(TestConfiguration.jdbiTest),
+                site1));
+
+    TestConfiguration.jdbiTest.withHandle(
+        handle ->
+            handle
+                .createUpdate(
+                    """
+                    update site set site_type_id =
+                      (select id from site_type where name = 'Distribution Center')
+                    where id = :id
+                    """)
+                .bind("id", hubId)
+                .execute());
+    index.refreshSite(hubId);
+    assertThat(siteNames(index.findMatches(site1))).doesNotContain(hubName);
+  }
+
+  /** Changing the status of a single item should only need that item to be refreshed. */
+  @Test
+  void refreshSiteItemPicksUpStatusChange() {
+    long site1 = TestConfiguration.getSiteId("site1");
+    String hubName = TestConfiguration.addSite(SiteType.SUPPLY_HUB);
+    long hubId = TestConfiguration.getSiteId(hubName);
+    TestConfiguration.addItemToSite(hubId, ItemStatus.NEEDED, "new clothes", -901);
+    var index = new NeedsMatchingIndex(TestConfiguration.jdbiTest);
+    assertThat(siteNames(index.findMatches(site1))).doesNotContain(hubName);
+
+    TestConfiguration.jdbiTest.withHandle(
+        handle ->
+            handle
+                .createUpdate(
+                    """
+                    update site_item set item_status_id =
+                      (select id from item_status where name = 'Available')
+                    where site_id = :siteId
+                    """)
+                .bind("siteId", hubId)
+                .execute());
+    index.refreshSiteItem(hubId, "new clothes");
+
+    assertThat(siteNames(index.findMatches(site1))).contains(hubName);
+    assertThat(index.findMatches(site1))
+        .isEqualTo(
+            NeedsMatchingDao.executeByInternalId(
+                TestConfiguration.jdbiTest,
+                CountyAdjacencyGraph.load(TestConfiguration.jdbiTest),
+                site1));
+  }
+
+  /**
+   * Inventory edits of the same site, each followed by a refresh, racing with each other. Whatever
+   * order the refreshes run in, the index ends up with what was written last.
+   */
+  @Test
+  void concurrentRefreshesOfSameSiteEndWithLatestData() throws Exception {
+    long site1 = TestConfiguration.getSiteId("site1");
+    String hubName = TestConfiguration.addSite(SiteType.SUPPLY_HUB);
+    long hubId = TestConfiguration.getSiteId(hubName);
+    TestConfiguration.addItemToSite(hubId, ItemStatus.NEEDED, "new clothes", -902);
+    var index = new NeedsMatchingIndex(TestConfiguration.jdbiTest);
+
+    List<Future<?>> edits = new ArrayList<>();
+    try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+      for (int i = 0; i < 40; i++) {
+        String status = i % 2 == 0 ? "Available" : "Needed";
+        boolean wholeSite = i % 3 == 0;
+        edits.add(
+            executor.submit(
+                () -> {
+                  setItemStatus(hubId, status);
+                  if (wholeSite) {
+                    index.refreshSite(hubId);
+                  } else {
+                    index.refreshSiteItem(hubId, "new clothes");
+                  }
+                }));
+      }
+      for (Future<?> edit : edits) {
+        edit.get();
+      }
+    }
+
+    assertThat(index.findMatches(site1))
+        .isEqualTo(
+            NeedsMatchingDao.executeByInternalId(
+                TestConfiguration.jdbiTest,
+                CountyAdjacencyGraph.load(TestConfiguration.jdbiTest),
+                site1));
+  }
+
+  private static void setItemStatus(long siteId, String status) {
+    TestConfiguration.jdbiTest.withHandle(
+        handle ->
+            handle
+                .createUpdate(
+                    """
+                    update site_item set item_status_id =
+                      (select id from item_status where name = :status)
+                    where site_id = :siteId
+                    """)
+                .bind("siteId", siteId)
+                .bind("status", status)
+                .execute());
+  }
+
+  /**
+   * site1, in Watauga county, urgently needs 'new clothes', site2 in Buncombe has an oversupply.
+   * Supply hubs with the same one item are listed nearest first: same county, then the adjacent
+   * county (Ashe), then Buncombe that has no adjacency in the test data.
+   */
+  @Test
+  void sameItemCountRankedByCountyHops() {
+    long site1 = TestConfiguration.getSiteId("site1");
+    String nearHub = TestConfiguration.addSite(SiteType.SUPPLY_HUB);
+    TestConfiguration.addItemToSite(
+        TestConfiguration.getSiteId(nearHub), ItemStatus.AVAILABLE, "new clothes", -902);
+    String adjacentHub = TestConfiguration.addSite(SiteType.SUPPLY_HUB);
+    long adjacentHubId = TestConfiguration.getSiteId(adjacentHub);
+    TestConfiguration.addItemToSite(adjacentHubId, ItemStatus.AVAILABLE, "new clothes", -903);
+    TestConfiguration.jdbiTest.withHandle(
+        handle ->
+            handle
+                .createUpdate(
+                    "update site set county_id = (select id from county where name = 'Ashe') where"
+                        + " id = :id")
+                .bind("id", adjacentHubId)
+                .execute());
+    var index = new NeedsMatchingIndex(TestConfiguration.jdbiTest);
+
+    var results = index.findMatches(site1);
+
+    assertThat(siteNames(results).stream().filter(List.of(nearHub, adjacentHub, "site2")::contains))
+        .containsExactly(nearHub, adjacentHub, "site2");
+    assertThat(
+            results.stream()
+                .filter(r -> r.getSiteName().equals(adjacentHub))
+                .map(NeedsMatchingDao.NeedsMatchingResult::getCountiesAway))
+        .containsExactly("1");
+    assertThat(results)
+        .isEqualTo(
+            NeedsMatchingDao.executeByInternalId(
+                TestConfiguration.jdbiTest,
+                CountyAdjacencyGraph.load(TestConfiguration.jdbiTest),
+                site1));
+  }
+
+  /**
+   * site2 has an oversupply of 'new clothes', 'used clothes' and 'water'. site1 urgently needs new
+   * clothes, site3 needs water but is not active.
+   */
+  @Test
+  void findNeedySites() {
+    long site2 = TestConfiguration.getSiteId("site2");
+    String needsTwo = TestConfiguration.addSite();
+    long needsTwoId = TestConfiguration.getSiteId(needsTwo);
+    TestConfiguration.addItemToSite(needsTwoId, ItemStatus.NEEDED, "water", -920);
+    TestConfiguration.addItemToSite(needsTwoId, ItemStatus.NEEDED, "used clothes", -921);
+    String urgentlyNeedsTwo = TestConfiguration.addSite();
+    long urgentlyNeedsTwoId = TestConfiguration.getSiteId(urgentlyNeedsTwo);
+    TestConfiguration.addItemToSite(urgentlyNeedsTwoId, ItemStatus.URGENTLY_NEEDED, "water", -922);
+    TestConfiguration.addItemToSite(
+        urgentlyNeedsTwoId, ItemStatus.URGENTLY_NEEDED, "used clothes", -923);
+    var index = new NeedsMatchingIndex(TestConfiguration.jdbiTest);
+
+    var results = index.findNeedySites(site2);
+
+    // urgently needed items count double, site1 with one urgent need ties with two needed items
+    assertThat(siteNames(results)).containsExactly(urgentlyNeedsTwo, "site1", needsTwo);
+    assertThat(results.get(1).getItems())
+        .containsExactly(
+            NeedsMatchingDao.NeedsMatchingResult.Item.builder()
+                .name("new clothes")
+                .urgencyCssClass(ItemStatus.URGENTLY_NEEDED.getCssClass())
+                .build());
+    assertThat(results.get(2).getItems().stream().map(i -> i.getName()))
+        .containsExactly("used clothes", "water");
+  }
+
+  /** Every needy site found should have the supply site among its own matches. */
+  @ParameterizedTest
+  @ValueSource(strings = {"site1", "site2", "site3", "site4", "site5", "site6"})
+  void findNeedySitesIsReverseOfFindMatches(String siteName) {
+    long siteId = TestConfiguration.getSiteId(siteName);
+    var index = new NeedsMatchingIndex(TestConfiguration.jdbiTest);
+
+    for (var needySite : index.findNeedySites(siteId)) {
+      long needySiteId = Long.parseLong(needySite.getSiteLink().replaceAll(".*id=", ""));
+      assertThat(siteNames(index.findMatches(needySiteId))).contains(siteName);
+    }
+  }
+
+  private static List<String> siteNames(List<NeedsMatchingDao.NeedsMatchingResult> results) {
+    return results.stream().map(NeedsMatchingDao.NeedsMatchingResult::getSiteName).toList();
+  }
+
+  /**
+   * The region wide report should have, for each needy site, the same supplying sites in the same
+   * ranking as the single site lookup.
+   */
+  @Test
+  void allMatchesAgreeWithSingleSiteMatches() {
+    var index = new NeedsMatchingIndex(TestConfiguration.jdbiTest);
+
+    List<NeedsMatchingIndex.SiteMatch> allMatches = new ArrayList<>();
+    index.findAllMatches(ForkJoinPool.commonPool(), allMatches::addAll);
+
+    assertThat(allMatches).isNotEmpty();
+    allMatches.stream()
+        .map(NeedsMatchingIndex.SiteMatch::getNeedySiteId)
+        .distinct()
+        .forEach(
+            needySiteId -> {
+              var expected = index.findMatches(needySiteId);
+              var actual =
+                  allMatches.stream().filter(m -> m.getNeedySiteId() == needySiteId).toList();
+              assertThat(actual.stream().map(NeedsMatchingIndex.SiteMatch::getSupplySiteName))
+                  .containsExactlyElementsOf(siteNames(expected));
+              assertThat(actual.stream().map(NeedsMatchingIndex.SiteMatch::getItems))
+                  .containsExactlyElementsOf(
+                      expected.stream()
+                          .map(r -> r.getItems().stream().map(i -> i.getName()).toList())
+                          .toList());
+            });
+  }
+
+  /** site1 urgently needs 'new clothes', site2 has an oversupply of them. */
+  @Test
+  void urgencyCounts() {
+    var index = new NeedsMatchingIndex(TestConfiguration.jdbiTest);
+
+    List<NeedsMatchingIndex.SiteMatch> allMatches = new ArrayList<>();
+    index.findAllMatches(ForkJoinPool.commonPool(), allMatches::addAll);
+
+    var match =
+        allMatches.stream()
+            .filter(m -> m.getNeedySiteName().equals("site1"))
+            .filter(m -> m.getSupplySiteName().equals("site2"))
+            .findFirst()
+            .orElseThrow();
+    assertThat(match.getItems()).containsExactly("new clothes");
+    assertThat(match.getUrgentlyNeededCount()).isEqualTo(1);
+    assertThat(match.getNeededCount()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,34 @@
+package com.vanatta.helene.supplies.database.supplies.site.details;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.gson.Gson;
+import com.vanatta.helene.supplies.database.TestConfiguration;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class NeedsMatchingReportControllerTest {
+
+  @BeforeAll
+  static void setup() {
+    TestConfiguration.setupDatabase();
+  }
+
+  @Test
+  void reportIsJsonArrayOfMatches() throws Exception {
+    var controller =
+        new NeedsMatchingReportController(new NeedsMatchingIndex(TestConfiguration.jdbiTest));
+    StringWriter writer = new StringWriter();
+
+    controller.writeReport(writer);
+
+    List<Map<String, Object>> report = new Gson().fromJson(writer.toString(), List.class);
+    assertThat(report).isNotEmpty();
+    assertThat(report.getFirst())
+        .containsKeys(
+            "supplySiteName", "needySiteName", "items", "urgentlyNeededCount", "neededCount");
+  }
+}
@@ -2,12 +2,35 @@ package com.vanatta.helene.supplies.database.supplies.site.details;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.samskivert.mustache.Mustache;
 import com.vanatta.helene.supplies.database.TestConfiguration;
 import com.vanatta.helene.supplies.database.auth.CookieAuthenticator;
+import com.vanatta.helene.supplies.database.data.ReferenceTables;
+import com.vanatta.helene.supplies.database.data.SiteIdentifiers;
+import com.vanatta.helene.supplies.database.manage.ManageSiteDao;
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.mustache.MustacheResourceTemplateLoader;
+import org.springframework.web.servlet.ModelAndView;
 
 class SiteDetailControllerTest {
+  private final ReferenceTables referenceTables = new ReferenceTables(TestConfiguration.jdbiTest);
+  private final SiteDetailPageCache siteDetailPageCache = new SiteDetailPageCache();
+  private final Mustache.Compiler mustacheCompiler =
+      Mustache.compiler()
+          .withLoader(new MustacheResourceTemplateLoader("classpath:/public/", ".html"));
+
+  private final SiteDetailController siteDetailController =
+      new SiteDetailController(
+          TestConfiguration.jdbiTest,
+          new SiteIdentifiers(TestConfiguration.jdbiTest),
+          new CookieAuthenticator(TestConfiguration.jdbiTest),
+          new NeedsMatchingIndex(TestConfiguration.jdbiTest),
+          siteDetailPageCache,
+          mustacheCompiler);
 
   /**
    * Validate that the site detail page contains all values from
@@ -17,14 +40,152 @@ class SiteDetailControllerTest {
   void renderSiteDetail() {
     long site1Id = TestConfiguration.getSiteId("site1");
 
-    SiteDetailController siteDetailController =
-        new SiteDetailController(
-            TestConfiguration.jdbiTest, new CookieAuthenticator(TestConfiguration.jdbiTest));
-
     var model = siteDetailController.siteDetail(site1Id, null, null, true);
 
     assertThat(model.getModelMap().keySet())
         .containsAll(
             Arrays.stream(SiteDetailController.TemplateParams.values()).map(v -> v.text).toList());
   }
+
+  @Nested
+  class AwaitSection {
+
+    @Test
+    void loadedSectionIsReturned() {
+      var section = CompletableFuture.completedFuture("loaded");
+
+      assertThat(SiteDetailController.awaitSection(section, Instant.now(), "test", 1L))
+          .isEqualTo("loaded");
+    }
+
+    /** A section still loading at the deadline is cancelled, the page is shown without it. */
+    @Test
+    void sectionPastDeadlineIsCancelled() {
+      var section = new CompletableFuture<String>();
+
+      String result =
+          SiteDetailController.awaitSection(section, Instant.now().plusMillis(50), "test", 1L);
+
+      assertThat(result).isNull();
+      assertThat(section.isCancelled()).isTrue();
+    }
+
+    @Test
+    void failedSectionIsLeftOut() {
+      var section = CompletableFuture.<String>failedFuture(new RuntimeException("test failure"));
+
+      assertThat(SiteDetailController.awaitSection(section, Instant.now(), "test", 1L)).isNull();
+    }
+  }
+
+  /** Sections that load in time are not marked unavailable. */
+  @Test
+  void sectionsAreAvailable() {
+    long site1Id = TestConfiguration.getSiteId("site1");
+    var model = siteDetailController.siteDetail(site1Id, null, null, true).getModelMap();
+
+    assertThat(model.get(SiteDetailController.TemplateParams.INCOMING_UNAVAILABLE.text))
+        .isEqualTo(false);
+    assertThat(model.get(SiteDetailController.TemplateParams.OUTGOING_UNAVAILABLE.text))
+        .isEqualTo(false);
+    assertThat(model.get(SiteDetailController.TemplateParams.NEEDS_MATCHING_UNAVAILABLE.text))
+        .isEqualTo(false);
+  }
+
+  /**
+   * Delivery sections that cannot get a database permit in time (eg: other page views hold them
+   * all) time out, the page is still rendered with those sections marked unavailable.
+   */
+  @Test
+  void pageRendersWhenSectionsTimeOut() throws InterruptedException {
+    long site1Id = TestConfiguration.getSiteId("site1");
+    SiteDetailController.sectionQueryPermits.acquire(
+        SiteDetailController.MAX_CONCURRENT_SECTION_QUERIES);
+    ModelAndView model;
+    try {
+      model = siteDetailController.siteDetail(site1Id, null, null, true);
+    } finally {
+      SiteDetailController.sectionQueryPermits.release(
+          SiteDetailController.MAX_CONCURRENT_SECTION_QUERIES);
+    }
+
+    var modelMap = model.getModelMap();
+    assertThat(modelMap.get(SiteDetailController.TemplateParams.INCOMING_UNAVAILABLE.text))
+        .isEqualTo(true);
+    assertThat(modelMap.get(SiteDetailController.TemplateParams.OUTGOING_UNAVAILABLE.text))
+        .isEqualTo(true);
+    assertThat(modelMap.get(SiteDetailController.TemplateParams.NEEDS_MATCHING_UNAVAILABLE.text))
+        .isEqualTo(false);
+    String page =
+        mustacheCompiler.loadTemplate(SiteDetailController.SITE_DETAIL_TEMPLATE).execute(modelMap);
+    assertThat(page).contains("site1");
+  }
+
+  /** Logged out visitors get a rendered page, served from the page cache until the site changes. */
+  @Nested
+  class PublicPage {
+
+    private String renderPublicPage(long siteId) {
+      var view = siteDetailController.siteDetail(siteId, null, null, false).getView();
+      assertThat(view).isInstanceOf(SiteDetailController.RenderedPage.class);
+      return ((SiteDetailController.RenderedPage) view).html();
+    }
+
+    @Test
+    void pageIsRendered() {
+      String siteName = TestConfiguration.addSite();
+      long siteId = TestConfiguration.getSiteId(siteName);
+
+      String page = renderPublicPage(siteId);
+
+      assertThat(page).contains(siteName);
+      assertThat(page).contains("do-login-indicator");
+      assertThat(page).doesNotContain("Incoming Deliveries");
+    }
+
+    @Test
+    void pageIsServedFromCache() {
+      long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+      String page = renderPublicPage(siteId);
+
+      // changed without invalidating the page cache, the cached page is still served
+      TestConfiguration.jdbiTest.useHandle(
+          handle ->
+              handle
+                  .createUpdate("update site set hours = 'not cached' where id = :id")
+                  .bind("id", siteId)
+                  .execute());
+
+      assertThat(renderPublicPage(siteId)).isEqualTo(page);
+    }
+
+    @Test
+    void invalidatedPageIsRenderedAgain() {
+      long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+      renderPublicPage(siteId);
+
+      ManageSiteDao.updateSiteField(
+          TestConfiguration.jdbiTest,
+          referenceTables,
+          siteId,
+          ManageSiteDao.SiteField.SITE_HOURS,
+          "new hours");
+      siteDetailPageCache.invalidate(siteId);
+
+      assertThat(renderPublicPage(siteId)).contains("new hours");
+    }
+
+    /** Logged in users get the template & model, never the cached page. */
+    @Test
+    void loggedInUsersAreNotServedCachedPage() {
+      long siteId = TestConfiguration.getSiteId(TestConfiguration.addSite());
+      renderPublicPage(siteId);
+
+      var model = siteDetailController.siteDetail(siteId, null, null, true);
+
+      assertThat(model.getViewName()).isEqualTo(SiteDetailController.SITE_DETAIL_TEMPLATE);
+      assertThat(model.getModelMap().get(SiteDetailController.TemplateParams.LOGGED_IN.text))
+          .isEqualTo(true);
+    }
+  }
 }
@@ -3,6 +3,7 @@ package com.vanatta.helene.supplies.database.supplies.site.details;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.vanatta.helene.supplies.database.TestConfiguration;
+import com.vanatta.helene.supplies.database.data.SiteIdentifiers;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
@@ -21,7 +22,7 @@ class SiteDetailDaoTest {
   void lookupIdByAirtableId() {
     long result =
         SiteDetailDao.lookupSiteIdByAirtableId(
-            TestConfiguration.jdbiTest, TestConfiguration.SITE1_AIRTABLE_ID);
+            new SiteIdentifiers(TestConfiguration.jdbiTest), TestConfiguration.SITE1_AIRTABLE_ID);
     assertThat(result).isEqualTo(site1Id);
   }
 
@@ -30,7 +31,7 @@ class SiteDetailDaoTest {
   void lookupIdByWssId() {
     long result =
         SiteDetailDao.lookupSiteIdByWssId(
-            TestConfiguration.jdbiTest, TestConfiguration.SITE1_WSS_ID);
+            new SiteIdentifiers(TestConfiguration.jdbiTest), TestConfiguration.SITE1_WSS_ID);
     assertThat(result).isEqualTo(site1Id);
   }
 
@@ -0,0 +1,40 @@
+package com.vanatta.helene.supplies.database.supplies.site.details;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class SiteDetailPageCacheTest {
+
+  private final SiteDetailPageCache pageCache = new SiteDetailPageCache();
+
+  @Test
+  void pageIsKept() {
+    pageCache.put(1L, pageCache.version(1L), "page 1");
+
+    assertThat(pageCache.get(1L)).isEqualTo("page 1");
+    assertThat(pageCache.get(2L)).isNull();
+  }
+
+  @Test
+  void invalidateDropsPage() {
+    pageCache.put(1L, pageCache.version(1L), "page 1");
+    pageCache.put(2L, pageCache.version(2L), "page 2");
+
+    pageCache.invalidate(1L);
+
+    assertThat(pageCache.get(1L)).isNull();
+    assertThat(pageCache.get(2L)).isEqualTo("page 2");
+  }
+
+  /** A page rendered from data read before the site changed is not kept. */
+  @Test
+  void pageRenderedBeforeInvalidationIsNotKept() {
+    long version = pageCache.version(1L);
+    pageCache.invalidate(1L);
+
+    pageCache.put(1L, version, "old page");
+
+    assertThat(pageCache.get(1L)).isNull();
+  }
+}
@@ -1,10 +1,13 @@
+delete from webhook_inbound_queue;
 delete from delivery_item;
 delete from delivery;
 delete from site_item_audit;
 delete from site_item;
+delete from site_inventory_version;
 delete from item;
 delete from site_audit_trail;
 delete from site;
+delete from county_adjacency;
 delete from county;
 
 insert into county(name, state) values('Ashe', 'NC');
@@ -15,6 +18,10 @@ insert into county(name, state) values('Sevier', 'TN');
 insert into county(name, state) values('Halifax', 'VA');
 insert into county(name) values('dummy') on conflict do nothing;
 
+insert into county_adjacency(county_id, adjacent_county_id) values
+  ((select id from county where name = 'Ashe'), (select id from county where name = 'Watauga')),
+  ((select id from county where name = 'Watauga'), (select id from county where name = 'Ashe'));
+
 insert into max_supply_load(id, sort_order, name, default_selection)
 values( -100, 25, 'test-value', false) on conflict do nothing;
 